@@ -0,0 +1,132 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Publishes StrandMetrics to Java Flight Recorder: an event for each large search or split, with its stack trace, and
+ * the counters once a second while a recording is running. StrandMetrics loads this class by name when metrics are
+ * enabled, so the counters event is registered the first time StrandMetrics is used; it needs JDK 11 or later.
+ */
+final class JfrMetricsEventSink implements MetricsEventSink {
+
+    JfrMetricsEventSink() {
+        FlightRecorder.addPeriodicEvent(CountersEvent.class, new Runnable() {
+            @Override
+            public void run() {
+                CountersEvent event = new CountersEvent();
+                StrandMetrics.Snapshot snapshot = StrandMetrics.snapshot();
+                event.kmpBytesScanned = snapshot.get(StrandMetrics.Counter.KMP_BYTES_SCANNED);
+                event.kmpComparisons = snapshot.get(StrandMetrics.Counter.KMP_COMPARISONS);
+                event.kmpShifts = snapshot.get(StrandMetrics.Counter.KMP_SHIFTS);
+                event.bmBytesScanned = snapshot.get(StrandMetrics.Counter.BM_BYTES_SCANNED);
+                event.bmComparisons = snapshot.get(StrandMetrics.Counter.BM_COMPARISONS);
+                event.bmShifts = snapshot.get(StrandMetrics.Counter.BM_SHIFTS);
+                event.charOffsetWalks = snapshot.get(StrandMetrics.Counter.CHAR_OFFSET_WALKS);
+                event.charOffsetWalkBytes = snapshot.get(StrandMetrics.Counter.CHAR_OFFSET_WALK_BYTES);
+                event.searchersCompiledPerCall = snapshot.get(StrandMetrics.Counter.SEARCHERS_COMPILED_PER_CALL);
+                event.largeOperations = snapshot.get(StrandMetrics.Counter.LARGE_OPERATIONS);
+                event.commit();
+            }
+        });
+    }
+
+    @Override
+    public void onLargeOperation(String operation, long numBytes, long numResults, long durationNanos) {
+        LargeOperationEvent event = new LargeOperationEvent();
+        if(event.isEnabled()) {
+            event.operation = operation;
+            event.bytes = numBytes;
+            event.results = numResults;
+            event.elapsed = durationNanos;
+            event.commit();
+        }
+    }
+
+    @Name("com.adbrowning.util.LargeOperation")
+    @Label("Large Strand Operation")
+    @Category({"Performance Utils", "Strand"})
+    @Description("A search or split covering at least StrandMetrics.LARGE_OPERATION_BYTES bytes")
+    @StackTrace(true)
+    static final class LargeOperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Results")
+        @Description("Matches found or tokens produced")
+        long results;
+
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    @Name("com.adbrowning.util.Counters")
+    @Label("Strand Counters")
+    @Category({"Performance Utils", "Strand"})
+    @Description("The cumulative StrandMetrics counters")
+    @StackTrace(false)
+    @Period("1 s")
+    static final class CountersEvent extends Event {
+        @Label("KMP Bytes Scanned")
+        @DataAmount
+        long kmpBytesScanned;
+
+        @Label("KMP Comparisons")
+        long kmpComparisons;
+
+        @Label("KMP Shifts")
+        long kmpShifts;
+
+        @Label("Boyer-Moore Bytes Scanned")
+        @DataAmount
+        long bmBytesScanned;
+
+        @Label("Boyer-Moore Comparisons")
+        long bmComparisons;
+
+        @Label("Boyer-Moore Shifts")
+        long bmShifts;
+
+        @Label("Char Offset Walks")
+        long charOffsetWalks;
+
+        @Label("Char Offset Walk Bytes")
+        @DataAmount
+        long charOffsetWalkBytes;
+
+        @Label("Searchers Compiled Per Call")
+        long searchersCompiledPerCall;
+
+        @Label("Large Operations")
+        long largeOperations;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures finding an excerpt with two typos in it, allowing two edits, in 64KB of text: an ApproximateSearcher against
+ * computing the Levenshtein distance of the pattern against the window of text starting at every String index
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApproximateSearcherBenchmark {
+    private static final int TEXT_SIZE = 1 << 16;
+    private static final int MAX_DISTANCE = 2;
+
+    @Param({"ASCII", "MULTI_BYTE"})
+    public Corpus corpus;
+
+    /* patterns of up to 64 bytes take one word per text byte; longer ones are blocked */
+    @Param({"16", "100"})
+    public int patternLength;
+
+    private Strand text;
+    private String textString;
+    private String pattern;
+    private ApproximateSearcher searcher;
+
+    @Setup
+    public void setUp() {
+        textString = corpus.generate(TEXT_SIZE);
+        text = new Strand(textString.getBytes(Corpus.UTF8));
+        StringBuilder typos = new StringBuilder(Corpus.excerpt(textString, 0.9, patternLength));
+        typos.deleteCharAt(typos.length() / 3);
+        typos.setCharAt(2 * typos.length() / 3, '#');
+        pattern = typos.toString();
+        searcher = new ApproximateSearcher(pattern.getBytes(Corpus.UTF8), MAX_DISTANCE);
+    }
+
+    @Benchmark
+    public int approximateSearcher() {
+        final int[] numMatches = new int[1];
+        searcher.findAll(text, new ApproximateMatchListener() {
+            @Override
+            public boolean onMatch(int start, int end, int distance) {
+                ++numMatches[0];
+                return true;
+            }
+        });
+        return numMatches[0];
+    }
+
+    @Benchmark
+    public int stringLevenshteinWindows() {
+        int numMatches = 0;
+        int windowLength = pattern.length() + MAX_DISTANCE;
+        int[] previous = new int[pattern.length() + 1];
+        int[] current = new int[pattern.length() + 1];
+        for(int start = 0; start < textString.length(); ++start) {
+            String window = textString.substring(start, Math.min(textString.length(), start + windowLength));
+            // the least distance of the pattern against any prefix of the window
+            for(int i = 0; i <= pattern.length(); ++i) {
+                previous[i] = i;
+            }
+            int best = previous[pattern.length()];
+            for(int j = 0; j < window.length(); ++j) {
+                current[0] = j + 1;
+                for(int i = 1; i <= pattern.length(); ++i) {
+                    int substitution = previous[i - 1] + (pattern.charAt(i - 1) == window.charAt(j) ? 0 : 1);
+                    current[i] = Math.min(substitution, Math.min(previous[i], current[i - 1]) + 1);
+                }
+                int[] swap = previous;
+                previous = current;
+                current = swap;
+                best = Math.min(best, previous[pattern.length()]);
+            }
+            if(best <= MAX_DISTANCE) {
+                ++numMatches;
+                start += window.length() - 1;
+            }
+        }
+        return numMatches;
+    }
+}
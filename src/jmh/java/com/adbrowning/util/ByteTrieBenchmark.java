@@ -0,0 +1,126 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.adbrowning.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures routing 1000 request paths against 100,000 path prefixes: exact lookups and longest-prefix matches on a
+ * ByteTrie, against a HashMap of Strings probed with toString of the path (and, for the longest prefix, of each of its
+ * prefixes ending before a '/', longest first). Also measures loading the serialized trie from a direct buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteTrieBenchmark {
+    private static final int NUM_ROUTES = 100000;
+    private static final int NUM_PATHS = 1000;
+
+    private ByteTrie trie;
+    private final Map<String, Integer> map = new HashMap<String, Integer>();
+    private Strand[] routes;
+    private Strand[] paths;
+    private ByteBuffer serialized;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0x5eedL);
+        StrandIntHashMap entries = new StrandIntHashMap(NUM_ROUTES, -1);
+        routes = new Strand[NUM_ROUTES];
+        for(int i = 0; i < NUM_ROUTES; ++i) {
+            String route = "/service" + random.nextInt(100) + "/resource" + random.nextInt(1000) + "/" + i;
+            routes[i] = new Strand(route.getBytes(Corpus.UTF8));
+            entries.put(routes[i], i);
+            map.put(route, i);
+        }
+        trie = new ByteTrie(entries);
+        paths = new Strand[NUM_PATHS];
+        for(int i = 0; i < NUM_PATHS; ++i) {
+            paths[i] = new Strand((routes[random.nextInt(NUM_ROUTES)] + "/items/" + i).getBytes(Corpus.UTF8));
+        }
+        serialized = ByteBuffer.allocateDirect(trie.getSerializedLength());
+        trie.writeTo(serialized);
+        serialized.flip();
+    }
+
+    @Benchmark
+    public int trieGet() {
+        int sum = 0;
+        for(int i = 0; i < NUM_PATHS; ++i) {
+            sum += trie.get(routes[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int hashMapGet() {
+        int sum = 0;
+        for(int i = 0; i < NUM_PATHS; ++i) {
+            sum += map.get(routes[i].toString());
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int trieLongestPrefix() {
+        int sum = 0;
+        for(int i = 0; i < NUM_PATHS; ++i) {
+            sum += trie.longestPrefixOf(paths[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int hashMapLongestPrefix() {
+        int sum = 0;
+        for(int i = 0; i < NUM_PATHS; ++i) {
+            String path = paths[i].toString();
+            for(int end = path.length(); end > 0; end = path.lastIndexOf('/', end - 1)) {
+                Integer value = map.get(path.substring(0, end));
+                if(value != null) {
+                    sum += value;
+                    break;
+                }
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public ByteTrie loadSerialized() {
+        return ByteTrie.readFrom(serialized.duplicate());
+    }
+}
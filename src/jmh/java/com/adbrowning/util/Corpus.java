@@ -0,0 +1,81 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * Generates the deterministic text used by the benchmarks: space separated words of 7-bit ASCII, or the same with
+ * roughly one word in four drawn from 2- and 3-byte UTF-8 characters.
+ */
+public enum Corpus {
+    ASCII(false),
+    MULTI_BYTE(true);
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final String ASCII_LETTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    private static final String MULTI_BYTE_LETTERS = "\u00e9\u00fc\u00f1\u05d0\u05d1\u05d2\u0436\u0444\u4e2d\u6587\u65e5\u672c";
+
+    private final boolean includeMultiByte;
+
+    Corpus(boolean includeMultiByte) {
+        this.includeMultiByte = includeMultiByte;
+    }
+
+    /**
+     * Generates text whose UTF-8 encoding is at least numBytes long; the same seed always produces the same text
+     * @param numBytes
+     * @return
+     */
+    String generate(int numBytes) {
+        Random random = new Random(0x5eedL);
+        StringBuilder text = new StringBuilder(numBytes);
+        int encodedLength = 0;
+        while(encodedLength < numBytes) {
+            boolean multiByteWord = includeMultiByte && random.nextInt(4) == 0;
+            String letters = multiByteWord ? MULTI_BYTE_LETTERS : ASCII_LETTERS;
+            int wordLength = 2 + random.nextInt(8);
+            for(int i = 0; i < wordLength; ++i) {
+                char c = letters.charAt(random.nextInt(letters.length()));
+                text.append(c);
+                encodedLength += c < 0x80 ? 1 : (c < 0x800 ? 2 : 3);
+            }
+            text.append(' ');
+            ++encodedLength;
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns the chars of text starting at (approximately) the given fraction of its length, extended until the UTF-8
+     * encoding is at least numBytes long; used to pick search patterns that are guaranteed to occur
+     * @param text
+     * @param fraction
+     * @param numBytes
+     * @return
+     */
+    static String excerpt(String text, double fraction, int numBytes) {
+        int start = (int) (text.length() * fraction);
+        int end = start;
+        while(end < text.length() && text.substring(start, end).getBytes(UTF8).length < numBytes) {
+            ++end;
+        }
+        return text.substring(start, end);
+    }
+}
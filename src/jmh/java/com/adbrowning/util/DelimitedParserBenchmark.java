@@ -0,0 +1,134 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing 10k CSV records, one field in four of them quoted (some with commas or doubled quotes), with a
+ * DelimitedParser against decoding the text to a String and parsing it into Strings, as a String-based CSV library does
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DelimitedParserBenchmark {
+    private static final int NUM_RECORDS = 10000;
+
+    private byte[] csv;
+    private final DelimitedParser parser = new DelimitedParser((byte) ',');
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0x5eedL);
+        String[] words = Corpus.ASCII.generate(4096).split(" ");
+        StringBuilder text = new StringBuilder();
+        for(int record = 0; record < NUM_RECORDS; ++record) {
+            for(int field = 0; field < 8; ++field) {
+                if(field > 0) {
+                    text.append(',');
+                }
+                String word = words[random.nextInt(words.length)];
+                switch(random.nextInt(8)) {
+                    case 0:
+                        text.append('"').append(word).append(", ").append(word).append('"');
+                        break;
+                    case 1:
+                        text.append("\"\"\"").append(word).append("\"\"\"");
+                        break;
+                    default:
+                        text.append(word);
+                }
+            }
+            text.append('\n');
+        }
+        csv = text.toString().getBytes(Corpus.UTF8);
+    }
+
+    @Benchmark
+    public int delimitedParserFieldBounds() {
+        int sum = 0;
+        parser.reset(csv, 0, csv.length);
+        while(parser.nextRecord()) {
+            for(int i = 0; i < parser.getFieldCount(); ++i) {
+                sum += parser.getFieldEnd(i) - parser.getFieldStart(i);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public void delimitedParserFields(Blackhole blackhole) {
+        parser.reset(csv, 0, csv.length);
+        while(parser.nextRecord()) {
+            for(int i = 0; i < parser.getFieldCount(); ++i) {
+                blackhole.consume(parser.field(i));
+            }
+        }
+    }
+
+    @Benchmark
+    public void stringFields(Blackhole blackhole) {
+        String text = new String(csv, Corpus.UTF8);
+        List<String> fields = new ArrayList<String>();
+        StringBuilder field = new StringBuilder();
+        boolean inQuotes = false;
+        for(int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            if(inQuotes) {
+                if(c == '"') {
+                    if(i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                        field.append('"');
+                        ++i;
+                    } else {
+                        inQuotes = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if(c == '"') {
+                inQuotes = true;
+            } else if(c == ',' || c == '\n') {
+                fields.add(field.toString());
+                field.setLength(0);
+                if(c == '\n') {
+                    blackhole.consume(fields);
+                    fields = new ArrayList<String>();
+                }
+            } else {
+                field.append(c);
+            }
+        }
+    }
+}
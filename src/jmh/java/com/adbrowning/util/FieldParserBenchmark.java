@@ -0,0 +1,120 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing 10k int, double and timestamp fields straight from their bytes with a FieldParser against
+ * converting each to a String and parsing that
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldParserBenchmark {
+    private static final int NUM_FIELDS = 10000;
+
+    private Strand[] ints;
+    private Strand[] doubles;
+    private Strand[] timestamps;
+    private final FieldParser parser = new FieldParser();
+    private final java.text.SimpleDateFormat format = new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSX");
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0x5eedL);
+        ints = new Strand[NUM_FIELDS];
+        doubles = new Strand[NUM_FIELDS];
+        timestamps = new Strand[NUM_FIELDS];
+        format.setTimeZone(java.util.TimeZone.getTimeZone("UTC"));
+        for(int i = 0; i < NUM_FIELDS; ++i) {
+            ints[i] = new Strand(Integer.toString(random.nextInt()).getBytes(Corpus.UTF8));
+            doubles[i] = new Strand(Double.toString(random.nextInt(10000000) / 1000.0).getBytes(Corpus.UTF8));
+            timestamps[i] = new Strand(format.format(new java.util.Date(random.nextLong() >>> 24))
+                    .getBytes(Corpus.UTF8));
+        }
+    }
+
+    @Benchmark
+    public long fieldParserInts() {
+        long sum = 0;
+        for(Strand field : ints) {
+            sum += parser.parseInt(field);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long stringParseInts() {
+        long sum = 0;
+        for(Strand field : ints) {
+            sum += Integer.parseInt(field.toString());
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double fieldParserDoubles() {
+        double sum = 0;
+        for(Strand field : doubles) {
+            sum += parser.parseDouble(field);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double stringParseDoubles() {
+        double sum = 0;
+        for(Strand field : doubles) {
+            sum += Double.parseDouble(field.toString());
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long fieldParserTimestamps() {
+        long sum = 0;
+        for(Strand field : timestamps) {
+            sum += parser.parseTimestamp(field);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long simpleDateFormatTimestamps() throws java.text.ParseException {
+        long sum = 0;
+        for(Strand field : timestamps) {
+            sum += format.parse(field.toString()).getTime();
+        }
+        return sum;
+    }
+}
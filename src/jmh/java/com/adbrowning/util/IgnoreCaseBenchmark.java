@@ -0,0 +1,111 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.adbrowning.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures case-insensitive matching: comparing 1000 words against upper-cased copies of themselves with
+ * Strand.equalsIgnoreCase against lower-casing both Strings, and finding an upper-cased excerpt near the end of 1MB of
+ * text with a CaseFoldingSearcher against lower-casing the text and pattern and calling String.indexOf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IgnoreCaseBenchmark {
+    private static final int NUM_WORDS = 1000;
+    private static final int TEXT_SIZE = 1 << 20;
+
+    @Param({"ASCII", "MULTI_BYTE"})
+    public Corpus corpus;
+
+    private Strand[] words;
+    private Strand[] upperCaseWords;
+    private String[] wordStrings;
+    private String[] upperCaseWordStrings;
+
+    private Strand text;
+    private String textString;
+    private String pattern;
+    private ByteSearcher searcher;
+
+    @Setup
+    public void setUp() {
+        wordStrings = corpus.generate(16 * NUM_WORDS).split(" ");
+        upperCaseWordStrings = new String[NUM_WORDS];
+        words = new Strand[NUM_WORDS];
+        upperCaseWords = new Strand[NUM_WORDS];
+        for(int i = 0; i < NUM_WORDS; ++i) {
+            upperCaseWordStrings[i] = wordStrings[i].toUpperCase(Locale.ROOT);
+            words[i] = new Strand(wordStrings[i].getBytes(Corpus.UTF8));
+            upperCaseWords[i] = new Strand(upperCaseWordStrings[i].getBytes(Corpus.UTF8));
+        }
+        textString = corpus.generate(TEXT_SIZE);
+        text = new Strand(textString.getBytes(Corpus.UTF8));
+        pattern = Corpus.excerpt(textString, 0.9, 16).toUpperCase(Locale.ROOT);
+        searcher = new CaseFoldingSearcher(pattern.getBytes(Corpus.UTF8));
+    }
+
+    @Benchmark
+    public int strandEqualsIgnoreCase() {
+        int numEqual = 0;
+        for(int i = 0; i < NUM_WORDS; ++i) {
+            if(words[i].equalsIgnoreCase(upperCaseWords[i])) {
+                ++numEqual;
+            }
+        }
+        return numEqual;
+    }
+
+    @Benchmark
+    public int stringToLowerCaseEquals() {
+        int numEqual = 0;
+        for(int i = 0; i < NUM_WORDS; ++i) {
+            if(wordStrings[i].toLowerCase(Locale.ROOT).equals(upperCaseWordStrings[i].toLowerCase(Locale.ROOT))) {
+                ++numEqual;
+            }
+        }
+        return numEqual;
+    }
+
+    @Benchmark
+    public int caseFoldingSearcher() {
+        return text.indexOf(searcher);
+    }
+
+    @Benchmark
+    public int stringToLowerCaseIndexOf() {
+        return textString.toLowerCase(Locale.ROOT).indexOf(pattern.toLowerCase(Locale.ROOT));
+    }
+}
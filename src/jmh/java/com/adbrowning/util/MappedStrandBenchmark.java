@@ -0,0 +1,132 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares splitting and searching a file through a MappedStrand against reading it with a BufferedReader. The file
+ * is the benchmark corpus with every sixteenth space replaced by a newline, and is in the page cache after the first
+ * iteration, so this measures the cost of getting at the bytes rather than of disk I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappedStrandBenchmark {
+
+    @Param({"ASCII", "MULTI_BYTE"})
+    public Corpus corpus;
+
+    @Param({"67108864"})
+    public int size;
+
+    private Path file;
+    private MappedStrand mapped;
+    private byte[] newline;
+    private byte[] patternBytes;
+    private String pattern;
+
+    @Setup
+    public void setUp() throws IOException {
+        char[] text = corpus.generate(size).toCharArray();
+        for(int i = 0, spaces = 0; i < text.length; ++i) {
+            if(text[i] == ' ' && (++spaces & 15) == 0) {
+                text[i] = '\n';
+            }
+        }
+        String contents = new String(text);
+        pattern = Corpus.excerpt(contents, 0.9, 16);
+        patternBytes = pattern.getBytes(Corpus.UTF8);
+        newline = "\n".getBytes(Corpus.UTF8);
+        file = Files.createTempFile("mapped-strand-benchmark", ".txt");
+        Files.write(file, contents.getBytes(Corpus.UTF8));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = new MappedStrand(channel);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long mappedSplitLines(final Blackhole blackhole) {
+        return mapped.split(newline, new SplitListener() {
+            @Override
+            public boolean onSplit(ByteBufferStrand token, long offset) {
+                blackhole.consume(token);
+                return true;
+            }
+        });
+    }
+
+    @Benchmark
+    public long readerLines(Blackhole blackhole) throws IOException {
+        long numLines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, Corpus.UTF8)) {
+            for(String line = reader.readLine(); line != null; line = reader.readLine()) {
+                blackhole.consume(line);
+                ++numLines;
+            }
+        }
+        return numLines;
+    }
+
+    @Benchmark
+    public long mappedIndexOf() {
+        return mapped.indexOf(patternBytes);
+    }
+
+    @Benchmark
+    public long readerIndexOf() throws IOException {
+        long offset = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, Corpus.UTF8)) {
+            for(String line = reader.readLine(); line != null; line = reader.readLine()) {
+                int found = line.indexOf(pattern);
+                if(found >= 0) {
+                    return offset + found;
+                }
+                offset += line.length() + 1;
+            }
+        }
+        return -1;
+    }
+}
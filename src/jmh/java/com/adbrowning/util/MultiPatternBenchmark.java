@@ -0,0 +1,99 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the occurrences of a set of patterns (excerpts of the text, so they do occur) with a single AhoCorasickSearcher
+ * pass against one precompiled ByteSearcher pass per pattern
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiPatternBenchmark {
+
+    @Param({"ASCII", "MULTI_BYTE"})
+    public Corpus corpus;
+
+    @Param({"65536"})
+    public int size;
+
+    @Param({"100", "5000"})
+    public int numPatterns;
+
+    private byte[] textBytes;
+    private AhoCorasickSearcher ahoCorasickSearcher;
+    private ByteSearcher[] searchers;
+    private final CountingListener listener = new CountingListener();
+
+    @Setup
+    public void setUp() {
+        String text = corpus.generate(size);
+        textBytes = text.getBytes(Corpus.UTF8);
+        Random random = new Random(numPatterns);
+        byte[][] patterns = new byte[numPatterns][];
+        searchers = new ByteSearcher[numPatterns];
+        for(int i = 0; i < numPatterns; ++i) {
+            patterns[i] = Corpus.excerpt(text, random.nextDouble(), 4 + random.nextInt(12)).getBytes(Corpus.UTF8);
+            searchers[i] = ByteSearcherFactory.create(patterns[i]);
+        }
+        ahoCorasickSearcher = new AhoCorasickSearcher(patterns);
+    }
+
+    @Benchmark
+    public int ahoCorasickFindAll() {
+        return ahoCorasickSearcher.findAll(textBytes, 0, textBytes.length, listener);
+    }
+
+    @Benchmark
+    public int searcherPerPattern() {
+        int numMatches = 0;
+        for(ByteSearcher searcher : searchers) {
+            numMatches += searcher.findAll(textBytes, 0, textBytes.length, listener);
+        }
+        return numMatches;
+    }
+
+    private static class CountingListener implements MultiMatchListener, MatchListener {
+        @Override
+        public boolean onMatch(int patternId, int index) {
+            return true;
+        }
+
+        @Override
+        public boolean onMatch(int index) {
+            return true;
+        }
+    }
+}
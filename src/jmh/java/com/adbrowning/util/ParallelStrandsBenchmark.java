@@ -0,0 +1,108 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the ParallelStrands operations, run on a pool with one thread per core, against their sequential
+ * counterparts on a large Strand.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelStrandsBenchmark {
+
+    @Param({"ASCII", "MULTI_BYTE"})
+    public Corpus corpus;
+
+    @Param({"67108864"})
+    public int size;
+
+    private Strand strand;
+    private byte[] delimiter;
+    private ByteSearcher searcher;
+    private ForkJoinPool pool;
+    private ParallelStrands parallel;
+
+    @Setup
+    public void setUp() {
+        String text = corpus.generate(size);
+        strand = new Strand(text.getBytes(Corpus.UTF8));
+        delimiter = " ".getBytes(Corpus.UTF8);
+        searcher = ByteSearcherFactory.create(Corpus.excerpt(text, 0.9, 16).getBytes(Corpus.UTF8));
+        pool = new ForkJoinPool();
+        parallel = new ParallelStrands(pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Strand[] sequentialSplit() {
+        return strand.split(delimiter);
+    }
+
+    @Benchmark
+    public Strand[] parallelSplit() {
+        return parallel.split(strand, delimiter);
+    }
+
+    @Benchmark
+    public int sequentialIndexOf() {
+        return strand.indexOf(searcher);
+    }
+
+    @Benchmark
+    public int parallelIndexOf() {
+        return parallel.indexOf(strand, searcher);
+    }
+
+    @Benchmark
+    public int sequentialCount() {
+        return searcher.findAll(strand.contents, 0, strand.contents.length, new MatchListener() {
+            @Override
+            public boolean onMatch(int index) {
+                return true;
+            }
+        });
+    }
+
+    @Benchmark
+    public int parallelCount() {
+        return parallel.count(strand, searcher);
+    }
+}
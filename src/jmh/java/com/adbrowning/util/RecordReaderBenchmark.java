@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading the lines of a file with a RecordReader against plain channel reads of the same file into the same
+ * size of buffer (the floor for any line reader) and against a BufferedReader. The file is the benchmark corpus with
+ * every sixteenth space replaced by a newline, and is in the page cache after the first iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordReaderBenchmark {
+
+    @Param({"ASCII", "MULTI_BYTE"})
+    public Corpus corpus;
+
+    @Param({"67108864"})
+    public int size;
+
+    private Path file;
+    private byte[] newline;
+    private final byte[] buffer = new byte[RecordReader.DEFAULT_BUFFER_SIZE];
+
+    @Setup
+    public void setUp() throws IOException {
+        char[] text = corpus.generate(size).toCharArray();
+        for(int i = 0, spaces = 0; i < text.length; ++i) {
+            if(text[i] == ' ' && (++spaces & 15) == 0) {
+                text[i] = '\n';
+            }
+        }
+        newline = "\n".getBytes(Corpus.UTF8);
+        file = Files.createTempFile("record-reader-benchmark", ".txt");
+        Files.write(file, new String(text).getBytes(Corpus.UTF8));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long channelRead() throws IOException {
+        long numBytes = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer wrapper = ByteBuffer.wrap(buffer);
+            for(int numRead = channel.read(wrapper); numRead >= 0; numRead = channel.read(wrapper)) {
+                numBytes += numRead;
+                wrapper.clear();
+            }
+        }
+        return numBytes;
+    }
+
+    @Benchmark
+    public long recordReaderLines(Blackhole blackhole) throws IOException {
+        long numLines = 0;
+        try (RecordReader reader = new RecordReader(FileChannel.open(file, StandardOpenOption.READ), newline, buffer)) {
+            while(reader.advance()) {
+                blackhole.consume(reader.getRecordEnd() - reader.getRecordStart());
+                ++numLines;
+            }
+        }
+        return numLines;
+    }
+
+    @Benchmark
+    public long recordReaderLineStrands(Blackhole blackhole) throws IOException {
+        long numLines = 0;
+        try (RecordReader reader = new RecordReader(FileChannel.open(file, StandardOpenOption.READ), newline, buffer)) {
+            while(reader.advance()) {
+                blackhole.consume(reader.record().length());
+                ++numLines;
+            }
+        }
+        return numLines;
+    }
+
+    @Benchmark
+    public long readerLines(Blackhole blackhole) throws IOException {
+        long numLines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, Corpus.UTF8)) {
+            for(String line = reader.readLine(); line != null; line = reader.readLine()) {
+                blackhole.consume(line);
+                ++numLines;
+            }
+        }
+        return numLines;
+    }
+}
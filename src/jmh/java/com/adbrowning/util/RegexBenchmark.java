@@ -0,0 +1,100 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures counting the matches of a regular expression in 64KB of text: a ByteRegex over the bytes, against
+ * java.util.regex over the Strand (through CharSequence.charAt) and over a String. The expressions cover a literal
+ * prefix, a class with no prefix, and a class of multi-byte chars.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegexBenchmark {
+    private static final int TEXT_SIZE = 1 << 16;
+
+    @Param({"ASCII", "MULTI_BYTE"})
+    public Corpus corpus;
+
+    @Param({"Q[a-z]+\\d", "[0-9]{2}[a-zA-Z]*\\s", "[\u00e0-\u00ff]+"})
+    public String regex;
+
+    private byte[] bytes;
+    private Strand text;
+    private String textString;
+    private ByteRegex byteRegex;
+    private Pattern pattern;
+
+    @Setup
+    public void setUp() {
+        textString = corpus.generate(TEXT_SIZE);
+        bytes = textString.getBytes(Corpus.UTF8);
+        text = new Strand(bytes);
+        byteRegex = new ByteRegex(regex);
+        pattern = Pattern.compile(regex);
+    }
+
+    @Benchmark
+    public int byteRegex() {
+        final int[] numMatches = new int[1];
+        byteRegex.findAll(bytes, 0, bytes.length, new RegexMatchListener() {
+            @Override
+            public boolean onMatch(int start, int end) {
+                ++numMatches[0];
+                return true;
+            }
+        });
+        return numMatches[0];
+    }
+
+    @Benchmark
+    public int javaRegexOnStrand() {
+        return countMatches(pattern.matcher(text));
+    }
+
+    @Benchmark
+    public int javaRegexOnString() {
+        return countMatches(pattern.matcher(textString));
+    }
+
+    private static int countMatches(Matcher matcher) {
+        int numMatches = 0;
+        while(matcher.find()) {
+            ++numMatches;
+        }
+        return numMatches;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the byte searchers against String.indexOf for a pattern taken from 90% of the way through the text, so that
+ * nearly the whole text is scanned. Both the precompiled searcher and the compile-per-call cost (what Strand.indexOf
+ * pays) are measured, as is a KMPStreamMatcher fed the text in chunks; factoryFind uses whichever searcher
+ * ByteSearcherFactory selects for the pattern (the vector backend, when it is available) and scalarFind the one it
+ * selects without the backend.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearcherBenchmark {
+    private static final int STREAM_CHUNK_SIZE = 4096;
+
+    @Param({"ASCII", "MULTI_BYTE"})
+    public Corpus corpus;
+
+    @Param({"4096", "1048576"})
+    public int size;
+
+    @Param({"4", "16", "64"})
+    public int patternLength;
+
+    private String text;
+    private String pattern;
+    private byte[] textBytes;
+    private byte[] patternBytes;
+    private KMPSearcher kmpSearcher;
+    private BMSearcher bmSearcher;
+    private ByteSearcher selectedSearcher;
+    private ByteSearcher scalarSearcher;
+    private final FirstMatch firstMatch = new FirstMatch();
+
+    @Setup
+    public void setUp() {
+        text = corpus.generate(size);
+        textBytes = text.getBytes(Corpus.UTF8);
+        pattern = Corpus.excerpt(text, 0.9, patternLength);
+        patternBytes = pattern.getBytes(Corpus.UTF8);
+        kmpSearcher = new KMPSearcher(patternBytes);
+        bmSearcher = new BMSearcher(patternBytes);
+        selectedSearcher = ByteSearcherFactory.create(patternBytes);
+        scalarSearcher = ByteSearcherFactory.createScalar(patternBytes, true);
+    }
+
+    @Benchmark
+    public int kmpFind() {
+        return kmpSearcher.find(textBytes, 0, textBytes.length);
+    }
+
+    @Benchmark
+    public int kmpCompileAndFind() {
+        return new KMPSearcher(patternBytes, false).find(textBytes, 0, textBytes.length);
+    }
+
+    @Benchmark
+    public long kmpStreamFind() {
+        // the same search fed in 4KB chunks, as reads from a stream would arrive
+        KMPStreamMatcher matcher = new KMPStreamMatcher(kmpSearcher);
+        for(int start = 0; start < textBytes.length && firstMatch.offset < 0; start += STREAM_CHUNK_SIZE) {
+            matcher.feed(textBytes, start, Math.min(start + STREAM_CHUNK_SIZE, textBytes.length), firstMatch);
+        }
+        long retVal = firstMatch.offset;
+        firstMatch.offset = -1;
+        return retVal;
+    }
+
+    @Benchmark
+    public int bmFind() {
+        return bmSearcher.find(textBytes, 0, textBytes.length);
+    }
+
+    @Benchmark
+    public int bmCompileAndFind() {
+        return new BMSearcher(patternBytes, false).find(textBytes, 0, textBytes.length);
+    }
+
+    @Benchmark
+    public int factoryFind() {
+        return selectedSearcher.find(textBytes, 0, textBytes.length);
+    }
+
+    @Benchmark
+    public int scalarFind() {
+        return scalarSearcher.find(textBytes, 0, textBytes.length);
+    }
+
+    @Benchmark
+    public int stringIndexOf() {
+        return text.indexOf(pattern);
+    }
+
+    private static class FirstMatch implements StreamMatchListener {
+        long offset = -1;
+
+        @Override
+        public boolean onMatch(long offset) {
+            this.offset = offset;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the CharSequence and String-like operations of Strand against the equivalent String operations. Each
+ * strand* benchmark has a string* counterpart operating on the same text. Note that String memoizes its hash code, so
+ * hashCode is only measured for Strand. The indexedStrand* benchmarks show what an IndexedStrand buys for the
+ * operations that must locate chars.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StrandBenchmark {
+
+    @Param({"ASCII", "MULTI_BYTE"})
+    public Corpus corpus;
+
+    @Param({"64", "4096", "262144"})
+    public int size;
+
+    private String text;
+    private String textCopy;
+    private String pattern;
+    private byte[] utf8;
+    private Strand strand;
+    private Strand strandCopy;
+    private IndexedStrand indexedStrand;
+    private byte[] patternBytes;
+    private ByteSearcher patternSearcher;
+    private byte[] delimiter;
+    private int middle;
+    private int quarter;
+
+    @Setup
+    public void setUp() {
+        text = corpus.generate(size);
+        textCopy = new String(text.toCharArray());
+        utf8 = text.getBytes(Corpus.UTF8);
+        strand = new Strand(utf8);
+        strandCopy = new Strand(utf8, true);
+        indexedStrand = new IndexedStrand(utf8);
+        pattern = Corpus.excerpt(text, 0.9, 8);
+        patternBytes = pattern.getBytes(Corpus.UTF8);
+        patternSearcher = ByteSearcherFactory.create(patternBytes);
+        delimiter = " ".getBytes(Corpus.UTF8);
+        middle = text.length() / 2;
+        quarter = text.length() / 4;
+    }
+
+    @Benchmark
+    public Strand strandConstruct() {
+        return new Strand(utf8);
+    }
+
+    @Benchmark
+    public int strandLength() {
+        return strand.length();
+    }
+
+    @Benchmark
+    public int stringLength() {
+        return text.length();
+    }
+
+    @Benchmark
+    public char strandCharAt() {
+        return strand.charAt(middle);
+    }
+
+    @Benchmark
+    public char indexedStrandCharAt() {
+        return indexedStrand.charAt(middle);
+    }
+
+    @Benchmark
+    public char stringCharAt() {
+        return text.charAt(middle);
+    }
+
+    @Benchmark
+    public CharSequence strandSubSequence() {
+        return strand.subSequence(quarter, middle);
+    }
+
+    @Benchmark
+    public CharSequence stringSubSequence() {
+        return text.subSequence(quarter, middle);
+    }
+
+    @Benchmark
+    public Strand[] strandSplit() {
+        return strand.split(delimiter);
+    }
+
+    @Benchmark
+    public int strandSplitterWalk() {
+        // finds every token's bounds without creating any Strands
+        StrandSplitter splitter = strand.splitter(delimiter);
+        int numTokens = 0;
+        while(splitter.advance()) {
+            ++numTokens;
+        }
+        return numTokens;
+    }
+
+    @Benchmark
+    public String[] stringSplit() {
+        return text.split(" ");
+    }
+
+    @Benchmark
+    public int strandIndexOf() {
+        return strand.indexOf(patternBytes);
+    }
+
+    @Benchmark
+    public int strandIndexOfPrecompiled() {
+        return strand.indexOf(patternSearcher);
+    }
+
+    @Benchmark
+    public int indexedStrandIndexOf() {
+        return indexedStrand.indexOf(patternSearcher);
+    }
+
+    @Benchmark
+    public int stringIndexOf() {
+        return text.indexOf(pattern);
+    }
+
+    @Benchmark
+    public int strandHashCode() {
+        return strand.hashCode();
+    }
+
+    @Benchmark
+    public boolean strandEquals() {
+        return strand.equals(strandCopy);
+    }
+
+    @Benchmark
+    public boolean stringEquals() {
+        return text.equals(textCopy);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures formatting 1000 output lines, each a Strand field, a String field and two numbers, into a ByteBuffer with a
+ * reused StrandBuilder against a reused StringBuilder whose contents are then encoded to UTF-8
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StrandBuilderBenchmark {
+    private static final int NUM_LINES = 1000;
+
+    @Param({"ASCII", "MULTI_BYTE"})
+    public Corpus corpus;
+
+    private Strand[] strands;
+    private String[] strings;
+    private final StrandBuilder strandBuilder = new StrandBuilder();
+    private final StringBuilder stringBuilder = new StringBuilder();
+    private final ByteBuffer out = ByteBuffer.allocate(1 << 20);
+
+    @Setup
+    public void setUp() {
+        strings = corpus.generate(64 * NUM_LINES).split(" ");
+        strands = new Strand[strings.length];
+        for(int i = 0; i < strings.length; ++i) {
+            strands[i] = new Strand(strings[i].getBytes(Corpus.UTF8));
+        }
+    }
+
+    @Benchmark
+    public int strandBuilder() {
+        out.clear();
+        for(int i = 0; i < NUM_LINES; ++i) {
+            strandBuilder.clear();
+            strandBuilder.append(strands[i]).append(',').append(strings[i + 1]).append(',').append(i * 31)
+                    .append(',').append(i * 1000000007L).append('\n');
+            strandBuilder.writeTo(out);
+        }
+        return out.position();
+    }
+
+    @Benchmark
+    public int stringBuilder() {
+        out.clear();
+        for(int i = 0; i < NUM_LINES; ++i) {
+            stringBuilder.setLength(0);
+            stringBuilder.append(strings[i]).append(',').append(strings[i + 1]).append(',').append(i * 31)
+                    .append(',').append(i * 1000000007L).append('\n');
+            out.put(stringBuilder.toString().getBytes(Corpus.UTF8));
+        }
+        return out.position();
+    }
+}
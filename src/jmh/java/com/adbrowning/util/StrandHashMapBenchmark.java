@@ -0,0 +1,114 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures counting the occurrences of each distinct token in a batch (per-record aggregation) with StrandIntHashMap,
+ * probing by the raw byte range of each token, against HashMaps keyed by Strand and by String. The maps are warmed with
+ * every key, so this is the update path for existing keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StrandHashMapBenchmark {
+    private static final int NUM_TOKENS = 10000;
+
+    @Param({"100", "100000"})
+    public int distinctKeys;
+
+    private byte[] batch;
+    private int[] tokenBounds;
+    private Strand[] tokens;
+    private String[] strings;
+    private StrandIntHashMap strandIntMap;
+    private Map<Strand, Integer> strandMap;
+    private Map<String, Integer> stringMap;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0x5eedL);
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < NUM_TOKENS; ++i) {
+            text.append("host-").append(random.nextInt(distinctKeys)).append(".example.com\n");
+        }
+        batch = text.toString().getBytes(Corpus.UTF8);
+        tokens = new Strand(batch).split("\n".getBytes(Corpus.UTF8));
+        strings = text.toString().split("\n");
+        tokenBounds = new int[2 * NUM_TOKENS];
+        StrandSplitter splitter = new Strand(batch).splitter("\n".getBytes(Corpus.UTF8));
+        for(int i = 0; splitter.advance(); i += 2) {
+            tokenBounds[i] = splitter.getTokenStart();
+            tokenBounds[i + 1] = splitter.getTokenEnd();
+        }
+        strandIntMap = new StrandIntHashMap();
+        strandMap = new HashMap<Strand, Integer>();
+        stringMap = new HashMap<String, Integer>();
+        for(int i = 0; i < distinctKeys; ++i) {
+            String key = "host-" + i + ".example.com";
+            strandIntMap.put(new Strand(key.getBytes(Corpus.UTF8)), 0);
+            strandMap.put(new Strand(key.getBytes(Corpus.UTF8)), 0);
+            stringMap.put(key, 0);
+        }
+    }
+
+    @Benchmark
+    public int strandIntHashMapAddTo() {
+        int retVal = 0;
+        for(int i = 0; i < tokenBounds.length; i += 2) {
+            retVal = strandIntMap.addTo(batch, tokenBounds[i], tokenBounds[i + 1], 1);
+        }
+        return retVal;
+    }
+
+    @Benchmark
+    public Integer strandHashMapCount() {
+        Integer retVal = null;
+        for(Strand token : tokens) {
+            retVal = strandMap.put(token, strandMap.get(token) + 1);
+        }
+        return retVal;
+    }
+
+    @Benchmark
+    public Integer stringHashMapCount() {
+        Integer retVal = null;
+        for(String token : strings) {
+            retVal = stringMap.put(token, stringMap.get(token) + 1);
+        }
+        return retVal;
+    }
+}
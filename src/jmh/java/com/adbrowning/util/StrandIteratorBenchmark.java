@@ -0,0 +1,114 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures walking every char of the text with StrandIterator.nextChar, nextCodePoint and bulk reads into a char[]
+ * against a charAt loop over the equivalent String
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StrandIteratorBenchmark {
+
+    @Param({"ASCII", "MULTI_BYTE"})
+    public Corpus corpus;
+
+    @Param({"64", "4096", "262144"})
+    public int size;
+
+    private String text;
+    private Strand strand;
+    private final char[] buffer = new char[256];
+
+    @Setup
+    public void setUp() {
+        text = corpus.generate(size);
+        strand = new Strand(text.getBytes(Corpus.UTF8));
+    }
+
+    @Benchmark
+    public int strandIteratorNextChar() {
+        StrandIterator it = new StrandIterator(strand);
+        int sum = 0;
+        for(int i = strand.getStartingIndex(); i < strand.getStrandEnd(); i += Strand.utf8CharSize(strand.contents[i])) {
+            sum += it.nextChar();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int stringCharAt() {
+        int sum = 0;
+        for(int i = 0; i < text.length(); ++i) {
+            sum += text.charAt(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int strandIteratorNextCodePoint() {
+        StrandIterator it = new StrandIterator(strand);
+        int sum = 0;
+        for(int c = it.nextCodePoint(); c >= 0; c = it.nextCodePoint()) {
+            sum += c;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int strandIteratorRead() {
+        StrandIterator it = new StrandIterator(strand);
+        int sum = 0;
+        for(int numRead = it.read(buffer, 0, buffer.length); numRead > 0; numRead = it.read(buffer, 0, buffer.length)) {
+            for(int i = 0; i < numRead; ++i) {
+                sum += buffer[i];
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int stringGetChars() {
+        int sum = 0;
+        for(int start = 0; start < text.length(); start += buffer.length) {
+            int end = Math.min(text.length(), start + buffer.length);
+            text.getChars(start, end, buffer, 0);
+            for(int i = 0; i < end - start; ++i) {
+                sum += buffer[i];
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.adbrowning.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures splitting 1MB of text into words and then visiting every word's bytes: into a Strand[] of Substrands,
+ * against into a reused StrandList read through its raw offsets and through its flyweight iterator. Run with
+ * -prof gc to compare the allocation per split.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StrandListBenchmark {
+    private static final byte[] SPACE = {' '};
+
+    @Param({"ASCII", "MULTI_BYTE"})
+    public Corpus corpus;
+
+    private Strand text;
+    private final StrandList list = new StrandList();
+
+    @Setup
+    public void setUp() {
+        text = new Strand(corpus.generate(1 << 20).getBytes(Corpus.UTF8));
+    }
+
+    @Benchmark
+    public long splitToArray() {
+        long sum = 0;
+        for(Strand token : text.split(SPACE)) {
+            sum += token.getStrandLength() + token.contents[token.getStartingIndex()];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long splitToStrandList() {
+        list.clear();
+        text.split(SPACE, list);
+        long sum = 0;
+        for(int i = 0; i < list.size(); ++i) {
+            sum += list.byteLength(i) + list.getPage(i)[list.getStart(i)];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long splitToStrandListFlyweight() {
+        list.clear();
+        text.split(SPACE, list);
+        long sum = 0;
+        for(Iterator<Strand> tokens = list.iterator(true); tokens.hasNext();) {
+            Strand token = tokens.next();
+            sum += token.getStrandLength() + token.contents[token.getStartingIndex()];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures interning a batch of tokens drawn from a small set of distinct keys (as hostnames in a log would be), with
+ * StrandPool and with a HashMap used as an interner. Both are warmed with every key, so this is the hit path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StrandPoolBenchmark {
+    private static final int NUM_TOKENS = 10000;
+
+    @Param({"100", "100000"})
+    public int distinctKeys;
+
+    private Strand[] tokens;
+    private StrandPool pool;
+    private Map<Strand, Strand> map;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0x5eedL);
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < NUM_TOKENS; ++i) {
+            text.append("host-").append(random.nextInt(distinctKeys)).append(".example.com\n");
+        }
+        tokens = new Strand(text.toString().getBytes(Corpus.UTF8)).split("\n".getBytes(Corpus.UTF8));
+        pool = new StrandPool();
+        map = new HashMap<Strand, Strand>();
+        for(int i = 0; i < distinctKeys; ++i) {
+            Strand key = new Strand(("host-" + i + ".example.com").getBytes(Corpus.UTF8));
+            pool.intern(key);
+            map.put(key, key);
+        }
+    }
+
+    @Benchmark
+    public Strand poolIntern() {
+        Strand retVal = null;
+        for(Strand token : tokens) {
+            retVal = pool.intern(token);
+        }
+        return retVal;
+    }
+
+    @Benchmark
+    public Strand hashMapIntern() {
+        Strand retVal = null;
+        for(Strand token : tokens) {
+            retVal = map.get(token);
+        }
+        return retVal;
+    }
+}
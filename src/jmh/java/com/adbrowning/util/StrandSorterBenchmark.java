@@ -0,0 +1,85 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.adbrowning.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures sorting the words of 1MB of text, as Substrands sharing the text's array, with a reused StrandSorter against
+ * Arrays.sort with Strand.CODE_POINT_ORDER, and against Arrays.sort of the same words as Strings. Each invocation
+ * first copies the unsorted words into the array it sorts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StrandSorterBenchmark {
+    @Param({"ASCII", "MULTI_BYTE"})
+    public Corpus corpus;
+
+    private Strand[] words;
+    private Strand[] sortedWords;
+    private String[] wordStrings;
+    private String[] sortedWordStrings;
+    private final StrandSorter sorter = new StrandSorter();
+
+    @Setup
+    public void setUp() {
+        String text = corpus.generate(1 << 20);
+        words = new Strand(text.getBytes(Corpus.UTF8)).split(" ".getBytes(Corpus.UTF8));
+        sortedWords = new Strand[words.length];
+        wordStrings = text.split(" ");
+        sortedWordStrings = new String[wordStrings.length];
+    }
+
+    @Benchmark
+    public Strand strandSorter() {
+        System.arraycopy(words, 0, sortedWords, 0, words.length);
+        sorter.sortArray(sortedWords);
+        return sortedWords[sortedWords.length / 2];
+    }
+
+    @Benchmark
+    public Strand arraysSortCodePointOrder() {
+        System.arraycopy(words, 0, sortedWords, 0, words.length);
+        Arrays.sort(sortedWords, Strand.CODE_POINT_ORDER);
+        return sortedWords[sortedWords.length / 2];
+    }
+
+    @Benchmark
+    public String arraysSortStrings() {
+        System.arraycopy(wordStrings, 0, sortedWordStrings, 0, wordStrings.length);
+        Arrays.sort(sortedWordStrings);
+        return sortedWordStrings[sortedWordStrings.length / 2];
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.util.Arrays;
+
+/**
+ * Implements the Aho-Corasick algorithm, finding every occurrence of any of a set of byte patterns in a single pass over
+ * the text, as adapted from the description in _Algorithms on Strings, Trees, and Sequences; Gusfield 1997.
+ * <p/>
+ * The failure links are folded into a complete transition table when the automaton is built, so a search does exactly
+ * one array lookup per byte of text and never follows a failure link. To keep that table compact, bytes are grouped
+ * into classes: every byte value that appears in some pattern gets its own class, and all of the others share a single
+ * class (they always lead back to the root). The table therefore takes 4 * states * classes bytes, where there is one
+ * state per distinct prefix of the patterns and classes is one more than the number of distinct byte values used by
+ * the patterns; e.g. 5,000 ten-byte ASCII patterns sharing no prefixes, drawn from 64 distinct bytes, need about 13MB.
+ * <p/>
+ * Instances are immutable once constructed and may be shared between threads.
+ */
+public class AhoCorasickSearcher {
+    private static final int ROOT = 0;
+
+    /* maps each byte value to its column in the transition table */
+    private final int[] byteClasses;
+    private final int numClasses;
+    /*
+     * transitions[state * numClasses + byteClass] holds the next state, premultiplied by numClasses so that it can be
+     * used directly as the next row offset, and complemented (negative) when the next state has any output
+     */
+    private final int[] transitions;
+    /* the first pattern ending at each state, or -1 */
+    private final int[] outputs;
+    /* the nearest state along the failure chain (excluding the state itself) with an output, or ROOT for none */
+    private final int[] dictionaryLinks;
+    /* the next pattern with exactly the same bytes as each pattern, or -1 */
+    private final int[] nextSamePattern;
+    private final int[] patternLengths;
+
+    /**
+     * Compiles the automaton for patterns; the index of each pattern in the array is the id reported with its matches.
+     * The patterns are not retained, so the arrays may be altered freely afterwards.
+     * @param patterns
+     */
+    public AhoCorasickSearcher(byte[][] patterns) {
+        int maxStates = 1;
+        patternLengths = new int[patterns.length];
+        byteClasses = new int[256];
+        for(int i = 0; i < patterns.length; ++i) {
+            if(patterns[i].length == 0) {
+                throw new IllegalArgumentException("pattern " + i + " is empty; patterns must contain at least one byte");
+            }
+            patternLengths[i] = patterns[i].length;
+            maxStates += patterns[i].length;
+            for(byte b : patterns[i]) {
+                byteClasses[0xFF & b] = 1;
+            }
+        }
+        int classCount = 1;
+        for(int i = 0; i < byteClasses.length; ++i) {
+            if(byteClasses[i] != 0) {
+                byteClasses[i] = classCount++;
+            }
+        }
+        numClasses = classCount;
+
+        // build the trie with linked child lists
+        int[] firstChild = new int[maxStates];
+        int[] nextSibling = new int[maxStates];
+        byte[] labels = new byte[maxStates];
+        int[] stateOutputs = new int[maxStates];
+        Arrays.fill(firstChild, -1);
+        Arrays.fill(stateOutputs, -1);
+        nextSamePattern = new int[patterns.length];
+        Arrays.fill(nextSamePattern, -1);
+        int numStates = 1;
+        for(int id = 0; id < patterns.length; ++id) {
+            int state = ROOT;
+            for(byte b : patterns[id]) {
+                int child = findChild(firstChild, nextSibling, labels, state, b);
+                if(child < 0) {
+                    child = numStates++;
+                    labels[child] = b;
+                    nextSibling[child] = firstChild[state];
+                    firstChild[state] = child;
+                }
+                state = child;
+            }
+            if(stateOutputs[state] < 0) {
+                stateOutputs[state] = id;
+            } else {
+                int last = stateOutputs[state];
+                while(nextSamePattern[last] >= 0) {
+                    last = nextSamePattern[last];
+                }
+                nextSamePattern[last] = id;
+            }
+        }
+        if((long) numStates * numClasses > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many patterns: the automaton would need " + numStates + " states of " +
+                    numClasses + " byte classes");
+        }
+
+        outputs = Arrays.copyOf(stateOutputs, numStates);
+        dictionaryLinks = new int[numStates];
+        transitions = new int[numStates * numClasses];
+        buildTransitions(firstChild, nextSibling, labels, numStates);
+    }
+
+    /**
+     * Reports every occurrence of every pattern within [start, end) of text to listener, ordered by the index at which
+     * each match ends (and, for matches ending at the same index, longest pattern first). No objects are allocated.
+     * @param text
+     * @param start the first index of text to search
+     * @param end one past the last index of text to search
+     * @param listener
+     * @return the number of matches reported to listener
+     */
+    public int findAll(byte[] text, int start, int end, MultiMatchListener listener) {
+        int numMatches = 0;
+        int row = ROOT;
+        for(int i = start; i < end; ++i) {
+            row = transitions[row + byteClasses[0xFF & text[i]]];
+            if(row < 0) {
+                row = ~row;
+                int outputState = row / numClasses;
+                if(outputs[outputState] < 0) {
+                    outputState = dictionaryLinks[outputState];
+                }
+                for(; outputState != ROOT; outputState = dictionaryLinks[outputState]) {
+                    for(int id = outputs[outputState]; id >= 0; id = nextSamePattern[id]) {
+                        ++numMatches;
+                        if(!listener.onMatch(id, i - patternLengths[id] + 1)) {
+                            return numMatches;
+                        }
+                    }
+                }
+            }
+        }
+        return numMatches;
+    }
+
+    /**
+     * Reports every occurrence of every pattern within strand to listener; the indices reported are raw indices into the
+     * Strand's underlying array, so for a Substrand they are relative to the array, not to the Substrand
+     * @param strand
+     * @param listener
+     * @return the number of matches reported to listener
+     */
+    public int findAll(Strand strand, MultiMatchListener listener) {
+        return findAll(strand.contents, strand.getStartingIndex(), strand.getStrandEnd(), listener);
+    }
+
+    /**
+     * Returns the number of patterns the automaton was built from
+     * @return
+     */
+    public int getPatternCount() {
+        return patternLengths.length;
+    }
+
+    /**
+     * Returns the number of bytes in the pattern with the given id
+     * @param patternId
+     * @return
+     */
+    public int getPatternLength(int patternId) {
+        return patternLengths[patternId];
+    }
+
+    /**
+     * Returns the number of states in the automaton (one per distinct prefix of the patterns, plus the root)
+     * @return
+     */
+    public int getStateCount() {
+        return outputs.length;
+    }
+
+    /*
+     * Fills in the transition table and dictionary links breadth first. Each state's row starts as a copy of its failure
+     * state's row (which, being shallower, is already complete), and is then overwritten with the state's own trie edges.
+     */
+    private void buildTransitions(int[] firstChild, int[] nextSibling, byte[] labels, int numStates) {
+        int[] failureLinks = new int[numStates];
+        int[] queue = new int[numStates];
+        int head = 0;
+        int tail = 0;
+        for(int child = firstChild[ROOT]; child >= 0; child = nextSibling[child]) {
+            setTransition(ROOT, labels[child], child);
+            queue[tail++] = child;
+        }
+        while(head < tail) {
+            int state = queue[head++];
+            int failure = failureLinks[state];
+            System.arraycopy(transitions, failure * numClasses, transitions, state * numClasses, numClasses);
+            for(int child = firstChild[state]; child >= 0; child = nextSibling[child]) {
+                int childFailure = targetState(transitions[failure * numClasses + byteClasses[0xFF & labels[child]]]);
+                failureLinks[child] = childFailure;
+                dictionaryLinks[child] = outputs[childFailure] >= 0 ? childFailure : dictionaryLinks[childFailure];
+                setTransition(state, labels[child], child);
+                queue[tail++] = child;
+            }
+        }
+        // mark every transition into a state that reports matches
+        for(int i = 0; i < transitions.length; ++i) {
+            int target = targetState(transitions[i]);
+            if(outputs[target] >= 0 || dictionaryLinks[target] != ROOT) {
+                transitions[i] = ~(target * numClasses);
+            }
+        }
+    }
+
+    private void setTransition(int state, byte b, int target) {
+        transitions[state * numClasses + byteClasses[0xFF & b]] = target * numClasses;
+    }
+
+    /*
+     * Recovers a state number from a (premultiplied, possibly complemented) transition table entry
+     */
+    private int targetState(int entry) {
+        return (entry < 0 ? ~entry : entry) / numClasses;
+    }
+
+    private static int findChild(int[] firstChild, int[] nextSibling, byte[] labels, int state, byte b) {
+        for(int child = firstChild[state]; child >= 0; child = nextSibling[child]) {
+            if(labels[child] == b) {
+                return child;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.util.Arrays;
+
+/**
+ * Finds approximate occurrences of a pattern: substrings of the text within maxDistance edits (insertions, deletions or
+ * substitutions of a byte) of it. The edit distance of the pattern against every end position of the text is tracked
+ * with Myers' bit-vector algorithm (_A fast bit-vector algorithm for approximate string matching based on dynamic
+ * programming_; Myers 1999), which keeps a column of the dynamic programming matrix as one bit per pattern byte and
+ * advances it over each text byte in a handful of word operations. Patterns of up to 64 bytes fit in a single long;
+ * longer patterns are split into blocks of 64, with the horizontal deltas carried from block to block as described in
+ * _Explaining and extending the bit-parallel approximate string matching algorithm of Myers_; Hyyr&ouml; 2001.
+ * <p/>
+ * Every end position within maxDistance would report each occurrence several times over, so matches are reported the
+ * way a reader would count them. Once the distance at some end falls within maxDistance, the end is extended for as
+ * long as the distance keeps falling, or holds without the match having to start later; the match starts at the
+ * leftmost position giving the least distance for its end (found by running the reversed pattern backwards from the
+ * end). The search resumes at the end of the match, so matches never overlap, and with a maxDistance of 0 they are
+ * exactly the non-overlapping exact occurrences. Matches begin and end on UTF-8 char boundaries; distances count bytes,
+ * so changing a multi-byte char may cost more than one edit.
+ * <p/>
+ * Since matches vary in length and never overlap, an ApproximateSearcher is not a ByteSearcher, and cannot be used
+ * where one is expected (ParallelStrands, for one, relies on matches being exactly getPatternLength() bytes long).
+ * <p/>
+ * Instances are immutable once constructed, so a single compiled searcher may be shared between threads and reused
+ * across any number of texts.
+ */
+public class ApproximateSearcher {
+    private static final int BLOCK_SIZE = 64;
+    private static final long UNLOCATED = Long.MIN_VALUE;
+
+    private final byte[] pattern;
+    private final int maxDistance;
+    private final int numBlocks;
+    /* the bit for the last byte of the pattern within the last block */
+    private final long lastBit;
+    /* for each byte value b, numBlocks words with a bit set for each pattern index holding b; entry b * numBlocks + k */
+    private final long[] matchMasks;
+    /* the same, for the reversed pattern */
+    private final long[] reversedMatchMasks;
+
+    /**
+     * @param pattern the bytes to search for
+     * @param maxDistance the most edits a match may differ from pattern by; less than the length of pattern, since
+     *                    otherwise the empty string would match everywhere
+     */
+    public ApproximateSearcher(byte[] pattern, int maxDistance) {
+        if(maxDistance < 0 || maxDistance >= pattern.length) {
+            throw new IllegalArgumentException("maxDistance (" + maxDistance + ") must be at least 0 and less than " +
+                    "the pattern length (" + pattern.length + ")");
+        }
+        this.pattern = Arrays.copyOf(pattern, pattern.length);
+        this.maxDistance = maxDistance;
+        numBlocks = (pattern.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        lastBit = 1L << ((pattern.length - 1) % BLOCK_SIZE);
+        matchMasks = new long[256 * numBlocks];
+        reversedMatchMasks = new long[256 * numBlocks];
+        for(int i = 0; i < pattern.length; ++i) {
+            int reversedIndex = pattern.length - 1 - i;
+            matchMasks[(0xFF & pattern[i]) * numBlocks + i / BLOCK_SIZE] |= 1L << (i % BLOCK_SIZE);
+            reversedMatchMasks[(0xFF & pattern[i]) * numBlocks + reversedIndex / BLOCK_SIZE] |=
+                    1L << (reversedIndex % BLOCK_SIZE);
+        }
+    }
+
+    /**
+     * Returns the raw index of the first byte of the first match within [start, end) of text, or -1 if there is none
+     * @param text
+     * @param start the first index of text to search
+     * @param end one past the last index of text to search
+     * @return
+     */
+    public int find(byte[] text, int start, int end) {
+        return search(text, start, end, null);
+    }
+
+    /**
+     * Reports the raw index of the first byte of each match within [start, end) of text to listener, in increasing
+     * order, until the text is exhausted or the listener asks to stop. Matches do not overlap.
+     * @param text
+     * @param start the first index of text to search
+     * @param end one past the last index of text to search
+     * @param listener
+     * @return the number of matches reported to listener
+     */
+    public int findAll(byte[] text, int start, int end, final MatchListener listener) {
+        return search(text, start, end, new ApproximateMatchListener() {
+            @Override
+            public boolean onMatch(int matchStart, int matchEnd, int distance) {
+                return listener.onMatch(matchStart);
+            }
+        });
+    }
+
+    /**
+     * Reports the bounds and edit distance of each match within [start, end) of text to listener, in increasing order,
+     * until the text is exhausted or the listener asks to stop
+     * @param text
+     * @param start the first index of text to search
+     * @param end one past the last index of text to search
+     * @param listener
+     * @return the number of matches reported to listener
+     */
+    public int findAll(byte[] text, int start, int end, ApproximateMatchListener listener) {
+        return search(text, start, end, listener);
+    }
+
+    /**
+     * Returns the char index within strand of the first byte of the first match, or -1 if there is none
+     * @param strand
+     * @return
+     */
+    public int indexOf(Strand strand) {
+        int rawIndex = find(strand.contents, strand.getStartingIndex(), strand.getStrandEnd());
+        return rawIndex < 0 ? -1 : strand.charIndexOf(rawIndex);
+    }
+
+    /**
+     * Reports each match within strand to listener, with its bounds given as byte offsets from the start of strand.
+     * For the char index of the first match, use indexOf(strand).
+     * @param strand
+     * @param listener
+     * @return the number of matches reported to listener
+     */
+    public int findAll(Strand strand, final ApproximateMatchListener listener) {
+        final int offset = strand.getStartingIndex();
+        return search(strand.contents, offset, strand.getStrandEnd(), new ApproximateMatchListener() {
+            @Override
+            public boolean onMatch(int start, int end, int distance) {
+                return listener.onMatch(start - offset, end - offset, distance);
+            }
+        });
+    }
+
+    /**
+     * Returns the number of bytes in the pattern; matches may be up to getMaxDistance() bytes shorter or longer
+     * @return
+     */
+    public int getPatternLength() {
+        return pattern.length;
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    /*
+     * Shared search loop: with no listener it returns the start of the first match (or -1), otherwise the number of
+     * matches reported
+     */
+    private int search(byte[] text, int start, int end, ApproximateMatchListener listener) {
+        // vertical deltas of the current column: +1 where a bit of positive is set, -1 where negative is, else 0
+        long[] positive = new long[numBlocks];
+        long[] negative = new long[numBlocks];
+        long[] reversePositive = new long[numBlocks];
+        long[] reverseNegative = new long[numBlocks];
+        Arrays.fill(positive, -1L);
+        int distance = pattern.length;
+        // matches may start no earlier than this
+        int segmentStart = start;
+        int pendingEnd = -1;
+        int pendingDistance = 0;
+        // the start and distance of the match ending at pendingEnd, from locateStart, or UNLOCATED
+        long pendingMatch = UNLOCATED;
+        int numMatches = 0;
+        for(int i = start; ; ++i) {
+            if(numBlocks == 1 && pendingEnd < 0 && distance > maxDistance) {
+                // nothing is pending, so skip ahead to the next end within maxDistance a word at a time
+                long[] masks = matchMasks;
+                int lastShift = (pattern.length - 1) % BLOCK_SIZE;
+                long vPositive = positive[0];
+                long vNegative = negative[0];
+                for(; i < end && distance > maxDistance; ++i) {
+                    long matches = masks[0xFF & text[i]];
+                    long xv = matches | vNegative;
+                    long xh = (((matches & vPositive) + vPositive) ^ vPositive) | matches;
+                    long hPositive = vNegative | ~(xh | vPositive);
+                    long hNegative = vPositive & xh;
+                    // branch-free, since the changes in distance are all but random
+                    distance += (int) (hPositive >>> lastShift & 1L) - (int) (hNegative >>> lastShift & 1L);
+                    hPositive <<= 1;
+                    hNegative <<= 1;
+                    vPositive = hNegative | ~(xv | hPositive);
+                    vNegative = hPositive & xv;
+                }
+                positive[0] = vPositive;
+                negative[0] = vNegative;
+            }
+            if(i == end || (text[i] & 0xC0) != 0x80) {
+                // i is a possible end of a match
+                boolean resolve = true;
+                if(pendingEnd < 0 ? distance <= maxDistance : distance < pendingDistance) {
+                    pendingEnd = i;
+                    pendingDistance = distance;
+                    pendingMatch = UNLOCATED;
+                    resolve = i == end;
+                } else if(pendingEnd >= 0 && distance == pendingDistance) {
+                    // take the longer match if it starts no later
+                    if(pendingMatch == UNLOCATED) {
+                        pendingMatch = locateStart(text, segmentStart, pendingEnd, reversePositive, reverseNegative);
+                    }
+                    long match = locateStart(text, segmentStart, i, reversePositive, reverseNegative);
+                    if(pendingMatch < 0 || (match >= 0 && match <= pendingMatch)) {
+                        pendingEnd = i;
+                        pendingMatch = match;
+                        resolve = i == end;
+                    }
+                } else {
+                    resolve = pendingEnd >= 0;
+                }
+                if(resolve) {
+                    if(pendingMatch == UNLOCATED) {
+                        pendingMatch = locateStart(text, segmentStart, pendingEnd, reversePositive, reverseNegative);
+                    }
+                    if(pendingMatch >= 0) {
+                        int matchStart = (int) pendingMatch;
+                        if(listener == null) {
+                            return matchStart;
+                        }
+                        ++numMatches;
+                        if(!listener.onMatch(matchStart, pendingEnd, (int) (pendingMatch >>> 32))) {
+                            return numMatches;
+                        }
+                        // start afresh from the end of the match, so that the next cannot overlap it
+                        Arrays.fill(positive, -1L);
+                        Arrays.fill(negative, 0L);
+                        distance = pattern.length;
+                        segmentStart = pendingEnd;
+                        i = pendingEnd;
+                        pendingEnd = -1;
+                    } else {
+                        pendingEnd = i != pendingEnd && distance <= maxDistance ? i : -1;
+                        pendingDistance = distance;
+                    }
+                    pendingMatch = UNLOCATED;
+                }
+            }
+            if(i == end) {
+                break;
+            }
+            distance += advance(matchMasks, 0xFF & text[i], positive, negative, 0);
+        }
+        return listener == null ? -1 : numMatches;
+    }
+
+    /*
+     * Finds the leftmost start in [segmentStart, matchEnd) on a char boundary giving the least distance for a match
+     * ending at matchEnd, by running the reversed pattern backwards from matchEnd with the start of the pattern (rather
+     * than anywhere in it) anchored there. Returns the distance in the upper word and the start in the lower, or -1 if
+     * no start is within maxDistance.
+     */
+    private long locateStart(byte[] text, int segmentStart, int matchEnd, long[] positive, long[] negative) {
+        Arrays.fill(positive, -1L);
+        Arrays.fill(negative, 0L);
+        int distance = pattern.length;
+        int bestDistance = maxDistance + 1;
+        int bestStart = -1;
+        // a match within maxDistance edits is at most maxDistance bytes longer than the pattern
+        int limit = Math.max(segmentStart, matchEnd - pattern.length - maxDistance);
+        for(int i = matchEnd - 1; i >= limit; --i) {
+            distance += advance(reversedMatchMasks, 0xFF & text[i], positive, negative, 1);
+            if(distance <= bestDistance && (text[i] & 0xC0) != 0x80) {
+                bestDistance = distance;
+                bestStart = i;
+            }
+        }
+        return bestStart < 0 ? -1 : (long) bestDistance << 32 | bestStart;
+    }
+
+    /*
+     * Advances the column of vertical deltas over one text byte, returning the change in the distance for the whole
+     * pattern. carryIn is the horizontal delta entering the first row: 0 lets a match start at any text position, +1
+     * anchors the start of the pattern to the first byte processed.
+     */
+    private int advance(long[] masks, int value, long[] positive, long[] negative, int carryIn) {
+        int carry = carryIn;
+        int base = value * numBlocks;
+        for(int block = 0; block < numBlocks; ++block) {
+            long matches = masks[base + block];
+            long vPositive = positive[block];
+            long vNegative = negative[block];
+            long xv = matches | vNegative;
+            if(carry < 0) {
+                matches |= 1L;
+            }
+            long xh = (((matches & vPositive) + vPositive) ^ vPositive) | matches;
+            long hPositive = vNegative | ~(xh | vPositive);
+            long hNegative = vPositive & xh;
+            long highBit = block == numBlocks - 1 ? lastBit : Long.MIN_VALUE;
+            int carryOut = (hPositive & highBit) != 0 ? 1 : (hNegative & highBit) != 0 ? -1 : 0;
+            hPositive <<= 1;
+            hNegative <<= 1;
+            if(carry < 0) {
+                hNegative |= 1L;
+            } else if(carry > 0) {
+                hPositive |= 1L;
+            }
+            positive[block] = hNegative | ~(xv | hPositive);
+            negative[block] = hPositive & xv;
+            carry = carryOut;
+        }
+        return carry;
+    }
+}
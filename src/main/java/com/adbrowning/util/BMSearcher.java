@@ -16,12 +16,217 @@ package com.adbrowning.util;
  *  limitations under the License.
  */
 
+import java.util.Arrays;
 
 /**
- * Implements the Apostolico-Giancarlo variant of the Boyer-Moore string matching, adapted from description in _Algorithms on
- * Strings, Trees, and Sequences; Gusfield 1997
+ * Implements Boyer-Moore string matching with the bad character and strong good suffix rules, adapted from the description
+ * in _Algorithms on Strings, Trees, and Sequences; Gusfield 1997. The good suffix shifts are derived from the Z-values of
+ * the reversed pattern (see calculateCommonPrefixLengths). Rather than the per-text-position table of the
+ * Apostolico-Giancarlo variant, Galil's rule is used to skip re-comparing text already known to match, which keeps the
+ * worst case linear without any allocation during a search.
+ * <p/>
+ * Instances are immutable once constructed, so a single compiled searcher may be shared between threads and reused
+ * across any number of texts.
  */
-public class BMSearcher {
+public class BMSearcher implements ByteSearcher {
+    private final byte[] pattern;
+    /* rightmost index of each byte value in the pattern, or -1 if the byte does not appear */
+    private final int[] lastOccurrence;
+    /* shift to apply by the good suffix rule when the mismatch happens at each index of the pattern */
+    private final int[] goodSuffixShift;
+    /* shift to apply after a full match: the pattern length less the length of its longest proper border */
+    private final int matchShift;
+
+    public BMSearcher(byte[] pattern) {
+        this(pattern, true);
+    }
+
+    public BMSearcher(byte[] pattern, boolean copy) {
+        if(pattern.length == 0) {
+            throw new IllegalArgumentException("pattern must contain at least one byte");
+        }
+        if(copy) {
+            this.pattern = Arrays.copyOf(pattern, pattern.length);
+        } else {
+            this.pattern = pattern;
+        }
+        lastOccurrence = calculateLastOccurrences(this.pattern);
+        int[] prefixSuffixLengths = new int[this.pattern.length];
+        goodSuffixShift = calculateGoodSuffixShifts(this.pattern, prefixSuffixLengths);
+        matchShift = this.pattern.length - (this.pattern.length > 1 ? prefixSuffixLengths[1] : 0);
+    }
+
+    /**
+     * Returns the raw index of the first occurrence of the pattern that lies entirely within [start, end) of text, or
+     * -1 if there is none. To walk every match without a callback, call again with start set to one past the previous
+     * match.
+     * @param text
+     * @param start the first index of text to search
+     * @param end one past the last index of text to search
+     * @return
+     */
+    @Override
+    public int find(byte[] text, int start, int end) {
+        return search(text, start, end, null);
+    }
+
+    /**
+     * Reports every occurrence of the pattern (including overlapping occurrences) within [start, end) of text to
+     * listener, in increasing order, until the text is exhausted or the listener asks to stop. No objects are allocated.
+     * @param text
+     * @param start the first index of text to search
+     * @param end one past the last index of text to search
+     * @param listener
+     * @return the number of matches reported to listener
+     */
+    @Override
+    public int findAll(byte[] text, int start, int end, MatchListener listener) {
+        return search(text, start, end, listener);
+    }
+
+    /**
+     * Returns the number of bytes in the pattern
+     * @return
+     */
+    @Override
+    public int getPatternLength() {
+        return pattern.length;
+    }
+
+    /*
+     * Shared search loop: with no listener it returns the index of the first match (or -1), otherwise the number of
+     * matches reported
+     */
+    private int search(byte[] text, int start, int end, MatchListener listener) {
+        final int patternLength = pattern.length;
+        int numMatches = 0;
+        // text index currently aligned with the last byte of the pattern
+        int alignedEnd = start + patternLength - 1;
+        // text at or before this index is known to match the current alignment (Galil's rule)
+        int knownMatchEnd = start - 1;
+        // kept for StrandMetrics; unused (and compiled away) when metrics are disabled
+        long numComparisons = 0;
+        int numShifts = 0;
+        while(alignedEnd < end) {
+            int patternIndex = patternLength - 1;
+            int textIndex = alignedEnd;
+            while(patternIndex >= 0 && textIndex > knownMatchEnd && pattern[patternIndex] == text[textIndex]) {
+                --patternIndex;
+                --textIndex;
+            }
+            boolean matched = patternIndex < 0 || textIndex == knownMatchEnd;
+            // the bytes that matched, plus the one that did not
+            numComparisons += alignedEnd - textIndex + (matched ? 0 : 1);
+            ++numShifts;
+            if(matched) {
+                int matchStart = alignedEnd - patternLength + 1;
+                if(listener == null) {
+                    if(StrandMetrics.ENABLED) {
+                        recordScan(alignedEnd + 1 - start, numComparisons, numShifts - 1);
+                    }
+                    return matchStart;
+                }
+                ++numMatches;
+                if(!listener.onMatch(matchStart)) {
+                    --numShifts;
+                    break;
+                }
+                // the border of the pattern now lines up with text that just matched
+                knownMatchEnd = alignedEnd;
+                alignedEnd += matchShift;
+            } else {
+                int badCharacterShift = patternIndex - lastOccurrence[0xFF & text[textIndex]];
+                int suffixShift = goodSuffixShift[patternIndex];
+                if(suffixShift >= badCharacterShift) {
+                    // a good suffix shift past the mismatch lines the pattern's prefix up with text that matched
+                    knownMatchEnd = suffixShift > patternIndex ? alignedEnd : start - 1;
+                    alignedEnd += suffixShift;
+                } else {
+                    knownMatchEnd = start - 1;
+                    alignedEnd += badCharacterShift;
+                }
+            }
+        }
+        if(StrandMetrics.ENABLED) {
+            recordScan(Math.min(alignedEnd + 1, end) - start, numComparisons, numShifts);
+        }
+        return listener == null ? -1 : numMatches;
+    }
+
+    /*
+     * Adds a finished search to StrandMetrics, counting the bytes up to the end of the last alignment as scanned
+     */
+    private static void recordScan(long numBytes, long numComparisons, long numShifts) {
+        StrandMetrics.add(StrandMetrics.Counter.BM_BYTES_SCANNED, Math.max(numBytes, 0));
+        StrandMetrics.add(StrandMetrics.Counter.BM_COMPARISONS, numComparisons);
+        StrandMetrics.add(StrandMetrics.Counter.BM_SHIFTS, numShifts);
+    }
+
+    /**
+     * Calculates the rightmost index of every byte value within pattern (-1 for values that do not appear), for the bad
+     * character rule
+     * @param pattern
+     * @return
+     */
+    private static int[] calculateLastOccurrences(byte[] pattern) {
+        int[] retVal = new int[256];
+        Arrays.fill(retVal, -1);
+        for(int i = 0; i < pattern.length; ++i) {
+            retVal[0xFF & pattern[i]] = i;
+        }
+        return retVal;
+    }
+
+    /**
+     * Calculates the strong good suffix shift for a mismatch at each index of pattern. N_j (the length of the longest
+     * suffix of pattern[0..j] that is also a suffix of pattern) is read from the Z-values of the reversed pattern;
+     * when the matched suffix reappears earlier in the pattern (preceded by a different byte) the shift aligns that
+     * copy, otherwise it aligns the longest prefix of the pattern that is also a suffix of the matched text.
+     * @param pattern
+     * @param prefixSuffixLengths filled in with, for each start index s, the length of the longest prefix of pattern
+     *                            that is also a suffix of pattern[s..]
+     * @return
+     */
+    private static int[] calculateGoodSuffixShifts(byte[] pattern, int[] prefixSuffixLengths) {
+        final int length = pattern.length;
+        byte[] reversed = new byte[length];
+        for(int i = 0; i < length; ++i) {
+            reversed[i] = pattern[length - 1 - i];
+        }
+        int[] reversedPrefixLengths = calculateCommonPrefixLengths(reversed);
+
+        // copyEnds[s]: the largest j < length-1 whose N_j covers exactly the suffix starting at s
+        int[] copyEnds = new int[length];
+        Arrays.fill(copyEnds, -1);
+        for(int j = 0; j < length - 1; ++j) {
+            int suffixLength = reversedPrefixLengths[length - 1 - j];
+            if(suffixLength > 0) {
+                copyEnds[length - suffixLength] = j;
+            }
+        }
+
+        int longest = 0;
+        for(int suffixStart = length - 1; suffixStart > 0; --suffixStart) {
+            int suffixLength = length - suffixStart;
+            // the prefix of this length is also a suffix when N_(suffixLength-1) spans the whole prefix
+            if(reversedPrefixLengths[length - suffixLength] == suffixLength) {
+                longest = suffixLength;
+            }
+            prefixSuffixLengths[suffixStart] = longest;
+        }
+
+        int[] retVal = new int[length];
+        retVal[length - 1] = 1;
+        for(int mismatchIndex = 0; mismatchIndex < length - 1; ++mismatchIndex) {
+            int suffixStart = mismatchIndex + 1;
+            if(copyEnds[suffixStart] >= 0) {
+                retVal[mismatchIndex] = length - 1 - copyEnds[suffixStart];
+            } else {
+                retVal[mismatchIndex] = length - prefixSuffixLengths[suffixStart];
+            }
+        }
+        return retVal;
+    }
 
     /**
      * Calculates the length of the prefix that matches starting at any each point in pattern; e.g. in aabaabc
@@ -54,19 +259,17 @@ public class BMSearcher {
                 */
                 int kPrime = i - leftIndex;
                 int zAtKPrime = retVal[kPrime];
-                int remainingMatchLength = rightIndex - i;
+                // length of the part of the match rooted at leftIndex that lies at or after i
+                int remainingMatchLength = rightIndex - i + 1;
                 if(zAtKPrime < remainingMatchLength) {
                     // if we started the prefix here, it would be shorter than if we started it at leftIndex
                     retVal[i] = zAtKPrime;
                 } else {
-                    int numMatched = findMatchLength(pattern, remainingMatchLength, rightIndex+1);
-                    if(numMatched > 0) {
-                        retVal[i] = numMatched;
-                        leftIndex = i;
-                        rightIndex = i + numMatched - 1;
-                    } else {
-                        retVal[i] = zAtKPrime;
-                    }
+                    // everything through rightIndex is known to match; extend the comparison beyond it
+                    int numMatched = remainingMatchLength + findMatchLength(pattern, remainingMatchLength, rightIndex+1);
+                    retVal[i] = numMatched;
+                    leftIndex = i;
+                    rightIndex = i + numMatched - 1;
                 }
             }
         }
@@ -0,0 +1,346 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * CharSequence over UTF-8 bytes held in a ByteBuffer rather than a heap array, e.g. a direct buffer or (a view created
+ * by MappedStrand of) a memory-mapped file. It offers the same operations as Strand, and its subsequences and splits are
+ * views sharing the same buffer, so nothing is copied until toString or toStrand is called.
+ * <p/>
+ * Only absolute reads are made, so the position, limit and byte order of the buffer given to the constructor are
+ * never changed, and neither are they consulted again after construction. A ByteBufferStrand is equal to, and has the
+ * same hash code as, a Strand over the same bytes.
+ */
+public class ByteBufferStrand implements CharSequence {
+    /* little-endian view of the buffer, shared by every subsequence */
+    private final ByteBuffer words;
+    private final int start;
+    private final int end;
+    private final boolean hasMultiByteChars;
+
+    /**
+     * Instantiates a ByteBufferStrand over the bytes between buffer's position and limit
+     * @param buffer
+     */
+    public ByteBufferStrand(ByteBuffer buffer) {
+        this(ByteScanner.wordView(buffer), buffer.position(), buffer.limit());
+    }
+
+    ByteBufferStrand(ByteBuffer words, int start, int end) {
+        this(words, start, end, ByteScanner.hasMultiByteChars(words, start, end));
+    }
+
+    ByteBufferStrand(ByteBuffer words, int start, int end, boolean hasMultiByteChars) {
+        this.words = words;
+        this.start = start;
+        this.end = end;
+        this.hasMultiByteChars = hasMultiByteChars;
+    }
+
+    /**
+     * Returns the number of chars in the sequence; if there are multi-byte characters, this runs in linear time
+     * @return
+     */
+    @Override
+    public int length() {
+        if(!hasMultiByteChars) {
+            return end - start;
+        }
+        return (int) (end - start - ByteScanner.countContinuationBytes(words, start, end));
+    }
+
+    /**
+     * Returns the char at index; if there are multi-byte characters, this runs in linear time
+     * @param index
+     * @return
+     */
+    @Override
+    public char charAt(int index) {
+        int rawIndex = rawIndexOf(index, 0, start);
+        if(index < 0 || rawIndex < 0 || rawIndex == end) {
+            throw new IndexOutOfBoundsException(index + " is beyond the bounds of this ByteBufferStrand");
+        }
+        return decodeUTF8Char(words, rawIndex);
+    }
+
+    /**
+     * Returns a view of the chars in [start, end); nothing is copied
+     * @param start the start index, inclusive
+     * @param end the end index, exclusive
+     * @return
+     */
+    @Override
+    public ByteBufferStrand subSequence(int start, int end) {
+        if(start < 0) {
+            throw new IndexOutOfBoundsException("start must be at least 0; received: " + start);
+        }
+        if(end < start) {
+            throw new IndexOutOfBoundsException("end (" + end + ") must not be less than start (" + start + ")");
+        }
+        int rawStart = rawIndexOf(start, 0, this.start);
+        int rawEnd = rawStart < 0 ? -1 : rawIndexOf(end, start, rawStart);
+        if(rawEnd < 0) {
+            throw new IndexOutOfBoundsException(end + " is beyond the bounds of this ByteBufferStrand");
+        }
+        return new ByteBufferStrand(words, rawStart, rawEnd,
+                hasMultiByteChars && ByteScanner.hasMultiByteChars(words, rawStart, rawEnd));
+    }
+
+    /**
+     * Returns the number of bytes in the sequence
+     * @return
+     */
+    public int byteLength() {
+        return end - start;
+    }
+
+    /**
+     * Returns the byte at index (a byte index, not a char index)
+     * @param index
+     * @return
+     */
+    public byte byteAt(int index) {
+        if(index < 0 || index >= end - start) {
+            throw new IndexOutOfBoundsException(index + " is beyond the bounds of this ByteBufferStrand");
+        }
+        return words.get(start + index);
+    }
+
+    public boolean startsWith(byte[] prefix) {
+        return prefix.length <= end - start && ByteScanner.regionMatches(words, start, prefix, 0, prefix.length);
+    }
+
+    public boolean endsWith(byte[] suffix) {
+        return suffix.length <= end - start &&
+                ByteScanner.regionMatches(words, end - suffix.length, suffix, 0, suffix.length);
+    }
+
+    public int indexOf(String str) {
+        try {
+            return indexOf(str.getBytes("utf8"));
+        } catch(UnsupportedEncodingException ex) {
+            throw new IllegalStateException("UTF-8 encoding not supported");
+        }
+    }
+
+    /**
+     * Returns the char index of the first occurrence of bytes, or -1 if it does not occur
+     * @param bytes
+     * @return
+     */
+    public int indexOf(byte[] bytes) {
+        return indexOf(bytes, 0);
+    }
+
+    /**
+     * Returns the char index of the first occurrence of bytes at or after the char index fromIndex, or -1 if it does
+     * not occur
+     * @param bytes
+     * @param fromIndex
+     * @return
+     */
+    public int indexOf(byte[] bytes, int fromIndex) {
+        int rawStart = rawIndexOf(Math.max(fromIndex, 0), 0, start);
+        if(rawStart < 0) {
+            return -1;
+        }
+        int rawIndex = find(words, bytes, rawStart, end);
+        if(rawIndex < 0) {
+            return -1;
+        }
+        return hasMultiByteChars ? (int) (rawIndex - start - ByteScanner.countContinuationBytes(words, start, rawIndex))
+                : rawIndex - start;
+    }
+
+    /**
+     * Splits into views at sequence boundaries, _without_ the sequence, with the same semantics as Strand.split:
+     * trailing empty views are not returned, and sequence is a literal series of bytes, NOT a regular expression
+     * @param sequence
+     * @return
+     */
+    public ByteBufferStrand[] split(byte[] sequence) {
+        if(sequence.length == 0) {
+            throw new IllegalArgumentException("sequence must contain at least one byte");
+        }
+        ByteBufferStrand[] retVal = new ByteBufferStrand[10];
+        int numSplits = 0;
+        int lastNonEmpty = 0;
+        for(int tokenStart = start; tokenStart < end;) {
+            int tokenEnd = findSequence(words, sequence, tokenStart, end);
+            if(tokenEnd < 0) {
+                tokenEnd = end;
+            }
+            if(numSplits == retVal.length) {
+                retVal = Arrays.copyOf(retVal, retVal.length * 2);
+            }
+            retVal[numSplits++] = new ByteBufferStrand(words, tokenStart, tokenEnd,
+                    hasMultiByteChars && ByteScanner.hasMultiByteChars(words, tokenStart, tokenEnd));
+            if(tokenEnd > tokenStart) {
+                lastNonEmpty = numSplits;
+            }
+            tokenStart = tokenEnd + sequence.length;
+        }
+        return Arrays.copyOf(retVal, lastNonEmpty);
+    }
+
+    /**
+     * Copies the bytes into a new heap array
+     * @return
+     */
+    public byte[] toByteArray() {
+        byte[] retVal = new byte[end - start];
+        ByteBuffer source = words.duplicate();
+        source.limit(end).position(start);
+        source.get(retVal);
+        return retVal;
+    }
+
+    /**
+     * Copies the bytes into a new Strand
+     * @return
+     */
+    public Strand toStrand() {
+        return new Strand(toByteArray(), false, hasMultiByteChars);
+    }
+
+    @Override
+    public String toString() {
+        return toStrand().toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o instanceof ByteBufferStrand) {
+            ByteBufferStrand other = (ByteBufferStrand) o;
+            if(other.end - other.start != end - start) {
+                return false;
+            }
+            for(int i = start, j = other.start; i < end; ++i, ++j) {
+                if(words.get(i) != other.words.get(j)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if(o instanceof Strand) {
+            Strand other = (Strand) o;
+            return other.getStrandLength() == end - start &&
+                    ByteScanner.regionMatches(words, start, other.contents, other.getStartingIndex(), end - start);
+        }
+        if(o instanceof CharSequence) {
+            CharSequence other = (CharSequence) o;
+            int otherIndex = 0;
+            for(int i = start; i < end; ++otherIndex) {
+                if(otherIndex >= other.length() || other.charAt(otherIndex) != decodeUTF8Char(words, i)) {
+                    return false;
+                }
+                i += Strand.utf8CharSize(words.get(i));
+            }
+            return otherIndex == other.length();
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        int retVal = 0;
+        for(int i = start; i < end; ++i) {
+            retVal = 31 * retVal + (0xFF & words.get(i));
+        }
+        return retVal;
+    }
+
+    /*
+     * Same as Strand.rawIndexOf(int, int, int): the absolute index of the char at charIndex, end if charIndex is the
+     * length, or -1 if it is beyond that
+     */
+    private int rawIndexOf(int charIndex, int knownCharIndex, int knownRawIndex) {
+        if(!hasMultiByteChars) {
+            return charIndex <= end - start ? start + charIndex : -1;
+        }
+        int rawIndex = knownRawIndex;
+        int i = knownCharIndex;
+        for(; i < charIndex && rawIndex < end; ++i) {
+            rawIndex += Strand.utf8CharSize(words.get(rawIndex));
+        }
+        if(StrandMetrics.ENABLED) {
+            StrandMetrics.recordCharOffsetWalk(rawIndex - knownRawIndex);
+        }
+        return i == charIndex && rawIndex <= end ? rawIndex : -1;
+    }
+
+    /**
+     * Returns the absolute index of the first occurrence of pattern within [from, to) of buffer, or -1 if there is none.
+     * Buffers backed by an accessible array are searched with the searcher ByteSearcherFactory selects; others are
+     * searched with Knuth-Morris-Pratt.
+     * @param buffer
+     * @param pattern
+     * @param from
+     * @param to
+     * @return
+     */
+    static int find(ByteBuffer buffer, byte[] pattern, int from, int to) {
+        if(StrandMetrics.ENABLED) {
+            StrandMetrics.add(StrandMetrics.Counter.SEARCHERS_COMPILED_PER_CALL, 1);
+        }
+        if(buffer.hasArray()) {
+            int offset = buffer.arrayOffset();
+            int found = ByteSearcherFactory.create(pattern, false).find(buffer.array(), from + offset, to + offset);
+            return found < 0 ? -1 : found - offset;
+        }
+        return new KMPSearcher(pattern, false).find(buffer, from, to);
+    }
+
+    /**
+     * Same as Strand.findSequence, over absolute indices of a buffer in little-endian order
+     * @param words
+     * @param sequence
+     * @param from
+     * @param to
+     * @return
+     */
+    static int findSequence(ByteBuffer words, byte[] sequence, int from, int to) {
+        byte first = sequence[0];
+        int candidatesEnd = to - sequence.length + 1;
+        for(int i = ByteScanner.indexOf(words, from, candidatesEnd, first); i >= 0;
+                i = ByteScanner.indexOf(words, i + 1, candidatesEnd, first)) {
+            if(ByteScanner.regionMatches(words, i + 1, sequence, 1, sequence.length - 1)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static char decodeUTF8Char(ByteBuffer bytes, int index) {
+        byte header = bytes.get(index);
+        int numBytes = Strand.utf8CharSize(header);
+        if(numBytes == -1) {
+            throw new IllegalStateException("Byte with value " + Integer.toHexString(header) + " at " + index +
+                    " is not a valid UTF-8 char header");
+        }
+        int retVal = numBytes == 1 ? 0xFF & header : (0x7F >>> numBytes) & header;
+        for(int i = 1; i < numBytes; ++i) {
+            retVal = (retVal << 6) | (0x3F & bytes.get(index + i));
+        }
+        return (char) retVal;
+    }
+}
@@ -0,0 +1,968 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A regular expression matched directly against UTF-8 bytes, for searching Strands without going through charAt (which
+ * is linear per call when a Strand has multi-byte chars) and without backtracking. The expression is compiled to a
+ * Thompson NFA over bytes, in which each char class becomes the alternation of the UTF-8 byte sequences for its code
+ * points, and that NFA is turned into a DFA lazily, one state and transition at a time as the text demands, so each byte
+ * of an attempt costs one table lookup. When every match must begin with some literal bytes, candidate starts are found
+ * with a ByteSearcher for them; otherwise starts whose first byte cannot begin a match are skipped.
+ * <p/>
+ * The supported syntax is a subset of java.util.regex: literal chars; '.' (any char but '\n'); classes such as [a-z],
+ * [^,\n] and [\x{400}-\x{4FF}]; the escapes \d \D \w \W \s \S (ASCII, as in java.util.regex), \t \n \r \f \e \a, \xhh,
+ * \x{h...}, &#92;uhhhh and escaped punctuation; grouping with (...) or (?:...); alternation; the quantifiers * + ? {n}
+ * {n,} and {n,m}; and the anchors ^ and $, which match at the start and end of the range searched. Lazy and possessive
+ * quantifiers, backreferences, lookaround and flags are not supported. Groups do not capture; a match is reported as
+ * the raw byte offsets (or a Substrand) of its whole span.
+ * <p/>
+ * Matches are leftmost-longest, as in POSIX, rather than leftmost-first as in java.util.regex: of the matches starting
+ * at the leftmost possible position the longest is taken, so "a|ab" matches all of "ab". Matches begin and end on char
+ * boundaries and do not overlap. Each attempt is linear in the bytes it examines, but attempts from successive starts
+ * may examine the same bytes again, so expressions such as "a*b" against a long run of 'a's can take quadratic time.
+ * <p/>
+ * A ByteRegex is not thread-safe, since its DFA is built as it is used; give each thread its own.
+ */
+public class ByteRegex {
+    /* past this many DFA states the cache is flushed and the states rebuilt as they are needed */
+    private static final int MAX_DFA_STATES = 4096;
+    private static final int MAX_REPETITION = 1000;
+    private static final int MAX_CODE_POINT = Character.MAX_CODE_POINT;
+
+    /* kinds of NFA node */
+    private static final int RANGE = 0;
+    private static final int SPLIT = 1;
+    private static final int ASSERT_START = 2;
+    private static final int ASSERT_END = 3;
+    private static final int MATCH = 4;
+
+    private static final int DEAD = 0;
+    private static final int UNKNOWN = -1;
+
+    private final String regex;
+
+    /* the NFA: a RANGE node matches a byte in [low, high] then goes to next; a SPLIT goes to both next and alternate */
+    private int[] kinds = new int[16];
+    private int[] lows = new int[16];
+    private int[] highs = new int[16];
+    private int[] nexts = new int[16];
+    private int[] alternates = new int[16];
+    private int numNodes;
+    private final int matchNode;
+    private final int startNode;
+
+    /* candidate starts are occurrences of this, when every match begins with the same literal bytes */
+    private final ByteSearcher prefixSearcher;
+
+    /* the lazily built DFA: each state is the sorted set of NFA nodes it stands for, and its row of transitions holds
+       the target state for each byte, or UNKNOWN until first taken */
+    private int[][] stateSets;
+    private int[] transitions;
+    private boolean[] accepting;
+    private boolean[] acceptingAtEnd;
+    private int numStates;
+    private int numFlushes;
+    private final Map<StateKey, Integer> stateIds = new HashMap<StateKey, Integer>();
+    /* the start states at the start of the range and anywhere else, or UNKNOWN */
+    private int rangeStartState = UNKNOWN;
+    private int innerStartState = UNKNOWN;
+    /* the bytes that can begin a match away from the start of the range; null until first needed */
+    private boolean[] startBytes;
+
+    /* scratch space for computing closures */
+    private int[] marks = new int[16];
+    private int generation;
+    private int[] stack = new int[16];
+
+    /**
+     * Compiles regex
+     * @param regex
+     * @throws PatternSyntaxException if regex is malformed or uses syntax outside the supported subset
+     */
+    public ByteRegex(String regex) {
+        this.regex = regex;
+        Node root = new Parser(regex).parse();
+        matchNode = addNode(MATCH, 0, 0, -1, -1);
+        startNode = compile(root, matchNode);
+        ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+        appendLiteralPrefix(root, prefix);
+        prefixSearcher = prefix.size() > 0 ? ByteSearcherFactory.create(prefix.toByteArray(), false) : null;
+        flush();
+    }
+
+    /**
+     * Returns the raw index of the first byte of the first match within [start, end) of text, or -1 if there is none
+     * @param text
+     * @param start the first index of text to search
+     * @param end one past the last index of text to search
+     * @return
+     */
+    public int find(byte[] text, int start, int end) {
+        long match = search(text, start, end, start);
+        return match < 0 ? -1 : (int) (match >>> 32);
+    }
+
+    /**
+     * Reports the bounds of each match within [start, end) of text to listener, in increasing order, until the text is
+     * exhausted or the listener asks to stop. After an empty match the search resumes at the next char.
+     * @param text
+     * @param start the first index of text to search
+     * @param end one past the last index of text to search
+     * @param listener
+     * @return the number of matches reported to listener
+     */
+    public int findAll(byte[] text, int start, int end, RegexMatchListener listener) {
+        int numMatches = 0;
+        for(int from = start; from <= end;) {
+            long match = search(text, start, end, from);
+            if(match < 0) {
+                break;
+            }
+            int matchStart = (int) (match >>> 32);
+            int matchEnd = (int) match;
+            ++numMatches;
+            if(!listener.onMatch(matchStart, matchEnd)) {
+                break;
+            }
+            from = matchEnd > matchStart ? matchEnd : matchStart + 1;
+        }
+        return numMatches;
+    }
+
+    /**
+     * Returns true if the whole of [start, end) of text matches
+     * @param text
+     * @param start
+     * @param end
+     * @return
+     */
+    public boolean matches(byte[] text, int start, int end) {
+        return longestMatchEnd(text, start, end, true) == end;
+    }
+
+    /**
+     * Returns a Substrand sharing strand's bytes for the first match within strand, or null if there is none
+     * @param strand
+     * @return
+     */
+    public Strand find(Strand strand) {
+        long match = search(strand.contents, strand.getStartingIndex(), strand.getStrandEnd(), strand.getStartingIndex());
+        return match < 0 ? null : new Substrand(strand.contents, (int) (match >>> 32), (int) match,
+                strand.hasMultiByteChars);
+    }
+
+    /**
+     * Returns Substrands sharing strand's bytes for each match within strand
+     * @param strand
+     * @return
+     */
+    public Strand[] findAll(final Strand strand) {
+        final List<Strand> matches = new ArrayList<Strand>();
+        findAll(strand.contents, strand.getStartingIndex(), strand.getStrandEnd(), new RegexMatchListener() {
+            @Override
+            public boolean onMatch(int start, int end) {
+                matches.add(new Substrand(strand.contents, start, end, strand.hasMultiByteChars));
+                return true;
+            }
+        });
+        return matches.toArray(new Strand[matches.size()]);
+    }
+
+    /**
+     * Returns true if the whole of strand matches
+     * @param strand
+     * @return
+     */
+    public boolean matches(Strand strand) {
+        return matches(strand.contents, strand.getStartingIndex(), strand.getStrandEnd());
+    }
+
+    /**
+     * Returns the number of DFA states built so far; for sizing and testing
+     * @return
+     */
+    public int getNumStates() {
+        return numStates;
+    }
+
+    @Override
+    public String toString() {
+        return regex;
+    }
+
+    /*
+     * Returns the first match starting at or after from, as its start in the upper word and end in the lower, or -1
+     */
+    private long search(byte[] text, int start, int end, int from) {
+        for(int candidate = from; candidate <= end; ++candidate) {
+            if(candidate < end && (text[candidate] & 0xC0) == 0x80) {
+                continue;
+            }
+            if(prefixSearcher != null) {
+                // every match begins with the prefix, which begins with a whole char
+                candidate = prefixSearcher.find(text, candidate, end);
+                if(candidate < 0) {
+                    return -1;
+                }
+            } else if(candidate > start) {
+                if(getInnerStartState() == DEAD) {
+                    // anchored to the start of the range
+                    return -1;
+                }
+                boolean[] starts = getStartBytes();
+                while(candidate < end && !starts[0xFF & text[candidate]]) {
+                    ++candidate;
+                }
+                if(candidate < end && (text[candidate] & 0xC0) == 0x80) {
+                    continue;
+                }
+            }
+            int matchEnd = longestMatchEnd(text, candidate, end, candidate == start);
+            if(matchEnd >= 0) {
+                return (long) candidate << 32 | matchEnd;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Runs the DFA from from, returning the end of the longest match starting there, or -1 if there is none
+     */
+    private int longestMatchEnd(byte[] text, int from, int end, boolean atRangeStart) {
+        int state = atRangeStart ? getRangeStartState() : getInnerStartState();
+        int matchEnd = accepting[state] ? from : -1;
+        int[] table = transitions;
+        boolean[] accepts = accepting;
+        int i = from;
+        for(; i < end && state != DEAD; ++i) {
+            int value = 0xFF & text[i];
+            int target = table[state << 8 | value];
+            if(target == UNKNOWN) {
+                target = computeTransition(state, value);
+                // adding a state may have replaced the arrays
+                table = transitions;
+                accepts = accepting;
+            }
+            state = target;
+            if(accepts[state]) {
+                matchEnd = i + 1;
+            }
+        }
+        if(i == end && acceptingAtEnd[state]) {
+            matchEnd = end;
+        }
+        return matchEnd;
+    }
+
+    private int getRangeStartState() {
+        if(rangeStartState == UNKNOWN) {
+            int state = intern(closure(new int[] {startNode}, 1, true, false), true);
+            rangeStartState = state;
+        }
+        return rangeStartState;
+    }
+
+    private int getInnerStartState() {
+        if(innerStartState == UNKNOWN) {
+            int state = intern(closure(new int[] {startNode}, 1, false, false), false);
+            innerStartState = state;
+        }
+        return innerStartState;
+    }
+
+    private boolean[] getStartBytes() {
+        if(startBytes == null) {
+            boolean[] retVal = new boolean[256];
+            int state = getInnerStartState();
+            for(int value = 0; value < 256; ++value) {
+                int flushesBefore = numFlushes;
+                retVal[value] = accepting[state] || computeTransition(state, value) != DEAD;
+                if(numFlushes != flushesBefore) {
+                    state = getInnerStartState();
+                }
+            }
+            startBytes = retVal;
+        }
+        return startBytes;
+    }
+
+    /*
+     * Computes (and, unless the cache was flushed to make room, records) the target of state on value
+     */
+    private int computeTransition(int state, int value) {
+        int[] set = stateSets[state];
+        int[] seeds = new int[set.length];
+        int numSeeds = 0;
+        for(int node : set) {
+            if(kinds[node] == RANGE && lows[node] <= value && value <= highs[node]) {
+                seeds[numSeeds++] = nexts[node];
+            }
+        }
+        int flushesBefore = numFlushes;
+        int target = intern(closure(seeds, numSeeds, false, false), false);
+        if(numFlushes == flushesBefore) {
+            transitions[state << 8 | value] = target;
+        }
+        return target;
+    }
+
+    /*
+     * Returns the id of the DFA state for set, adding it if it is new; atStart is true only for the state at the start of
+     * the range, which is kept apart from any state with the same set elsewhere, since a ^ after a $ can pass there
+     */
+    private int intern(int[] set, boolean atStart) {
+        StateKey key = new StateKey(set, atStart);
+        Integer id = stateIds.get(key);
+        if(id != null) {
+            return id;
+        }
+        if(numStates == MAX_DFA_STATES) {
+            flush();
+        }
+        int state = numStates++;
+        if(state == stateSets.length) {
+            int capacity = Math.min(2 * state, MAX_DFA_STATES);
+            stateSets = Arrays.copyOf(stateSets, capacity);
+            accepting = Arrays.copyOf(accepting, capacity);
+            acceptingAtEnd = Arrays.copyOf(acceptingAtEnd, capacity);
+            transitions = Arrays.copyOf(transitions, capacity << 8);
+        }
+        stateSets[state] = set;
+        Arrays.fill(transitions, state << 8, (state + 1) << 8, set.length == 0 ? DEAD : UNKNOWN);
+        boolean matches = false;
+        int[] seeds = new int[set.length];
+        int numSeeds = 0;
+        for(int node : set) {
+            if(kinds[node] == MATCH) {
+                matches = true;
+            } else if(kinds[node] == ASSERT_END) {
+                seeds[numSeeds++] = nexts[node];
+            }
+        }
+        accepting[state] = matches;
+        acceptingAtEnd[state] = matches || (numSeeds > 0 &&
+                Arrays.binarySearch(closure(seeds, numSeeds, atStart, true), matchNode) >= 0);
+        stateIds.put(key, state);
+        return state;
+    }
+
+    /*
+     * Discards every DFA state, leaving only the dead state
+     */
+    private void flush() {
+        ++numFlushes;
+        numStates = 0;
+        stateIds.clear();
+        stateSets = new int[16][];
+        accepting = new boolean[16];
+        acceptingAtEnd = new boolean[16];
+        transitions = new int[16 << 8];
+        rangeStartState = UNKNOWN;
+        innerStartState = UNKNOWN;
+        intern(new int[0], false);
+    }
+
+    /*
+     * Returns the sorted set of RANGE, ASSERT_END and MATCH nodes reachable from seeds without consuming a byte; ^ is
+     * passed only if atStart, and $ only if atEnd
+     */
+    private int[] closure(int[] seeds, int numSeeds, boolean atStart, boolean atEnd) {
+        if(++generation == 0) {
+            Arrays.fill(marks, 0);
+            generation = 1;
+        }
+        int[] retVal = new int[8];
+        int size = 0;
+        int depth = 0;
+        for(int i = 0; i < numSeeds; ++i) {
+            stack = push(stack, depth++, seeds[i]);
+        }
+        while(depth > 0) {
+            int node = stack[--depth];
+            if(marks[node] == generation) {
+                continue;
+            }
+            marks[node] = generation;
+            switch(kinds[node]) {
+                case SPLIT:
+                    stack = push(stack, depth++, alternates[node]);
+                    stack = push(stack, depth++, nexts[node]);
+                    break;
+                case ASSERT_START:
+                    if(atStart) {
+                        stack = push(stack, depth++, nexts[node]);
+                    }
+                    break;
+                case ASSERT_END:
+                    if(atEnd) {
+                        stack = push(stack, depth++, nexts[node]);
+                    }
+                    retVal = push(retVal, size++, node);
+                    break;
+                default:
+                    retVal = push(retVal, size++, node);
+            }
+        }
+        retVal = Arrays.copyOf(retVal, size);
+        Arrays.sort(retVal);
+        return retVal;
+    }
+
+    private static int[] push(int[] array, int index, int value) {
+        if(index == array.length) {
+            array = Arrays.copyOf(array, 2 * array.length);
+        }
+        array[index] = value;
+        return array;
+    }
+
+    private int addNode(int kind, int low, int high, int next, int alternate) {
+        if(numNodes == kinds.length) {
+            int capacity = 2 * numNodes;
+            kinds = Arrays.copyOf(kinds, capacity);
+            lows = Arrays.copyOf(lows, capacity);
+            highs = Arrays.copyOf(highs, capacity);
+            nexts = Arrays.copyOf(nexts, capacity);
+            alternates = Arrays.copyOf(alternates, capacity);
+            marks = Arrays.copyOf(marks, capacity);
+        }
+        kinds[numNodes] = kind;
+        lows[numNodes] = low;
+        highs[numNodes] = high;
+        nexts[numNodes] = next;
+        alternates[numNodes] = alternate;
+        return numNodes++;
+    }
+
+    /*
+     * Compiles node into NFA nodes that continue to next once node has matched, returning the entry node; building from
+     * the end backwards means no dangling edges need patching
+     */
+    private int compile(Node node, int next) {
+        switch(node.kind) {
+            case Node.CLASS: {
+                List<int[]> sequences = new ArrayList<int[]>();
+                for(int i = 0; i < node.ranges.length; i += 2) {
+                    addUtf8Sequences(node.ranges[i], node.ranges[i + 1], sequences);
+                }
+                if(sequences.isEmpty()) {
+                    // an empty class never matches
+                    return addNode(RANGE, 1, 0, next, -1);
+                }
+                int entry = -1;
+                for(int[] sequence : sequences) {
+                    int sequenceEntry = next;
+                    for(int i = sequence.length - 2; i >= 0; i -= 2) {
+                        sequenceEntry = addNode(RANGE, sequence[i], sequence[i + 1], sequenceEntry, -1);
+                    }
+                    entry = entry < 0 ? sequenceEntry : addNode(SPLIT, 0, 0, entry, sequenceEntry);
+                }
+                return entry;
+            }
+            case Node.CONCATENATION:
+                for(int i = node.children.size() - 1; i >= 0; --i) {
+                    next = compile(node.children.get(i), next);
+                }
+                return next;
+            case Node.ALTERNATION: {
+                int entry = compile(node.children.get(0), next);
+                for(int i = 1; i < node.children.size(); ++i) {
+                    entry = addNode(SPLIT, 0, 0, entry, compile(node.children.get(i), next));
+                }
+                return entry;
+            }
+            case Node.REPETITION: {
+                Node child = node.children.get(0);
+                int entry;
+                if(node.max < 0) {
+                    // loop: the split either enters the child, which returns to the split, or leaves
+                    int loop = addNode(SPLIT, 0, 0, -1, next);
+                    // not assigned directly, since compiling may reallocate nexts
+                    int body = compile(child, loop);
+                    nexts[loop] = body;
+                    entry = loop;
+                } else {
+                    entry = next;
+                    for(int i = node.min; i < node.max; ++i) {
+                        entry = addNode(SPLIT, 0, 0, compile(child, entry), next);
+                    }
+                }
+                for(int i = 0; i < node.min; ++i) {
+                    entry = compile(child, entry);
+                }
+                return entry;
+            }
+            case Node.START:
+                return addNode(ASSERT_START, 0, 0, next, -1);
+            default:
+                return addNode(ASSERT_END, 0, 0, next, -1);
+        }
+    }
+
+    /*
+     * Appends the literal bytes every match of node must begin with, returning true if they are the whole of node
+     */
+    private static boolean appendLiteralPrefix(Node node, ByteArrayOutputStream prefix) {
+        switch(node.kind) {
+            case Node.CLASS:
+                if(node.ranges.length == 2 && node.ranges[0] == node.ranges[1]) {
+                    byte[] bytes = encode(node.ranges[0]);
+                    prefix.write(bytes, 0, bytes.length);
+                    return true;
+                }
+                return false;
+            case Node.CONCATENATION:
+                for(Node child : node.children) {
+                    if(!appendLiteralPrefix(child, prefix)) {
+                        return false;
+                    }
+                }
+                return true;
+            case Node.REPETITION:
+                if(node.min > 0) {
+                    appendLiteralPrefix(node.children.get(0), prefix);
+                }
+                return false;
+            case Node.START:
+            case Node.END:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /*
+     * Adds the UTF-8 byte sequences for the code points in [low, high], each as pairs of byte bounds, splitting the
+     * range until each piece is a product of byte ranges (see the utf8-ranges crate of the Rust regex project)
+     */
+    static void addUtf8Sequences(int low, int high, List<int[]> sequences) {
+        if(low > high) {
+            return;
+        }
+        if(low <= 0xDFFF && high >= 0xD800) {
+            // surrogates are not chars
+            addUtf8Sequences(low, 0xD7FF, sequences);
+            addUtf8Sequences(0xE000, high, sequences);
+            return;
+        }
+        int[] lengthMaxima = {0x7F, 0x7FF, 0xFFFF};
+        for(int max : lengthMaxima) {
+            if(low <= max && high > max) {
+                addUtf8Sequences(low, max, sequences);
+                addUtf8Sequences(max + 1, high, sequences);
+                return;
+            }
+        }
+        byte[] lowBytes = encode(low);
+        for(int i = 1; i < lowBytes.length; ++i) {
+            int mask = (1 << (6 * i)) - 1;
+            if((low & ~mask) != (high & ~mask)) {
+                if((low & mask) != 0) {
+                    addUtf8Sequences(low, low | mask, sequences);
+                    addUtf8Sequences((low | mask) + 1, high, sequences);
+                    return;
+                }
+                if((high & mask) != mask) {
+                    addUtf8Sequences(low, (high & ~mask) - 1, sequences);
+                    addUtf8Sequences(high & ~mask, high, sequences);
+                    return;
+                }
+            }
+        }
+        byte[] highBytes = encode(high);
+        int[] sequence = new int[2 * lowBytes.length];
+        for(int i = 0; i < lowBytes.length; ++i) {
+            sequence[2 * i] = 0xFF & lowBytes[i];
+            sequence[2 * i + 1] = 0xFF & highBytes[i];
+        }
+        sequences.add(sequence);
+    }
+
+    static byte[] encode(int codePoint) {
+        if(codePoint < 0x80) {
+            return new byte[] {(byte) codePoint};
+        } else if(codePoint < 0x800) {
+            return new byte[] {(byte) (0xC0 | codePoint >> 6), (byte) (0x80 | codePoint & 0x3F)};
+        } else if(codePoint < 0x10000) {
+            return new byte[] {(byte) (0xE0 | codePoint >> 12), (byte) (0x80 | codePoint >> 6 & 0x3F),
+                    (byte) (0x80 | codePoint & 0x3F)};
+        }
+        return new byte[] {(byte) (0xF0 | codePoint >> 18), (byte) (0x80 | codePoint >> 12 & 0x3F),
+                (byte) (0x80 | codePoint >> 6 & 0x3F), (byte) (0x80 | codePoint & 0x3F)};
+    }
+
+    private static final class StateKey {
+        final int[] set;
+        final boolean atStart;
+        final int hash;
+
+        StateKey(int[] set, boolean atStart) {
+            this.set = set;
+            this.atStart = atStart;
+            hash = 31 * Arrays.hashCode(set) + (atStart ? 1 : 0);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof StateKey && atStart == ((StateKey) other).atStart &&
+                    Arrays.equals(set, ((StateKey) other).set);
+        }
+    }
+
+    /*
+     * A node of the parsed expression. Literals are classes of a single code point.
+     */
+    private static final class Node {
+        static final int CLASS = 0;
+        static final int CONCATENATION = 1;
+        static final int ALTERNATION = 2;
+        static final int REPETITION = 3;
+        static final int START = 4;
+        static final int END = 5;
+
+        final int kind;
+        /* for CLASS, sorted and disjoint [low, high] pairs of code points */
+        final int[] ranges;
+        final List<Node> children;
+        /* for REPETITION; max is -1 when unbounded */
+        final int min;
+        final int max;
+
+        Node(int kind, int[] ranges, List<Node> children, int min, int max) {
+            this.kind = kind;
+            this.ranges = ranges;
+            this.children = children;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    /*
+     * Recursive descent parser producing the Node tree
+     */
+    private static final class Parser {
+        private static final int[] DIGITS = {'0', '9'};
+        private static final int[] WORD_CHARS = {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+        private static final int[] SPACES = {'\t', '\r', ' ', ' '};
+
+        private final String regex;
+        private int position;
+
+        Parser(String regex) {
+            this.regex = regex;
+        }
+
+        Node parse() {
+            Node retVal = parseAlternation();
+            if(position < regex.length()) {
+                throw error("Unmatched closing ')'");
+            }
+            return retVal;
+        }
+
+        private Node parseAlternation() {
+            List<Node> alternatives = new ArrayList<Node>();
+            alternatives.add(parseConcatenation());
+            while(position < regex.length() && regex.charAt(position) == '|') {
+                ++position;
+                alternatives.add(parseConcatenation());
+            }
+            return alternatives.size() == 1 ? alternatives.get(0) : new Node(Node.ALTERNATION, null, alternatives, 0, 0);
+        }
+
+        private Node parseConcatenation() {
+            List<Node> items = new ArrayList<Node>();
+            while(position < regex.length() && regex.charAt(position) != '|' && regex.charAt(position) != ')') {
+                items.add(parseRepetition());
+            }
+            return items.size() == 1 ? items.get(0) : new Node(Node.CONCATENATION, null, items, 0, 0);
+        }
+
+        private Node parseRepetition() {
+            Node atom = parseAtom();
+            if(position == regex.length()) {
+                return atom;
+            }
+            int min;
+            int max;
+            char c = regex.charAt(position);
+            if(c == '*') {
+                min = 0;
+                max = -1;
+                ++position;
+            } else if(c == '+') {
+                min = 1;
+                max = -1;
+                ++position;
+            } else if(c == '?') {
+                min = 0;
+                max = 1;
+                ++position;
+            } else if(c == '{') {
+                ++position;
+                min = parseNumber();
+                max = min;
+                if(position < regex.length() && regex.charAt(position) == ',') {
+                    ++position;
+                    max = position < regex.length() && regex.charAt(position) == '}' ? -1 : parseNumber();
+                }
+                if(position == regex.length() || regex.charAt(position) != '}') {
+                    throw error("Unclosed counted closure");
+                }
+                ++position;
+                if(max >= 0 && max < min) {
+                    throw error("Illegal repetition range");
+                }
+            } else {
+                return atom;
+            }
+            if(position < regex.length() && "*+?{".indexOf(regex.charAt(position)) >= 0) {
+                throw error("Lazy and possessive quantifiers are not supported");
+            }
+            List<Node> children = new ArrayList<Node>();
+            children.add(atom);
+            return new Node(Node.REPETITION, null, children, min, max);
+        }
+
+        private int parseNumber() {
+            int start = position;
+            int value = 0;
+            while(position < regex.length() && Character.isDigit(regex.charAt(position))) {
+                value = 10 * value + regex.charAt(position++) - '0';
+                if(value > MAX_REPETITION) {
+                    throw error("Repetitions are limited to " + MAX_REPETITION);
+                }
+            }
+            if(position == start) {
+                throw error("Illegal repetition");
+            }
+            return value;
+        }
+
+        private Node parseAtom() {
+            int c = regex.codePointAt(position);
+            position += Character.charCount(c);
+            switch(c) {
+                case '(':
+                    if(regex.startsWith("?:", position)) {
+                        position += 2;
+                    } else if(regex.startsWith("?", position)) {
+                        throw error("Only non-capturing (?:...) groups are supported");
+                    }
+                    Node group = parseAlternation();
+                    if(position == regex.length()) {
+                        throw error("Unclosed group");
+                    }
+                    ++position;
+                    return group;
+                case '[':
+                    return classNode(parseClass());
+                case '.':
+                    return classNode(new int[] {0, '\n' - 1, '\n' + 1, MAX_CODE_POINT});
+                case '^':
+                    return new Node(Node.START, null, null, 0, 0);
+                case '$':
+                    return new Node(Node.END, null, null, 0, 0);
+                case '\\':
+                    return classNode(parseEscape());
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    throw error("Dangling meta character '" + (char) c + "'");
+                default:
+                    return classNode(new int[] {c, c});
+            }
+        }
+
+        private int[] parseClass() {
+            boolean negated = position < regex.length() && regex.charAt(position) == '^';
+            if(negated) {
+                ++position;
+            }
+            int[] ranges = new int[0];
+            while(true) {
+                if(position == regex.length()) {
+                    throw error("Unclosed character class");
+                }
+                int c = regex.codePointAt(position);
+                if(c == ']') {
+                    ++position;
+                    break;
+                }
+                if(c == '[' || regex.startsWith("&&", position)) {
+                    throw error("Nested classes and intersections are not supported");
+                }
+                int[] item = parseClassChar();
+                if(item.length == 2 && item[0] == item[1] && position + 1 < regex.length() &&
+                        regex.charAt(position) == '-' && regex.charAt(position + 1) != ']') {
+                    ++position;
+                    int[] rangeEnd = parseClassChar();
+                    if(rangeEnd.length != 2 || rangeEnd[0] != rangeEnd[1] || rangeEnd[0] < item[0]) {
+                        throw error("Illegal character range");
+                    }
+                    item = new int[] {item[0], rangeEnd[0]};
+                }
+                ranges = union(ranges, item);
+            }
+            return negated ? complement(ranges) : ranges;
+        }
+
+        private int[] parseClassChar() {
+            int c = regex.codePointAt(position);
+            position += Character.charCount(c);
+            return c == '\\' ? parseEscape() : new int[] {c, c};
+        }
+
+        private int[] parseEscape() {
+            if(position == regex.length()) {
+                throw error("Unexpected end of pattern after '\\'");
+            }
+            int c = regex.codePointAt(position);
+            position += Character.charCount(c);
+            switch(c) {
+                case 'd':
+                    return DIGITS;
+                case 'D':
+                    return complement(DIGITS);
+                case 'w':
+                    return WORD_CHARS;
+                case 'W':
+                    return complement(WORD_CHARS);
+                case 's':
+                    return SPACES;
+                case 'S':
+                    return complement(SPACES);
+                case 't':
+                    return new int[] {'\t', '\t'};
+                case 'n':
+                    return new int[] {'\n', '\n'};
+                case 'r':
+                    return new int[] {'\r', '\r'};
+                case 'f':
+                    return new int[] {'\f', '\f'};
+                case 'e':
+                    return new int[] {0x1B, 0x1B};
+                case 'a':
+                    return new int[] {0x07, 0x07};
+                case 'x':
+                    if(position < regex.length() && regex.charAt(position) == '{') {
+                        int close = regex.indexOf('}', position);
+                        if(close < 0) {
+                            throw error("Unclosed hexadecimal escape");
+                        }
+                        int value = parseHex(position + 1, close);
+                        position = close + 1;
+                        return new int[] {value, value};
+                    }
+                    int value = parseHex(position, position + 2);
+                    position += 2;
+                    return new int[] {value, value};
+                case 'u': {
+                    int codeUnit = parseHex(position, position + 4);
+                    position += 4;
+                    return new int[] {codeUnit, codeUnit};
+                }
+                default:
+                    if(Character.isLetterOrDigit(c)) {
+                        throw error("Unsupported escape '\\" + new String(Character.toChars(c)) + "'");
+                    }
+                    return new int[] {c, c};
+            }
+        }
+
+        private int parseHex(int start, int end) {
+            if(start >= end || end > regex.length()) {
+                throw error("Illegal hexadecimal escape");
+            }
+            int value = 0;
+            for(int i = start; i < end; ++i) {
+                int digit = Character.digit(regex.charAt(i), 16);
+                if(digit < 0 || (value = 16 * value + digit) > MAX_CODE_POINT) {
+                    throw error("Illegal hexadecimal escape");
+                }
+            }
+            return value;
+        }
+
+        private PatternSyntaxException error(String description) {
+            return new PatternSyntaxException(description, regex, position - 1);
+        }
+
+        private static Node classNode(int[] ranges) {
+            return new Node(Node.CLASS, ranges, null, 0, 0);
+        }
+
+        /*
+         * Returns the sorted, disjoint, non-adjacent ranges covering both a and b
+         */
+        private static int[] union(int[] a, int[] b) {
+            int[] pairs = Arrays.copyOf(a, a.length + b.length);
+            System.arraycopy(b, 0, pairs, a.length, b.length);
+            long[] packed = new long[pairs.length / 2];
+            for(int i = 0; i < packed.length; ++i) {
+                packed[i] = (long) pairs[2 * i] << 32 | pairs[2 * i + 1];
+            }
+            Arrays.sort(packed);
+            int[] retVal = new int[pairs.length];
+            int size = 0;
+            for(long pair : packed) {
+                int low = (int) (pair >>> 32);
+                int high = (int) pair;
+                if(size > 0 && low <= retVal[size - 1] + 1) {
+                    retVal[size - 1] = Math.max(retVal[size - 1], high);
+                } else {
+                    retVal[size++] = low;
+                    retVal[size++] = high;
+                }
+            }
+            return Arrays.copyOf(retVal, size);
+        }
+
+        private static int[] complement(int[] ranges) {
+            int[] retVal = new int[ranges.length + 2];
+            int size = 0;
+            int next = 0;
+            for(int i = 0; i < ranges.length; i += 2) {
+                if(ranges[i] > next) {
+                    retVal[size++] = next;
+                    retVal[size++] = ranges[i] - 1;
+                }
+                next = ranges[i + 1] + 1;
+            }
+            if(next <= MAX_CODE_POINT) {
+                retVal[size++] = next;
+                retVal[size++] = MAX_CODE_POINT;
+            }
+            return Arrays.copyOf(retVal, size);
+        }
+    }
+}
@@ -0,0 +1,397 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Word-at-a-time (SWAR) scans over byte arrays: eight bytes are read as one little-endian long and tested together
+ * with the usual bit tricks, falling back to a byte at a time for the tail of the range. The longs are read through a
+ * ByteBuffer view of the array, which current JVMs compile to a single unaligned load; ranges shorter than
+ * MIN_WORD_SCAN_LENGTH skip the view and are scanned a byte at a time.
+ */
+final class ByteScanner {
+    static final int MIN_WORD_SCAN_LENGTH = 16;
+
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long HASH_SEED = 0x2545F4914F6CDD1DL;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    /* added to the low seven bits of each byte, these set the high bit of bytes from 'A' on, and of those past 'Z' */
+    private static final long FROM_UPPER_A = 0x3F3F3F3F3F3F3F3FL;
+    private static final long PAST_UPPER_Z = 0x2525252525252525L;
+
+    /* each byte value with ASCII upper-case letters mapped to lower case, and every other value unchanged */
+    static final byte[] ASCII_LOWER_CASE = new byte[256];
+
+    static {
+        for(int i = 0; i < 256; ++i) {
+            ASCII_LOWER_CASE[i] = (byte) (i >= 'A' && i <= 'Z' ? i | 0x20 : i);
+        }
+    }
+
+    private ByteScanner() {}
+
+    /**
+     * Returns true if any byte in [from, to) has its high bit set, which in valid UTF-8 means the range contains a
+     * multi-byte character
+     * @param bytes
+     * @param from
+     * @param to
+     * @return
+     */
+    static boolean hasMultiByteChars(byte[] bytes, int from, int to) {
+        int i = from;
+        if(to - from >= MIN_WORD_SCAN_LENGTH) {
+            ByteBuffer words = wordView(bytes);
+            for(int lastWord = to - 8; i <= lastWord; i += 8) {
+                if((words.getLong(i) & HIGH_BITS) != 0) {
+                    return true;
+                }
+            }
+        }
+        for(; i < to; ++i) {
+            if(bytes[i] < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the index of the first occurrence of target in [from, to) of bytes, or -1 if it does not occur
+     * @param bytes
+     * @param from
+     * @param to
+     * @param target
+     * @return
+     */
+    static int indexOf(byte[] bytes, int from, int to, byte target) {
+        int i = from;
+        if(to - from >= MIN_WORD_SCAN_LENGTH) {
+            ByteBuffer words = wordView(bytes);
+            long pattern = LOW_BITS * (0xFF & target);
+            for(int lastWord = to - 8; i <= lastWord; i += 8) {
+                // bytes equal to target become zero; the has-zero-byte test then flags the lowest such byte exactly
+                long word = words.getLong(i) ^ pattern;
+                long zeroBytes = (word - LOW_BITS) & ~word & HIGH_BITS;
+                if(zeroBytes != 0) {
+                    return i + (Long.numberOfTrailingZeros(zeroBytes) >>> 3);
+                }
+            }
+        }
+        for(; i < to; ++i) {
+            if(bytes[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if the length bytes of a starting at aFrom equal the length bytes of b starting at bFrom
+     * @param a
+     * @param aFrom
+     * @param b
+     * @param bFrom
+     * @param length
+     * @return
+     */
+    static boolean regionMatches(byte[] a, int aFrom, byte[] b, int bFrom, int length) {
+        int i = 0;
+        if(length >= MIN_WORD_SCAN_LENGTH) {
+            ByteBuffer aWords = wordView(a);
+            ByteBuffer bWords = wordView(b);
+            for(int lastWord = length - 8; i <= lastWord; i += 8) {
+                if(aWords.getLong(aFrom + i) != bWords.getLong(bFrom + i)) {
+                    return false;
+                }
+            }
+        }
+        for(; i < length; ++i) {
+            if(a[aFrom + i] != b[bFrom + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares [aFrom, aTo) of a with [bFrom, bTo) of b lexicographically as unsigned bytes, a shorter range sorting
+     * before a longer one that it prefixes; the first differing byte of two words is located from their xor
+     * @param a
+     * @param aFrom
+     * @param aTo
+     * @param b
+     * @param bFrom
+     * @param bTo
+     * @return a negative number, zero or a positive number as a's range is less than, equal to or greater than b's
+     */
+    static int compare(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo) {
+        int length = Math.min(aTo - aFrom, bTo - bFrom);
+        int i = 0;
+        if(length >= MIN_WORD_SCAN_LENGTH) {
+            ByteBuffer aWords = wordView(a);
+            ByteBuffer bWords = wordView(b);
+            for(int lastWord = length - 8; i <= lastWord; i += 8) {
+                long difference = aWords.getLong(aFrom + i) ^ bWords.getLong(bFrom + i);
+                if(difference != 0) {
+                    // little-endian, so the first differing byte holds the lowest set bit
+                    i += Long.numberOfTrailingZeros(difference) >>> 3;
+                    return (0xFF & a[aFrom + i]) - (0xFF & b[bFrom + i]);
+                }
+            }
+        }
+        for(; i < length; ++i) {
+            int difference = (0xFF & a[aFrom + i]) - (0xFF & b[bFrom + i]);
+            if(difference != 0) {
+                return difference;
+            }
+        }
+        return (aTo - aFrom) - (bTo - bFrom);
+    }
+
+    /**
+     * Returns true if the UTF-8 in [aFrom, aTo) of a equals that in [bFrom, bTo) of b when case is ignored, by the same
+     * per-character rule as String.equalsIgnoreCase. Words that are equal once their ASCII letters are folded to lower
+     * case are skipped eight bytes at a time; chars are only decoded where a word differs in some other way.
+     * @param a
+     * @param aFrom
+     * @param aTo
+     * @param b
+     * @param bFrom
+     * @param bTo
+     * @return
+     */
+    static boolean equalsIgnoreCase(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo) {
+        int i = aFrom;
+        int j = bFrom;
+        int wordsLength = Math.min(aTo - aFrom, bTo - bFrom);
+        if(wordsLength >= MIN_WORD_SCAN_LENGTH) {
+            ByteBuffer aWords = wordView(a);
+            ByteBuffer bWords = wordView(b);
+            for(int lastWord = aFrom + wordsLength - 8; i <= lastWord; i += 8, j += 8) {
+                long aWord = aWords.getLong(i);
+                long bWord = bWords.getLong(j);
+                if(aWord != bWord && toLowerCase(aWord) != toLowerCase(bWord)) {
+                    break;
+                }
+            }
+            // the bytes so far differ only in the case of ASCII letters, so both sides are at the same point within a
+            // char; back up to its first byte
+            while(i > aFrom && i < aTo && (a[i] & 0xC0) == 0x80) {
+                --i;
+                --j;
+            }
+        }
+        while(i < aTo && j < bTo) {
+            int x = a[i];
+            int y = b[j];
+            if((x | y) >= 0) {
+                if(x != y && ASCII_LOWER_CASE[x] != ASCII_LOWER_CASE[y]) {
+                    return false;
+                }
+                ++i;
+                ++j;
+            } else {
+                int xCodePoint = Strand.decodeCodePoint(a, i);
+                int yCodePoint = Strand.decodeCodePoint(b, j);
+                if(xCodePoint != yCodePoint && !codePointsEqualIgnoreCase(xCodePoint, yCodePoint)) {
+                    return false;
+                }
+                i += Strand.utf8CharSize(x);
+                j += Strand.utf8CharSize(y);
+            }
+        }
+        return i == aTo && j == bTo;
+    }
+
+    /**
+     * Same as hasMultiByteChars(byte[], int, int), but over absolute indices of a buffer in little-endian order
+     * @param words
+     * @param from
+     * @param to
+     * @return
+     */
+    static boolean hasMultiByteChars(ByteBuffer words, int from, int to) {
+        int i = from;
+        for(int lastWord = to - 8; i <= lastWord; i += 8) {
+            if((words.getLong(i) & HIGH_BITS) != 0) {
+                return true;
+            }
+        }
+        for(; i < to; ++i) {
+            if(words.get(i) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of UTF-8 continuation bytes (10xxxxxx) in [from, to) of a buffer in little-endian order; the
+     * number of chars in a range of valid UTF-8 is its length less this count
+     * @param words
+     * @param from
+     * @param to
+     * @return
+     */
+    static long countContinuationBytes(ByteBuffer words, int from, int to) {
+        long retVal = 0;
+        int i = from;
+        for(int lastWord = to - 8; i <= lastWord; i += 8) {
+            long word = words.getLong(i);
+            // a continuation byte has its high bit set and the bit below it clear
+            retVal += Long.bitCount(word & ~(word << 1) & HIGH_BITS);
+        }
+        for(; i < to; ++i) {
+            if((words.get(i) & 0xC0) == 0x80) {
+                ++retVal;
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * Same as indexOf(byte[], int, int, byte), but over absolute indices of a buffer in little-endian order
+     * @param words
+     * @param from
+     * @param to
+     * @param target
+     * @return
+     */
+    static int indexOf(ByteBuffer words, int from, int to, byte target) {
+        int i = from;
+        long pattern = LOW_BITS * (0xFF & target);
+        for(int lastWord = to - 8; i <= lastWord; i += 8) {
+            long word = words.getLong(i) ^ pattern;
+            long zeroBytes = (word - LOW_BITS) & ~word & HIGH_BITS;
+            if(zeroBytes != 0) {
+                return i + (Long.numberOfTrailingZeros(zeroBytes) >>> 3);
+            }
+        }
+        for(; i < to; ++i) {
+            if(words.get(i) == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if the length bytes of a buffer in little-endian order starting at aFrom equal the length bytes of b
+     * starting at bFrom
+     * @param a
+     * @param aFrom
+     * @param b
+     * @param bFrom
+     * @param length
+     * @return
+     */
+    static boolean regionMatches(ByteBuffer a, int aFrom, byte[] b, int bFrom, int length) {
+        int i = 0;
+        if(length >= MIN_WORD_SCAN_LENGTH) {
+            ByteBuffer bWords = wordView(b);
+            for(int lastWord = length - 8; i <= lastWord; i += 8) {
+                if(a.getLong(aFrom + i) != bWords.getLong(bFrom + i)) {
+                    return false;
+                }
+            }
+        }
+        for(; i < length; ++i) {
+            if(a.get(aFrom + i) != b[bFrom + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes [from, to) of bytes a word at a time: each word is folded into the state with a rotate, xor and multiply,
+     * and the result is put through the MurmurHash3 finalizer so that every input bit affects every output bit. A range
+     * whose length is not a multiple of eight finishes with the last eight bytes, overlapping the previous word, and
+     * ranges shorter than a word are packed into one; the length is mixed in first, so this cannot make distinct ranges
+     * collide systematically. The result differs from Strand.hashCode.
+     * @param bytes
+     * @param from
+     * @param to
+     * @return
+     */
+    static int hash(byte[] bytes, int from, int to) {
+        long h = HASH_SEED ^ (to - from);
+        if(to - from >= 8) {
+            ByteBuffer words = wordView(bytes);
+            int i = from;
+            for(int lastWord = to - 8; i <= lastWord; i += 8) {
+                h = (Long.rotateLeft(h, 26) ^ words.getLong(i)) * HASH_MULTIPLIER;
+            }
+            if(i < to) {
+                h = (Long.rotateLeft(h, 26) ^ words.getLong(to - 8)) * HASH_MULTIPLIER;
+            }
+        } else {
+            long word = 0;
+            for(int i = to - 1; i >= from; --i) {
+                word = (word << 8) | (0xFF & bytes[i]);
+            }
+            h = (Long.rotateLeft(h, 26) ^ word) * HASH_MULTIPLIER;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * Returns word with each byte that is an ASCII upper-case letter changed to lower case
+     * @param word
+     * @return
+     */
+    static long toLowerCase(long word) {
+        long heptets = word & ~HIGH_BITS;
+        long upperCase = ((heptets + FROM_UPPER_A) ^ (heptets + PAST_UPPER_Z)) & ~word & HIGH_BITS;
+        return word | (upperCase >>> 2);
+    }
+
+    /*
+     * The comparison String.regionMatches makes of two chars that differ when case is ignored
+     */
+    private static boolean codePointsEqualIgnoreCase(int x, int y) {
+        int xUpper = Character.toUpperCase(x);
+        int yUpper = Character.toUpperCase(y);
+        return xUpper == yUpper || Character.toLowerCase(xUpper) == Character.toLowerCase(yUpper);
+    }
+
+    /**
+     * Returns a little-endian view of bytes for reading whole words; the first byte of a word is its least significant
+     * @param bytes
+     * @return
+     */
+    static ByteBuffer wordView(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns a little-endian view sharing the contents of buffer, leaving buffer's own position, limit and order as
+     * they are
+     * @param buffer
+     * @return
+     */
+    static ByteBuffer wordView(ByteBuffer buffer) {
+        return buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.adbrowning.util;
+
+/**
+ * A compiled search for a single byte pattern. Implementations do all of their setup work when they are constructed and
+ * hold no per-search state, so an instance can be created once per pattern and shared across threads and texts.
+ * ByteSearcherFactory picks an implementation suited to a given pattern.
+ */
+public interface ByteSearcher {
+
+    /**
+     * Returns the raw index of the first occurrence of the pattern that lies entirely within [start, end) of text, or
+     * -1 if there is none
+     * @param text
+     * @param start the first index of text to search
+     * @param end one past the last index of text to search
+     * @return
+     */
+    int find(byte[] text, int start, int end);
+
+    /**
+     * Reports every occurrence of the pattern (including overlapping occurrences) within [start, end) of text to
+     * listener, in increasing order, until the text is exhausted or the listener asks to stop
+     * @param text
+     * @param start the first index of text to search
+     * @param end one past the last index of text to search
+     * @param listener
+     * @return the number of matches reported to listener
+     */
+    int findAll(byte[] text, int start, int end, MatchListener listener);
+
+    /**
+     * Returns the number of bytes in the pattern
+     * @return
+     */
+    int getPatternLength();
+}
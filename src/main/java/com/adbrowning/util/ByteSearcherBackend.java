@@ -0,0 +1,32 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+/**
+ * Creates searchers from an optional backend built against a newer JDK than the rest of the library (see
+ * VectorSearcherBackend in src/vector/java). ByteSearcherFactory loads an implementation reflectively when one is
+ * present and usable, and uses the scalar searchers otherwise.
+ */
+interface ByteSearcherBackend {
+    /**
+     * Returns a searcher for pattern, or null to leave the pattern to the scalar searchers
+     * @param pattern
+     * @param copy true to copy pattern; false to use it directly
+     * @return
+     */
+    ByteSearcher create(byte[] pattern, boolean copy);
+}
@@ -0,0 +1,142 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.adbrowning.util;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * Chooses the ByteSearcher implementation best suited to a pattern:
+ * <ul>
+ *     <li>a single byte is found with a plain scan (SingleByteSearcher)</li>
+ *     <li>patterns of up to SHORT_PATTERN_MAX_LENGTH bytes scan for their first byte and compare in place
+ *     (ShortPatternSearcher)</li>
+ *     <li>longer patterns use Boyer-Moore (BMSearcher), whose skips grow with the pattern length, unless the pattern
+ *     draws on fewer than MIN_DISTINCT_BYTES_FOR_BM distinct byte values; such patterns (e.g. runs of the same byte)
+ *     make the bad character rule nearly useless, so they go to Knuth-Morris-Pratt (KMPSearcher) instead</li>
+ * </ul>
+ * When the optional Vector API backend (src/vector/java, built on JDK 17 and later) is on the class path and the JVM
+ * was started with --add-modules jdk.incubator.vector, it takes precedence for every pattern it accepts, scanning a
+ * vector's width of bytes per step; the choices above are the fallback, and are always available through createScalar.
+ * Setting the system property com.adbrowning.util.vector to false disables the backend.
+ * <p/>
+ * The result should be kept and reused; all of the implementations are immutable.
+ */
+public class ByteSearcherFactory {
+    public static final int SHORT_PATTERN_MAX_LENGTH = 8;
+    public static final int MIN_DISTINCT_BYTES_FOR_BM = 4;
+    public static final String VECTOR_PROPERTY = "com.adbrowning.util.vector";
+
+    private static final String VECTOR_BACKEND_CLASS = "com.adbrowning.util.VectorSearcherBackend";
+    /* null unless the vector backend is present, enabled and works on this JVM */
+    private static final ByteSearcherBackend VECTOR_BACKEND = loadVectorBackend();
+
+    private ByteSearcherFactory() {}
+
+    /**
+     * Compiles a searcher for a copy of pattern
+     * @param pattern
+     * @return
+     */
+    public static ByteSearcher create(byte[] pattern) {
+        return create(pattern, true);
+    }
+
+    /**
+     * Compiles a searcher for pattern
+     * @param pattern
+     * @param copy true to copy pattern, freeing it up to be altered at will; false to use it directly
+     * @return
+     */
+    public static ByteSearcher create(byte[] pattern, boolean copy) {
+        if(VECTOR_BACKEND != null && pattern.length > 0) {
+            ByteSearcher retVal = VECTOR_BACKEND.create(pattern, copy);
+            if(retVal != null) {
+                return retVal;
+            }
+        }
+        return createScalar(pattern, copy);
+    }
+
+    /**
+     * Compiles a searcher for pattern from the scalar implementations only, ignoring any vector backend
+     * @param pattern
+     * @param copy true to copy pattern, freeing it up to be altered at will; false to use it directly
+     * @return
+     */
+    public static ByteSearcher createScalar(byte[] pattern, boolean copy) {
+        if(pattern.length == 0) {
+            throw new IllegalArgumentException("pattern must contain at least one byte");
+        }
+        if(pattern.length == 1) {
+            return new SingleByteSearcher(pattern[0]);
+        }
+        if(pattern.length <= SHORT_PATTERN_MAX_LENGTH) {
+            return new ShortPatternSearcher(pattern, copy);
+        }
+        if(countDistinctBytes(pattern, MIN_DISTINCT_BYTES_FOR_BM) < MIN_DISTINCT_BYTES_FOR_BM) {
+            return new KMPSearcher(pattern, copy);
+        }
+        return new BMSearcher(pattern, copy);
+    }
+
+    /**
+     * Returns true if create uses the vector backend
+     * @return
+     */
+    public static boolean isVectorized() {
+        return VECTOR_BACKEND != null;
+    }
+
+    /*
+     * Counts the distinct byte values in pattern, stopping once limit have been seen
+     */
+    static int countDistinctBytes(byte[] pattern, int limit) {
+        boolean[] seen = new boolean[256];
+        int numDistinct = 0;
+        for(int i = 0; i < pattern.length && numDistinct < limit; ++i) {
+            int value = 0xFF & pattern[i];
+            if(!seen[value]) {
+                seen[value] = true;
+                ++numDistinct;
+            }
+        }
+        return numDistinct;
+    }
+
+    /*
+     * Loads the vector backend if it is enabled and present, checking that it can actually search: the class is
+     * missing on older JDKs' class paths, fails to link without the incubator module, and may be unsupported on the
+     * platform, all of which leave the scalar searchers in charge
+     */
+    private static ByteSearcherBackend loadVectorBackend() {
+        if(!Boolean.parseBoolean(System.getProperty(VECTOR_PROPERTY, "true"))) {
+            return null;
+        }
+        try {
+            Constructor<?> constructor = Class.forName(VECTOR_BACKEND_CLASS).getDeclaredConstructor();
+            ByteSearcherBackend backend = (ByteSearcherBackend) constructor.newInstance();
+            byte[] probe = {'a', 'b'};
+            if(backend.create(probe, true).find(new byte[]{'x', 'a', 'b'}, 0, 3) != 1) {
+                return null;
+            }
+            return backend;
+        } catch(ReflectiveOperationException | LinkageError | RuntimeException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,550 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.adbrowning.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Immutable dictionary from UTF-8 byte sequences to ints, held as a path-compressed trie packed into a few flat arrays,
+ * for exact lookup, longest-prefix matching (e.g. routing URL paths or metric names) and enumerating the keys with a
+ * given prefix, all directly on a Strand or byte range with nothing allocated.
+ * <p/>
+ * Every chain of nodes with one child and no key is collapsed into a single node whose label is the whole run of bytes,
+ * so the trie has fewer nodes than keys plus branch points. Nodes are numbered breadth-first, which makes the children
+ * of each node a contiguous run of node numbers, sorted by their first byte, and lets the labels be stored back to
+ * back in node order: node k's children are the nodes from firstChild[k] to firstChild[k+1], and its label is
+ * labels[labelStart[k]] to labels[labelStart[k+1]]. A node costs 17 bytes plus its label, with nothing per edge.
+ * <p/>
+ * Keys are numbered by their rank in the order of Strand.compareTo, so the keys sharing a prefix form a contiguous
+ * range of entries. The serialized form written by writeTo is the packed arrays themselves, and readFrom loads them
+ * with bulk copies. Instances are safe to share between threads.
+ */
+public class ByteTrie {
+    private static final int MAGIC = 0x42545249;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 6 * 4;
+    /* nodes with more children than this are searched with a binary search rather than a linear scan */
+    private static final int LINEAR_SEARCH_MAX_CHILDREN = 16;
+
+    private final int missingValue;
+    private final int numNodes;
+    /* per node, plus one: the first child of each node, and the start of each node's label */
+    private final int[] firstChild;
+    private final int[] labelStart;
+    private final byte[] labels;
+    /* per node: the first byte of its label, so that the children of a node can be scanned in one contiguous run */
+    private final byte[] branchBytes;
+    /* per node: the entry whose key ends at the node, or -1, and the node's parent (-1 for the root) */
+    private final int[] nodeEntries;
+    private final int[] parents;
+    /* per entry: the node at which its key ends, the key's length in bytes, and its value */
+    private final int[] entryNodes;
+    private final int[] keyLengths;
+    private final int[] values;
+
+    /**
+     * Builds a trie of the entries of map; the map's missingValue is returned by get for absent keys
+     * @param map
+     */
+    public ByteTrie(StrandIntHashMap map) {
+        missingValue = map.getMissingValue();
+        Strand[] keys = new Strand[map.size()];
+        int numKeys = 0;
+        for(StrandIntHashMap.Cursor cursor = map.cursor(); cursor.advance();) {
+            keys[numKeys++] = cursor.key();
+        }
+        StrandSorter.sort(keys);
+        values = new int[keys.length];
+        for(int i = 0; i < keys.length; ++i) {
+            values[i] = map.get(keys[i]);
+        }
+
+        // nodes are processed in the order they are numbered; each covers the keys in [from, to), which share their
+        // first depth bytes
+        int[] children = new int[16];
+        int[] labelStarts = new int[16];
+        int[] entries = new int[16];
+        int[] rangeFroms = new int[16];
+        int[] rangeTos = new int[16];
+        int[] depths = new int[16];
+        byte[] labelBytes = new byte[64];
+        int labelsLength = 0;
+        rangeTos[0] = keys.length;
+        int nodeCount = 1;
+        for(int node = 0; node < nodeCount; ++node) {
+            int from = rangeFroms[node];
+            int to = rangeTos[node];
+            int depth = depths[node];
+            entries[node] = -1;
+            if(from < to && keys[from].getStrandLength() == depth) {
+                entries[node] = from++;
+            }
+            children[node] = nodeCount;
+            while(from < to) {
+                // keys are sorted, so those continuing with the same byte are adjacent, and what the first and last of
+                // them have in common is common to all
+                Strand first = keys[from];
+                byte branch = first.contents[first.getStartingIndex() + depth];
+                int groupEnd = from + 1;
+                while(groupEnd < to && keys[groupEnd].contents[keys[groupEnd].getStartingIndex() + depth] == branch) {
+                    ++groupEnd;
+                }
+                int labelLength = commonPrefixLength(first, keys[groupEnd - 1], depth);
+                if(nodeCount == rangeFroms.length) {
+                    int capacity = nodeCount * 2;
+                    children = Arrays.copyOf(children, capacity);
+                    labelStarts = Arrays.copyOf(labelStarts, capacity);
+                    entries = Arrays.copyOf(entries, capacity);
+                    rangeFroms = Arrays.copyOf(rangeFroms, capacity);
+                    rangeTos = Arrays.copyOf(rangeTos, capacity);
+                    depths = Arrays.copyOf(depths, capacity);
+                }
+                if(labelsLength + labelLength > labelBytes.length) {
+                    labelBytes = Arrays.copyOf(labelBytes, Math.max(labelBytes.length * 2, labelsLength + labelLength));
+                }
+                System.arraycopy(first.contents, first.getStartingIndex() + depth, labelBytes, labelsLength, labelLength);
+                labelStarts[nodeCount] = labelsLength;
+                labelsLength += labelLength;
+                rangeFroms[nodeCount] = from;
+                rangeTos[nodeCount] = groupEnd;
+                depths[nodeCount] = depth + labelLength;
+                ++nodeCount;
+                from = groupEnd;
+            }
+        }
+        numNodes = nodeCount;
+        firstChild = Arrays.copyOf(children, nodeCount + 1);
+        firstChild[nodeCount] = nodeCount;
+        labelStart = Arrays.copyOf(labelStarts, nodeCount + 1);
+        labelStart[nodeCount] = labelsLength;
+        labels = Arrays.copyOf(labelBytes, labelsLength);
+        nodeEntries = Arrays.copyOf(entries, nodeCount);
+        branchBytes = new byte[nodeCount];
+        parents = new int[nodeCount];
+        entryNodes = new int[keys.length];
+        keyLengths = new int[keys.length];
+        linkNodes();
+    }
+
+    private ByteTrie(int missingValue, int[] firstChild, int[] labelStart, byte[] labels, int[] nodeEntries,
+            int[] values) {
+        this.missingValue = missingValue;
+        this.numNodes = nodeEntries.length;
+        this.firstChild = firstChild;
+        this.labelStart = labelStart;
+        this.labels = labels;
+        this.nodeEntries = nodeEntries;
+        this.values = values;
+        branchBytes = new byte[numNodes];
+        parents = new int[numNodes];
+        entryNodes = new int[values.length];
+        keyLengths = new int[values.length];
+        linkNodes();
+    }
+
+    /**
+     * Returns the number of keys
+     * @return
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Returns the number of nodes in the packed trie, including the root
+     * @return
+     */
+    public int getNodeCount() {
+        return numNodes;
+    }
+
+    public int getMissingValue() {
+        return missingValue;
+    }
+
+    public int get(Strand key) {
+        return get(key.contents, key.getStartingIndex(), key.getStrandEnd());
+    }
+
+    /**
+     * Returns the value for the key with the bytes in [start, end) of bytes, or missingValue if there is none
+     * @param bytes
+     * @param start
+     * @param end
+     * @return
+     */
+    public int get(byte[] bytes, int start, int end) {
+        int entry = indexOf(bytes, start, end);
+        return entry < 0 ? missingValue : values[entry];
+    }
+
+    public int indexOf(Strand key) {
+        return indexOf(key.contents, key.getStartingIndex(), key.getStrandEnd());
+    }
+
+    /**
+     * Returns the entry number of the key with the bytes in [start, end) of bytes, or -1 if there is none
+     * @param bytes
+     * @param start
+     * @param end
+     * @return
+     */
+    public int indexOf(byte[] bytes, int start, int end) {
+        int node = 0;
+        for(int i = start; i < end;) {
+            node = child(node, bytes[i]);
+            if(node < 0) {
+                return -1;
+            }
+            int labelLength = labelStart[node + 1] - labelStart[node];
+            if(labelLength > end - i || !ByteScanner.regionMatches(bytes, i, labels, labelStart[node], labelLength)) {
+                return -1;
+            }
+            i += labelLength;
+        }
+        return nodeEntries[node];
+    }
+
+    public int longestPrefixOf(Strand strand) {
+        return longestPrefixOf(strand.contents, strand.getStartingIndex(), strand.getStrandEnd());
+    }
+
+    /**
+     * Returns the entry number of the longest key that is a prefix of the bytes in [start, end) of bytes, or -1 if no
+     * key is; getKeyLength gives the length of the match and getValue its value
+     * @param bytes
+     * @param start
+     * @param end
+     * @return
+     */
+    public int longestPrefixOf(byte[] bytes, int start, int end) {
+        int node = 0;
+        int retVal = nodeEntries[0];
+        for(int i = start; i < end;) {
+            node = child(node, bytes[i]);
+            if(node < 0) {
+                break;
+            }
+            int labelLength = labelStart[node + 1] - labelStart[node];
+            if(labelLength > end - i || !ByteScanner.regionMatches(bytes, i, labels, labelStart[node], labelLength)) {
+                break;
+            }
+            i += labelLength;
+            if(nodeEntries[node] >= 0) {
+                retVal = nodeEntries[node];
+            }
+        }
+        return retVal;
+    }
+
+    public int findWithPrefix(Strand prefix, MatchListener listener) {
+        return findWithPrefix(prefix.contents, prefix.getStartingIndex(), prefix.getStrandEnd(), listener);
+    }
+
+    /**
+     * Reports the entry number of every key starting with the bytes in [start, end) of bytes to listener, in key order,
+     * until there are no more or the listener asks to stop
+     * @param bytes
+     * @param start
+     * @param end
+     * @param listener
+     * @return the number of entries reported to listener
+     */
+    public int findWithPrefix(byte[] bytes, int start, int end, MatchListener listener) {
+        int node = 0;
+        for(int i = start; i < end;) {
+            node = child(node, bytes[i]);
+            if(node < 0) {
+                return 0;
+            }
+            // a prefix may end part way through a label
+            int labelLength = Math.min(labelStart[node + 1] - labelStart[node], end - i);
+            if(!ByteScanner.regionMatches(bytes, i, labels, labelStart[node], labelLength)) {
+                return 0;
+            }
+            i += labelLength;
+        }
+        if(numNodes == 1 && nodeEntries[0] < 0) {
+            return 0;
+        }
+        // the keys below a node are a contiguous range of entries: its leftmost and rightmost descendants bound it
+        int first = node;
+        while(nodeEntries[first] < 0) {
+            first = firstChild[first];
+        }
+        int last = node;
+        while(firstChild[last + 1] > firstChild[last]) {
+            last = firstChild[last + 1] - 1;
+        }
+        int numReported = 0;
+        for(int entry = nodeEntries[first]; entry <= nodeEntries[last];) {
+            ++numReported;
+            if(!listener.onMatch(entry++)) {
+                break;
+            }
+        }
+        return numReported;
+    }
+
+    /**
+     * Returns the value of the entry numbered entry
+     * @param entry
+     * @return
+     */
+    public int getValue(int entry) {
+        return values[entry];
+    }
+
+    /**
+     * Returns the length in bytes of the key of the entry numbered entry
+     * @param entry
+     * @return
+     */
+    public int getKeyLength(int entry) {
+        return keyLengths[entry];
+    }
+
+    /**
+     * Returns a new Strand with the bytes of the key of the entry numbered entry, assembled from the labels on its path
+     * @param entry
+     * @return
+     */
+    public Strand getKey(int entry) {
+        byte[] key = new byte[keyLengths[entry]];
+        int end = key.length;
+        for(int node = entryNodes[entry]; node > 0; node = parents[node]) {
+            int labelLength = labelStart[node + 1] - labelStart[node];
+            end -= labelLength;
+            System.arraycopy(labels, labelStart[node], key, end, labelLength);
+        }
+        return new Strand(key);
+    }
+
+    /**
+     * Returns the number of bytes writeTo writes
+     * @return
+     */
+    public int getSerializedLength() {
+        return HEADER_LENGTH + 4 * (2 * (numNodes + 1) + numNodes + values.length) + labels.length;
+    }
+
+    /**
+     * Writes the serialized trie to out
+     * @param out
+     * @throws IOException
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        writeTo(Channels.newChannel(out));
+    }
+
+    /**
+     * Writes the serialized trie to channel, looping until all of it is written
+     * @param channel
+     * @throws IOException
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(getSerializedLength());
+        writeTo(buffer);
+        buffer.flip();
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Puts the serialized trie, getSerializedLength bytes in big-endian order, into buffer at its position, advancing
+     * the position
+     * @param buffer
+     * @throws java.nio.BufferOverflowException if buffer has too little room remaining
+     */
+    public void writeTo(ByteBuffer buffer) {
+        ByteBuffer target = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        target.putInt(MAGIC).putInt(VERSION).putInt(numNodes).putInt(values.length).putInt(labels.length)
+                .putInt(missingValue);
+        target.asIntBuffer().put(firstChild).put(labelStart).put(nodeEntries).put(values);
+        target.position(target.position() + 4 * (2 * (numNodes + 1) + numNodes + values.length));
+        target.put(labels);
+        buffer.position(target.position());
+    }
+
+    /**
+     * Reads a trie written by writeTo from in, reading no further than its end
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static ByteTrie readFrom(InputStream in) throws IOException {
+        return readFrom(Channels.newChannel(in));
+    }
+
+    /**
+     * Reads a trie written by writeTo from channel, reading no further than its end
+     * @param channel
+     * @return
+     * @throws IOException if the channel fails, ends early, or does not hold a serialized trie
+     */
+    public static ByteTrie readFrom(ReadableByteChannel channel) throws IOException {
+        ByteBuffer header = readFully(channel, ByteBuffer.allocate(HEADER_LENGTH));
+        header.flip();
+        ByteBuffer buffer = ByteBuffer.allocate(checkHeader(header));
+        header.rewind();
+        buffer.put(header);
+        readFully(channel, buffer).flip();
+        return readFrom(buffer);
+    }
+
+    /**
+     * Reads a trie written by writeTo from buffer, which may be direct or memory-mapped, starting at its position and
+     * advancing the position past it; the arrays are copied out in bulk
+     * @param buffer
+     * @return
+     * @throws IllegalArgumentException if buffer does not hold a serialized trie
+     */
+    public static ByteTrie readFrom(ByteBuffer buffer) {
+        ByteBuffer source = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int headerStart = source.position();
+        int serializedLength;
+        try {
+            serializedLength = checkHeader(source);
+        } catch(IOException ex) {
+            throw new IllegalArgumentException(ex.getMessage());
+        }
+        if(source.remaining() < serializedLength - HEADER_LENGTH) {
+            throw new IllegalArgumentException("The buffer holds " + (source.remaining() + HEADER_LENGTH) +
+                    " bytes of a serialized ByteTrie of " + serializedLength);
+        }
+        int nodeCount = source.getInt(headerStart + 2 * 4);
+        int numEntries = source.getInt(headerStart + 3 * 4);
+        int labelsLength = source.getInt(headerStart + 4 * 4);
+        int missingValue = source.getInt(headerStart + 5 * 4);
+        int[] firstChild = new int[nodeCount + 1];
+        int[] labelStart = new int[nodeCount + 1];
+        int[] nodeEntries = new int[nodeCount];
+        int[] values = new int[numEntries];
+        source.asIntBuffer().get(firstChild).get(labelStart).get(nodeEntries).get(values);
+        source.position(source.position() + 4 * (2 * (nodeCount + 1) + nodeCount + numEntries));
+        byte[] labels = new byte[labelsLength];
+        source.get(labels);
+        buffer.position(source.position());
+        return new ByteTrie(missingValue, firstChild, labelStart, labels, nodeEntries, values);
+    }
+
+    /*
+     * Returns the child of node whose label starts with b, or -1 if there is none
+     */
+    private int child(int node, byte b) {
+        int low = firstChild[node];
+        int high = firstChild[node + 1] - 1;
+        if(high - low < LINEAR_SEARCH_MAX_CHILDREN) {
+            for(int child = low; child <= high; ++child) {
+                if(branchBytes[child] == b) {
+                    return child;
+                }
+            }
+            return -1;
+        }
+        int target = 0xFF & b;
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = 0xFF & branchBytes[middle];
+            if(value < target) {
+                low = middle + 1;
+            } else if(value > target) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Fills in branchBytes, parents, entryNodes and keyLengths from the packed arrays; parents are numbered before their children,
+     * so one pass in node order suffices
+     */
+    private void linkNodes() {
+        int[] depths = new int[numNodes];
+        parents[0] = -1;
+        for(int node = 0; node < numNodes; ++node) {
+            for(int child = firstChild[node]; child < firstChild[node + 1]; ++child) {
+                branchBytes[child] = labels[labelStart[child]];
+                parents[child] = node;
+                depths[child] = depths[node] + labelStart[child + 1] - labelStart[child];
+            }
+            int entry = nodeEntries[node];
+            if(entry >= 0) {
+                entryNodes[entry] = node;
+                keyLengths[entry] = depths[node];
+            }
+        }
+    }
+
+    /*
+     * Returns the number of bytes a and b have in common after their first depth bytes
+     */
+    private static int commonPrefixLength(Strand a, Strand b, int depth) {
+        int aStart = a.getStartingIndex() + depth;
+        int bStart = b.getStartingIndex() + depth;
+        int length = Math.min(a.getStrandEnd() - aStart, b.getStrandEnd() - bStart);
+        int i = 0;
+        while(i < length && a.contents[aStart + i] == b.contents[bStart + i]) {
+            ++i;
+        }
+        return i;
+    }
+
+    /*
+     * Validates the header at the position of buffer, advancing past it, and returns the serialized length it gives
+     */
+    private static int checkHeader(ByteBuffer buffer) throws IOException {
+        if(buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a serialized ByteTrie");
+        }
+        int version = buffer.getInt();
+        if(version != VERSION) {
+            throw new IOException("Unsupported ByteTrie version " + version);
+        }
+        long nodeCount = buffer.getInt();
+        long numEntries = buffer.getInt();
+        long labelsLength = buffer.getInt();
+        buffer.getInt();
+        long length = HEADER_LENGTH + 4 * (2 * (nodeCount + 1) + nodeCount + numEntries) + labelsLength;
+        if(nodeCount < 1 || numEntries < 0 || labelsLength < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt ByteTrie header");
+        }
+        return (int) length;
+    }
+
+    private static ByteBuffer readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer) < 0) {
+                throw new EOFException("The channel ended within a serialized ByteTrie");
+            }
+        }
+        return buffer;
+    }
+}
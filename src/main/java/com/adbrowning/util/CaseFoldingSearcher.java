@@ -0,0 +1,133 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.adbrowning.util;
+
+/**
+ * Knuth-Morris-Pratt search that ignores the case of ASCII letters: the pattern is folded to lower case once, when the
+ * searcher is compiled, and each text byte is folded through a 256-entry table as it is compared, so nothing is
+ * allocated or decoded during a search. Bytes of multi-byte UTF-8 characters are matched exactly; since none of them is
+ * an ASCII byte, a match in valid UTF-8 always starts and ends on char boundaries, but letters beyond ASCII only match
+ * in the case the pattern gives them. Strand.equalsIgnoreCase and regionMatches fold those as String does.
+ * <p/>
+ * The prefix function is KMPSearcher's, and searches count towards its StrandMetrics counters, but this is not a
+ * KMPSearcher: anything built on one (such as KMPStreamMatcher) would compare the text unfolded.
+ * <p/>
+ * Like the other searchers, instances are immutable and may be shared between threads.
+ */
+public class CaseFoldingSearcher implements ByteSearcher {
+    private static final byte[] FOLD = ByteScanner.ASCII_LOWER_CASE;
+
+    private final byte[] pattern;
+    private final int[] prefixFunction;
+
+    /**
+     * @param pattern the UTF-8 bytes to search for, in any case; the array is not retained
+     */
+    public CaseFoldingSearcher(byte[] pattern) {
+        this.pattern = fold(pattern);
+        prefixFunction = KMPSearcher.calculatePrefixFunction(this.pattern);
+    }
+
+    @Override
+    public int find(byte[] text, int start, int end) {
+        int retVal = -1;
+        int q = 0;
+        int numShifts = 0;
+        byte first = pattern[0];
+        int i = start;
+        search:
+        for(; i < end; ++i) {
+            byte b = FOLD[0xFF & text[i]];
+            if(q == 0) {
+                // nothing is in progress, so skip straight to the next possible start
+                while(b != first) {
+                    if(++i == end) {
+                        break search;
+                    }
+                    b = FOLD[0xFF & text[i]];
+                }
+            }
+            while(q > 0 && pattern[q] != b) {
+                q = prefixFunction[q-1];
+                ++numShifts;
+            }
+            if(pattern[q] == b) {
+                ++q;
+            }
+            if(q == pattern.length) {
+                retVal = (i - pattern.length) + 1;
+                ++i;
+                break;
+            }
+        }
+        if(StrandMetrics.ENABLED) {
+            KMPSearcher.recordScan(i - start, numShifts);
+        }
+        return retVal;
+    }
+
+    @Override
+    public int findAll(byte[] text, int start, int end, MatchListener listener) {
+        int numMatches = 0;
+        int q = 0;
+        int numShifts = 0;
+        int i = start;
+        for(; i < end; ++i) {
+            byte b = FOLD[0xFF & text[i]];
+            while(q > 0 && pattern[q] != b) {
+                q = prefixFunction[q-1];
+                ++numShifts;
+            }
+            if(pattern[q] == b) {
+                ++q;
+            }
+            if(q == pattern.length) {
+                ++numMatches;
+                if(!listener.onMatch((i - pattern.length) + 1)) {
+                    ++i;
+                    break;
+                }
+                q = prefixFunction[q-1];
+                ++numShifts;
+            }
+        }
+        if(StrandMetrics.ENABLED) {
+            KMPSearcher.recordScan(i - start, numShifts);
+        }
+        return numMatches;
+    }
+
+    @Override
+    public int getPatternLength() {
+        return pattern.length;
+    }
+
+    /*
+     * Returns a copy of pattern with its ASCII letters in lower case
+     */
+    private static byte[] fold(byte[] pattern) {
+        if(pattern.length == 0) {
+            throw new IllegalArgumentException("pattern must contain at least one byte");
+        }
+        byte[] retVal = new byte[pattern.length];
+        for(int i = 0; i < pattern.length; ++i) {
+            retVal[i] = FOLD[0xFF & pattern[i]];
+        }
+        return retVal;
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.util.Arrays;
+
+/**
+ * Parses delimited text such as CSV or TSV into fields, honoring quotes: a field that begins with the quote byte runs
+ * to the matching closing quote, so it may contain delimiters and newlines, and a doubled quote within it stands for a
+ * single quote. If an escape byte is configured, the byte following it is taken literally, in or out of quotes. Bytes
+ * between a closing quote and the next delimiter are kept as part of the field.
+ * <p/>
+ * Fields are reported as byte ranges of the input, so parsing copies nothing; only a field that actually contains a
+ * doubled quote or an escape is unescaped, into a scratch buffer owned by the parser. getFieldBytes, getFieldStart and
+ * getFieldEnd give each field without allocating; field creates a Substrand over it. The per-field arrays and the
+ * scratch buffer are reused from record to record, so everything returned is only valid until the next record is
+ * parsed.
+ * <p/>
+ * parse takes a single record; reset and nextRecord walk a buffer of many, with records ending at a newline that is not
+ * within quotes (a carriage return before the newline is dropped). A DelimitedParser is not thread-safe.
+ */
+public class DelimitedParser {
+    /** Passed as the quote or escape byte to disable quoting or escaping */
+    public static final int NONE = -1;
+
+    /* stored in place of a disabled quote or escape; matches no byte */
+    private static final int DISABLED = 0x100;
+    private static final byte NEWLINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private final byte delimiter;
+    private final int quote;
+    private final int escape;
+
+    private byte[] bytes;
+    private int position;
+    private int end;
+    private int recordStart;
+    private int recordEnd;
+    /* whether the last record parsed ended at a newline outside quotes, rather than at the end of the input */
+    private boolean recordTerminated;
+
+    private int numFields;
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    private boolean[] quoted = new boolean[16];
+    /* whether each field's bounds are within scratch rather than the input */
+    private boolean[] unescaped = new boolean[16];
+    private byte[] scratch = new byte[64];
+    private int scratchLength;
+
+    /**
+     * Creates a parser with '"' as the quote and no escape byte, as in RFC 4180
+     * @param delimiter
+     */
+    public DelimitedParser(byte delimiter) {
+        this(delimiter, '"', NONE);
+    }
+
+    /**
+     * @param delimiter the byte separating fields
+     * @param quote the byte quoting fields, or NONE
+     * @param escape the byte escaping the byte after it, or NONE
+     */
+    public DelimitedParser(byte delimiter, int quote, int escape) {
+        if(quote < NONE || quote > 0xFF || escape < NONE || escape > 0xFF) {
+            throw new IllegalArgumentException("quote (" + quote + ") and escape (" + escape + ") must be unsigned " +
+                    "byte values or NONE");
+        }
+        this.delimiter = delimiter;
+        this.quote = quote == NONE ? DISABLED : (byte) quote;
+        this.escape = escape == NONE ? DISABLED : (byte) escape;
+        if(delimiter == NEWLINE || delimiter == this.quote || delimiter == this.escape) {
+            throw new IllegalArgumentException("The delimiter must differ from the newline, quote and escape bytes");
+        }
+    }
+
+    /**
+     * Parses the fields of a single record; newlines, like any other byte, are part of the field they fall in
+     * @param record
+     * @return the number of fields
+     */
+    public int parse(Strand record) {
+        return parse(record.contents, record.getStartingIndex(), record.getStrandEnd());
+    }
+
+    /**
+     * Parses the fields of the single record in [start, end) of bytes; newlines, like any other byte, are part of the
+     * field they fall in
+     * @param bytes
+     * @param start
+     * @param end
+     * @return the number of fields
+     */
+    public int parse(byte[] bytes, int start, int end) {
+        reset(bytes, start, end);
+        recordEnd = parseFields(start, end, false);
+        position = end;
+        return numFields;
+    }
+
+    /**
+     * Starts walking the records in strand with nextRecord
+     * @param strand
+     */
+    public void reset(Strand strand) {
+        reset(strand.contents, strand.getStartingIndex(), strand.getStrandEnd());
+    }
+
+    /**
+     * Starts walking the records in [start, end) of bytes with nextRecord
+     * @param bytes
+     * @param start
+     * @param end
+     */
+    public void reset(byte[] bytes, int start, int end) {
+        this.bytes = bytes;
+        this.position = start;
+        this.end = end;
+        numFields = 0;
+        recordStart = recordEnd = start;
+    }
+
+    /**
+     * Parses the next record, returning false if there are no more; as for the lines of a file, there is no empty
+     * record after a final newline
+     * @return
+     */
+    public boolean nextRecord() {
+        if(bytes == null || position >= end) {
+            numFields = 0;
+            return false;
+        }
+        recordStart = position;
+        int next = parseFields(position, end, true);
+        recordEnd = recordTerminated ? next - 1 : next;
+        position = next;
+        return true;
+    }
+
+    /**
+     * Returns the number of fields in the current record
+     * @return
+     */
+    public int getFieldCount() {
+        return numFields;
+    }
+
+    /**
+     * Returns field index of the current record. Fields that needed no unescaping are views of the input; others are
+     * copied out of the scratch buffer.
+     * @param index
+     * @return
+     */
+    public Strand field(int index) {
+        checkIndex(index);
+        int start = fieldStarts[index];
+        int end = fieldEnds[index];
+        if(unescaped[index]) {
+            byte[] copy = Arrays.copyOfRange(scratch, start, end);
+            return new Substrand(copy, 0, copy.length, ByteScanner.hasMultiByteChars(copy, 0, copy.length));
+        }
+        return new Substrand(bytes, start, end, ByteScanner.hasMultiByteChars(bytes, start, end));
+    }
+
+    /**
+     * Returns the array holding field index: the input, or the scratch buffer if the field had to be unescaped
+     * @param index
+     * @return
+     */
+    public byte[] getFieldBytes(int index) {
+        checkIndex(index);
+        return unescaped[index] ? scratch : bytes;
+    }
+
+    /**
+     * Returns the index within getFieldBytes of the first byte of field index
+     * @param index
+     * @return
+     */
+    public int getFieldStart(int index) {
+        checkIndex(index);
+        return fieldStarts[index];
+    }
+
+    /**
+     * Returns the index within getFieldBytes one past the last byte of field index
+     * @param index
+     * @return
+     */
+    public int getFieldEnd(int index) {
+        checkIndex(index);
+        return fieldEnds[index];
+    }
+
+    /**
+     * Returns true if field index was quoted
+     * @param index
+     * @return
+     */
+    public boolean isQuoted(int index) {
+        checkIndex(index);
+        return quoted[index];
+    }
+
+    /**
+     * Returns the index within the input of the first byte of the current record
+     * @return
+     */
+    public int getRecordStart() {
+        return recordStart;
+    }
+
+    /**
+     * Returns the index within the input one past the last byte of the current record, excluding its newline
+     * @return
+     */
+    public int getRecordEnd() {
+        return recordEnd;
+    }
+
+    /*
+     * Parses the fields of the record starting at from, returning the index just past its end (past the newline, if
+     * stopAtNewline and one was found, in which case recordTerminated is set)
+     */
+    private int parseFields(int from, int to, boolean stopAtNewline) {
+        numFields = 0;
+        scratchLength = 0;
+        recordTerminated = false;
+        int i = from;
+        while(true) {
+            i = i < to && bytes[i] == quote ? parseQuoted(i, to, stopAtNewline) :
+                    parseUnquoted(i, to, stopAtNewline);
+            if(i >= to) {
+                return to;
+            }
+            if(bytes[i] != delimiter) {
+                // a newline
+                recordTerminated = true;
+                return i + 1;
+            }
+            ++i;
+        }
+    }
+
+    /*
+     * Parses the unquoted field starting at from, returning the index of the delimiter or newline ending it, or to
+     */
+    private int parseUnquoted(int from, int to, boolean stopAtNewline) {
+        boolean escaped = false;
+        int i = from;
+        for(; i < to; ++i) {
+            byte b = bytes[i];
+            if(b == delimiter || (b == NEWLINE && stopAtNewline)) {
+                break;
+            }
+            if(b == escape) {
+                escaped = true;
+                ++i;
+            }
+        }
+        i = Math.min(i, to);
+        int fieldEnd = trimCarriageReturn(from, i, to, stopAtNewline);
+        if(escaped) {
+            addUnescapedField(from, from, fieldEnd, false);
+        } else {
+            addField(from, fieldEnd, false, false);
+        }
+        return i;
+    }
+
+    /*
+     * Parses the quoted field whose opening quote is at from, returning the index of the delimiter or newline ending
+     * it, or to
+     */
+    private int parseQuoted(int from, int to, boolean stopAtNewline) {
+        boolean needsUnescaping = false;
+        int i = from + 1;
+        for(; i < to; ++i) {
+            byte b = bytes[i];
+            if(b == quote) {
+                if(i + 1 < to && bytes[i + 1] == quote) {
+                    needsUnescaping = true;
+                    ++i;
+                } else {
+                    break;
+                }
+            } else if(b == escape) {
+                needsUnescaping = true;
+                ++i;
+            }
+        }
+        int contentEnd = Math.min(i, to);
+        // anything between the closing quote and the delimiter is kept
+        int trailing = contentEnd + 1;
+        for(; trailing < to; ++trailing) {
+            byte b = bytes[trailing];
+            if(b == delimiter || (b == NEWLINE && stopAtNewline)) {
+                break;
+            }
+            if(b == escape) {
+                ++trailing;
+            }
+        }
+        trailing = Math.min(trailing, to);
+        int fieldEnd = trimCarriageReturn(contentEnd + 1, trailing, to, stopAtNewline);
+        if(!needsUnescaping && fieldEnd <= contentEnd + 1) {
+            addField(from + 1, contentEnd, true, false);
+        } else {
+            addUnescapedField(from, from + 1, Math.max(fieldEnd, contentEnd), true);
+        }
+        return trailing;
+    }
+
+    /*
+     * Drops a carriage return ending a field that a newline ends; one before a delimiter is part of the field
+     */
+    private int trimCarriageReturn(int fieldStart, int fieldEnd, int to, boolean stopAtNewline) {
+        if(stopAtNewline && fieldEnd < to && bytes[fieldEnd] == NEWLINE && fieldEnd > fieldStart &&
+                bytes[fieldEnd - 1] == CARRIAGE_RETURN) {
+            return fieldEnd - 1;
+        }
+        return fieldEnd;
+    }
+
+    /*
+     * Copies [contentStart, fieldEnd) into scratch, removing quotes and escapes; if isQuoted, contentStart is just past
+     * the opening quote
+     */
+    private void addUnescapedField(int fieldStart, int contentStart, int fieldEnd, boolean isQuoted) {
+        if(scratch.length < scratchLength + fieldEnd - fieldStart) {
+            scratch = Arrays.copyOf(scratch, Math.max(scratch.length * 2, scratchLength + fieldEnd - fieldStart));
+        }
+        int start = scratchLength;
+        boolean inQuotes = isQuoted;
+        for(int i = contentStart; i < fieldEnd; ++i) {
+            byte b = bytes[i];
+            if(b == escape && i + 1 < fieldEnd) {
+                b = bytes[++i];
+            } else if(inQuotes && b == quote) {
+                if(i + 1 < fieldEnd && bytes[i + 1] == quote) {
+                    ++i;
+                } else {
+                    inQuotes = false;
+                    continue;
+                }
+            }
+            scratch[scratchLength++] = b;
+        }
+        addField(start, scratchLength, isQuoted, true);
+    }
+
+    private void addField(int start, int end, boolean isQuoted, boolean isUnescaped) {
+        if(numFields == fieldStarts.length) {
+            int capacity = numFields * 2;
+            fieldStarts = Arrays.copyOf(fieldStarts, capacity);
+            fieldEnds = Arrays.copyOf(fieldEnds, capacity);
+            quoted = Arrays.copyOf(quoted, capacity);
+            unescaped = Arrays.copyOf(unescaped, capacity);
+        }
+        fieldStarts[numFields] = start;
+        fieldEnds[numFields] = end;
+        quoted[numFields] = isQuoted;
+        unescaped[numFields] = isUnescaped;
+        ++numFields;
+    }
+
+    private void checkIndex(int index) {
+        if(index < 0 || index >= numFields) {
+            throw new IndexOutOfBoundsException(index + " is not a field of the current record, which has " +
+                    numFields);
+        }
+    }
+}
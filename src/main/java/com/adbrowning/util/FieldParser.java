@@ -0,0 +1,417 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.nio.charset.Charset;
+
+/**
+ * Parses numbers, booleans and timestamps straight from the UTF-8 bytes of a Strand or byte range, e.g. the fields
+ * found by a DelimitedParser or StrandSplitter, without creating a String for each.
+ * <p/>
+ * Malformed input does not throw: each parse method returns 0 (or false) and records an error code, with the index of
+ * the offending byte, which getError and getErrorIndex report until the next parse. Checking them costs nothing, so
+ * dirty data is as cheap to reject as clean data is to accept. A FieldParser is not thread-safe; give each thread its
+ * own.
+ */
+public class FieldParser {
+    /** The last parse succeeded */
+    public static final int OK = 0;
+    /** The input was empty */
+    public static final int EMPTY = 1;
+    /** The input did not have the expected format */
+    public static final int INVALID = 2;
+    /** The input was a well-formed number too large for the type */
+    public static final int OVERFLOW = 3;
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    /* the powers of ten that are exactly representable as doubles */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18,
+            1e19, 1e20, 1e21, 1e22
+    };
+    private static final byte[] NAN = {'N', 'a', 'N'};
+    private static final byte[] INFINITY = {'I', 'n', 'f', 'i', 'n', 'i', 't', 'y'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final int MILLIS_PER_MINUTE = 60 * 1000;
+    private static final long MILLIS_PER_DAY = 24L * 60 * MILLIS_PER_MINUTE;
+
+    private int error;
+    private int errorIndex = -1;
+
+    /**
+     * Returns the error code of the most recent parse: OK, EMPTY, INVALID or OVERFLOW
+     * @return
+     */
+    public int getError() {
+        return error;
+    }
+
+    /**
+     * Returns the index of the byte at which the most recent parse failed, or -1 if it succeeded
+     * @return
+     */
+    public int getErrorIndex() {
+        return errorIndex;
+    }
+
+    /**
+     * Returns true if the most recent parse succeeded
+     * @return
+     */
+    public boolean isValid() {
+        return error == OK;
+    }
+
+    public int parseInt(Strand strand) {
+        return parseInt(strand.contents, strand.getStartingIndex(), strand.getStrandEnd());
+    }
+
+    /**
+     * Parses a decimal int, with an optional sign, as Integer.parseInt does
+     * @param bytes
+     * @param start
+     * @param end
+     * @return the value, or 0 on error
+     */
+    public int parseInt(byte[] bytes, int start, int end) {
+        long retVal = parseLong(bytes, start, end);
+        if(retVal < Integer.MIN_VALUE || retVal > Integer.MAX_VALUE) {
+            return (int) fail(OVERFLOW, start);
+        }
+        return (int) retVal;
+    }
+
+    public long parseLong(Strand strand) {
+        return parseLong(strand.contents, strand.getStartingIndex(), strand.getStrandEnd());
+    }
+
+    /**
+     * Parses a decimal long, with an optional sign, as Long.parseLong does
+     * @param bytes
+     * @param start
+     * @param end
+     * @return the value, or 0 on error
+     */
+    public long parseLong(byte[] bytes, int start, int end) {
+        succeed();
+        if(start >= end) {
+            return fail(EMPTY, start);
+        }
+        int i = start;
+        boolean negative = bytes[i] == '-';
+        if(negative || bytes[i] == '+') {
+            if(++i == end) {
+                return fail(INVALID, i);
+            }
+        }
+        if(end - i <= 18) {
+            // too few digits to overflow
+            long retVal = 0;
+            for(; i < end; ++i) {
+                int digit = bytes[i] - '0';
+                if(digit < 0 || digit > 9) {
+                    return fail(INVALID, i);
+                }
+                retVal = 10 * retVal + digit;
+            }
+            return negative ? -retVal : retVal;
+        }
+        // accumulate negatively, as Long.parseLong does, so that Long.MIN_VALUE can be reached
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplicationLimit = limit / 10;
+        long retVal = 0;
+        for(; i < end; ++i) {
+            int digit = bytes[i] - '0';
+            if(digit < 0 || digit > 9) {
+                return fail(INVALID, i);
+            }
+            if(retVal < multiplicationLimit) {
+                return fail(OVERFLOW, i);
+            }
+            retVal *= 10;
+            if(retVal < limit + digit) {
+                return fail(OVERFLOW, i);
+            }
+            retVal -= digit;
+        }
+        return negative ? retVal : -retVal;
+    }
+
+    public double parseDouble(Strand strand) {
+        return parseDouble(strand.contents, strand.getStartingIndex(), strand.getStrandEnd());
+    }
+
+    /**
+     * Parses a decimal double: an optional sign, digits with an optional decimal point, and an optional exponent, or
+     * NaN or Infinity. Hexadecimal and type suffixes (as in "1.5d") are not accepted. Values whose significant digits fit
+     * in 53 bits, with a power of ten of at most 22, are computed exactly without allocating; others (rare in practice)
+     * are handed to Double.parseDouble.
+     * @param bytes
+     * @param start
+     * @param end
+     * @return the value, or 0 on error
+     */
+    public double parseDouble(byte[] bytes, int start, int end) {
+        succeed();
+        if(start >= end) {
+            return fail(EMPTY, start);
+        }
+        int i = start;
+        boolean negative = bytes[i] == '-';
+        if(negative || bytes[i] == '+') {
+            ++i;
+        }
+        if(i < end && (bytes[i] == 'N' || bytes[i] == 'I')) {
+            return parseSpecial(bytes, i, end, negative);
+        }
+        long mantissa = 0;
+        int numDigits = 0;
+        int exponent = 0;
+        boolean sawDigit = false;
+        boolean truncated = false;
+        for(; i < end && isDigit(bytes[i]); ++i) {
+            sawDigit = true;
+            if(numDigits < 18) {
+                mantissa = 10 * mantissa + (bytes[i] - '0');
+                numDigits += mantissa == 0 ? 0 : 1;
+            } else {
+                ++exponent;
+                truncated |= bytes[i] != '0';
+            }
+        }
+        if(i < end && bytes[i] == '.') {
+            for(++i; i < end && isDigit(bytes[i]); ++i) {
+                sawDigit = true;
+                if(numDigits < 18) {
+                    mantissa = 10 * mantissa + (bytes[i] - '0');
+                    numDigits += mantissa == 0 ? 0 : 1;
+                    --exponent;
+                } else {
+                    truncated |= bytes[i] != '0';
+                }
+            }
+        }
+        if(!sawDigit) {
+            return fail(INVALID, i);
+        }
+        if(i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            if(++i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+                ++i;
+            }
+            if(i == end) {
+                return fail(INVALID, i);
+            }
+            boolean negativeExponent = bytes[i - 1] == '-';
+            int explicitExponent = 0;
+            for(; i < end && isDigit(bytes[i]); ++i) {
+                // saturate well beyond the range of double, where the result no longer changes
+                explicitExponent = Math.min(10 * explicitExponent + (bytes[i] - '0'), 100000);
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if(i != end) {
+            return fail(INVALID, i);
+        }
+        double retVal;
+        if(mantissa == 0) {
+            retVal = 0;
+        } else if(!truncated && mantissa < 1L << 53 && exponent >= -22 && exponent <= 22) {
+            // both the mantissa and the power of ten are exact, so one correctly rounded operation gives the answer
+            retVal = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return Double.parseDouble(new String(bytes, start, end - start, ASCII));
+        }
+        return negative ? -retVal : retVal;
+    }
+
+    public boolean parseBoolean(Strand strand) {
+        return parseBoolean(strand.contents, strand.getStartingIndex(), strand.getStrandEnd());
+    }
+
+    /**
+     * Parses "true" or "false", ignoring case; unlike Boolean.parseBoolean, anything else is an error
+     * @param bytes
+     * @param start
+     * @param end
+     * @return the value, or false on error
+     */
+    public boolean parseBoolean(byte[] bytes, int start, int end) {
+        succeed();
+        if(start >= end) {
+            return fail(EMPTY, start) != 0;
+        }
+        if(matchesIgnoringCase(bytes, start, end, TRUE)) {
+            return true;
+        }
+        if(!matchesIgnoringCase(bytes, start, end, FALSE)) {
+            fail(INVALID, start);
+        }
+        return false;
+    }
+
+    public long parseTimestamp(Strand strand) {
+        return parseTimestamp(strand.contents, strand.getStartingIndex(), strand.getStrandEnd());
+    }
+
+    /**
+     * Parses a fixed-format ISO-8601 timestamp into milliseconds since the epoch: yyyy-MM-dd, optionally followed by
+     * 'T' or a space and HH:mm:ss, optionally followed by a fraction of a second of up to 9 digits (truncated to
+     * milliseconds) and an offset of 'Z', +HH:mm or +HHmm. Timestamps without an offset are taken to be in UTC.
+     * @param bytes
+     * @param start
+     * @param end
+     * @return the number of milliseconds since 1970-01-01T00:00:00Z, or 0 on error
+     */
+    public long parseTimestamp(byte[] bytes, int start, int end) {
+        succeed();
+        if(start >= end) {
+            return fail(EMPTY, start);
+        }
+        if(end - start < 10 || bytes[start + 4] != '-' || bytes[start + 7] != '-') {
+            return fail(INVALID, start);
+        }
+        int year = digits(bytes, start, 4);
+        int month = digits(bytes, start + 5, 2);
+        int day = digits(bytes, start + 8, 2);
+        if(year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return fail(INVALID, start);
+        }
+        long retVal = daysSinceEpoch(year, month, day) * MILLIS_PER_DAY;
+        int i = start + 10;
+        if(i == end) {
+            return retVal;
+        }
+        if((bytes[i] != 'T' && bytes[i] != ' ') || end - i < 9 || bytes[i + 3] != ':' || bytes[i + 6] != ':') {
+            return fail(INVALID, i);
+        }
+        int hour = digits(bytes, i + 1, 2);
+        int minute = digits(bytes, i + 4, 2);
+        int second = digits(bytes, i + 7, 2);
+        if(hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return fail(INVALID, i);
+        }
+        retVal += ((hour * 60L + minute) * 60 + second) * 1000;
+        i += 9;
+        if(i < end && bytes[i] == '.') {
+            int fractionStart = ++i;
+            int millis = 0;
+            for(; i < end && isDigit(bytes[i]) && i - fractionStart < 9; ++i) {
+                if(i - fractionStart < 3) {
+                    millis = 10 * millis + (bytes[i] - '0');
+                }
+            }
+            if(i == fractionStart) {
+                return fail(INVALID, i);
+            }
+            for(int scale = i - fractionStart; scale < 3; ++scale) {
+                millis *= 10;
+            }
+            retVal += millis;
+        }
+        if(i == end) {
+            return retVal;
+        }
+        if(bytes[i] == 'Z' && i + 1 == end) {
+            return retVal;
+        }
+        if(bytes[i] != '+' && bytes[i] != '-') {
+            return fail(INVALID, i);
+        }
+        // +HH:mm or +HHmm
+        int offsetHours = end - i >= 3 ? digits(bytes, i + 1, 2) : -1;
+        int minutesAt = end - i == 6 && bytes[i + 3] == ':' ? i + 4 : (end - i == 5 ? i + 3 : -1);
+        int offsetMinutes = minutesAt < 0 ? -1 : digits(bytes, minutesAt, 2);
+        if(offsetHours < 0 || offsetHours > 23 || offsetMinutes < 0 || offsetMinutes > 59) {
+            return fail(INVALID, i);
+        }
+        int offset = (offsetHours * 60 + offsetMinutes) * MILLIS_PER_MINUTE;
+        return bytes[i] == '+' ? retVal - offset : retVal + offset;
+    }
+
+    private void succeed() {
+        error = OK;
+        errorIndex = -1;
+    }
+
+    private long fail(int error, int index) {
+        this.error = error;
+        this.errorIndex = index;
+        return 0;
+    }
+
+    private double parseSpecial(byte[] bytes, int from, int end, boolean negative) {
+        if(end - from == NAN.length && ByteScanner.regionMatches(bytes, from, NAN, 0, NAN.length)) {
+            return Double.NaN;
+        }
+        if(end - from == INFINITY.length && ByteScanner.regionMatches(bytes, from, INFINITY, 0, INFINITY.length)) {
+            return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+        return fail(INVALID, from);
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /*
+     * Returns the value of the count decimal digits starting at from, or -1 if any is not a digit
+     */
+    private static int digits(byte[] bytes, int from, int count) {
+        int retVal = 0;
+        for(int i = from; i < from + count; ++i) {
+            if(!isDigit(bytes[i])) {
+                return -1;
+            }
+            retVal = 10 * retVal + (bytes[i] - '0');
+        }
+        return retVal;
+    }
+
+    private static boolean matchesIgnoringCase(byte[] bytes, int start, int end, byte[] lowerCase) {
+        if(end - start != lowerCase.length) {
+            return false;
+        }
+        for(int i = 0; i < lowerCase.length; ++i) {
+            // setting 0x20 lower-cases ASCII letters, and the target is all letters
+            if((bytes[start + i] | 0x20) != lowerCase[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if(month == 2) {
+            return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /*
+     * Converts a date in the proleptic Gregorian calendar to a number of days since 1970-01-01, counting in 400-year
+     * eras from March 1st so that leap days fall at the end of each year
+     */
+    private static long daysSinceEpoch(int year, int month, int day) {
+        int marchYear = month <= 2 ? year - 1 : year;
+        long era = (marchYear >= 0 ? marchYear : marchYear - 399) / 400;
+        long yearOfEra = marchYear - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
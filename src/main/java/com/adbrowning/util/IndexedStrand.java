@@ -0,0 +1,185 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.util.Arrays;
+
+/**
+ * Strand that trades memory for speed when there are multi-byte characters: its length is memoized, and the raw index
+ * of every checkpointInterval-th char is recorded when the IndexedStrand is constructed, so charAt, subSequence and
+ * indexOf locate chars in O(log(n / checkpointInterval) + checkpointInterval) time rather than by a scan from the start.
+ * This makes it suitable for consumers that call charAt in a loop, such as java.util.regex.Matcher.
+ * <p/>
+ * The index costs 4 bytes per checkpointInterval chars (1/16 of a byte per char with the default interval of 64), plus
+ * a constant overhead. If there are no multi-byte characters no index is needed, and none is built. Subsequences are
+ * plain, unindexed Substrand views.
+ */
+public class IndexedStrand extends Strand {
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 64;
+
+    private final int start;
+    private final int end;
+    private final int length;
+    private final int checkpointShift;
+    /* raw index of char (i << checkpointShift) for each i; null if there are no multi-byte characters */
+    private final int[] checkpoints;
+
+    public IndexedStrand(byte[] utf8Bytes) {
+        this(utf8Bytes, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * Instantiates an IndexedStrand over all of utf8Bytes (without copying it)
+     * @param utf8Bytes
+     * @param checkpointInterval the number of chars between checkpoints; must be a power of two
+     */
+    public IndexedStrand(byte[] utf8Bytes, int checkpointInterval) {
+        this(utf8Bytes, 0, utf8Bytes.length, ByteScanner.hasMultiByteChars(utf8Bytes, 0, utf8Bytes.length),
+                checkpointInterval);
+    }
+
+    /**
+     * Instantiates an IndexedStrand over the same bytes as strand (without copying them)
+     * @param strand
+     * @param checkpointInterval the number of chars between checkpoints; must be a power of two
+     */
+    public IndexedStrand(Strand strand, int checkpointInterval) {
+        this(strand.contents, strand.getStartingIndex(), strand.getStrandEnd(), strand.hasMultiByteChars,
+                checkpointInterval);
+    }
+
+    private IndexedStrand(byte[] contents, int start, int end, boolean hasMultiByteChars, int checkpointInterval) {
+        super(contents, false, hasMultiByteChars);
+        if(checkpointInterval <= 0 || Integer.bitCount(checkpointInterval) != 1) {
+            throw new IllegalArgumentException("checkpointInterval must be a power of two; received: " + checkpointInterval);
+        }
+        this.start = start;
+        this.end = end;
+        checkpointShift = Integer.numberOfTrailingZeros(checkpointInterval);
+        if(!hasMultiByteChars) {
+            checkpoints = null;
+            length = end - start;
+        } else {
+            int[] index = new int[16];
+            // an empty range still gets its one checkpoint, at its end
+            index[0] = start;
+            int numChars = 0;
+            for(int rawIndex = start; rawIndex < end; ++numChars) {
+                if((numChars & (checkpointInterval - 1)) == 0) {
+                    int checkpoint = numChars >>> checkpointShift;
+                    if(checkpoint == index.length) {
+                        index = Arrays.copyOf(index, index.length * 2);
+                    }
+                    index[checkpoint] = rawIndex;
+                }
+                rawIndex += utf8CharSize(contents[rawIndex]);
+            }
+            checkpoints = Arrays.copyOf(index, numChars == 0 ? 1 : ((numChars - 1) >>> checkpointShift) + 1);
+            length = numChars;
+        }
+    }
+
+    /**
+     * Returns the memoized length
+     * @return
+     */
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if(index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(index + " is beyond the bounds of this Strand");
+        }
+        if(checkpoints == null) {
+            return (char) (0xFF & contents[start + index]);
+        }
+        return decodeUTF8Char(contents, rawIndexOf(index));
+    }
+
+    /**
+     * Returns the memory, in bytes, used by the checkpoint index (excluding the array header)
+     * @return
+     */
+    public int getIndexSize() {
+        return checkpoints == null ? 0 : 4 * checkpoints.length;
+    }
+
+    /**
+     * Locates charIndex from the nearest checkpoint at or before it, unless the known position is closer
+     * @param charIndex
+     * @param knownCharIndex
+     * @param knownRawIndex the raw index of the char at knownCharIndex
+     * @return
+     */
+    @Override
+    protected int rawIndexOf(int charIndex, int knownCharIndex, int knownRawIndex) {
+        if(checkpoints == null || charIndex > length) {
+            return super.rawIndexOf(charIndex, knownCharIndex, knownRawIndex);
+        }
+        if(charIndex == length) {
+            return end;
+        }
+        int checkpoint = charIndex >>> checkpointShift;
+        int checkpointCharIndex = checkpoint << checkpointShift;
+        if(knownCharIndex <= charIndex && knownCharIndex > checkpointCharIndex) {
+            return super.rawIndexOf(charIndex, knownCharIndex, knownRawIndex);
+        }
+        return super.rawIndexOf(charIndex, checkpointCharIndex, checkpoints[checkpoint]);
+    }
+
+    /**
+     * Binary searches the checkpoints for the last one at or before rawIndex, then counts forward from it
+     * @param rawIndex
+     * @return
+     */
+    @Override
+    protected int charIndexOf(int rawIndex) {
+        if(checkpoints == null) {
+            return rawIndex - start;
+        }
+        int checkpoint = Arrays.binarySearch(checkpoints, rawIndex);
+        if(checkpoint < 0) {
+            checkpoint = -checkpoint - 2;
+        }
+        int retVal = checkpoint << checkpointShift;
+        for(int i = checkpoints[checkpoint]; i < rawIndex; ++retVal) {
+            i += utf8CharSize(contents[i]);
+        }
+        if(StrandMetrics.ENABLED) {
+            StrandMetrics.recordCharOffsetWalk(rawIndex - checkpoints[checkpoint]);
+        }
+        return retVal;
+    }
+
+    @Override
+    protected int getStrandEnd() {
+        return end;
+    }
+
+    @Override
+    protected int getStrandLength() {
+        return end - start;
+    }
+
+    @Override
+    protected int getStartingIndex() {
+        return start;
+    }
+}
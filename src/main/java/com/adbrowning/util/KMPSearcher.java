@@ -15,14 +15,15 @@
  */
 package com.adbrowning.util;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
  * Implements the Knuth-Morris-Pratt string searching algorithm
  */
-public class KMPSearcher {
-    private int[] prefixFunction;
-    private byte[] pattern;
+public class KMPSearcher implements ByteSearcher {
+    protected final int[] prefixFunction;
+    protected final byte[] pattern;
 
     public KMPSearcher(byte[] pattern) {
         this(pattern, true);
@@ -37,29 +38,124 @@ public class KMPSearcher {
         prefixFunction = calculatePrefixFunction(pattern);
     }
 
+    @Override
     public int find(byte[] text, int start, int end) {
         int retVal = -1;
         int q = 0;
-        for(int i = start; i < end; ++i) {
+        int numShifts = 0;
+        int i = start;
+        for(; i < end; ++i) {
             while(q > 0 && pattern[q] != text[i]) {
                 q = prefixFunction[q-1];
+                ++numShifts;
             }
             if(pattern[q] == text[i]) {
                 ++q;
             }
             if(q == pattern.length) {
                 retVal = (i - pattern.length) + 1;
+                ++i;
                 break;
             }
         }
+        if(StrandMetrics.ENABLED) {
+            recordScan(i - start, numShifts);
+        }
+        return retVal;
+    }
+
+    /**
+     * Same as find(byte[], int, int), but over absolute indices of a buffer in little-endian order, such as a direct
+     * or memory-mapped buffer that has no accessible array. Whenever no partial match is in progress, the scan skips
+     * ahead to the next occurrence of the first byte of the pattern a word at a time.
+     * @param text
+     * @param start
+     * @param end
+     * @return
+     */
+    int find(ByteBuffer text, int start, int end) {
+        int retVal = -1;
+        int q = 0;
+        int numShifts = 0;
+        int i = start;
+        for(; i < end; ++i) {
+            if(q == 0) {
+                i = ByteScanner.indexOf(text, i, end, pattern[0]);
+                if(i < 0) {
+                    i = end;
+                    break;
+                }
+            }
+            byte b = text.get(i);
+            while(q > 0 && pattern[q] != b) {
+                q = prefixFunction[q-1];
+                ++numShifts;
+            }
+            if(pattern[q] == b) {
+                ++q;
+            }
+            if(q == pattern.length) {
+                retVal = (i - pattern.length) + 1;
+                ++i;
+                break;
+            }
+        }
+        if(StrandMetrics.ENABLED) {
+            recordScan(i - start, numShifts);
+        }
         return retVal;
     }
+
+    @Override
+    public int findAll(byte[] text, int start, int end, MatchListener listener) {
+        int numMatches = 0;
+        int q = 0;
+        int numShifts = 0;
+        int i = start;
+        for(; i < end; ++i) {
+            while(q > 0 && pattern[q] != text[i]) {
+                q = prefixFunction[q-1];
+                ++numShifts;
+            }
+            if(pattern[q] == text[i]) {
+                ++q;
+            }
+            if(q == pattern.length) {
+                ++numMatches;
+                if(!listener.onMatch((i - pattern.length) + 1)) {
+                    ++i;
+                    break;
+                }
+                q = prefixFunction[q-1];
+                ++numShifts;
+            }
+        }
+        if(StrandMetrics.ENABLED) {
+            recordScan(i - start, numShifts);
+        }
+        return numMatches;
+    }
+
+    /*
+     * Adds a finished scan to StrandMetrics; every byte scanned is compared once more than the shifts it caused
+     */
+    static void recordScan(long numBytes, long numShifts) {
+        StrandMetrics.add(StrandMetrics.Counter.KMP_BYTES_SCANNED, numBytes);
+        StrandMetrics.add(StrandMetrics.Counter.KMP_COMPARISONS, numBytes + numShifts);
+        StrandMetrics.add(StrandMetrics.Counter.KMP_SHIFTS, numShifts);
+    }
+
+    @Override
+    public int getPatternLength() {
+        return pattern.length;
+    }
+
     /**
      * Calculates the prefix pattern as adapted from pseudocode in 3rd edition Introduction to Algorithms by Cormen, et al.
      * @param pattern
      * @return
      */
-    protected final int[] calculatePrefixFunction(byte[] pattern) {
+    static int[] calculatePrefixFunction(byte[] pattern) {
         int[] pi = new int[pattern.length];
         pi[0] = -1;
         int k = -1;
@@ -0,0 +1,224 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Knuth-Morris-Pratt matcher for a stream that arrives in chunks, e.g. successive reads from a socket or file. The
+ * automaton state is carried from one chunk to the next, so matches that straddle chunks are found without re-scanning
+ * any bytes, and matches are reported with their offsets from the start of the stream. No bytes are buffered; the only
+ * state is the length of the partial match in progress and the number of bytes fed so far.
+ * <p/>
+ * The pattern tables are shared with the KMPSearcher the matcher is created from, so creating a matcher per stream is
+ * cheap; a matcher itself is not thread-safe.
+ */
+public class KMPStreamMatcher {
+    private final byte[] pattern;
+    private final int[] prefixFunction;
+    /* the number of bytes of pattern matched by the end of the bytes fed so far */
+    private int state;
+    /* the stream offset of the next byte to be fed */
+    private long position;
+
+    public KMPStreamMatcher(byte[] pattern) {
+        this(new KMPSearcher(pattern));
+    }
+
+    public KMPStreamMatcher(KMPSearcher searcher) {
+        pattern = searcher.pattern;
+        prefixFunction = searcher.prefixFunction;
+    }
+
+    /**
+     * Feeds [start, end) of chunk as the next bytes of the stream, reporting each match that ends within them. If
+     * listener stops the matching, the bytes after the end of that match are not consumed; getPosition tells how many
+     * bytes have been.
+     * @param chunk
+     * @param start
+     * @param end
+     * @param listener
+     * @return the number of matches reported to listener
+     */
+    public int feed(byte[] chunk, int start, int end, StreamMatchListener listener) {
+        int numMatches = 0;
+        int q = state;
+        int i = start;
+        for(; i < end; ++i) {
+            if(q == 0) {
+                i = ByteScanner.indexOf(chunk, i, end, pattern[0]);
+                if(i < 0) {
+                    i = end;
+                    break;
+                }
+            }
+            while(q > 0 && pattern[q] != chunk[i]) {
+                q = prefixFunction[q-1];
+            }
+            if(pattern[q] == chunk[i]) {
+                ++q;
+            }
+            if(q == pattern.length) {
+                ++numMatches;
+                q = prefixFunction[q-1];
+                if(!listener.onMatch(position + (i - start) - pattern.length + 1)) {
+                    ++i;
+                    break;
+                }
+            }
+        }
+        state = q;
+        position += i - start;
+        return numMatches;
+    }
+
+    /**
+     * Feeds the bytes between chunk's position and limit as the next bytes of the stream, advancing chunk's position
+     * past the bytes consumed
+     * @param chunk
+     * @param listener
+     * @return the number of matches reported to listener
+     */
+    public int feed(ByteBuffer chunk, StreamMatchListener listener) {
+        int start = chunk.position();
+        int end = chunk.limit();
+        if(chunk.hasArray()) {
+            int offset = chunk.arrayOffset();
+            long startPosition = position;
+            int numMatches = feed(chunk.array(), start + offset, end + offset, listener);
+            chunk.position(start + (int) (position - startPosition));
+            return numMatches;
+        }
+        ByteBuffer words = ByteScanner.wordView(chunk);
+        int numMatches = 0;
+        int q = state;
+        int i = start;
+        for(; i < end; ++i) {
+            if(q == 0) {
+                i = ByteScanner.indexOf(words, i, end, pattern[0]);
+                if(i < 0) {
+                    i = end;
+                    break;
+                }
+            }
+            byte b = words.get(i);
+            while(q > 0 && pattern[q] != b) {
+                q = prefixFunction[q-1];
+            }
+            if(pattern[q] == b) {
+                ++q;
+            }
+            if(q == pattern.length) {
+                ++numMatches;
+                q = prefixFunction[q-1];
+                if(!listener.onMatch(position + (i - start) - pattern.length + 1)) {
+                    ++i;
+                    break;
+                }
+            }
+        }
+        state = q;
+        position += i - start;
+        chunk.position(i);
+        return numMatches;
+    }
+
+    /**
+     * Reads channel to its end (or until listener stops the matching), feeding each read through buffer, which is
+     * cleared first
+     * @param channel
+     * @param buffer
+     * @param listener
+     * @return the number of matches reported to listener
+     * @throws IOException
+     */
+    public long feed(ReadableByteChannel channel, ByteBuffer buffer, StreamMatchListener listener) throws IOException {
+        StoppingListener stopping = new StoppingListener(listener);
+        long numMatches = 0;
+        buffer.clear();
+        while(!stopping.stopped && channel.read(buffer) >= 0) {
+            buffer.flip();
+            numMatches += feed(buffer, stopping);
+            buffer.clear();
+        }
+        return numMatches;
+    }
+
+    /**
+     * Reads in to its end (or until listener stops the matching), feeding each read through buffer
+     * @param in
+     * @param buffer
+     * @param listener
+     * @return the number of matches reported to listener
+     * @throws IOException
+     */
+    public long feed(InputStream in, byte[] buffer, StreamMatchListener listener) throws IOException {
+        StoppingListener stopping = new StoppingListener(listener);
+        long numMatches = 0;
+        int numRead;
+        while(!stopping.stopped && (numRead = in.read(buffer)) >= 0) {
+            numMatches += feed(buffer, 0, numRead, stopping);
+        }
+        return numMatches;
+    }
+
+    /**
+     * Returns the number of bytes fed so far, which is the stream offset of the next byte to be fed
+     * @return
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the number of bytes at the end of those fed so far that match the start of the pattern, i.e. the length
+     * of the match in progress
+     * @return
+     */
+    public int getPartialMatchLength() {
+        return state;
+    }
+
+    /**
+     * Returns the matcher to the start of a new stream
+     */
+    public void reset() {
+        state = 0;
+        position = 0;
+    }
+
+    /*
+     * Remembers whether the wrapped listener asked to stop, so that the reading loops know not to read any further
+     */
+    private static class StoppingListener implements StreamMatchListener {
+        private final StreamMatchListener listener;
+        private boolean stopped;
+
+        StoppingListener(StreamMatchListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public boolean onMatch(long offset) {
+            stopped = !listener.onMatch(offset);
+            return !stopped;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Strand-like access to a UTF-8 file of any size, memory-mapped read-only rather than read onto the heap. Offsets are
+ * longs; byteAt, slice, indexOf and split take and return byte offsets, while length and charAt count chars as Strand
+ * does.
+ * <p/>
+ * A single mapping is limited to 2GB, so the file is mapped as a series of segments of segmentSize bytes. Each segment's
+ * mapping extends maxViewLength bytes into the next segment, so that any range of up to maxViewLength bytes lies wholly
+ * within one mapping: slice can then return a zero-copy ByteBufferStrand for it wherever it falls, and a search never
+ * has to stitch a match together across segments. Mappings take address space, not heap, and the overlap costs nothing
+ * unless it is read.
+ * <p/>
+ * The channel may be closed once the MappedStrand is constructed; the mappings remain valid until they are garbage
+ * collected. Instances are safe to share between threads.
+ */
+public class MappedStrand {
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+    public static final int DEFAULT_MAX_VIEW_LENGTH = 1 << 20;
+
+    private static final ByteBuffer EMPTY = ByteScanner.wordView(ByteBuffer.allocate(0));
+
+    private final long size;
+    private final int segmentSize;
+    private final int maxViewLength;
+    /* little-endian views of the mappings; segment k covers [k * segmentSize, k * segmentSize + capacity) */
+    private final ByteBuffer[] segments;
+    /* the number of chars starting before each segment, then the total; computed on first use */
+    private volatile long[] segmentCharOffsets;
+
+    public MappedStrand(FileChannel channel) throws IOException {
+        this(channel, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_VIEW_LENGTH);
+    }
+
+    /**
+     * Maps the whole of channel, which must be open for reading
+     * @param channel
+     * @param segmentSize the number of bytes starting in each mapping
+     * @param maxViewLength the length, in bytes, of the longest slice or search pattern that must be supported; at
+     *                      least 8, and segmentSize + maxViewLength may not exceed Integer.MAX_VALUE
+     * @throws IOException
+     */
+    public MappedStrand(FileChannel channel, int segmentSize, int maxViewLength) throws IOException {
+        if(segmentSize <= 0 || maxViewLength < 8 || (long) segmentSize + maxViewLength > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid segmentSize (" + segmentSize + ") or maxViewLength (" +
+                    maxViewLength + ")");
+        }
+        this.segmentSize = segmentSize;
+        this.maxViewLength = maxViewLength;
+        size = channel.size();
+        segments = new ByteBuffer[(int) ((size + segmentSize - 1) / segmentSize)];
+        for(int i = 0; i < segments.length; ++i) {
+            long base = (long) i * segmentSize;
+            long length = Math.min(size - base, (long) segmentSize + maxViewLength);
+            segments[i] = ByteScanner.wordView(channel.map(FileChannel.MapMode.READ_ONLY, base, length));
+        }
+    }
+
+    /**
+     * Returns the size of the file in bytes
+     * @return
+     */
+    public long byteLength() {
+        return size;
+    }
+
+    /**
+     * Returns the byte at offset
+     * @param offset
+     * @return
+     */
+    public byte byteAt(long offset) {
+        if(offset < 0 || offset >= size) {
+            throw new IndexOutOfBoundsException(offset + " is beyond the bounds of this MappedStrand");
+        }
+        int segment = (int) (offset / segmentSize);
+        return segments[segment].get((int) (offset - (long) segment * segmentSize));
+    }
+
+    /**
+     * Returns the number of chars in the file; the first call scans the whole file, a word at a time
+     * @return
+     */
+    public long length() {
+        long[] offsets = getSegmentCharOffsets();
+        return offsets[offsets.length - 1];
+    }
+
+    /**
+     * Returns the char at index. Unless the file is entirely single-byte chars, this scans from the start of the
+     * segment containing the char.
+     * @param index
+     * @return
+     */
+    public char charAt(long index) {
+        long[] offsets = getSegmentCharOffsets();
+        if(index < 0 || index >= offsets[offsets.length - 1]) {
+            throw new IndexOutOfBoundsException(index + " is beyond the bounds of this MappedStrand");
+        }
+        if(offsets[offsets.length - 1] == size) {
+            return (char) (0xFF & byteAt(index));
+        }
+        int segment = Arrays.binarySearch(offsets, 0, segments.length, index);
+        if(segment < 0) {
+            segment = -segment - 2;
+        }
+        // skip to the first char beginning in the segment; at most maxViewLength bytes are needed past that
+        int rawIndex = 0;
+        while((segments[segment].get(rawIndex) & 0xC0) == 0x80) {
+            ++rawIndex;
+        }
+        ByteBufferStrand view = new ByteBufferStrand(segments[segment], rawIndex, segments[segment].capacity(), true);
+        return view.charAt((int) (index - offsets[segment]));
+    }
+
+    /**
+     * Returns a zero-copy view of the bytes in [start, end), which must be no longer than maxViewLength unless it falls
+     * within a single segment
+     * @param start the byte offset of the first byte of the view
+     * @param end the byte offset one past the last byte of the view
+     * @return
+     */
+    public ByteBufferStrand slice(long start, long end) {
+        if(start < 0 || end < start || end > size) {
+            throw new IndexOutOfBoundsException("[" + start + ", " + end + ") is not within this MappedStrand");
+        }
+        if(start == end) {
+            return new ByteBufferStrand(EMPTY, 0, 0, false);
+        }
+        int segment = (int) (start / segmentSize);
+        long base = (long) segment * segmentSize;
+        if(end - base > segments[segment].capacity()) {
+            throw new IllegalArgumentException("[" + start + ", " + end + ") crosses a segment boundary and is longer " +
+                    "than the maxViewLength of " + maxViewLength);
+        }
+        return new ByteBufferStrand(segments[segment], (int) (start - base), (int) (end - base));
+    }
+
+    public boolean startsWith(byte[] prefix) {
+        return prefix.length <= size && slice(0, prefix.length).startsWith(prefix);
+    }
+
+    public boolean endsWith(byte[] suffix) {
+        return suffix.length <= size && slice(size - suffix.length, size).endsWith(suffix);
+    }
+
+    /**
+     * Returns the byte offset of the first occurrence of pattern, or -1 if it does not occur
+     * @param pattern
+     * @return
+     */
+    public long indexOf(byte[] pattern) {
+        return indexOf(pattern, 0);
+    }
+
+    /**
+     * Returns the byte offset of the first occurrence of pattern at or after the byte offset from, or -1 if it does not
+     * occur. Patterns may be no longer than maxViewLength.
+     * @param pattern
+     * @param from
+     * @return
+     */
+    public long indexOf(byte[] pattern, long from) {
+        checkPatternLength(pattern);
+        long startNanos = 0L;
+        if(StrandMetrics.ENABLED) {
+            startNanos = System.nanoTime();
+            StrandMetrics.add(StrandMetrics.Counter.SEARCHERS_COMPILED_PER_CALL, 1);
+        }
+        KMPSearcher searcher = new KMPSearcher(pattern, false);
+        long retVal = -1;
+        for(int segment = (int) (Math.max(from, 0) / segmentSize); segment < segments.length; ++segment) {
+            long base = (long) segment * segmentSize;
+            int found = searcher.find(segments[segment], (int) (Math.max(from, base) - base),
+                    searchEnd(segment, pattern.length));
+            if(found >= 0) {
+                retVal = base + found;
+                break;
+            }
+        }
+        if(StrandMetrics.ENABLED) {
+            long searchStart = Math.min(Math.max(from, 0), size);
+            StrandMetrics.recordOperation("MappedStrand.indexOf", (retVal < 0 ? size : retVal) - searchStart,
+                    retVal < 0 ? 0 : 1, startNanos);
+        }
+        return retVal;
+    }
+
+    /**
+     * Splits the file at each occurrence of sequence, passing a view of each token, _without_ the sequence, to
+     * listener. Sequence is taken as a literal series of bytes, NOT a regular expression. Empty tokens are reported,
+     * except that, as for the lines of a file, no empty token is reported after a final sequence. Tokens must fit in a
+     * view (see slice).
+     * @param sequence
+     * @param listener
+     * @return the number of tokens reported to listener
+     */
+    public long split(byte[] sequence, SplitListener listener) {
+        checkPatternLength(sequence);
+        long startNanos = StrandMetrics.ENABLED ? System.nanoTime() : 0L;
+        long numTokens = 0;
+        long tokenStart = 0;
+        while(tokenStart < size) {
+            long tokenEnd = findSequence(sequence, tokenStart);
+            if(tokenEnd < 0) {
+                tokenEnd = size;
+            }
+            ++numTokens;
+            if(!listener.onSplit(slice(tokenStart, tokenEnd), tokenStart)) {
+                break;
+            }
+            tokenStart = tokenEnd + sequence.length;
+        }
+        if(StrandMetrics.ENABLED) {
+            StrandMetrics.recordOperation("MappedStrand.split", Math.min(tokenStart, size), numTokens, startNanos);
+        }
+        return numTokens;
+    }
+
+    /*
+     * Same as indexOf, but locating candidates by scanning for the first byte of sequence a word at a time; this is the
+     * faster choice for short sequences that are not highly repetitive, such as delimiters
+     */
+    private long findSequence(byte[] sequence, long from) {
+        for(int segment = (int) (from / segmentSize); segment < segments.length; ++segment) {
+            long base = (long) segment * segmentSize;
+            int found = ByteBufferStrand.findSequence(segments[segment], sequence, (int) (Math.max(from, base) - base),
+                    searchEnd(segment, sequence.length));
+            if(found >= 0) {
+                return base + found;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Returns the end of the range of a segment to search so as to find exactly the matches starting in the segment
+     */
+    private int searchEnd(int segment, int patternLength) {
+        return (int) Math.min(segments[segment].capacity(), (long) segmentSize + patternLength - 1);
+    }
+
+    private void checkPatternLength(byte[] pattern) {
+        if(pattern.length == 0 || pattern.length > maxViewLength) {
+            throw new IllegalArgumentException("Patterns must have between 1 and maxViewLength (" + maxViewLength +
+                    ") bytes; received " + pattern.length);
+        }
+    }
+
+    private long[] getSegmentCharOffsets() {
+        long[] retVal = segmentCharOffsets;
+        if(retVal == null) {
+            retVal = new long[segments.length + 1];
+            for(int i = 0; i < segments.length; ++i) {
+                int length = Math.min(segments[i].capacity(), segmentSize);
+                retVal[i + 1] = retVal[i] + length - ByteScanner.countContinuationBytes(segments[i], 0, length);
+            }
+            segmentCharOffsets = retVal;
+        }
+        return retVal;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+/**
+ * Publishes the events StrandMetrics records to an optional backend built against a newer JDK than the rest of the
+ * library (see JfrMetricsEventSink in src/jfr/java, which emits Java Flight Recorder events). StrandMetrics loads an
+ * implementation reflectively when metrics are enabled and one is present.
+ */
+interface MetricsEventSink {
+    /**
+     * Called after each search or split covering at least StrandMetrics.LARGE_OPERATION_BYTES bytes
+     * @param operation the class and method, e.g. "Strand.split"
+     * @param numBytes the number of bytes covered
+     * @param numResults the number of matches found or tokens produced
+     * @param durationNanos how long the operation took
+     */
+    void onLargeOperation(String operation, long numBytes, long numResults, long durationNanos);
+}
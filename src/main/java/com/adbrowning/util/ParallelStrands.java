@@ -0,0 +1,355 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel versions of split, indexOf, findAll and count for large Strands. The bytes of the Strand are divided into
+ * partitions, each searched as its own ForkJoin task, and the results are merged in order, so every method returns
+ * exactly what its sequential counterpart would.
+ * <p/>
+ * Partition boundaries are moved forward to the start of a char, so no partition starts inside a multi-byte character.
+ * Each partition is responsible for the matches that start within it, and searches up to patternLength - 1 bytes past
+ * its end to find those straddling the boundary. For split, a delimiter that overlaps itself can make one partition's
+ * greedy choice of delimiters depend on the previous partition's; when that happens the partition is rescanned from
+ * the end of the previous delimiter until its choices agree with the precomputed ones.
+ * <p/>
+ * Searchers are shared by the tasks, which is safe for the immutable searchers in this package.
+ */
+public class ParallelStrands {
+    public static final int DEFAULT_MIN_PARTITION_SIZE = 1 << 18;
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+    private final int minPartitionSize;
+
+    public ParallelStrands(ForkJoinPool pool) {
+        this(pool, DEFAULT_MIN_PARTITION_SIZE);
+    }
+
+    /**
+     * @param pool the pool in which to run the tasks
+     * @param minPartitionSize the smallest number of bytes worth giving to a task of its own
+     */
+    public ParallelStrands(ForkJoinPool pool, int minPartitionSize) {
+        if(minPartitionSize <= 0) {
+            throw new IllegalArgumentException("minPartitionSize must be positive; received: " + minPartitionSize);
+        }
+        this.pool = pool;
+        this.minPartitionSize = minPartitionSize;
+    }
+
+    /**
+     * Same as strand.split(sequence)
+     * @param strand
+     * @param sequence
+     * @return
+     */
+    public Strand[] split(final Strand strand, final byte[] sequence) {
+        if(sequence.length == 0) {
+            throw new IllegalArgumentException("sequence must contain at least one byte");
+        }
+        final int[] bounds = partition(strand);
+        final IntList[] delimiters = new IntList[bounds.length - 1];
+        run(delimiters.length, new PartitionOp() {
+            @Override
+            public void run(int partition) {
+                IntList found = new IntList();
+                int limit = searchLimit(strand, bounds[partition + 1], sequence.length);
+                for(int i = strand.findSequence(sequence, bounds[partition], limit); i >= 0;
+                        i = strand.findSequence(sequence, i + sequence.length, limit)) {
+                    found.add(i);
+                }
+                delimiters[partition] = found;
+            }
+        });
+        final IntList merged = mergeDelimiters(strand, sequence, bounds, delimiters);
+
+        // tokens lie between the delimiters; trailing empty ones are dropped, as in Strand.split
+        final int start = strand.getStartingIndex();
+        final int end = strand.getStrandEnd();
+        int lastDelimiterEnd = merged.size == 0 ? start : merged.values[merged.size - 1] + sequence.length;
+        int numTokens = merged.size + (lastDelimiterEnd < end ? 1 : 0);
+        while(numTokens > 0 && tokenStart(merged, numTokens - 1, start, sequence.length) ==
+                tokenEnd(merged, numTokens - 1, end)) {
+            --numTokens;
+        }
+        final Strand[] tokens = new Strand[numTokens];
+        final int tokensPerTask = Math.max(1, numTokens / (bounds.length - 1));
+        run((numTokens + tokensPerTask - 1) / tokensPerTask, new PartitionOp() {
+            @Override
+            public void run(int partition) {
+                int last = Math.min(tokens.length, (partition + 1) * tokensPerTask);
+                for(int i = partition * tokensPerTask; i < last; ++i) {
+                    int tokenStart = tokenStart(merged, i, start, sequence.length);
+                    int tokenEnd = tokenEnd(merged, i, end);
+                    tokens[i] = new Substrand(strand.contents, tokenStart, tokenEnd,
+                            strand.hasMultiByteChars && ByteScanner.hasMultiByteChars(strand.contents, tokenStart, tokenEnd));
+                }
+            }
+        });
+        return tokens;
+    }
+
+    /**
+     * Same as strand.indexOf(searcher): the char index of the first match, or -1 if there is none
+     * @param strand
+     * @param searcher
+     * @return
+     */
+    public int indexOf(final Strand strand, final ByteSearcher searcher) {
+        final int[] bounds = partition(strand);
+        final int[] firstMatches = new int[bounds.length - 1];
+        run(firstMatches.length, new PartitionOp() {
+            @Override
+            public void run(int partition) {
+                firstMatches[partition] = searcher.find(strand.contents, bounds[partition],
+                        searchLimit(strand, bounds[partition + 1], searcher.getPatternLength()));
+            }
+        });
+        for(int match : firstMatches) {
+            if(match >= 0) {
+                return charIndexOf(strand, match);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Same as searcher.findAll over the Strand's bytes: listener receives the raw (byte) index of every match, in
+     * order, from the calling thread
+     * @param strand
+     * @param searcher
+     * @param listener
+     * @return the number of matches reported to listener
+     */
+    public int findAll(final Strand strand, final ByteSearcher searcher, MatchListener listener) {
+        final int[] bounds = partition(strand);
+        final IntList[] matches = new IntList[bounds.length - 1];
+        run(matches.length, new PartitionOp() {
+            @Override
+            public void run(int partition) {
+                final IntList found = new IntList();
+                final int partitionEnd = bounds[partition + 1];
+                searcher.findAll(strand.contents, bounds[partition],
+                        searchLimit(strand, partitionEnd, searcher.getPatternLength()), new MatchListener() {
+                    @Override
+                    public boolean onMatch(int index) {
+                        found.add(index);
+                        return true;
+                    }
+                });
+                matches[partition] = found;
+            }
+        });
+        int numMatches = 0;
+        for(IntList found : matches) {
+            for(int i = 0; i < found.size; ++i) {
+                ++numMatches;
+                if(!listener.onMatch(found.values[i])) {
+                    return numMatches;
+                }
+            }
+        }
+        return numMatches;
+    }
+
+    /**
+     * Returns the number of (possibly overlapping) matches of searcher in the Strand
+     * @param strand
+     * @param searcher
+     * @return
+     */
+    public int count(final Strand strand, final ByteSearcher searcher) {
+        final int[] bounds = partition(strand);
+        final int[] counts = new int[bounds.length - 1];
+        run(counts.length, new PartitionOp() {
+            @Override
+            public void run(int partition) {
+                counts[partition] = searcher.findAll(strand.contents, bounds[partition],
+                        searchLimit(strand, bounds[partition + 1], searcher.getPatternLength()), CountingListener.INSTANCE);
+            }
+        });
+        int retVal = 0;
+        for(int count : counts) {
+            retVal += count;
+        }
+        return retVal;
+    }
+
+    /*
+     * Returns the raw boundaries of the partitions, from the start of the Strand to its end, each at the start of a char
+     */
+    private int[] partition(Strand strand) {
+        int start = strand.getStartingIndex();
+        int end = strand.getStrandEnd();
+        int numPartitions = (int) Math.max(1, Math.min((end - start) / minPartitionSize,
+                (long) pool.getParallelism() * PARTITIONS_PER_THREAD));
+        int[] bounds = new int[numPartitions + 1];
+        bounds[0] = start;
+        for(int i = 1; i < numPartitions; ++i) {
+            int bound = Math.max(bounds[i - 1], start + (int) ((long) (end - start) * i / numPartitions));
+            while(bound < end && (strand.contents[bound] & 0xC0) == 0x80) {
+                ++bound;
+            }
+            bounds[i] = bound;
+        }
+        bounds[numPartitions] = end;
+        return bounds;
+    }
+
+    /*
+     * Combines the delimiters each partition found into the sequence a single left-to-right scan would find, which can
+     * differ when a delimiter found by one partition overlaps the first found by the next
+     */
+    private static IntList mergeDelimiters(Strand strand, byte[] sequence, int[] bounds, IntList[] delimiters) {
+        IntList retVal = new IntList();
+        int allowedFrom = bounds[0];
+        for(int partition = 0; partition < delimiters.length; ++partition) {
+            IntList found = delimiters[partition];
+            int next = 0;
+            while(next < found.size && found.values[next] < allowedFrom) {
+                ++next;
+            }
+            if(next > 0) {
+                int limit = searchLimit(strand, bounds[partition + 1], sequence.length);
+                boolean agreed = false;
+                for(int i = strand.findSequence(sequence, allowedFrom, limit); i >= 0 && !agreed;
+                        i = strand.findSequence(sequence, i + sequence.length, limit)) {
+                    while(next < found.size && found.values[next] < i) {
+                        ++next;
+                    }
+                    agreed = next < found.size && found.values[next] == i;
+                    if(!agreed) {
+                        retVal.add(i);
+                        allowedFrom = i + sequence.length;
+                    }
+                }
+                if(!agreed) {
+                    // the rescan found every delimiter left in the partition
+                    next = found.size;
+                }
+            }
+            for(; next < found.size; ++next) {
+                retVal.add(found.values[next]);
+                allowedFrom = found.values[next] + sequence.length;
+            }
+        }
+        return retVal;
+    }
+
+    /*
+     * Returns the char index of the raw index rawIndex, counting the chars before it in parallel
+     */
+    private int charIndexOf(final Strand strand, int rawIndex) {
+        if(!strand.hasMultiByteChars) {
+            return rawIndex - strand.getStartingIndex();
+        }
+        final int[] bounds = partition(new Substrand(strand.contents, strand.getStartingIndex(), rawIndex, true));
+        final long[] continuationBytes = new long[bounds.length - 1];
+        run(continuationBytes.length, new PartitionOp() {
+            @Override
+            public void run(int partition) {
+                continuationBytes[partition] = ByteScanner.countContinuationBytes(
+                        ByteScanner.wordView(strand.contents), bounds[partition], bounds[partition + 1]);
+            }
+        });
+        long retVal = rawIndex - strand.getStartingIndex();
+        for(long count : continuationBytes) {
+            retVal -= count;
+        }
+        return (int) retVal;
+    }
+
+    private static int tokenStart(IntList delimiters, int token, int start, int delimiterLength) {
+        return token == 0 ? start : delimiters.values[token - 1] + delimiterLength;
+    }
+
+    private static int tokenEnd(IntList delimiters, int token, int end) {
+        return token < delimiters.size ? delimiters.values[token] : end;
+    }
+
+    /*
+     * Returns the end of the range to search so as to find exactly the matches starting before partitionEnd
+     */
+    private static int searchLimit(Strand strand, int partitionEnd, int patternLength) {
+        return (int) Math.min(strand.getStrandEnd(), (long) partitionEnd + patternLength - 1);
+    }
+
+    private void run(int numPartitions, PartitionOp op) {
+        if(numPartitions == 1) {
+            op.run(0);
+        } else if(numPartitions > 1) {
+            pool.invoke(new PartitionTask(op, 0, numPartitions));
+        }
+    }
+
+    private interface PartitionOp {
+        void run(int partition);
+    }
+
+    /*
+     * Runs op on each partition in [from, to), splitting the range in half until each task has a single partition
+     */
+    private static class PartitionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final PartitionOp op;
+        private final int from;
+        private final int to;
+
+        PartitionTask(PartitionOp op, int from, int to) {
+            this.op = op;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from == 1) {
+                op.run(from);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PartitionTask(op, from, middle), new PartitionTask(op, middle, to));
+            }
+        }
+    }
+
+    private static class CountingListener implements MatchListener {
+        static final CountingListener INSTANCE = new CountingListener();
+
+        @Override
+        public boolean onMatch(int index) {
+            return true;
+        }
+    }
+
+    private static class IntList {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if(size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads records (e.g. the lines of a log file) from a channel or stream, yielding each as a view into a reusable buffer
+ * rather than as a copy. Records are separated by a literal terminator sequence of bytes, such as "\n" or "\r\n"; the
+ * terminator is not part of the record. Empty records are reported, except that, as for the lines of a file, no empty
+ * record is reported after a final terminator.
+ * <p/>
+ * The buffer is refilled in place: when it is full, the partial record at its end is moved to the front, which is the
+ * only copying done, and the buffer doubles only if a single record fills it. The buffer may be supplied by the caller,
+ * e.g. from a pool, and getBuffer returns the (possibly replaced) buffer for returning to the pool afterwards.
+ * <p/>
+ * record returns the same Substrand every time, repositioned over the current record, so it is only valid until the
+ * reader advances again; getRecordStart and getRecordEnd give the record's bounds within getBuffer for code that works
+ * on byte ranges directly. Channels must be in blocking mode. A RecordReader is not thread-safe.
+ */
+public class RecordReader implements Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private final InputStream stream;
+    private final byte[] terminator;
+    private byte[] buffer;
+    /* wraps buffer, for channel reads */
+    private ByteBuffer wrapper;
+    private Substrand record;
+    /* the number of valid bytes in buffer */
+    private int limit;
+    /* the index at which the next record starts */
+    private int position;
+    /* the index from which to continue looking for a terminator */
+    private int scanFrom;
+    /* the offset in the input of buffer[0] */
+    private long bufferOffset;
+    private boolean endOfInput;
+    private int recordStart = -1;
+    private int recordEnd = -1;
+    private boolean hasRecord;
+
+    public RecordReader(ReadableByteChannel channel, byte[] terminator) {
+        this(channel, terminator, new byte[DEFAULT_BUFFER_SIZE]);
+    }
+
+    /**
+     * @param channel a blocking channel
+     * @param terminator the sequence ending each record; must not be empty
+     * @param buffer the initial buffer, which is used from its start; replaced by a larger one if a record fills it
+     */
+    public RecordReader(ReadableByteChannel channel, byte[] terminator, byte[] buffer) {
+        this(channel, null, terminator, buffer);
+    }
+
+    public RecordReader(InputStream stream, byte[] terminator) {
+        this(stream, terminator, new byte[DEFAULT_BUFFER_SIZE]);
+    }
+
+    /**
+     * @param stream
+     * @param terminator the sequence ending each record; must not be empty
+     * @param buffer the initial buffer, which is used from its start; replaced by a larger one if a record fills it
+     */
+    public RecordReader(InputStream stream, byte[] terminator, byte[] buffer) {
+        this(null, stream, terminator, buffer);
+    }
+
+    private RecordReader(ReadableByteChannel channel, InputStream stream, byte[] terminator, byte[] buffer) {
+        if(terminator.length == 0) {
+            throw new IllegalArgumentException("terminator must contain at least one byte");
+        }
+        if(buffer.length == 0) {
+            throw new IllegalArgumentException("buffer must not be empty");
+        }
+        this.channel = channel;
+        this.stream = stream;
+        this.terminator = terminator.clone();
+        setBuffer(buffer);
+    }
+
+    /**
+     * Moves to the next record, reading more input as needed; returns false at the end of the input
+     * @return
+     * @throws IOException
+     */
+    public boolean advance() throws IOException {
+        hasRecord = false;
+        while(true) {
+            int found = Strand.findSequence(buffer, terminator, scanFrom, limit);
+            if(found >= 0) {
+                setRecord(found, found + terminator.length);
+                return true;
+            }
+            if(endOfInput) {
+                if(position < limit) {
+                    setRecord(limit, limit);
+                    return true;
+                }
+                return false;
+            }
+            // a terminator may begin in the last terminator.length - 1 bytes, so look there again
+            scanFrom = Math.max(position, limit - terminator.length + 1);
+            fill();
+        }
+    }
+
+    /**
+     * Returns the current record, i.e. the one most recently advanced to; the same Substrand is returned every time
+     * @return
+     */
+    public Strand record() {
+        if(!hasRecord) {
+            throw new NoSuchElementException("advance has not found a record");
+        }
+        record.setBounds(recordStart, recordEnd, ByteScanner.hasMultiByteChars(buffer, recordStart, recordEnd));
+        return record;
+    }
+
+    /**
+     * Returns the buffer holding the current record; this changes only if a record outgrows it
+     * @return
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the index within getBuffer of the first byte of the current record
+     * @return
+     */
+    public int getRecordStart() {
+        return recordStart;
+    }
+
+    /**
+     * Returns the index within getBuffer one past the last byte of the current record
+     * @return
+     */
+    public int getRecordEnd() {
+        return recordEnd;
+    }
+
+    /**
+     * Returns the offset in the input of the first byte of the current record
+     * @return
+     */
+    public long getRecordOffset() {
+        return bufferOffset + recordStart;
+    }
+
+    /**
+     * Closes the underlying channel or stream
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if(channel != null) {
+            channel.close();
+        } else {
+            stream.close();
+        }
+    }
+
+    private void setRecord(int end, int next) {
+        recordStart = position;
+        recordEnd = end;
+        position = next;
+        scanFrom = next;
+        hasRecord = true;
+    }
+
+    /*
+     * Reads more input after limit, first making room by moving the partial record to the front of the buffer, or by
+     * growing the buffer if the partial record already fills it
+     */
+    private void fill() throws IOException {
+        if(limit == buffer.length) {
+            if(position > 0) {
+                System.arraycopy(buffer, position, buffer, 0, limit - position);
+                bufferOffset += position;
+                limit -= position;
+                scanFrom -= position;
+                recordStart = recordEnd = -1;
+                position = 0;
+            } else {
+                setBuffer(Arrays.copyOf(buffer, buffer.length * 2));
+            }
+        }
+        int numRead;
+        if(channel != null) {
+            wrapper.limit(buffer.length).position(limit);
+            numRead = channel.read(wrapper);
+        } else {
+            numRead = stream.read(buffer, limit, buffer.length - limit);
+        }
+        if(numRead < 0) {
+            endOfInput = true;
+        } else {
+            limit += numRead;
+        }
+    }
+
+    private void setBuffer(byte[] buffer) {
+        this.buffer = buffer;
+        wrapper = channel == null ? null : ByteBuffer.wrap(buffer);
+        record = new Substrand(buffer, 0, 0, false);
+    }
+}
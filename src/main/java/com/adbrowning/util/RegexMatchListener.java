@@ -0,0 +1,31 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+/**
+ * Receives the matches found by a ByteRegex
+ */
+public interface RegexMatchListener {
+
+    /**
+     * Called once per match, in increasing order of position; matches do not overlap
+     * @param start the raw index of the first byte of the match
+     * @param end the raw index one past the last byte of the match; equal to start for an empty match
+     * @return true to continue searching, false to stop after this match
+     */
+    boolean onMatch(int start, int end);
+}
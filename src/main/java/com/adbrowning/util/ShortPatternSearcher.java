@@ -0,0 +1,89 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.adbrowning.util;
+
+import java.util.Arrays;
+
+/**
+ * Searches for short patterns by scanning for the first byte and comparing the rest in place. The worst case is
+ * O(text length * pattern length), but with patterns of only a few bytes that bound is small, and the lack of any
+ * tables makes this faster than KMPSearcher or BMSearcher in practice.
+ */
+public class ShortPatternSearcher implements ByteSearcher {
+    private final byte[] pattern;
+    private final byte first;
+
+    public ShortPatternSearcher(byte[] pattern) {
+        this(pattern, true);
+    }
+
+    public ShortPatternSearcher(byte[] pattern, boolean copy) {
+        if(pattern.length == 0) {
+            throw new IllegalArgumentException("pattern must contain at least one byte");
+        }
+        if(copy) {
+            this.pattern = Arrays.copyOf(pattern, pattern.length);
+        } else {
+            this.pattern = pattern;
+        }
+        first = pattern[0];
+    }
+
+    @Override
+    public int find(byte[] text, int start, int end) {
+        int lastStart = end - pattern.length;
+        for(int i = start; i <= lastStart; ++i) {
+            if(text[i] == first && matchesAt(text, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int findAll(byte[] text, int start, int end, MatchListener listener) {
+        int numMatches = 0;
+        int lastStart = end - pattern.length;
+        for(int i = start; i <= lastStart; ++i) {
+            if(text[i] == first && matchesAt(text, i)) {
+                ++numMatches;
+                if(!listener.onMatch(i)) {
+                    break;
+                }
+            }
+        }
+        return numMatches;
+    }
+
+    @Override
+    public int getPatternLength() {
+        return pattern.length;
+    }
+
+    /*
+     * Compares everything after the first byte of the pattern against text starting at index
+     */
+    private boolean matchesAt(byte[] text, int index) {
+        for(int i = 1; i < pattern.length; ++i) {
+            if(pattern[i] != text[index + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.adbrowning.util;
+
+/**
+ * Searches for a single byte; a plain scan needs no preprocessing and beats any of the skip-based algorithms
+ */
+public class SingleByteSearcher implements ByteSearcher {
+    private final byte target;
+
+    public SingleByteSearcher(byte target) {
+        this.target = target;
+    }
+
+    @Override
+    public int find(byte[] text, int start, int end) {
+        for(int i = start; i < end; ++i) {
+            if(text[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int findAll(byte[] text, int start, int end, MatchListener listener) {
+        int numMatches = 0;
+        for(int i = start; i < end; ++i) {
+            if(text[i] == target) {
+                ++numMatches;
+                if(!listener.onMatch(i)) {
+                    break;
+                }
+            }
+        }
+        return numMatches;
+    }
+
+    @Override
+    public int getPatternLength() {
+        return 1;
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+/**
+ * Callback receiving each token as a MappedStrand is split
+ */
+public interface SplitListener {
+    /**
+     * Called with each token, in order
+     * @param token a view of the token's bytes, valid for as long as the MappedStrand
+     * @param offset the byte offset of the token within the MappedStrand
+     * @return true to continue splitting, false to stop
+     */
+    boolean onSplit(ByteBufferStrand token, long offset);
+}
@@ -16,8 +16,13 @@
 
 package com.adbrowning.util;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
+import java.util.Comparator;
 
 /**
  * Lightweight class providing many of the features of String against a UTF-8 encoded byte array. One of the driving principles
@@ -29,6 +34,16 @@ public class Strand implements CharSequence {
     protected byte[] contents;
     protected boolean hasMultiByteChars = false;
 
+    /**
+     * Orders Strands by compareTo, i.e. by code point; for sorting large arrays, StrandSorter is faster
+     */
+    public static final Comparator<Strand> CODE_POINT_ORDER = new Comparator<Strand>() {
+        @Override
+        public int compare(Strand a, Strand b) {
+            return a.compareTo(b);
+        }
+    };
+
     protected Strand() {}
 
     public Strand(byte[] utf8Bytes) {
@@ -37,7 +52,8 @@ public class Strand implements CharSequence {
 
     /**
      * Instantiates a Strand over utf8Bytes, optionally copying to a new array, running a test to determine if any of the
-     * characters are multi-byte characters (causing this to run in linear time, though possibly constant memory)
+     * characters are multi-byte characters (causing this to run in linear time, though possibly constant memory; the
+     * test checks eight bytes at a time)
      * @param utf8Bytes
      * @param makeCopy true to make a copy of utf8Bytes, freeing it up to be altered at will
      */
@@ -47,9 +63,7 @@ public class Strand implements CharSequence {
         } else {
             contents = utf8Bytes;
         }
-        for(int i = 0; !hasMultiByteChars && i < contents.length; ++i) {
-            hasMultiByteChars = utf8CharSize(contents[i]) > 1;
-        }
+        hasMultiByteChars = ByteScanner.hasMultiByteChars(contents, 0, contents.length);
     }
 
     /**
@@ -92,6 +106,9 @@ public class Strand implements CharSequence {
                 ++retVal;
                 index += utf8CharSize(contents[index]);
             }
+            if(StrandMetrics.ENABLED) {
+                StrandMetrics.recordCharOffsetWalk(end - start);
+            }
         } else {
             retVal = end-start;
         }
@@ -131,6 +148,9 @@ public class Strand implements CharSequence {
                 int numBytes = utf8CharSize(contents[arrayIndex]);
                 arrayIndex += numBytes;
             }
+            if(StrandMetrics.ENABLED) {
+                StrandMetrics.recordCharOffsetWalk(arrayIndex - firstByte);
+            }
 
             char retVal = decodeUTF8Char(contents, arrayIndex);
             return retVal;
@@ -155,34 +175,61 @@ public class Strand implements CharSequence {
      */
     @Override
     public CharSequence subSequence(int start, int end) {
-        int rawStart = getStartingIndex();
-        int currentChar = 0;
         if(start < 0) {
             throw new IndexOutOfBoundsException("start must be at least 0; received: " + start);
         }
+        if(end < start) {
+            throw new IndexOutOfBoundsException("end (" + end + ") must not be less than start (" + start + ")");
+        }
 
         if(!hasMultiByteChars) {
+            if(end > getStrandLength()) {
+                throw new IndexOutOfBoundsException(end + " is beyond the bounds of this Strand");
+            }
             return rawSubSequence(start, end);
         }
 
-        for(; currentChar < start; ++currentChar) {
-            rawStart += utf8CharSize(contents[rawStart]);
+        int rawStart = rawIndexOf(start);
+        int rawEnd = rawStart < 0 ? -1 : rawIndexOf(end, start, rawStart);
+        if(rawEnd < 0) {
+            throw new IndexOutOfBoundsException(end + " is beyond the bounds of this Strand");
         }
-        int rawEnd = rawStart;
-        int lastIndex = getStrandEnd();
-        for(; currentChar < end; ++currentChar) {
-            rawEnd += utf8CharSize(contents[rawEnd]);
-            if(rawEnd >= lastIndex) {
-                throw new IndexOutOfBoundsException(end + " is beyond the bounds of this Strand");
-            }
+        return new Substrand(contents, rawStart, rawEnd, true);
+    }
 
+
+    /**
+     * Writes the UTF-8 bytes of this Strand to out, with no decoding or re-encoding
+     * @param out
+     * @throws IOException
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(contents, getStartingIndex(), getStrandEnd() - getStartingIndex());
+    }
+
+    /**
+     * Writes the UTF-8 bytes of this Strand to channel, with no decoding or re-encoding, looping until all are written
+     * @param channel
+     * @throws IOException
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer source = ByteBuffer.wrap(contents, getStartingIndex(), getStrandEnd() - getStartingIndex());
+        while(source.hasRemaining()) {
+            channel.write(source);
         }
-        return new Substrand(contents, rawStart, rawEnd);
     }
 
+    /**
+     * Puts the UTF-8 bytes of this Strand into buffer at its position, advancing the position
+     * @param buffer
+     * @throws java.nio.BufferOverflowException if buffer has too little room remaining
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put(contents, getStartingIndex(), getStrandEnd() - getStartingIndex());
+    }
 
     protected CharSequence rawSubSequence(int start, int end) {
-        return new Substrand(contents, start + getStartingIndex(), end);
+        return new Substrand(contents, start + getStartingIndex(), end + getStartingIndex(), false);
     }
     /**
      * Implements startsWith as defined in String, but accepting a raw array of UTF8 bytes
@@ -200,12 +247,7 @@ public class Strand implements CharSequence {
      */
     public boolean endsWith(byte[] suffix) {
         if(suffix.length > getStrandLength()) return false;
-        boolean retVal = true;
-        int strandEnd = getStrandEnd();
-        for(int i = 1; retVal && i <= suffix.length; ++i) {
-            retVal = suffix[suffix.length-i] == contents[strandEnd-i];
-        }
-        return retVal;
+        return ByteScanner.regionMatches(contents, getStrandEnd() - suffix.length, suffix, 0, suffix.length);
     }
     /**
      * Returns a string representation of the object. In general, the
@@ -261,12 +303,8 @@ public class Strand implements CharSequence {
             if(myLength != otherLength) {
                 return false;
             }
-            int myStart = getStartingIndex();
-            int otherStart = ((Strand) o).getStartingIndex();
-            for(int i = 0; i < myLength; ++i) {
-                if(contents[i+myStart] != ((Strand) o).contents[i+otherStart]) {
-                    return false;
-                }
+            if(!ByteScanner.regionMatches(contents, getStartingIndex(), strand.contents, strand.getStartingIndex(), myLength)) {
+                return false;
             }
         } else if((o instanceof CharSequence)) {
             int myLength = length();
@@ -287,6 +325,67 @@ public class Strand implements CharSequence {
         return true;
     }
 
+    /**
+     * Compares the UTF-8 bytes as unsigned values, a word at a time; since UTF-8 preserves the order of code points, this
+     * orders Strands by code point. That is String's order except that chars beyond the Basic Multilingual Plane sort
+     * after U+E000-U+FFFF rather than before them.
+     * <p/>
+     * Strand does not implement Comparable: Groovy compares Comparables with == through compareTo, which would stop a
+     * Strand being == to a String with the same chars. Use CODE_POINT_ORDER where a Comparator is needed.
+     * @param other
+     * @return
+     */
+    public int compareTo(Strand other) {
+        return ByteScanner.compare(contents, getStartingIndex(), getStrandEnd(), other.contents,
+                other.getStartingIndex(), other.getStrandEnd());
+    }
+
+    /**
+     * Implements equalsIgnoreCase as defined in String, comparing the UTF-8 bytes directly; nothing is decoded or
+     * allocated while the chars are ASCII
+     * @param other
+     * @return
+     */
+    public boolean equalsIgnoreCase(Strand other) {
+        if(other == null) {
+            return false;
+        }
+        if(!hasMultiByteChars && !other.hasMultiByteChars && getStrandLength() != other.getStrandLength()) {
+            return false;
+        }
+        return ByteScanner.equalsIgnoreCase(contents, getStartingIndex(), getStrandEnd(), other.contents,
+                other.getStartingIndex(), other.getStrandEnd());
+    }
+
+    /**
+     * Implements regionMatches as defined in String, comparing the length chars of this Strand starting at the char
+     * index offset with those of other starting at otherOffset
+     * @param ignoreCase
+     * @param offset
+     * @param other
+     * @param otherOffset
+     * @param length
+     * @return
+     */
+    public boolean regionMatches(boolean ignoreCase, int offset, Strand other, int otherOffset, int length) {
+        length = Math.max(length, 0);
+        if(offset < 0 || otherOffset < 0 || offset + length < 0 || otherOffset + length < 0) {
+            return false;
+        }
+        int rawStart = rawIndexOf(offset);
+        int rawEnd = rawStart < 0 ? -1 : rawIndexOf(offset + length, offset, rawStart);
+        int otherRawStart = other.rawIndexOf(otherOffset);
+        int otherRawEnd = otherRawStart < 0 ? -1 : other.rawIndexOf(otherOffset + length, otherOffset, otherRawStart);
+        if(rawEnd < 0 || otherRawEnd < 0) {
+            return false;
+        }
+        if(ignoreCase) {
+            return ByteScanner.equalsIgnoreCase(contents, rawStart, rawEnd, other.contents, otherRawStart, otherRawEnd);
+        }
+        return rawEnd - rawStart == otherRawEnd - otherRawStart &&
+                ByteScanner.regionMatches(contents, rawStart, other.contents, otherRawStart, rawEnd - rawStart);
+    }
+
     public int indexOf(String str) {
         int retVal;
         try {
@@ -298,7 +397,7 @@ public class Strand implements CharSequence {
     }
 
     /**
-     * Returns the index of the start of bytes in the Strand; note, this is the raw index, not the character offset
+     * Returns the char index of the first occurrence of bytes in the Strand, or -1 if it does not occur
      * @param bytes
      * @return
      */
@@ -307,19 +406,101 @@ public class Strand implements CharSequence {
     }
 
     /**
-     * Returns the index of the start of bytes in the Strand after start; note, this is the raw index, not the character offset
+     * Returns the char index of the first occurrence of bytes in the Strand at or after the char index start, or -1 if
+     * it does not occur. This compiles a new searcher on every call; code that searches for the same bytes repeatedly
+     * should create a ByteSearcher once and call indexOf(ByteSearcher, int) instead.
      * @param bytes
+     * @param start the char index from which to start searching
      * @return
      */
     public int indexOf(byte[] bytes, int start) {
-        KMPSearcher searcher = new KMPSearcher(bytes);
-        int rawIndex = searcher.find(contents, getStartingIndex(), getStrandEnd());
-        int retVal = -1;
-        for(int i = getStartingIndex(); i <= rawIndex; ++retVal) {
+        if(StrandMetrics.ENABLED) {
+            StrandMetrics.add(StrandMetrics.Counter.SEARCHERS_COMPILED_PER_CALL, 1);
+        }
+        return indexOf(ByteSearcherFactory.create(bytes, false), start);
+    }
+
+    /**
+     * Returns the char index of the first match of a precompiled searcher in the Strand, or -1 if there is none
+     * @param searcher
+     * @return
+     */
+    public int indexOf(ByteSearcher searcher) {
+        return indexOf(searcher, 0);
+    }
+
+    /**
+     * Returns the char index of the first match of a precompiled searcher in the Strand at or after the char index start,
+     * or -1 if there is none; no setup work is done beyond locating start
+     * @param searcher
+     * @param start the char index from which to start searching
+     * @return
+     */
+    public int indexOf(ByteSearcher searcher, int start) {
+        long startNanos = StrandMetrics.ENABLED ? System.nanoTime() : 0L;
+        int rawStart = rawIndexOf(Math.max(start, 0));
+        if(rawStart < 0) {
+            return -1;
+        }
+        int rawIndex = searcher.find(contents, rawStart, getStrandEnd());
+        if(StrandMetrics.ENABLED) {
+            StrandMetrics.recordOperation("Strand.indexOf", (rawIndex < 0 ? getStrandEnd() : rawIndex) - rawStart,
+                    rawIndex < 0 ? 0 : 1, startNanos);
+        }
+        return rawIndex < 0 ? -1 : charIndexOf(rawIndex);
+    }
+
+    /**
+     * Returns the raw (byte) index of the char at charIndex, getStrandEnd() if charIndex is the length of the Strand,
+     * or -1 if charIndex is beyond that
+     * @param charIndex
+     * @return
+     */
+    protected int rawIndexOf(int charIndex) {
+        return rawIndexOf(charIndex, 0, getStartingIndex());
+    }
+
+    /**
+     * Same as rawIndexOf(int), but given a char index at or before charIndex whose raw index is already known, from
+     * which a linear scan can start; subclasses with faster ways of locating chars may ignore the hint
+     * @param charIndex
+     * @param knownCharIndex
+     * @param knownRawIndex the raw index of the char at knownCharIndex
+     * @return
+     */
+    protected int rawIndexOf(int charIndex, int knownCharIndex, int knownRawIndex) {
+        int end = getStrandEnd();
+        if(!hasMultiByteChars) {
+            return charIndex <= end - getStartingIndex() ? getStartingIndex() + charIndex : -1;
+        }
+        int rawIndex = knownRawIndex;
+        int i = knownCharIndex;
+        for(; i < charIndex && rawIndex < end; ++i) {
+            rawIndex += utf8CharSize(contents[rawIndex]);
+        }
+        if(StrandMetrics.ENABLED) {
+            StrandMetrics.recordCharOffsetWalk(rawIndex - knownRawIndex);
+        }
+        return i == charIndex && rawIndex <= end ? rawIndex : -1;
+    }
+
+    /**
+     * Returns the char index corresponding to the raw (byte) index rawIndex, which must be the start of a char
+     * @param rawIndex
+     * @return
+     */
+    protected int charIndexOf(int rawIndex) {
+        if(!hasMultiByteChars) {
+            return rawIndex - getStartingIndex();
+        }
+        int retVal = 0;
+        for(int i = getStartingIndex(); i < rawIndex; ++retVal) {
             i += utf8CharSize(contents[i]);
         }
+        if(StrandMetrics.ENABLED) {
+            StrandMetrics.recordCharOffsetWalk(rawIndex - getStartingIndex());
+        }
         return retVal;
-
     }
 
     @Override
@@ -335,31 +516,64 @@ public class Strand implements CharSequence {
     /**
      * Splits the Strand into Substrands at sequence boundaries, _without_ the sequence. Trailing empty Strands are not
      * returned, per the contract with String.split. Sequence is taken as a literal series of bytes, NOT a regular expression.
+     * Use splitter to walk the tokens without materializing them all.
      * @param sequence
      * @return
      */
     public Strand[] split(byte[] sequence) {
-        Strand[] allSplits = new Strand[10];
-        int totalNumStrands = 0;
-        Strand[] sink = new Strand[10];
-        Strand toSplit = this;
-        int numSplits;
-        for(numSplits = toSplit.split(sequence, sink); numSplits == sink.length; numSplits = toSplit.split(sequence, sink)) {
-            if(totalNumStrands + numSplits - 1 >= allSplits.length) {
-                allSplits = Arrays.copyOf(allSplits, allSplits.length * 2);
+        long startNanos = StrandMetrics.ENABLED ? System.nanoTime() : 0L;
+        StrandSplitter splitter = new StrandSplitter(this, sequence);
+        Strand[] retVal = new Strand[10];
+        int numSplits = 0;
+        while(splitter.advance()) {
+            if(numSplits == retVal.length) {
+                retVal = Arrays.copyOf(retVal, retVal.length * 2);
             }
-            System.arraycopy(sink, 0, allSplits, totalNumStrands, numSplits - 1);
-            toSplit = sink[numSplits-1];
-            totalNumStrands += numSplits - 1;
+            retVal[numSplits++] = splitter.token();
         }
-        if(numSplits > 0) {
-            if (totalNumStrands + numSplits >= allSplits.length) {
-                allSplits = Arrays.copyOf(allSplits, totalNumStrands + numSplits);
-            }
-            System.arraycopy(sink, 0, allSplits, totalNumStrands, numSplits);
-            totalNumStrands += numSplits;
+        if(StrandMetrics.ENABLED) {
+            StrandMetrics.recordOperation("Strand.split", getStrandLength(), numSplits, startNanos);
         }
-        return Arrays.copyOfRange(allSplits, 0, totalNumStrands);
+        return numSplits == retVal.length ? retVal : Arrays.copyOf(retVal, numSplits);
+    }
+
+    /**
+     * Returns an iterator over the chars of this Strand, for walking them in linear time without boxing
+     * @return
+     */
+    public StrandIterator iterator() {
+        return new StrandIterator(this);
+    }
+
+    /**
+     * Decodes the chars of this Strand into dst, starting at dstBegin, with characters beyond the Basic Multilingual
+     * Plane as surrogate pairs (as String does). Runs of ASCII are copied directly. Decoding stops early if dst fills.
+     * @param dst
+     * @param dstBegin
+     * @return the number of chars decoded
+     */
+    public int getChars(char[] dst, int dstBegin) {
+        return Math.max(iterator().read(dst, dstBegin, dst.length - dstBegin), 0);
+    }
+
+    /**
+     * Returns a splitter that walks the tokens split returns one at a time, without allocating anything to find them
+     * @param sequence
+     * @return
+     */
+    public StrandSplitter splitter(byte[] sequence) {
+        return new StrandSplitter(this, sequence);
+    }
+
+    /**
+     * Same as splitter(byte[]), but if reuseToken is true the splitter returns one reusable Substrand, repositioned
+     * over each token in turn, instead of a new Substrand per token
+     * @param sequence
+     * @param reuseToken
+     * @return
+     */
+    public StrandSplitter splitter(byte[] sequence, boolean reuseToken) {
+        return new StrandSplitter(this, sequence, reuseToken);
     }
 
     /**
@@ -385,7 +599,7 @@ public class Strand implements CharSequence {
      * @return
      */
     public int split(byte[] sequence, Strand[] splitInto) {
-
+        long startNanos = StrandMetrics.ENABLED ? System.nanoTime() : 0L;
         int tokenStarts = getStartingIndex();
         int endIndex = getStrandEnd();
         int resultsIndex = 0;
@@ -401,9 +615,28 @@ public class Strand implements CharSequence {
             }
             --resultsIndex;
         }
+        if(StrandMetrics.ENABLED) {
+            StrandMetrics.recordOperation("Strand.split", getStrandLength(), resultsIndex, startNanos);
+        }
         return resultsIndex;
     }
 
+    /**
+     * Splits as split(byte[]) does, appending the tokens to splitInto as offsets into this Strand's array rather than as
+     * Substrands; nothing is copied and no object is created per token
+     * @param sequence
+     * @param splitInto
+     * @return the number of tokens appended
+     */
+    public int split(byte[] sequence, StrandList splitInto) {
+        long startNanos = StrandMetrics.ENABLED ? System.nanoTime() : 0L;
+        int numTokens = splitInto.addSplit(this, sequence);
+        if(StrandMetrics.ENABLED) {
+            StrandMetrics.recordOperation("Strand.split", getStrandLength(), numTokens, startNanos);
+        }
+        return numTokens;
+    }
+
     /**
      * Extracts from startFrom to immediately before the start of sequence into splitInto at the index splitIntoIndex,
      * returning the index of the last byte of sequence or the end of the strand if sequence does not appear
@@ -415,26 +648,48 @@ public class Strand implements CharSequence {
      */
     protected int nextSplit(byte[] sequence, Strand[] splitInto, int splitIntoIndex, int startFrom) {
         int endIndex = getStrandEnd();
-        int sequenceIndex = 0;
-        int potentialTokenEnd = endIndex;
-        boolean hasMultibyte = false;
-        for(int i = startFrom; i < endIndex; ++i) {
-            hasMultibyte = hasMultiByteChars && (hasMultibyte || contents[i] < 0);
-            if(sequence[sequenceIndex] == contents[i]) {
-                potentialTokenEnd = Math.min(potentialTokenEnd, i);
-                if(sequenceIndex == sequence.length-1) {
-                    splitInto[splitIntoIndex] = new Substrand(contents, startFrom, potentialTokenEnd, hasMultibyte);
-                    return i;
-                }
-                ++sequenceIndex;
-            } else {
-                sequenceIndex = contents[i] == sequence[0] ? 1 : 0;
-                potentialTokenEnd = endIndex;
+        int tokenEnd = findSequence(sequence, startFrom, endIndex);
+        if(tokenEnd < 0) {
+            splitInto[splitIntoIndex] = new Substrand(contents, startFrom, endIndex,
+                    hasMultiByteChars && ByteScanner.hasMultiByteChars(contents, startFrom, endIndex));
+            // sequence didn't appear, so return one past the last index
+            return endIndex;
+        }
+        splitInto[splitIntoIndex] = new Substrand(contents, startFrom, tokenEnd,
+                hasMultiByteChars && ByteScanner.hasMultiByteChars(contents, startFrom, tokenEnd));
+        return tokenEnd + sequence.length - 1;
+    }
+
+    /**
+     * Returns the raw index of the first occurrence of sequence within [from, to) of the contents, or -1 if there is
+     * none; candidates are located by scanning for the first byte of sequence a word at a time
+     * @param sequence
+     * @param from
+     * @param to
+     * @return
+     */
+    protected int findSequence(byte[] sequence, int from, int to) {
+        return findSequence(contents, sequence, from, to);
+    }
+
+    /**
+     * Same as findSequence(byte[], int, int), over any array
+     * @param bytes
+     * @param sequence
+     * @param from
+     * @param to
+     * @return
+     */
+    static int findSequence(byte[] bytes, byte[] sequence, int from, int to) {
+        byte first = sequence[0];
+        int candidatesEnd = to - sequence.length + 1;
+        for(int i = ByteScanner.indexOf(bytes, from, candidatesEnd, first); i >= 0;
+                i = ByteScanner.indexOf(bytes, i + 1, candidatesEnd, first)) {
+            if(ByteScanner.regionMatches(bytes, i + 1, sequence, 1, sequence.length - 1)) {
+                return i;
             }
         }
-        splitInto[splitIntoIndex] = new Substrand(contents, startFrom, endIndex, hasMultibyte);
-        // sequence didn't appear, so return one past the last index
-        return endIndex;
+        return -1;
     }
     /**
      * Implements startsWith as defined in String, but using a provided offset so that this can be reused
@@ -444,14 +699,10 @@ public class Strand implements CharSequence {
      * @return
      */
     protected boolean startsWithStartingFrom(byte[] prefix, int startAt) {
-        if(prefix.length > getStrandLength()) {
+        if(prefix.length > getStrandEnd() - startAt) {
             return false;
         }
-        boolean retVal = true;
-        for(int i = 0; retVal && i < prefix.length; ++i) {
-            retVal = prefix[i] == contents[startAt+i];
-        }
-        return retVal;
+        return ByteScanner.regionMatches(contents, startAt, prefix, 0, prefix.length);
     }
 
     /**
@@ -518,6 +769,30 @@ public class Strand implements CharSequence {
         return retVal;
     }
 
+    /**
+     * Decodes the code point of the 1- to 4-byte UTF-8 sequence starting at index; unlike decodeUTF8Char, this keeps
+     * every bit of characters beyond the Basic Multilingual Plane
+     * @param utf8Bytes
+     * @param index
+     * @return
+     */
+    protected static int decodeCodePoint(byte[] utf8Bytes, int index) {
+        int header = utf8Bytes[index];
+        if(header >= 0) {
+            return header;
+        }
+        int numBytes = utf8CharSize(header);
+        if(numBytes < 2 || numBytes > 4) {
+            throw new IllegalStateException("Byte with value " + Integer.toHexString(0xFF & header) + " at " + index +
+                    " is not a valid UTF-8 char header");
+        }
+        int retVal = (0x7F >>> numBytes) & header;
+        for(int i = 1; i < numBytes; ++i) {
+            retVal = (retVal << 6) | (0x3F & utf8Bytes[index + i]);
+        }
+        return retVal;
+    }
+
     /*
      * Decodes the number of bytes consumed by a UTF-8 char based on its leading byte
      */
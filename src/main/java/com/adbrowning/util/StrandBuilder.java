@@ -0,0 +1,279 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Builds UTF-8 text in a growable byte array, as StringBuilder does for chars: Strands and raw bytes are copied in as
+ * they are, CharSequences and chars are encoded to UTF-8 as they are appended, and ints, longs and booleans are written
+ * as digits and letters directly, without an intermediate String. The result can be taken as a Strand, or written out
+ * with writeTo without being copied again.
+ * <p/>
+ * Builders can be reused: clear empties one while keeping its array. A StrandBuilder is not thread-safe.
+ */
+public class StrandBuilder {
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] MIN_LONG = {'-', '9', '2', '2', '3', '3', '7', '2', '0', '3', '6', '8', '5', '4', '7',
+            '7', '5', '8', '0', '8'};
+    /* replaces unpaired surrogates, as String.getBytes does */
+    private static final byte REPLACEMENT = '?';
+
+    private byte[] bytes;
+    private int length;
+    private boolean hasMultiByteChars;
+
+    public StrandBuilder() {
+        this(64);
+    }
+
+    /**
+     * @param capacity the initial capacity, in bytes
+     */
+    public StrandBuilder(int capacity) {
+        bytes = new byte[Math.max(capacity, 1)];
+    }
+
+    public StrandBuilder append(Strand strand) {
+        int start = strand.getStartingIndex();
+        appendRaw(strand.contents, start, strand.getStrandEnd() - start);
+        hasMultiByteChars |= strand.hasMultiByteChars;
+        return this;
+    }
+
+    /**
+     * Appends UTF-8 bytes as they are
+     * @param utf8Bytes
+     * @return
+     */
+    public StrandBuilder append(byte[] utf8Bytes) {
+        return append(utf8Bytes, 0, utf8Bytes.length);
+    }
+
+    /**
+     * Appends the UTF-8 bytes in [start, end) of utf8Bytes as they are
+     * @param utf8Bytes
+     * @param start
+     * @param end
+     * @return
+     */
+    public StrandBuilder append(byte[] utf8Bytes, int start, int end) {
+        appendRaw(utf8Bytes, start, end - start);
+        hasMultiByteChars = hasMultiByteChars || ByteScanner.hasMultiByteChars(utf8Bytes, start, end);
+        return this;
+    }
+
+    /**
+     * Appends chars encoded as UTF-8; surrogate pairs become 4-byte sequences and unpaired surrogates become '?'
+     * @param chars
+     * @return
+     */
+    public StrandBuilder append(CharSequence chars) {
+        if(chars instanceof Strand) {
+            return append((Strand) chars);
+        }
+        int numChars = chars.length();
+        ensureCapacity(length + 3 * numChars);
+        int i = 0;
+        // runs of ASCII need no encoding
+        for(char c; i < numChars && (c = chars.charAt(i)) < 0x80; ++i) {
+            bytes[length++] = (byte) c;
+        }
+        for(; i < numChars; ++i) {
+            char c = chars.charAt(i);
+            if(Character.isHighSurrogate(c) && i + 1 < numChars && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                encode(Character.toCodePoint(c, chars.charAt(++i)));
+            } else {
+                encode(Character.isSurrogate(c) ? REPLACEMENT : c);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Appends a char encoded as UTF-8; a surrogate becomes '?', so characters beyond the Basic Multilingual Plane must be
+     * appended whole, with appendCodePoint or as part of a CharSequence
+     * @param c
+     * @return
+     */
+    public StrandBuilder append(char c) {
+        ensureCapacity(length + 3);
+        encode(Character.isSurrogate(c) ? REPLACEMENT : c);
+        return this;
+    }
+
+    /**
+     * Appends a code point encoded as UTF-8
+     * @param codePoint
+     * @return
+     */
+    public StrandBuilder appendCodePoint(int codePoint) {
+        if(!Character.isValidCodePoint(codePoint)) {
+            throw new IllegalArgumentException(Integer.toHexString(codePoint) + " is not a valid code point");
+        }
+        ensureCapacity(length + 4);
+        encode(Character.isSurrogate((char) codePoint) && codePoint <= 0xFFFF ? REPLACEMENT : codePoint);
+        return this;
+    }
+
+    /**
+     * Appends value in decimal, as Integer.toString would
+     * @param value
+     * @return
+     */
+    public StrandBuilder append(int value) {
+        return append((long) value);
+    }
+
+    /**
+     * Appends value in decimal, as Long.toString would
+     * @param value
+     * @return
+     */
+    public StrandBuilder append(long value) {
+        if(value == Long.MIN_VALUE) {
+            // cannot be negated
+            appendRaw(MIN_LONG, 0, MIN_LONG.length);
+            return this;
+        }
+        long magnitude = Math.abs(value);
+        int numDigits = 1;
+        for(long bound = 10; numDigits < 19 && magnitude >= bound; bound *= 10) {
+            ++numDigits;
+        }
+        int numBytes = value < 0 ? numDigits + 1 : numDigits;
+        ensureCapacity(length + numBytes);
+        if(value < 0) {
+            bytes[length] = '-';
+        }
+        for(int i = length + numBytes - 1; i >= length + numBytes - numDigits; --i) {
+            bytes[i] = (byte) ('0' + magnitude % 10);
+            magnitude /= 10;
+        }
+        length += numBytes;
+        return this;
+    }
+
+    /**
+     * Appends value as Double.toString formats it (which allocates a String)
+     * @param value
+     * @return
+     */
+    public StrandBuilder append(double value) {
+        return append(Double.toString(value));
+    }
+
+    public StrandBuilder append(boolean value) {
+        byte[] text = value ? TRUE : FALSE;
+        appendRaw(text, 0, text.length);
+        return this;
+    }
+
+    /**
+     * Returns the number of bytes appended
+     * @return
+     */
+    public int byteLength() {
+        return length;
+    }
+
+    /**
+     * Empties the builder, keeping its array for reuse
+     */
+    public void clear() {
+        length = 0;
+        hasMultiByteChars = false;
+    }
+
+    /**
+     * Returns a new Strand holding a copy of the bytes appended
+     * @return
+     */
+    public Strand toStrand() {
+        return new Strand(Arrays.copyOf(bytes, length), false, hasMultiByteChars);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, length);
+    }
+
+    /**
+     * Writes the bytes appended to channel, looping until all are written
+     * @param channel
+     * @throws IOException
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer source = ByteBuffer.wrap(bytes, 0, length);
+        while(source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    /**
+     * Puts the bytes appended into buffer at its position, advancing the position
+     * @param buffer
+     * @throws java.nio.BufferOverflowException if buffer has too little room remaining
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put(bytes, 0, length);
+    }
+
+    @Override
+    public String toString() {
+        return toStrand().toString();
+    }
+
+    private void appendRaw(byte[] source, int start, int numBytes) {
+        ensureCapacity(length + numBytes);
+        System.arraycopy(source, start, bytes, length, numBytes);
+        length += numBytes;
+    }
+
+    /*
+     * Encodes a code point (not a surrogate) as UTF-8; the caller ensures there is room
+     */
+    private void encode(int codePoint) {
+        if(codePoint < 0x80) {
+            bytes[length++] = (byte) codePoint;
+            return;
+        }
+        hasMultiByteChars = true;
+        if(codePoint < 0x800) {
+            bytes[length++] = (byte) (0xC0 | (codePoint >>> 6));
+        } else {
+            if(codePoint < 0x10000) {
+                bytes[length++] = (byte) (0xE0 | (codePoint >>> 12));
+            } else {
+                bytes[length++] = (byte) (0xF0 | (codePoint >>> 18));
+                bytes[length++] = (byte) (0x80 | ((codePoint >>> 12) & 0x3F));
+            }
+            bytes[length++] = (byte) (0x80 | ((codePoint >>> 6) & 0x3F));
+        }
+        bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+    }
+
+    private void ensureCapacity(int capacity) {
+        if(capacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(capacity, 2 * bytes.length));
+        }
+    }
+}
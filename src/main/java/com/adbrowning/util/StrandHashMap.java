@@ -0,0 +1,158 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.util.Arrays;
+
+/**
+ * Map from UTF-8 byte sequences to objects, which can be looked up either by Strand or directly by a range of a byte
+ * array, so that e.g. per-record aggregation can find the entry for a field without creating a Substrand for it. Keys
+ * are hashed a word at a time (not with Strand.hashCode) and kept in an open-addressing table, so there are no entry
+ * objects, and neither lookups nor updates of existing keys allocate anything.
+ * <p/>
+ * A new key's bytes are copied into an array of their own, whether it is put as a Strand or as a byte range, so it may
+ * be a view of a buffer that is about to be reused (such as a field from RecordReader or DelimitedParser). Keys cannot
+ * be removed, other than by clear. A StrandHashMap is not thread-safe.
+ * @param <V>
+ */
+public class StrandHashMap<V> extends StrandHashTable {
+    private Object[] values;
+
+    public StrandHashMap() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize the number of keys to make room for before the table needs to grow
+     */
+    public StrandHashMap(int expectedSize) {
+        super(expectedSize);
+        values = new Object[keys.length];
+    }
+
+    /**
+     * Returns the value for key, or null if there is none
+     * @param key
+     * @return
+     */
+    public V get(Strand key) {
+        return get(key.contents, key.getStartingIndex(), key.getStrandEnd());
+    }
+
+    /**
+     * Returns the value for the key with the bytes in [start, end) of bytes, or null if there is none
+     * @param bytes
+     * @param start
+     * @param end
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public V get(byte[] bytes, int start, int end) {
+        int slot = find(bytes, start, end, ByteScanner.hash(bytes, start, end));
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    public boolean containsKey(Strand key) {
+        return containsKey(key.contents, key.getStartingIndex(), key.getStrandEnd());
+    }
+
+    public boolean containsKey(byte[] bytes, int start, int end) {
+        return find(bytes, start, end, ByteScanner.hash(bytes, start, end)) >= 0;
+    }
+
+    /**
+     * Associates value with key, returning the previous value, or null if there was none; a new key is copied
+     * @param key
+     * @param value
+     * @return
+     */
+    public V put(Strand key, V value) {
+        return put(key.contents, key.getStartingIndex(), key.getStrandEnd(), value);
+    }
+
+    /**
+     * Associates value with the key with the bytes in [start, end) of bytes, returning the previous value, or null if
+     * there was none; a new key is copied
+     * @param bytes
+     * @param start
+     * @param end
+     * @param value
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public V put(byte[] bytes, int start, int end, V value) {
+        int hash = ByteScanner.hash(bytes, start, end);
+        int slot = find(bytes, start, end, hash);
+        if(slot >= 0) {
+            V previous = (V) values[slot];
+            values[slot] = value;
+            return previous;
+        }
+        // insert may grow the table, replacing values, so the slot must be found first
+        slot = insert(~slot, hash, new Strand(Arrays.copyOfRange(bytes, start, end)));
+        values[slot] = value;
+        return null;
+    }
+
+    /**
+     * Returns the number of keys
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        Arrays.fill(values, null);
+    }
+
+    /**
+     * Returns a cursor over the entries, in no particular order; the map must not gain keys while it is in use
+     * @return
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    @Override
+    void onRehash(int[] newSlots, int newCapacity) {
+        Object[] newValues = new Object[newCapacity];
+        moveValues(values, newValues, newSlots);
+        values = newValues;
+    }
+
+    /**
+     * Visits the entries of the map: call advance to move to each entry in turn, then key and value to read it
+     */
+    public class Cursor extends KeyCursor {
+
+        @SuppressWarnings("unchecked")
+        public V value() {
+            return (V) values[slot()];
+        }
+
+        /**
+         * Replaces the value of the current entry
+         * @param value
+         */
+        public void setValue(V value) {
+            values[slot()] = value;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.util.Arrays;
+
+/**
+ * Set of UTF-8 byte sequences, with the same open-addressing table as StrandHashMap, for tracking distinct values
+ * without the values a map would need. Membership can be tested, and keys added, either by Strand or by a range of a
+ * byte array; a new key's bytes are copied into an array of their own, so it may be a view of a buffer that is about to
+ * be reused. Only adding a new key allocates.
+ * <p/>
+ * To deduplicate keys into shared storage and get a canonical Strand back for each, use StrandPool instead. Keys cannot
+ * be removed, other than by clear. A StrandHashSet is not thread-safe.
+ */
+public class StrandHashSet extends StrandHashTable {
+
+    public StrandHashSet() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize the number of keys to make room for before the table needs to grow
+     */
+    public StrandHashSet(int expectedSize) {
+        super(expectedSize);
+    }
+
+    public boolean contains(Strand key) {
+        return contains(key.contents, key.getStartingIndex(), key.getStrandEnd());
+    }
+
+    public boolean contains(byte[] bytes, int start, int end) {
+        return find(bytes, start, end, ByteScanner.hash(bytes, start, end)) >= 0;
+    }
+
+    /**
+     * Adds key, returning true if it was not already present; a new key is copied
+     * @param key
+     * @return
+     */
+    public boolean add(Strand key) {
+        return add(key.contents, key.getStartingIndex(), key.getStrandEnd());
+    }
+
+    /**
+     * Adds the key with the bytes in [start, end) of bytes, returning true if it was not already present; a new key is
+     * copied
+     * @param bytes
+     * @param start
+     * @param end
+     * @return
+     */
+    public boolean add(byte[] bytes, int start, int end) {
+        int hash = ByteScanner.hash(bytes, start, end);
+        int slot = find(bytes, start, end, hash);
+        if(slot >= 0) {
+            return false;
+        }
+        insert(~slot, hash, new Strand(Arrays.copyOfRange(bytes, start, end)));
+        return true;
+    }
+
+    /**
+     * Returns the number of keys
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+    }
+
+    /**
+     * Returns a cursor over the keys, in no particular order; the set must not gain keys while it is in use
+     * @return
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Visits the keys of the set: call advance to move to each key in turn, then key to read it
+     */
+    public class Cursor extends KeyCursor {
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * The open-addressing table of Strand keys behind StrandHashMap, StrandIntHashMap, StrandHashSet and StrandPool. Keys are probed by
+ * raw byte range, so a lookup never needs a Strand for the key it is looking for; each key's hash (ByteScanner.hash)
+ * is kept alongside it, so most mismatched probes and every rehash are settled without touching the key bytes.
+ * Collisions are resolved by linear probing, and the table doubles when it becomes half full; keys are never removed
+ * except by clear. Subclasses holding values in parallel arrays move them in onRehash (with moveValues) and reset them
+ * in clear, and extend KeyCursor with access to the value of the current entry.
+ */
+class StrandHashTable {
+    private static final int MIN_CAPACITY = 16;
+
+    int[] hashes;
+    /* a null key marks an empty slot */
+    Strand[] keys;
+    int size;
+
+    StrandHashTable(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while(capacity >>> 1 < expectedSize) {
+            capacity <<= 1;
+        }
+        hashes = new int[capacity];
+        keys = new Strand[capacity];
+    }
+
+    /**
+     * Returns the slot holding the key with the bytes in [start, end) of bytes, or, if there is none, the complement
+     * (a negative number) of the empty slot where it belongs
+     * @param bytes
+     * @param start
+     * @param end
+     * @param hash ByteScanner.hash of the range
+     * @return
+     */
+    final int find(byte[] bytes, int start, int end, int hash) {
+        int mask = keys.length - 1;
+        int length = end - start;
+        int slot = hash & mask;
+        for(Strand key = keys[slot]; key != null; key = keys[slot]) {
+            if(hashes[slot] == hash && key.getStrandLength() == length &&
+                    ByteScanner.regionMatches(key.contents, key.getStartingIndex(), bytes, start, length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    /**
+     * Stores key, which must not already be present, growing the table first if it is full; returns the slot key was
+     * stored in
+     * @param emptySlot the complement of the value returned by find for key
+     * @param hash
+     * @param key
+     * @return
+     */
+    final int insert(int emptySlot, int hash, Strand key) {
+        int slot = emptySlot;
+        if(size + 1 > keys.length >>> 1) {
+            rehash(keys.length << 1);
+            int mask = keys.length - 1;
+            slot = hash & mask;
+            while(keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+        }
+        hashes[slot] = hash;
+        keys[slot] = key;
+        ++size;
+        return slot;
+    }
+
+    /**
+     * Returns the first occupied slot after slot, or -1 if there is none; start from -1 to visit every key
+     * @param slot
+     * @return
+     */
+    final int nextSlot(int slot) {
+        for(int i = slot + 1; i < keys.length; ++i) {
+            if(keys[i] != null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    /**
+     * Called after the keys have moved to a table of newCapacity slots; newSlots[i] is the new slot of the key that was
+     * in slot i, or -1 if slot i was empty
+     * @param newSlots
+     * @param newCapacity
+     */
+    void onRehash(int[] newSlots, int newCapacity) {
+    }
+
+    /**
+     * Copies each element of values, an array of any type parallel to keys, to the new slot of its key in newValues
+     * @param values
+     * @param newValues an array of the same type, of the new capacity
+     * @param newSlots as passed to onRehash
+     */
+    static void moveValues(Object values, Object newValues, int[] newSlots) {
+        for(int i = 0; i < newSlots.length; ++i) {
+            if(newSlots[i] >= 0) {
+                System.arraycopy(values, i, newValues, newSlots[i], 1);
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] oldHashes = hashes;
+        Strand[] oldKeys = keys;
+        int[] newSlots = new int[oldKeys.length];
+        hashes = new int[capacity];
+        keys = new Strand[capacity];
+        int mask = capacity - 1;
+        for(int i = 0; i < oldKeys.length; ++i) {
+            if(oldKeys[i] == null) {
+                newSlots[i] = -1;
+                continue;
+            }
+            int slot = oldHashes[i] & mask;
+            while(keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            hashes[slot] = oldHashes[i];
+            keys[slot] = oldKeys[i];
+            newSlots[i] = slot;
+        }
+        onRehash(newSlots, capacity);
+    }
+
+    /**
+     * Visits the keys of the table: call advance to move to each in turn, then key to read it
+     */
+    class KeyCursor {
+        private int slot = -1;
+
+        /**
+         * Moves to the next entry, returning false if there are no more
+         * @return
+         */
+        public boolean advance() {
+            if(slot < keys.length) {
+                slot = nextSlot(slot);
+                if(slot < 0) {
+                    slot = keys.length;
+                }
+            }
+            return slot < keys.length;
+        }
+
+        public Strand key() {
+            return keys[slot()];
+        }
+
+        /**
+         * Returns the slot of the current entry, for access to the parallel arrays of values
+         * @return
+         */
+        final int slot() {
+            if(slot < 0 || slot >= keys.length) {
+                throw new NoSuchElementException("The cursor is not at an entry");
+            }
+            return slot;
+        }
+    }
+}
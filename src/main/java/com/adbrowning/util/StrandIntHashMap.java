@@ -0,0 +1,165 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.util.Arrays;
+
+/**
+ * Map from UTF-8 byte sequences to ints, such as counts or ids, with the same open-addressing table as StrandHashMap;
+ * the values are held in an int array, so nothing is boxed, and addTo updates a counter in a single lookup without
+ * allocating. Lookups of absent keys return the map's missingValue, which is also the value addTo starts from.
+ * <p/>
+ * As with StrandHashMap, a new key's bytes are copied into an array of their own, so put and addTo may be given a view
+ * of a buffer that is about to be reused (such as a field from RecordReader or DelimitedParser); only the first
+ * occurrence of each key allocates. Keys cannot be removed, other than by clear. A StrandIntHashMap is not thread-safe.
+ */
+public class StrandIntHashMap extends StrandHashTable {
+    private final int missingValue;
+    private int[] values;
+
+    public StrandIntHashMap() {
+        this(0, 0);
+    }
+
+    /**
+     * @param expectedSize the number of keys to make room for before the table needs to grow
+     * @param missingValue the value of keys that are not in the map
+     */
+    public StrandIntHashMap(int expectedSize, int missingValue) {
+        super(expectedSize);
+        this.missingValue = missingValue;
+        values = new int[keys.length];
+    }
+
+    public int get(Strand key) {
+        return get(key.contents, key.getStartingIndex(), key.getStrandEnd());
+    }
+
+    /**
+     * Returns the value for the key with the bytes in [start, end) of bytes, or missingValue if there is none
+     * @param bytes
+     * @param start
+     * @param end
+     * @return
+     */
+    public int get(byte[] bytes, int start, int end) {
+        int slot = find(bytes, start, end, ByteScanner.hash(bytes, start, end));
+        return slot < 0 ? missingValue : values[slot];
+    }
+
+    public boolean containsKey(Strand key) {
+        return containsKey(key.contents, key.getStartingIndex(), key.getStrandEnd());
+    }
+
+    public boolean containsKey(byte[] bytes, int start, int end) {
+        return find(bytes, start, end, ByteScanner.hash(bytes, start, end)) >= 0;
+    }
+
+    /**
+     * Associates value with key, returning the previous value, or missingValue if there was none; a new key is copied
+     * @param key
+     * @param value
+     * @return
+     */
+    public int put(Strand key, int value) {
+        return put(key.contents, key.getStartingIndex(), key.getStrandEnd(), value);
+    }
+
+    public int put(byte[] bytes, int start, int end, int value) {
+        int slot = slotFor(bytes, start, end);
+        int previous = values[slot];
+        values[slot] = value;
+        return previous;
+    }
+
+    /**
+     * Adds delta to the value for key (missingValue if key is new), returning the sum
+     * @param key
+     * @param delta
+     * @return
+     */
+    public int addTo(Strand key, int delta) {
+        return addTo(key.contents, key.getStartingIndex(), key.getStrandEnd(), delta);
+    }
+
+    public int addTo(byte[] bytes, int start, int end, int delta) {
+        // slotFor may grow the table, replacing values, so it must be called before values is read
+        int slot = slotFor(bytes, start, end);
+        return values[slot] += delta;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getMissingValue() {
+        return missingValue;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        Arrays.fill(values, missingValue);
+    }
+
+    /**
+     * Returns a cursor over the entries, in no particular order; the map must not gain keys while it is in use
+     * @return
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /*
+     * Returns the slot of the key with the given bytes, inserting a copy of them with missingValue if it is new
+     */
+    private int slotFor(byte[] bytes, int start, int end) {
+        int hash = ByteScanner.hash(bytes, start, end);
+        int slot = find(bytes, start, end, hash);
+        if(slot >= 0) {
+            return slot;
+        }
+        slot = insert(~slot, hash, new Strand(Arrays.copyOfRange(bytes, start, end)));
+        values[slot] = missingValue;
+        return slot;
+    }
+
+    @Override
+    void onRehash(int[] newSlots, int newCapacity) {
+        int[] newValues = new int[newCapacity];
+        moveValues(values, newValues, newSlots);
+        values = newValues;
+    }
+
+    /**
+     * Visits the entries of the map: call advance to move to each entry in turn, then key and value to read it
+     */
+    public class Cursor extends KeyCursor {
+
+        public int value() {
+            return values[slot()];
+        }
+
+        /**
+         * Replaces the value of the current entry
+         * @param value
+         */
+        public void setValue(int value) {
+            values[slot()] = value;
+        }
+    }
+}
@@ -22,6 +22,10 @@ import java.util.Iterator;
  * Provides linear access to a Strand; this has the benefit of having constant time access to the next element, whereas
  * a for loop calling charAt on a Strand may be O(n^2), as it has to do a linear scan to find the nth char if there are
  * multi-byte characters. This also adds some convenience methods to make tokenizing easier.
+ * <p/>
+ * Characters outside the Basic Multilingual Plane (4-byte UTF-8 sequences) are returned by nextChar as a surrogate
+ * pair, high surrogate first, over two calls; nextCodePoint returns them whole. For walking text without boxing, use
+ * nextChar, nextCodePoint, or read to decode a run of chars into an array at a time.
  */
 public class StrandIterator implements Iterator<Character> {
     protected int startIndex;
@@ -30,6 +34,8 @@ public class StrandIterator implements Iterator<Character> {
 
     protected byte[] bytes;
     protected int index = -1;
+    /* the second half of a surrogate pair, when nextChar has returned only the first */
+    private char pendingLowSurrogate;
 
     public StrandIterator(byte[] bytes, int offset, int length) {
         this.bytes = bytes;
@@ -73,14 +79,101 @@ public class StrandIterator implements Iterator<Character> {
     }
 
     public char nextChar() {
-        if(index == -1) {
-            index = startIndex;
-        } else {
-            index += Strand.utf8CharSize(bytes[index]);
+        if(pendingLowSurrogate != 0) {
+            char retVal = pendingLowSurrogate;
+            pendingLowSurrogate = 0;
+            return retVal;
         }
+        index = nextIndex();
+        int codePoint = Strand.decodeCodePoint(bytes, index);
+        if(codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            pendingLowSurrogate = Character.lowSurrogate(codePoint);
+            return Character.highSurrogate(codePoint);
+        }
+        return (char) codePoint;
+    }
+
+    /**
+     * Returns the next code point, or -1 if there are no more. If nextChar has just returned the high surrogate of a
+     * pair, this returns the low surrogate.
+     * @return
+     */
+    public int nextCodePoint() {
+        if(pendingLowSurrogate != 0) {
+            int retVal = pendingLowSurrogate;
+            pendingLowSurrogate = 0;
+            return retVal;
+        }
+        int nextIndex = nextIndex();
+        if(nextIndex >= oneBeyondLastValidIndex) {
+            return -1;
+        }
+        index = nextIndex;
+        return Strand.decodeCodePoint(bytes, index);
+    }
 
-        char retVal = Strand.decodeUTF8Char(bytes, index);
-        return retVal;
+    /**
+     * Decodes up to length of the following chars into dst, starting at offset, as though by repeated calls to
+     * nextChar; runs of ASCII are copied directly. Afterwards, the most recent char (for the token methods) is the last
+     * one decoded.
+     * @param dst
+     * @param offset
+     * @param length
+     * @return the number of chars decoded, or -1 if there were none left
+     */
+    public int read(char[] dst, int offset, int length) {
+        if(offset < 0 || length < 0 || offset + length > dst.length) {
+            throw new IndexOutOfBoundsException("[" + offset + ", " + (offset + length) + ") is not within dst");
+        }
+        int charIndex = offset;
+        int limit = offset + length;
+        if(length > 0 && pendingLowSurrogate != 0) {
+            dst[charIndex++] = pendingLowSurrogate;
+            pendingLowSurrogate = 0;
+        }
+        int byteIndex = nextIndex();
+        int end = oneBeyondLastValidIndex;
+        while(charIndex < limit && byteIndex < end) {
+            int asciiEnd = Math.min(end, byteIndex + limit - charIndex);
+            if(bytes[byteIndex] >= 0) {
+                for(; byteIndex < asciiEnd && bytes[byteIndex] >= 0; ++byteIndex) {
+                    dst[charIndex++] = (char) bytes[byteIndex];
+                }
+                index = byteIndex - 1;
+                continue;
+            }
+            index = byteIndex;
+            int header = bytes[byteIndex];
+            if((header & 0xE0) == 0xC0 && byteIndex + 1 < end) {
+                dst[charIndex++] = (char) (((header & 0x1F) << 6) | (bytes[byteIndex + 1] & 0x3F));
+                byteIndex += 2;
+            } else if((header & 0xF0) == 0xE0 && byteIndex + 2 < end) {
+                dst[charIndex++] = (char) (((header & 0x0F) << 12) | ((bytes[byteIndex + 1] & 0x3F) << 6) |
+                        (bytes[byteIndex + 2] & 0x3F));
+                byteIndex += 3;
+            } else {
+                int codePoint = Strand.decodeCodePoint(bytes, byteIndex);
+                if(codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                    dst[charIndex++] = Character.highSurrogate(codePoint);
+                    if(charIndex < limit) {
+                        dst[charIndex++] = Character.lowSurrogate(codePoint);
+                    } else {
+                        pendingLowSurrogate = Character.lowSurrogate(codePoint);
+                    }
+                } else {
+                    dst[charIndex++] = (char) codePoint;
+                }
+                byteIndex += Strand.utf8CharSize(header);
+            }
+        }
+        return charIndex == offset && length > 0 ? -1 : charIndex - offset;
+    }
+
+    /*
+     * Returns the index of the first byte of the char following the most recent one
+     */
+    private int nextIndex() {
+        return index == -1 ? startIndex : index + Strand.utf8CharSize(bytes[index]);
     }
 
     /**
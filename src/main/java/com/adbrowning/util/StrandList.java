@@ -0,0 +1,316 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.adbrowning.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A growable list of Strands stored column-wise: rather than an object per element, each element is a pair of ints,
+ * its start and end, in one shared array, pointing into a byte array (a page) shared with many other elements. The
+ * bytes of added Strands are copied into pages of pageSize bytes owned by the list, while splitting a Strand into the
+ * list copies nothing: its tokens point straight into the Strand's own array. Either way, the overhead is eight bytes
+ * per element, and iterating reads two adjacent ints rather than chasing a reference to an object.
+ * <p/>
+ * Elements are materialized only on demand: get returns a new Substrand view, iterator(true) reuses a single
+ * flyweight, and getPage, getStart and getEnd give the raw bounds without creating anything. The pages are never
+ * written once an element points into them, so views remain valid until the list is cleared, and those over a split
+ * Strand's array for as long as that array is unchanged.
+ * <p/>
+ * A StrandList is not thread-safe.
+ */
+public class StrandList implements Iterable<Strand> {
+    public static final int DEFAULT_PAGE_SIZE = 1 << 16;
+
+    private final int pageSize;
+    /* start and end of each element, within the page holding it */
+    private int[] bounds;
+    private int size;
+
+    /* the arrays elements point into; consecutive elements share a page, and pages[k] holds elements from
+     * pageFirstElements[k] up to pageFirstElements[k+1]. The same array may appear more than once. */
+    private byte[][] pages = new byte[4][];
+    private int[] pageFirstElements = new int[4];
+    /* false for pages known to hold only single-byte chars */
+    private boolean[] pageMultiByte = new boolean[4];
+    private int numPages;
+
+    /* the page added Strands are currently being copied into */
+    private byte[] ownedPage;
+    private int ownedPosition;
+
+    public StrandList() {
+        this(16, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * @param initialCapacity the number of elements for which to allocate room up front
+     * @param pageSize the size of the pages into which added Strands are copied; longer Strands get a page to
+     *                 themselves
+     */
+    public StrandList(int initialCapacity, int pageSize) {
+        if(initialCapacity < 0 || pageSize < 1) {
+            throw new IllegalArgumentException("initialCapacity (" + initialCapacity + ") must not be negative, and " +
+                    "pageSize (" + pageSize + ") must be positive");
+        }
+        this.pageSize = pageSize;
+        bounds = new int[2 * Math.max(initialCapacity, 1)];
+    }
+
+    /**
+     * Returns the number of elements
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends a copy of the bytes of strand
+     * @param strand
+     */
+    public void add(Strand strand) {
+        add(strand.contents, strand.getStartingIndex(), strand.getStrandEnd(), strand.hasMultiByteChars);
+    }
+
+    /**
+     * Appends a copy of the UTF-8 bytes in [start, end) of bytes
+     * @param bytes
+     * @param start
+     * @param end
+     */
+    public void add(byte[] bytes, int start, int end) {
+        add(bytes, start, end, ByteScanner.hasMultiByteChars(bytes, start, end));
+    }
+
+    private void add(byte[] bytes, int start, int end, boolean multiByte) {
+        int length = end - start;
+        if(ownedPage == null || ownedPosition + length > ownedPage.length) {
+            ownedPage = new byte[Math.max(pageSize, length)];
+            ownedPosition = 0;
+        }
+        System.arraycopy(bytes, start, ownedPage, ownedPosition, length);
+        usePage(ownedPage, multiByte);
+        addBounds(ownedPosition, ownedPosition + length);
+        ownedPosition += length;
+    }
+
+    /**
+     * Splits strand as Strand.split does, appending each token as an element that points into strand's own array;
+     * nothing is copied
+     * @param strand
+     * @param sequence the delimiter; a literal series of bytes, NOT a regular expression
+     * @return the number of elements appended
+     */
+    public int addSplit(Strand strand, byte[] sequence) {
+        if(sequence.length == 0) {
+            throw new IllegalArgumentException("sequence must contain at least one byte");
+        }
+        int firstElement = size;
+        int end = strand.getStrandEnd();
+        usePage(strand.contents, strand.hasMultiByteChars);
+        // trailing empty tokens are not kept, so remember the size after the last non-empty one
+        int nonEmptySize = size;
+        for(int tokenStart = strand.getStartingIndex(); tokenStart < end;) {
+            int tokenEnd = strand.findSequence(sequence, tokenStart, end);
+            if(tokenEnd < 0) {
+                tokenEnd = end;
+            }
+            addBounds(tokenStart, tokenEnd);
+            if(tokenEnd > tokenStart) {
+                nonEmptySize = size;
+            }
+            tokenStart = tokenEnd + sequence.length;
+        }
+        size = nonEmptySize;
+        return size - firstElement;
+    }
+
+    /**
+     * Returns a new view of the element at index
+     * @param index
+     * @return
+     */
+    public Strand get(int index) {
+        checkIndex(index);
+        int page = pageOf(index);
+        int start = bounds[2 * index];
+        int end = bounds[2 * index + 1];
+        return new Substrand(pages[page], start, end, hasMultiByteChars(page, start, end));
+    }
+
+    /**
+     * Returns the array holding the bytes of the element at index
+     * @param index
+     * @return
+     */
+    public byte[] getPage(int index) {
+        checkIndex(index);
+        return pages[pageOf(index)];
+    }
+
+    /**
+     * Returns the index within its page of the first byte of the element at index
+     * @param index
+     * @return
+     */
+    public int getStart(int index) {
+        checkIndex(index);
+        return bounds[2 * index];
+    }
+
+    /**
+     * Returns the index within its page one past the last byte of the element at index
+     * @param index
+     * @return
+     */
+    public int getEnd(int index) {
+        checkIndex(index);
+        return bounds[2 * index + 1];
+    }
+
+    /**
+     * Returns the number of bytes in the element at index
+     * @param index
+     * @return
+     */
+    public int byteLength(int index) {
+        checkIndex(index);
+        return bounds[2 * index + 1] - bounds[2 * index];
+    }
+
+    /**
+     * Removes every element, keeping the offset array for reuse; pages owned by the list are released
+     */
+    public void clear() {
+        size = 0;
+        Arrays.fill(pages, 0, numPages, null);
+        numPages = 0;
+        ownedPage = null;
+        ownedPosition = 0;
+    }
+
+    /**
+     * Returns an iterator over new views of the elements
+     * @return
+     */
+    @Override
+    public Iterator<Strand> iterator() {
+        return iterator(false);
+    }
+
+    /**
+     * Returns an iterator over the elements
+     * @param reuseToken true to return the same Substrand for every element, repositioned over each in turn and so only
+     *                   valid until next is called again, rather than a new one
+     * @return
+     */
+    public Iterator<Strand> iterator(final boolean reuseToken) {
+        return new Iterator<Strand>() {
+            private final Substrand reused = reuseToken ? new Substrand(new byte[0], 0, 0, false) : null;
+            private int index;
+            private int page;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public Strand next() {
+                if(index >= size) {
+                    throw new NoSuchElementException();
+                }
+                // elements are in page order, so the page only ever moves forward
+                while(page + 1 < numPages && pageFirstElements[page + 1] <= index) {
+                    ++page;
+                }
+                int start = bounds[2 * index];
+                int end = bounds[2 * index + 1];
+                ++index;
+                boolean multiByte = hasMultiByteChars(page, start, end);
+                if(reused == null) {
+                    return new Substrand(pages[page], start, end, multiByte);
+                }
+                reused.setBounds(pages[page], start, end, multiByte);
+                return reused;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("StrandList iterators do not support remove");
+            }
+        };
+    }
+
+    private boolean hasMultiByteChars(int page, int start, int end) {
+        return pageMultiByte[page] && ByteScanner.hasMultiByteChars(pages[page], start, end);
+    }
+
+    /*
+     * Makes page the one that the next elements are added to
+     */
+    private void usePage(byte[] page, boolean multiByte) {
+        if(numPages > 0 && pages[numPages - 1] == page) {
+            pageMultiByte[numPages - 1] |= multiByte;
+            return;
+        }
+        if(numPages == pages.length) {
+            pages = Arrays.copyOf(pages, numPages * 2);
+            pageFirstElements = Arrays.copyOf(pageFirstElements, numPages * 2);
+            pageMultiByte = Arrays.copyOf(pageMultiByte, numPages * 2);
+        }
+        pages[numPages] = page;
+        pageFirstElements[numPages] = size;
+        pageMultiByte[numPages] = multiByte;
+        ++numPages;
+    }
+
+    private void addBounds(int start, int end) {
+        if(2 * size == bounds.length) {
+            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        }
+        bounds[2 * size] = start;
+        bounds[2 * size + 1] = end;
+        ++size;
+    }
+
+    /*
+     * Returns the last page whose first element is at or before index
+     */
+    private int pageOf(int index) {
+        int low = 0;
+        int high = numPages - 1;
+        while(low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if(pageFirstElements[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private void checkIndex(int index) {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index + " is beyond the bounds of this StrandList of size " + size);
+        }
+    }
+}
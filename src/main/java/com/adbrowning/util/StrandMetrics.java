@@ -0,0 +1,185 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.lang.reflect.Constructor;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the work done on the library's hot paths, to show in production where time goes: bytes scanned, comparisons
+ * and shifts in KMPSearcher and BMSearcher, linear walks to convert between char and byte offsets in Strands with
+ * multi-byte chars, and searchers compiled afresh on every call (Strand.indexOf(byte[]) and the like). Searches and
+ * splits covering at least LARGE_OPERATION_BYTES are also counted, and published as Java Flight Recorder events when
+ * the optional JFR backend (src/jfr/java, built on JDK 11 and later) is on the class path.
+ * <p/>
+ * Metrics are off unless the JVM is started with -Dcom.adbrowning.util.metrics=true. The flag is read once, into a
+ * static final field that guards every recording site, so when it is off the JIT compiles the recording away entirely.
+ * When it is on, each search or walk adds its totals to shared atomic counters once, when it finishes, rather than per
+ * byte. Counters are cumulative from startup (or the last reset); take a snapshot before and after a piece of work and
+ * subtract to see what it cost.
+ */
+public final class StrandMetrics {
+    public static final String ENABLED_PROPERTY = "com.adbrowning.util.metrics";
+    public static final String LARGE_OPERATION_PROPERTY = "com.adbrowning.util.metrics.largeOperationBytes";
+    public static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+    /* searches and splits covering at least this many bytes are counted as large, and published as events */
+    public static final long LARGE_OPERATION_BYTES = Long.getLong(LARGE_OPERATION_PROPERTY, 1 << 20);
+
+    private static final String JFR_SINK_CLASS = "com.adbrowning.util.JfrMetricsEventSink";
+
+    public enum Counter {
+        KMP_BYTES_SCANNED,
+        /* one per text byte, plus one per shift */
+        KMP_COMPARISONS,
+        /* falls back along the prefix function after a mismatch */
+        KMP_SHIFTS,
+        BM_BYTES_SCANNED,
+        BM_COMPARISONS,
+        /* moves of the pattern's alignment after a mismatch or match */
+        BM_SHIFTS,
+        /* linear scans converting between char and byte offsets (charAt, length and friends with multi-byte chars) */
+        CHAR_OFFSET_WALKS,
+        CHAR_OFFSET_WALK_BYTES,
+        /* searchers compiled for a single call, as by Strand.indexOf(byte[]), rather than compiled once and reused */
+        SEARCHERS_COMPILED_PER_CALL,
+        LARGE_OPERATIONS
+    }
+
+    private static final Counter[] COUNTERS = Counter.values();
+    private static final AtomicLongArray COUNTS = new AtomicLongArray(COUNTERS.length);
+    /* null unless metrics are enabled and the JFR backend is present and works on this JVM */
+    private static final MetricsEventSink EVENT_SINK = ENABLED ? loadEventSink() : null;
+
+    private StrandMetrics() {}
+
+    /**
+     * Returns the current value of every counter
+     * @return
+     */
+    public static Snapshot snapshot() {
+        long[] counts = new long[COUNTERS.length];
+        for(int i = 0; i < counts.length; ++i) {
+            counts[i] = COUNTS.get(i);
+        }
+        return new Snapshot(counts);
+    }
+
+    /**
+     * Sets every counter back to zero
+     */
+    public static void reset() {
+        for(int i = 0; i < COUNTERS.length; ++i) {
+            COUNTS.set(i, 0);
+        }
+    }
+
+    /**
+     * Returns true if large operations are being published as JFR events
+     * @return
+     */
+    public static boolean isPublishingEvents() {
+        return EVENT_SINK != null;
+    }
+
+    static void add(Counter counter, long amount) {
+        COUNTS.addAndGet(counter.ordinal(), amount);
+    }
+
+    static void recordCharOffsetWalk(long numBytes) {
+        COUNTS.incrementAndGet(Counter.CHAR_OFFSET_WALKS.ordinal());
+        COUNTS.addAndGet(Counter.CHAR_OFFSET_WALK_BYTES.ordinal(), numBytes);
+    }
+
+    /**
+     * Records a search or split that covered numBytes, if it is large
+     * @param operation the class and method, e.g. "Strand.split"
+     * @param numBytes
+     * @param numResults the number of matches found or tokens produced
+     * @param startNanos System.nanoTime() when the operation began
+     */
+    static void recordOperation(String operation, long numBytes, long numResults, long startNanos) {
+        if(numBytes >= LARGE_OPERATION_BYTES) {
+            COUNTS.incrementAndGet(Counter.LARGE_OPERATIONS.ordinal());
+            if(EVENT_SINK != null) {
+                EVENT_SINK.onLargeOperation(operation, numBytes, numResults, System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    /*
+     * Loads the JFR backend if it is enabled and present; it is missing from older JDKs' class paths, and fails to link
+     * where jdk.jfr is not available, either of which leaves the counters without events
+     */
+    private static MetricsEventSink loadEventSink() {
+        if(!Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY + ".jfr", "true"))) {
+            return null;
+        }
+        try {
+            Constructor<?> constructor = Class.forName(JFR_SINK_CLASS).getDeclaredConstructor();
+            return (MetricsEventSink) constructor.newInstance();
+        } catch(ReflectiveOperationException | LinkageError | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * The values of the counters at one moment
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+
+        private Snapshot(long[] counts) {
+            this.counts = counts;
+        }
+
+        public long get(Counter counter) {
+            return counts[counter.ordinal()];
+        }
+
+        /**
+         * Returns the change in each counter since earlier
+         * @param earlier
+         * @return
+         */
+        public Snapshot minus(Snapshot earlier) {
+            long[] retVal = new long[counts.length];
+            for(int i = 0; i < retVal.length; ++i) {
+                retVal[i] = counts[i] - earlier.counts[i];
+            }
+            return new Snapshot(retVal);
+        }
+
+        /**
+         * Returns the counters by name, in declaration order, for export
+         * @return
+         */
+        public Map<String, Long> toMap() {
+            Map<String, Long> retVal = new LinkedHashMap<String, Long>();
+            for(Counter counter : COUNTERS) {
+                retVal.put(counter.name(), counts[counter.ordinal()]);
+            }
+            return retVal;
+        }
+
+        @Override
+        public String toString() {
+            return toMap().toString();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Interns Strands: each distinct byte sequence is stored once, and intern returns the same canonical Strand for every
+ * Strand (or byte range) with those bytes. The bytes are copied into large shared pages rather than kept in the arrays
+ * they arrived in, so a canonical Strand pins neither its source's array nor an array of its own, and repeated values
+ * cost only a table lookup.
+ * <p/>
+ * Values of up to a quarter of pageSize bytes are packed into pages; longer values each get an array to themselves.
+ * The pool may be bounded by maxArenaBytes: when storing a value would take the arena past that, every value is evicted
+ * at once (the pages are released and the table is cleared) and the pool starts again. Strands handed out before an
+ * eviction remain valid, but are no longer canonical. Statistics on the hits, misses and evictions are kept for sizing
+ * the pool.
+ * <p/>
+ * A StrandPool is not thread-safe; give each thread its own, or synchronize on the pool.
+ */
+public class StrandPool {
+    public static final int DEFAULT_PAGE_SIZE = 1 << 20;
+
+    private final int pageSize;
+    private final long maxArenaBytes;
+    private final List<byte[]> pages = new ArrayList<byte[]>();
+    private byte[] page;
+    private int pagePosition;
+
+    /* the canonical Strands, keyed by themselves */
+    private final StrandHashTable table = new StrandHashTable(0);
+
+    private long arenaBytes;
+    private long storedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public StrandPool() {
+        this(DEFAULT_PAGE_SIZE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param pageSize the size of the arrays into which values are packed
+     * @param maxArenaBytes the number of bytes of pages past which the pool evicts everything
+     */
+    public StrandPool(int pageSize, long maxArenaBytes) {
+        if(pageSize < 16 || maxArenaBytes < pageSize) {
+            throw new IllegalArgumentException("pageSize (" + pageSize + ") must be at least 16, and maxArenaBytes (" +
+                    maxArenaBytes + ") at least pageSize");
+        }
+        this.pageSize = pageSize;
+        this.maxArenaBytes = maxArenaBytes;
+    }
+
+    /**
+     * Returns the canonical Strand with the same bytes as strand, storing them if they are not already in the pool
+     * @param strand
+     * @return
+     */
+    public Strand intern(Strand strand) {
+        return intern(strand.contents, strand.getStartingIndex(), strand.getStrandEnd(), strand.hasMultiByteChars);
+    }
+
+    /**
+     * Returns the canonical Strand for the UTF-8 bytes in [start, end) of bytes, storing them if they are not already
+     * in the pool
+     * @param bytes
+     * @param start
+     * @param end
+     * @return
+     */
+    public Strand intern(byte[] bytes, int start, int end) {
+        return intern(bytes, start, end, true);
+    }
+
+    private Strand intern(byte[] bytes, int start, int end, boolean mayHaveMultiByteChars) {
+        int hash = ByteScanner.hash(bytes, start, end);
+        int slot = table.find(bytes, start, end, hash);
+        if(slot >= 0) {
+            ++hits;
+            return table.keys[slot];
+        }
+        ++misses;
+        int length = end - start;
+        boolean multiByte = mayHaveMultiByteChars && ByteScanner.hasMultiByteChars(bytes, start, end);
+        if(length > maxArenaBytes) {
+            // too big to pool at all; hand back an unshared copy
+            return new Substrand(Arrays.copyOfRange(bytes, start, end), 0, length, multiByte);
+        }
+        long evictionsBefore = evictions;
+        Substrand value = store(bytes, start, length, multiByte);
+        if(evictions != evictionsBefore) {
+            // storing evicted everything, so the slot found before is stale
+            slot = table.find(bytes, start, end, hash);
+        }
+        table.insert(~slot, hash, value);
+        storedBytes += length;
+        return value;
+    }
+
+    /**
+     * Returns the number of distinct values in the pool
+     * @return
+     */
+    public int size() {
+        return table.size;
+    }
+
+    /**
+     * Returns the number of bytes of pages (and of arrays given to long values) currently held
+     * @return
+     */
+    public long getArenaBytes() {
+        return arenaBytes;
+    }
+
+    /**
+     * Returns the number of bytes of values currently stored; the remainder of the arena bytes is the unused tails of
+     * pages
+     * @return
+     */
+    public long getStoredBytes() {
+        return storedBytes;
+    }
+
+    /**
+     * Returns the number of calls to intern that found their value already in the pool
+     * @return
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of calls to intern that had to store their value
+     * @return
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of values evicted to keep the arena within maxArenaBytes
+     * @return
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Removes every value and releases the pages; the statistics are kept
+     */
+    public void clear() {
+        table.clear();
+        pages.clear();
+        page = null;
+        pagePosition = 0;
+        arenaBytes = 0;
+        storedBytes = 0;
+    }
+
+    /*
+     * Copies the value into the arena, evicting everything first if the arena would otherwise grow past maxArenaBytes
+     */
+    private Substrand store(byte[] bytes, int start, int length, boolean multiByte) {
+        byte[] target;
+        int offset;
+        if(length > pageSize >>> 2) {
+            makeRoom(length);
+            target = Arrays.copyOfRange(bytes, start, start + length);
+            pages.add(target);
+            arenaBytes += length;
+            offset = 0;
+        } else {
+            if(page == null || pagePosition + length > page.length) {
+                makeRoom(pageSize);
+                page = new byte[pageSize];
+                pages.add(page);
+                arenaBytes += pageSize;
+                pagePosition = 0;
+            }
+            System.arraycopy(bytes, start, page, pagePosition, length);
+            target = page;
+            offset = pagePosition;
+            pagePosition += length;
+        }
+        return new Substrand(target, offset, offset + length, multiByte);
+    }
+
+    private void makeRoom(int numBytes) {
+        if(arenaBytes + numBytes > maxArenaBytes) {
+            evictions += table.size;
+            clear();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.adbrowning.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Sorts Strands into the order of Strand.compareTo (code point order) with an in-place most-significant-digit radix
+ * sort on their UTF-8 bytes. Each range is distributed into 257 buckets by its byte at the current depth (one bucket for
+ * the Strands that end there, one per byte value) by permuting the elements in place, American flag style; every
+ * bucket holding more than one Strand is then sorted the same way one byte deeper, except that those of fewer than
+ * INSERTION_SORT_THRESHOLD elements are finished with an insertion sort comparing from that depth. Pending ranges are
+ * kept on an explicit stack rather than recursed into, so long common prefixes cannot overflow the call stack.
+ * <p/>
+ * Each byte is examined at most once per level, and no comparison ever re-reads the prefix the Strands are known to
+ * share. The sort is not stable, which only matters to callers distinguishing equal Strands by identity. A StrandSorter
+ * keeps its buckets and stack between calls, so reusing one avoids the allocation; it is not thread-safe.
+ */
+public class StrandSorter {
+    static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private static final int NUM_BUCKETS = 257;
+
+    private final int[] bucketStarts = new int[NUM_BUCKETS];
+    private final int[] bucketEnds = new int[NUM_BUCKETS];
+    /* triples of (from, to, depth) still to be sorted */
+    private int[] pending = new int[3 * 64];
+
+    /**
+     * Sorts strands
+     * @param strands
+     */
+    public static void sort(Strand[] strands) {
+        new StrandSorter().sortRange(strands, 0, strands.length);
+    }
+
+    /**
+     * Sorts the elements of list, none of which may be null, by copying them to an array, sorting that and writing them
+     * back, as Collections.sort does
+     * @param list
+     */
+    public static <T extends Strand> void sort(List<T> list) {
+        new StrandSorter().sortList(list);
+    }
+
+    /**
+     * Sorts strands
+     * @param strands
+     */
+    public void sortArray(Strand[] strands) {
+        sortRange(strands, 0, strands.length);
+    }
+
+    /**
+     * Same as sort(List), reusing this sorter's buffers
+     * @param list
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Strand> void sortList(List<T> list) {
+        Strand[] strands = list.toArray(new Strand[list.size()]);
+        sortRange(strands, 0, strands.length);
+        ListIterator<T> iterator = list.listIterator();
+        for(Strand strand : strands) {
+            iterator.next();
+            iterator.set((T) strand);
+        }
+    }
+
+    /**
+     * Sorts the elements in [from, to) of strands, none of which may be null
+     * @param strands
+     * @param from
+     * @param to
+     */
+    public void sortRange(Strand[] strands, int from, int to) {
+        if(from < 0 || to > strands.length || from > to) {
+            throw new IndexOutOfBoundsException("[" + from + ", " + to + ") is not within an array of length " +
+                    strands.length);
+        }
+        int numPending = push(0, from, to, 0);
+        while(numPending > 0) {
+            numPending -= 3;
+            int rangeFrom = pending[numPending];
+            int rangeTo = pending[numPending + 1];
+            int depth = pending[numPending + 2];
+            if(rangeTo - rangeFrom < INSERTION_SORT_THRESHOLD) {
+                insertionSort(strands, rangeFrom, rangeTo, depth);
+                continue;
+            }
+            distribute(strands, rangeFrom, rangeTo, depth);
+            // bucket 0 holds the Strands ending at depth, which are all equal
+            for(int bucket = NUM_BUCKETS - 1; bucket > 0; --bucket) {
+                if(bucketEnds[bucket] - bucketStarts[bucket] > 1) {
+                    numPending = push(numPending, bucketStarts[bucket], bucketEnds[bucket], depth + 1);
+                }
+            }
+        }
+    }
+
+    /*
+     * Permutes [from, to) of strands so that they are grouped by bucketOf(strand, depth), leaving the bounds of each
+     * bucket in bucketStarts and bucketEnds
+     */
+    private void distribute(Strand[] strands, int from, int to, int depth) {
+        int[] next = bucketStarts;
+        int[] ends = bucketEnds;
+        Arrays.fill(ends, 0);
+        for(int i = from; i < to; ++i) {
+            ++ends[bucketOf(strands[i], depth)];
+        }
+        for(int bucket = 0, position = from; bucket < NUM_BUCKETS; ++bucket) {
+            next[bucket] = position;
+            position += ends[bucket];
+            ends[bucket] = position;
+        }
+        for(int bucket = 0; bucket < NUM_BUCKETS; ++bucket) {
+            // swap each misplaced Strand into its own bucket until one belonging here turns up
+            while(next[bucket] < ends[bucket]) {
+                Strand strand = strands[next[bucket]];
+                int target = bucketOf(strand, depth);
+                while(target != bucket) {
+                    Strand displaced = strands[next[target]];
+                    strands[next[target]++] = strand;
+                    strand = displaced;
+                    target = bucketOf(strand, depth);
+                }
+                strands[next[bucket]++] = strand;
+            }
+        }
+        // each next now points at the end of its bucket; turn them back into starts
+        for(int bucket = NUM_BUCKETS - 1; bucket > 0; --bucket) {
+            next[bucket] = ends[bucket - 1];
+        }
+        next[0] = from;
+    }
+
+    /*
+     * Sorts [from, to) of strands, all of which share their first depth bytes
+     */
+    private static void insertionSort(Strand[] strands, int from, int to, int depth) {
+        for(int i = from + 1; i < to; ++i) {
+            Strand strand = strands[i];
+            int start = strand.getStartingIndex() + depth;
+            int end = strand.getStrandEnd();
+            int j = i - 1;
+            for(; j >= from; --j) {
+                Strand other = strands[j];
+                if(ByteScanner.compare(other.contents, other.getStartingIndex() + depth, other.getStrandEnd(),
+                        strand.contents, start, end) <= 0) {
+                    break;
+                }
+                strands[j + 1] = other;
+            }
+            strands[j + 1] = strand;
+        }
+    }
+
+    /*
+     * Returns 0 if strand has no byte at depth, or one more than the unsigned value of that byte
+     */
+    private static int bucketOf(Strand strand, int depth) {
+        int index = strand.getStartingIndex() + depth;
+        return index < strand.getStrandEnd() ? (0xFF & strand.contents[index]) + 1 : 0;
+    }
+
+    private int push(int numPending, int from, int to, int depth) {
+        if(numPending == pending.length) {
+            pending = Arrays.copyOf(pending, pending.length * 2);
+        }
+        pending[numPending] = from;
+        pending[numPending + 1] = to;
+        pending[numPending + 2] = depth;
+        return numPending + 3;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits a Strand lazily, one token at a time, with the same semantics as Strand.split: tokens are separated by a
+ * literal sequence of bytes, NOT a regular expression, and trailing empty tokens are not returned. Nothing is allocated
+ * to advance past a token, so fields that are not needed cost only the scan for the next delimiter; getTokenStart and
+ * getTokenEnd give the raw (byte) bounds of the current token without creating it.
+ * <p/>
+ * Created with reuseToken set, the splitter is a flyweight: token and next return the same Substrand every time,
+ * repositioned over the current token, which is therefore only valid until the splitter advances again.
+ */
+public class StrandSplitter implements Iterator<Strand> {
+    private final Strand strand;
+    private final byte[] contents;
+    private final byte[] sequence;
+    private final int end;
+    private final Substrand reusedToken;
+    /* raw index at which the next token starts */
+    private int position;
+    /* raw index before which empty tokens are known to be followed by a non-empty one */
+    private int nonEmptyAfter;
+    private int tokenStart = -1;
+    private int tokenEnd = -1;
+    private boolean advanced;
+    private boolean hasToken;
+
+    public StrandSplitter(Strand strand, byte[] sequence) {
+        this(strand, sequence, false);
+    }
+
+    /**
+     * @param strand
+     * @param sequence the delimiter; must not be empty
+     * @param reuseToken true to return the same mutable Substrand for every token rather than a new one
+     */
+    public StrandSplitter(Strand strand, byte[] sequence, boolean reuseToken) {
+        if(sequence.length == 0) {
+            throw new IllegalArgumentException("sequence must contain at least one byte");
+        }
+        this.strand = strand;
+        this.contents = strand.contents;
+        this.sequence = sequence;
+        this.end = strand.getStrandEnd();
+        this.position = strand.getStartingIndex();
+        this.nonEmptyAfter = position;
+        reusedToken = reuseToken ? new Substrand(contents, position, position, false) : null;
+    }
+
+    /**
+     * Moves to the next token, returning false if there are no more
+     * @return
+     */
+    public boolean advance() {
+        if(advanced) {
+            // hasNext has already moved to the token
+            advanced = false;
+            return true;
+        }
+        return findNext();
+    }
+
+    private boolean findNext() {
+        hasToken = false;
+        if(position >= end) {
+            return false;
+        }
+        int delimiter = strand.findSequence(sequence, position, end);
+        if(delimiter == position && position >= nonEmptyAfter) {
+            // an empty token only counts if a non-empty one follows it
+            int next = position;
+            while(next < end && strand.startsWithStartingFrom(sequence, next)) {
+                next += sequence.length;
+            }
+            if(next >= end) {
+                position = end;
+                return false;
+            }
+            nonEmptyAfter = next;
+        }
+        tokenStart = position;
+        tokenEnd = delimiter < 0 ? end : delimiter;
+        position = delimiter < 0 ? end : delimiter + sequence.length;
+        hasToken = true;
+        return true;
+    }
+
+    /**
+     * Skips numTokens tokens, returning false if there were fewer than that many
+     * @param numTokens
+     * @return
+     */
+    public boolean skip(int numTokens) {
+        for(int i = 0; i < numTokens; ++i) {
+            if(!advance()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the current token, i.e. the one most recently advanced to
+     * @return
+     */
+    public Strand token() {
+        if(!hasToken) {
+            throw new NoSuchElementException("advance has not found a token");
+        }
+        boolean multiByte = strand.hasMultiByteChars && ByteScanner.hasMultiByteChars(contents, tokenStart, tokenEnd);
+        if(reusedToken == null) {
+            return new Substrand(contents, tokenStart, tokenEnd, multiByte);
+        }
+        reusedToken.setBounds(tokenStart, tokenEnd, multiByte);
+        return reusedToken;
+    }
+
+    /**
+     * Returns the raw (byte) index of the first byte of the current token
+     * @return
+     */
+    public int getTokenStart() {
+        return tokenStart;
+    }
+
+    /**
+     * Returns the raw (byte) index one past the last byte of the current token
+     * @return
+     */
+    public int getTokenEnd() {
+        return tokenEnd;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if(!advanced) {
+            advanced = findNext();
+        }
+        return advanced;
+    }
+
+    @Override
+    public Strand next() {
+        if(!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        advanced = false;
+        return token();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Strands are immutable");
+    }
+}
@@ -37,6 +37,32 @@ public class Substrand extends Strand {
         this.end = end;
     }
 
+    /**
+     * Repositions this Substrand over [start, end) of the same contents; used by flyweight views such as a StrandSplitter
+     * that reuses its token, so only code that owns the Substrand may call it
+     * @param start
+     * @param end
+     * @param hasMultiByteChars
+     */
+    void setBounds(int start, int end, boolean hasMultiByteChars) {
+        this.start = start;
+        this.end = end;
+        this.hasMultiByteChars = hasMultiByteChars;
+    }
+
+    /**
+     * Same as setBounds(int, int, boolean), but also moving this Substrand to another array; used by flyweight views over
+     * several arrays, such as a StrandList iterator
+     * @param contents
+     * @param start
+     * @param end
+     * @param hasMultiByteChars
+     */
+    void setBounds(byte[] contents, int start, int end, boolean hasMultiByteChars) {
+        this.contents = contents;
+        setBounds(start, end, hasMultiByteChars);
+    }
+
     /**
      * Returns one greater than the last valid index
      *
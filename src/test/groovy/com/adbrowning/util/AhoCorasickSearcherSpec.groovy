@@ -0,0 +1,68 @@
+package com.adbrowning.util
+
+import spock.lang.Specification
+
+class AhoCorasickSearcherSpec extends Specification {
+
+    def "Finds every pattern, including overlaps and duplicates"() {
+        given:
+        AhoCorasickSearcher searcher = new AhoCorasickSearcher(["he", "she", "his", "hers", "she"].collect { it.getBytes("utf8") } as byte[][])
+        byte[] text = "ushers".getBytes("utf8")
+        List<List<Integer>> found = []
+        int numFound = searcher.findAll(text, 0, text.length, { int id, int index -> found << [id, index]; true } as MultiMatchListener)
+        expect:
+        found == [[1, 1], [4, 1], [0, 2], [3, 2]]
+        numFound == 4
+    }
+
+    def "Matches agree with a brute force search"() {
+        given:
+        Random random = new Random(11)
+        expect:
+        for(int trial = 0; trial < 300; ++trial) {
+            byte[][] patterns = new byte[1 + random.nextInt(8)][]
+            for(int i = 0; i < patterns.length; ++i) {
+                patterns[i] = randomBytes(random, 1 + random.nextInt(4))
+            }
+            byte[] text = randomBytes(random, random.nextInt(50))
+            Set<List<Integer>> expected = [] as Set
+            for(int id = 0; id < patterns.length; ++id) {
+                for(int i = 0; i + patterns[id].length <= text.length; ++i) {
+                    if(Arrays.equals(patterns[id], Arrays.copyOfRange(text, i, i + patterns[id].length))) {
+                        expected << [id, i]
+                    }
+                }
+            }
+            List<List<Integer>> found = []
+            new AhoCorasickSearcher(patterns).findAll(text, 0, text.length, { int id, int index -> found << [id, index]; true } as MultiMatchListener)
+            assert found as Set == expected
+            assert found.size() == expected.size()
+        }
+    }
+
+    def "Reports raw offsets within a Substrand and stops when asked"() {
+        given:
+        AhoCorasickSearcher searcher = new AhoCorasickSearcher(["\u05D0b", "c"].collect { it.getBytes("utf8") } as byte[][])
+        Strand substrand = new Substrand("c\u05D0bc\u05D0bc".getBytes("utf8"), 1, 9)
+        List<List<Integer>> found = []
+        when:
+        searcher.findAll(substrand, { int id, int index -> found << [id, index]; found.size() < 3 } as MultiMatchListener)
+        then:
+        found == [[0, 1], [1, 4], [0, 5]]
+    }
+
+    def "Rejects empty patterns"() {
+        when:
+        new AhoCorasickSearcher([new byte[0]] as byte[][])
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] retVal = new byte[length]
+        for(int i = 0; i < length; ++i) {
+            retVal[i] = (byte) ("ab\u00FF".charAt(random.nextInt(3)))
+        }
+        return retVal
+    }
+}
@@ -0,0 +1,158 @@
+package com.adbrowning.util
+
+import spock.lang.Specification
+
+class ApproximateSearcherSpec extends Specification {
+
+    def "Identifiers with typos are found with their distance"() {
+        given:
+        byte[] bytes = text.getBytes("utf8")
+        ApproximateSearcher searcher = new ApproximateSearcher(pattern.getBytes("utf8"), 2)
+        List<List<Integer>> found = []
+        searcher.findAll(bytes, 0, bytes.length, { int start, int end, int distance ->
+            found << [start, end, distance]; true } as ApproximateMatchListener)
+        expect:
+        found == expected
+        searcher.find(bytes, 0, bytes.length) == (expected ? expected[0][0] : -1)
+        where:
+        text                                   | pattern        | expected
+        "id=account-4417;"                     | "account-4417" | [[3, 15, 0]]
+        "id=acount-4417;"                      | "account-4417" | [[3, 14, 1]]
+        "id=acc0unt-4471;"                     | "account-4417" | [[3, 14, 2]]
+        "id=acc0unt-4771;"                     | "account-4417" | []
+        "account-4417 account-4418"            | "account-4417" | [[0, 12, 0], [13, 25, 1]]
+        "xx account-4417-account-4417"         | "account-4417" | [[3, 15, 0], [16, 28, 0]]
+    }
+
+    def "A maxDistance of 0 finds the non-overlapping exact occurrences"() {
+        given:
+        Random random = new Random(23)
+        expect:
+        for(int trial = 0; trial < 300; ++trial) {
+            String text = randomText(random, ["a", "b"], random.nextInt(40))
+            String pattern = randomText(random, ["a", "b"], 1 + random.nextInt(4))
+            List<Integer> expected = []
+            for(int i = text.indexOf(pattern); i >= 0; i = text.indexOf(pattern, i + pattern.length())) {
+                expected << i
+            }
+            byte[] bytes = text.getBytes("utf8")
+            List<Integer> found = []
+            new ApproximateSearcher(pattern.getBytes("utf8"), 0).findAll(bytes, 0, bytes.length,
+                    { int index -> found << index; true } as MatchListener)
+            assert found == expected
+        }
+    }
+
+    def "Matches are within maxDistance, non-overlapping and the best for their end"() {
+        given:
+        Random random = new Random(29)
+        expect:
+        for(int trial = 0; trial < 300; ++trial) {
+            String text = randomText(random, ["a", "b", "c"], random.nextInt(50))
+            String pattern = randomText(random, ["a", "b", "c"], 2 + random.nextInt(6))
+            int maxDistance = random.nextInt(Math.min(3, pattern.length()))
+            byte[] bytes = text.getBytes("utf8")
+            byte[] patternBytes = pattern.getBytes("utf8")
+            List<List<Integer>> found = []
+            new ApproximateSearcher(patternBytes, maxDistance).findAll(bytes, 0, bytes.length,
+                    { int start, int end, int distance -> found << [start, end, distance]; true } as ApproximateMatchListener)
+            int previousEnd = 0
+            found.each { int start, int end, int distance ->
+                assert start >= previousEnd && end > start && distance <= maxDistance
+                assert levenshtein(patternBytes, bytes, start, end) == distance
+                (previousEnd..<end).each { int otherStart ->
+                    int other = levenshtein(patternBytes, bytes, otherStart, end)
+                    assert other > distance || (other == distance && otherStart >= start)
+                }
+                previousEnd = end
+            }
+            boolean anyWithin = (0..bytes.length).any { int start ->
+                (start..bytes.length).any { int end -> levenshtein(patternBytes, bytes, start, end) <= maxDistance }
+            }
+            assert anyWithin == !found.isEmpty()
+        }
+    }
+
+    def "Long patterns are searched in blocks"() {
+        given:
+        Random random = new Random(31)
+        expect:
+        for(int trial = 0; trial < 40; ++trial) {
+            String pattern = randomText(random, ["a", "c", "g", "t"], 60 + random.nextInt(140))
+            StringBuilder typo = new StringBuilder(pattern)
+            typo.deleteCharAt(random.nextInt(typo.length()))
+            int typoIndex = random.nextInt(typo.length())
+            typo.replace(typoIndex, typoIndex + 1, "x")
+            String text = randomText(random, ["x", "y"], random.nextInt(30)) + typo + "yy" + pattern +
+                    randomText(random, ["x", "y"], random.nextInt(30))
+            byte[] bytes = text.getBytes("utf8")
+            byte[] patternBytes = pattern.getBytes("utf8")
+            List<List<Integer>> found = []
+            new ApproximateSearcher(patternBytes, 3).findAll(bytes, 0, bytes.length,
+                    { int start, int end, int distance -> found << [start, end, distance]; true } as ApproximateMatchListener)
+            assert found.size() == 2
+            assert found[1] == [text.lastIndexOf(pattern), text.lastIndexOf(pattern) + pattern.length(), 0]
+            assert found[0][2] <= 2 && found[0][2] == levenshtein(patternBytes, bytes, found[0][0], found[0][1])
+        }
+    }
+
+    def "Matches begin and end on char boundaries"() {
+        given:
+        Random random = new Random(37)
+        List<String> alphabet = ["a", "b", "\u00E9", "\u0800"]
+        expect:
+        for(int trial = 0; trial < 200; ++trial) {
+            byte[] bytes = randomText(random, alphabet, random.nextInt(30)).getBytes("utf8")
+            byte[] patternBytes = randomText(random, alphabet, 2 + random.nextInt(4)).getBytes("utf8")
+            int maxDistance = random.nextInt(Math.min(3, patternBytes.length))
+            new ApproximateSearcher(patternBytes, maxDistance).findAll(bytes, 0, bytes.length,
+                    { int start, int end, int distance ->
+                        assert (bytes[start] & 0xC0) != 0x80
+                        assert end == bytes.length || (bytes[end] & 0xC0) != 0x80
+                        assert distance <= maxDistance && levenshtein(patternBytes, bytes, start, end) == distance
+                        true } as ApproximateMatchListener)
+        }
+    }
+
+    def "Strand matches are reported relative to the Strand"() {
+        given:
+        byte[] bytes = "skip|\u00E9 user=jsmtih".getBytes("utf8")
+        Strand strand = new Substrand(bytes, 5, bytes.length, true)
+        ApproximateSearcher searcher = new ApproximateSearcher("jsmith".getBytes("utf8"), 2)
+        List<List<Integer>> found = []
+        searcher.findAll(strand, { int start, int end, int distance -> found << [start, end, distance]; true } as ApproximateMatchListener)
+        expect:
+        found == [[8, 14, 2]]
+        searcher.indexOf(strand) == 7
+        searcher.getPatternLength() == 6
+    }
+
+    def "maxDistance must be less than the pattern length"() {
+        when:
+        new ApproximateSearcher("abc".getBytes("utf8"), maxDistance)
+        then:
+        thrown(IllegalArgumentException)
+        where:
+        maxDistance << [-1, 3]
+    }
+
+    private static int levenshtein(byte[] pattern, byte[] text, int start, int end) {
+        int[] previous = (0..pattern.length) as int[]
+        for(int j = start; j < end; ++j) {
+            int[] current = new int[pattern.length + 1]
+            current[0] = j - start + 1
+            for(int i = 1; i <= pattern.length; ++i) {
+                int substitution = previous[i - 1] + (pattern[i - 1] == text[j] ? 0 : 1)
+                current[i] = Math.min(substitution, Math.min(previous[i], current[i - 1]) + 1)
+            }
+            previous = current
+        }
+        return previous[pattern.length]
+    }
+
+    private static String randomText(Random random, List<String> alphabet, int length) {
+        StringBuilder builder = new StringBuilder()
+        length.times { builder.append(alphabet[random.nextInt(alphabet.size())]) }
+        return builder.toString()
+    }
+}
@@ -0,0 +1,70 @@
+package com.adbrowning.util
+
+import spock.lang.Specification
+
+class BMSearcherSpec extends Specification {
+
+    def "Common prefix lengths"() {
+        expect:
+        expected as int[] == BMSearcher.calculateCommonPrefixLengths(pattern.getBytes("utf8"))
+        where:
+        pattern     |   expected
+        "aabaabc"   |   [0, 1, 0, 3, 1, 0, 0]
+        "aaaabb"    |   [0, 3, 2, 1, 0, 0]
+        "bababbab"  |   [0, 0, 3, 0, 1, 3, 0, 1]
+        "a"         |   [0]
+    }
+
+    def "Find matches String.indexOf"() {
+        given:
+        byte[] text = textString.getBytes("utf8")
+        expect:
+        textString.indexOf(pattern) == new BMSearcher(pattern.getBytes("utf8")).find(text, 0, text.length)
+        where:
+        textString              |   pattern
+        "abc"                   |   "a"
+        "abc"                   |   "c"
+        "abc"                   |   "abc"
+        "abc"                   |   "abcd"
+        "abcabcabd"             |   "abcabd"
+        "xxaabaabaabcyy"        |   "aabaabc"
+        "here is a simple example"  |   "example"
+        "aaaaaaaaab"            |   "aab"
+        "abababababab"          |   "bababx"
+    }
+
+    def "Find honors start and end"() {
+        given:
+        byte[] text = "abcabcabc".getBytes("utf8")
+        BMSearcher searcher = new BMSearcher("abc".getBytes("utf8"))
+        expect:
+        expected == searcher.find(text, start, end)
+        where:
+        start   |   end |   expected
+        0       |   9   |   0
+        1       |   9   |   3
+        4       |   9   |   6
+        4       |   8   |   -1
+        0       |   2   |   -1
+    }
+
+    def "FindAll reports overlapping matches in order"() {
+        given:
+        byte[] text = "aaaabaaa".getBytes("utf8")
+        List<Integer> found = []
+        int numFound = new BMSearcher("aa".getBytes("utf8")).findAll(text, 0, text.length, { int index -> found << index; true } as MatchListener)
+        expect:
+        found == [0, 1, 2, 5, 6]
+        numFound == 5
+    }
+
+    def "FindAll stops when the listener asks"() {
+        given:
+        byte[] text = "abab ab ab".getBytes("utf8")
+        List<Integer> found = []
+        int numFound = new BMSearcher("ab".getBytes("utf8")).findAll(text, 0, text.length, { int index -> found << index; found.size() < 2 } as MatchListener)
+        expect:
+        found == [0, 2]
+        numFound == 2
+    }
+}
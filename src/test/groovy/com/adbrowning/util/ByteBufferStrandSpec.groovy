@@ -0,0 +1,102 @@
+package com.adbrowning.util
+
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+
+class ByteBufferStrandSpec extends Specification {
+    static final String MIXED = "G\u007FH\u0080I\u007FJ\u0080K\u0800L\u0100M\u1FFFN"
+
+    static ByteBufferStrand direct(String text) {
+        byte[] bytes = text.getBytes("utf8")
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 4)
+        buffer.position(2)
+        buffer.put(bytes)
+        buffer.limit(2 + bytes.length).position(2)
+        return new ByteBufferStrand(buffer)
+    }
+
+    def "length and charAt match String"() {
+        given:
+        ByteBufferStrand strand = direct(text)
+        expect:
+        strand.length() == text.length()
+        strand.byteLength() == text.getBytes("utf8").length
+        (0..<text.length()).every { strand.charAt(it) == text.charAt(it) }
+        strand.toString() == text
+        where:
+        text << ["Hello World!", MIXED, MIXED * 3]
+    }
+
+    def "subSequence is a view that matches String"() {
+        given:
+        String text = MIXED * 3
+        ByteBufferStrand strand = direct(text)
+        expect:
+        strand.subSequence(start, end).toString() == text.substring(start, end)
+        strand.subSequence(start, end).length() == end - start
+        where:
+        start | end
+        0     | 0
+        2     | 9
+        9     | 45
+        45    | 45
+    }
+
+    def "indexOf, startsWith and endsWith match String"() {
+        given:
+        String text = MIXED * 4 + "needle" + MIXED
+        ByteBufferStrand strand = direct(text)
+        expect:
+        strand.indexOf("needle") == text.indexOf("needle")
+        strand.indexOf("\u1FFFN".getBytes("utf8"), 20) == text.indexOf("\u1FFFN", 20)
+        strand.indexOf("absent") == -1
+        strand.startsWith("G\u007F".getBytes("utf8"))
+        strand.endsWith("\u1FFFN".getBytes("utf8"))
+        !strand.endsWith("needle".getBytes("utf8"))
+    }
+
+    def "split has the semantics of Strand.split"() {
+        given:
+        ByteBufferStrand strand = direct(text)
+        Strand[] expected = new Strand(text.getBytes("utf8")).split(",".getBytes("utf8"))
+        expect:
+        strand.split(",".getBytes("utf8"))*.toString() == expected*.toString()
+        where:
+        text << ["a,b,,c", ",a,\u0800,,", "no delimiter", "", ",,,"]
+    }
+
+    def "split rejects an empty sequence, as Strand.split does"() {
+        when:
+        direct(text).split(new byte[0])
+        then:
+        IllegalArgumentException ex = thrown()
+        ex.message == "sequence must contain at least one byte"
+        where:
+        text << ["a,b", ""]
+    }
+
+    def "Equal to a Strand and a String with the same contents"() {
+        given:
+        ByteBufferStrand strand = direct(MIXED)
+        Strand heapStrand = new Strand(MIXED.getBytes("utf8"))
+        expect:
+        strand == heapStrand
+        heapStrand == strand
+        strand.hashCode() == heapStrand.hashCode()
+        strand == direct(MIXED)
+        strand.equals(MIXED)
+        !strand.equals(MIXED + "x")
+        strand.toStrand() == heapStrand
+    }
+
+    def "Heap buffers are searched through their arrays"() {
+        given:
+        byte[] bytes = "xxabcabcabdxx".getBytes("utf8")
+        ByteBufferStrand strand = new ByteBufferStrand(ByteBuffer.wrap(bytes, 2, 9).slice())
+        expect:
+        strand.toString() == "abcabcabd"
+        strand.indexOf("abcabd") == 3
+        strand.indexOf("xx") == -1
+    }
+}
@@ -0,0 +1,135 @@
+package com.adbrowning.util
+
+import spock.lang.Specification
+
+import java.util.regex.Matcher
+import java.util.regex.Pattern
+import java.util.regex.PatternSyntaxException
+
+class ByteRegexSpec extends Specification {
+
+    def "Matches are leftmost-longest Substrands"() {
+        expect:
+        new ByteRegex(regex).findAll(new Strand(text.getBytes("utf8")))*.toString() == expected
+        where:
+        regex                    | text                          | expected
+        "a|ab"                   | "xabx"                        | ["ab"]
+        "id=\\d+"                | "id=7 id=42 id= id=x9"        | ["id=7", "id=42"]
+        "[^,]+"                  | "\u00E9t\u00E9,,caf\u00E9,"   | ["\u00E9t\u00E9", "caf\u00E9"]
+        "[\u00E0-\u00FF]+"       | "na\u00EFve caf\u00E9"        | ["\u00EF", "\u00E9"]
+        "\u0800."                | "\u0800\u00E9\u0800a\u0800"   | ["\u0800\u00E9", "\u0800a"]
+        "(?:ab){2,3}"            | "ab abab abababab"            | ["abab", "ababab"]
+        "^\\w+|\\w+\$"           | "first middle last"           | ["first", "last"]
+        "x*"                     | "axx"                         | ["", "xx", ""]
+        "\\s"                    | "a b\tc"                      | [" ", "\t"]
+        "\\x{1F600}|\\u00E9"     | "\uD83D\uDE00 \u00E9"         | ["\uD83D\uDE00", "\u00E9"]
+    }
+
+    def "Agrees with java.util.regex on where matches start and how long they can be"() {
+        given:
+        Random random = new Random(41)
+        List<String> alphabet = ["a", "b", "1", " ", ",", "\n", "\u00E9", "\u0800"]
+        expect:
+        for(int trial = 0; trial < 100; ++trial) {
+            StringBuilder builder = new StringBuilder()
+            random.nextInt(40).times { builder.append(alphabet[random.nextInt(alphabet.size())]) }
+            String text = builder.toString()
+            assert byteRegexMatches(regex, text) == longestJavaMatches(regex, text)
+        }
+        where:
+        regex << ["a", "a+", "b*", "a|ab", "(?:ab)+", "[ab]{2,3}", "[^a,]+", ".", ".+", "\u00E9+b?",
+                  "[\u00E9-\u0800]", "^a", "a\$", "^\$", "\\d+", "\\w+\\s", "x?", "a.b", "(?:a|\u00E9)b{1,2}",
+                  "[a-b\u0800]+,", "\\W{2}", "(?:a|b)*a(?:a|b){12}"]
+    }
+
+    def "A ^ after a \$ passes in an empty range, as in java.util.regex"() {
+        given:
+        byte[] bytes = text.getBytes("utf8")
+        ByteRegex byteRegex = new ByteRegex(regex)
+        Matcher matcher = Pattern.compile(regex).matcher(text)
+        expect:
+        byteRegex.find(bytes, 0, bytes.length) == (matcher.find() ? matcher.start() : -1)
+        byteRegex.matches(bytes, 0, bytes.length) == Pattern.matches(regex, text)
+        where:
+        regex       | text
+        "\$^"       | ""
+        "\$c*^"     | ""
+        "a?\$^"     | ""
+        "b|\$^"     | ""
+        "\$^"       | "a"
+        "a?\$^"     | "a"
+    }
+
+    def "A pattern needing more DFA states than the cache holds still matches"() {
+        given:
+        Random random = new Random(43)
+        StringBuilder builder = new StringBuilder()
+        6000.times { builder.append(random.nextBoolean() ? "a" : "b") }
+        byte[] bytes = builder.toString().getBytes("utf8")
+        // each match runs to the last 'a' followed by 13 more bytes, the DFA tracking the last 14 bytes as it goes
+        ByteRegex regex = new ByteRegex("(?:a|b)*a(?:a|b){13}")
+        int expectedEnd = builder.lastIndexOf("a", bytes.length - 14) + 14
+        expect:
+        (0..<5000).step(250).every { int from ->
+            List<List<Integer>> found = []
+            regex.findAll(bytes, from, bytes.length, { int start, int end -> found << [start, end]; true } as RegexMatchListener)
+            found == [[from, expectedEnd]]
+        }
+        regex.getNumStates() <= 4096
+    }
+
+    def "Whole-Strand matching and raw offsets"() {
+        given:
+        byte[] bytes = "skip|user=jsmith;id=12".getBytes("utf8")
+        Strand strand = new Substrand(bytes, 5, bytes.length, false)
+        ByteRegex regex = new ByteRegex("id=\\d+")
+        List<List<Integer>> found = []
+        expect:
+        regex.find(strand).toString() == "id=12"
+        regex.find(bytes, 0, bytes.length) == 17
+        regex.findAll(bytes, 0, bytes.length, { int start, int end -> found << [start, end]; true } as RegexMatchListener) == 1
+        found == [[17, 22]]
+        new ByteRegex("user=[a-z]+;id=\\d{2}").matches(strand)
+        !new ByteRegex("user=[a-z]+").matches(strand)
+        new ByteRegex("^skip").find(strand) == null
+    }
+
+    def "Malformed and unsupported expressions are rejected"() {
+        when:
+        new ByteRegex(regex)
+        then:
+        thrown(PatternSyntaxException)
+        where:
+        regex << ["(a", "a)", "[a", "a**", "a*?", "*a", "a{2,1}", "a{1001}", "\\k", "(?=a)", "[a&&b]", "[z-a]"]
+    }
+
+    private static List<List<Integer>> byteRegexMatches(String regex, String text) {
+        return byteRegexMatches(new ByteRegex(regex), text)
+    }
+
+    private static List<List<Integer>> byteRegexMatches(ByteRegex regex, String text) {
+        byte[] bytes = text.getBytes("utf8")
+        List<List<Integer>> found = []
+        regex.findAll(bytes, 0, bytes.length, { int start, int end ->
+            found << [new String(bytes, 0, start, "utf8").length(), new String(bytes, 0, end, "utf8").length()]
+            true } as RegexMatchListener)
+        return found
+    }
+
+    /*
+     * java.util.regex is leftmost-first, so it agrees on where each match starts; the longest end is found by trying
+     * them all. Its $ also matches before a final line terminator, so \z stands in for it.
+     */
+    private static List<List<Integer>> longestJavaMatches(String regex, String text) {
+        Matcher matcher = Pattern.compile(regex.replace("\$", "\\z")).matcher(text).useAnchoringBounds(false).useTransparentBounds(true)
+        List<List<Integer>> found = []
+        int from = 0
+        while(from <= text.length() && matcher.region(from, text.length()).find()) {
+            int start = matcher.start()
+            int end = (text.length()..start).find { int end -> matcher.region(start, end).matches() }
+            found << [start, end]
+            from = end > start ? end : start + 1
+        }
+        return found
+    }
+}
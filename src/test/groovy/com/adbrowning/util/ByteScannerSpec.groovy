@@ -0,0 +1,104 @@
+package com.adbrowning.util
+
+import spock.lang.Specification
+
+class ByteScannerSpec extends Specification {
+
+    def "Multi-byte detection at every position"() {
+        given:
+        byte[] bytes = ("a" * 40).getBytes("utf8")
+        expect:
+        !ByteScanner.hasMultiByteChars(bytes, 0, bytes.length)
+        for(int i = 0; i < bytes.length; ++i) {
+            byte[] withHighBit = Arrays.copyOf(bytes, bytes.length)
+            withHighBit[i] = (byte) 0xC3
+            assert ByteScanner.hasMultiByteChars(withHighBit, 0, withHighBit.length)
+            assert ByteScanner.hasMultiByteChars(withHighBit, i, i + 1)
+            assert !ByteScanner.hasMultiByteChars(withHighBit, i + 1, withHighBit.length)
+        }
+    }
+
+    def "indexOf finds the first occurrence at every position"() {
+        given:
+        byte[] bytes = ("abcdefgh" * 5).getBytes("utf8")
+        expect:
+        for(int from = 0; from < bytes.length; ++from) {
+            for(int to = from; to <= bytes.length; ++to) {
+                int expected = -1
+                for(int i = from; i < to && expected < 0; ++i) {
+                    if(bytes[i] == (byte) 'e') {
+                        expected = i
+                    }
+                }
+                assert expected == ByteScanner.indexOf(bytes, from, to, (byte) 'e')
+            }
+        }
+        -1 == ByteScanner.indexOf(bytes, 0, bytes.length, (byte) 0x80)
+    }
+
+    def "regionMatches compares whole words and tails"() {
+        given:
+        byte[] a = "0123456789abcdefghij0123456789abcdefghij".getBytes("utf8")
+        byte[] b = "xx0123456789abcdefghij0123456789abcdefghij".getBytes("utf8")
+        expect:
+        for(int length = 0; length <= a.length; ++length) {
+            assert ByteScanner.regionMatches(a, 0, b, 2, length)
+        }
+        for(int i = 0; i < a.length; ++i) {
+            byte[] changed = Arrays.copyOf(b, b.length)
+            changed[i + 2] = (byte) '!'
+            assert !ByteScanner.regionMatches(a, 0, changed, 2, a.length)
+        }
+    }
+
+    def "Word case folding agrees with the table for every byte value and position"() {
+        expect:
+        for(int value = 0; value < 256; ++value) {
+            for(int position = 0; position < 8; ++position) {
+                long word = 0x4142435A5B606162L ^ ((long) (value ^ (0xFF & (0x4142435A5B606162L >>> (8 * position)))) << (8 * position))
+                long folded = ByteScanner.toLowerCase(word)
+                for(int k = 0; k < 8; ++k) {
+                    assert (byte) (folded >>> (8 * k)) == ByteScanner.ASCII_LOWER_CASE[0xFF & (int) (word >>> (8 * k))]
+                }
+            }
+        }
+    }
+
+    def "Buffer scans agree with the array scans"() {
+        given:
+        byte[] bytes = ("ab\u00E9cd\u0800efgh" * 4).getBytes("utf8")
+        java.nio.ByteBuffer direct = java.nio.ByteBuffer.allocateDirect(bytes.length)
+        direct.put(bytes)
+        java.nio.ByteBuffer words = ByteScanner.wordView(direct)
+        expect:
+        for(int from = 0; from < bytes.length; ++from) {
+            for(int to = from; to <= bytes.length; ++to) {
+                int continuations = 0
+                for(int i = from; i < to; ++i) {
+                    continuations += (bytes[i] & 0xC0) == 0x80 ? 1 : 0
+                }
+                assert ByteScanner.countContinuationBytes(words, from, to) == continuations
+                assert ByteScanner.hasMultiByteChars(words, from, to) == ByteScanner.hasMultiByteChars(bytes, from, to)
+                assert ByteScanner.indexOf(words, from, to, (byte) 'e') == ByteScanner.indexOf(bytes, from, to, (byte) 'e')
+                assert ByteScanner.regionMatches(words, from, bytes, from, to - from)
+            }
+        }
+    }
+
+    def "hash depends only on the bytes of the range"() {
+        given:
+        byte[] bytes = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes("utf8")
+        byte[] shifted = ("--" + "0123456789abcdefghijklmnopqrstuvwxyz").getBytes("utf8")
+        Set<Integer> distinct = [] as Set
+        expect:
+        for(int from = 0; from < bytes.length; ++from) {
+            for(int to = from; to <= bytes.length; ++to) {
+                int hash = ByteScanner.hash(bytes, from, to)
+                assert hash == ByteScanner.hash(shifted, from + 2, to + 2)
+                distinct << hash
+            }
+        }
+        distinct.size() == 36 * 37 / 2 + 1
+        ByteScanner.hash(new byte[1], 0, 1) != ByteScanner.hash(new byte[2], 0, 2)
+    }
+}
@@ -0,0 +1,131 @@
+package com.adbrowning.util
+
+import spock.lang.Specification
+
+class ByteSearcherSpec extends Specification {
+
+    def "Factory picks the searcher for the pattern"() {
+        given:
+        Class<?> expected = ByteSearcherFactory.isVectorized() && type != KMPSearcher ?
+                Class.forName("com.adbrowning.util.VectorSearcher") : type
+        expect:
+        type == ByteSearcherFactory.createScalar(pattern.getBytes("utf8"), true).getClass()
+        expected == ByteSearcherFactory.create(pattern.getBytes("utf8")).getClass()
+        where:
+        pattern                 |   type
+        "|"                     |   SingleByteSearcher
+        "\r\n"                  |   ShortPatternSearcher
+        "abcdefgh"              |   ShortPatternSearcher
+        "aaaaaaaaaaaa"          |   KMPSearcher
+        "ababababa"             |   KMPSearcher
+        "GET /index.html"       |   BMSearcher
+    }
+
+    def "The vector backend is used wherever the incubator module is added, as the test task does"() {
+        expect:
+        ByteSearcherFactory.isVectorized() == ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+    }
+
+    def "Every searcher agrees with String.indexOf"() {
+        given:
+        Random random = new Random(17)
+        expect:
+        for(int trial = 0; trial < 500; ++trial) {
+            String text = randomText(random, random.nextInt(60))
+            String pattern = randomText(random, 1 + random.nextInt(10))
+            byte[] textBytes = text.getBytes("utf8")
+            byte[] patternBytes = pattern.getBytes("utf8")
+            List<Integer> expected = []
+            for(int i = text.indexOf(pattern); i >= 0; i = text.indexOf(pattern, i + 1)) {
+                expected << i
+            }
+            [new KMPSearcher(patternBytes), new BMSearcher(patternBytes), new ShortPatternSearcher(patternBytes),
+             ByteSearcherFactory.create(patternBytes)].each { ByteSearcher searcher ->
+                List<Integer> found = []
+                assert expected.size() == searcher.findAll(textBytes, 0, textBytes.length, { int index -> found << index; true } as MatchListener)
+                assert expected == found
+                assert (expected ? expected[0] : -1) == searcher.find(textBytes, 0, textBytes.length)
+            }
+        }
+    }
+
+    def "Selected searchers agree with String.indexOf across long texts and unaligned bounds"() {
+        given:
+        Random random = new Random(23)
+        expect:
+        for(int trial = 0; trial < 200; ++trial) {
+            String text = randomText(random, 100 + random.nextInt(300))
+            int start = random.nextInt(40)
+            int end = text.length() - random.nextInt(40)
+            String pattern = randomText(random, 1 + random.nextInt(12))
+            byte[] textBytes = text.getBytes("utf8")
+            List<Integer> expected = []
+            for(int i = text.indexOf(pattern, start); i >= 0 && i + pattern.length() <= end; i = text.indexOf(pattern, i + 1)) {
+                expected << i
+            }
+            ByteSearcher searcher = ByteSearcherFactory.create(pattern.getBytes("utf8"))
+            List<Integer> found = []
+            assert expected.size() == searcher.findAll(textBytes, start, end, { int index -> found << index; true } as MatchListener)
+            assert expected == found
+            assert (expected ? expected[0] : -1) == searcher.find(textBytes, start, end)
+        }
+    }
+
+    def "Case-folding searcher matches ASCII letters in either case and other bytes exactly"() {
+        given:
+        Random random = new Random(29)
+        expect:
+        for(int trial = 0; trial < 300; ++trial) {
+            byte[] textBytes = randomMixedCaseText(random, random.nextInt(80)).getBytes("utf8")
+            byte[] patternBytes = randomMixedCaseText(random, 1 + random.nextInt(6)).getBytes("utf8")
+            // with ASCII folded, byte offsets are char offsets of a Latin-1 decoding
+            String text = new String(foldAscii(textBytes), "ISO-8859-1")
+            String pattern = new String(foldAscii(patternBytes), "ISO-8859-1")
+            List<Integer> expected = []
+            for(int i = text.indexOf(pattern); i >= 0; i = text.indexOf(pattern, i + 1)) {
+                expected << i
+            }
+            ByteSearcher searcher = new CaseFoldingSearcher(patternBytes)
+            List<Integer> found = []
+            assert expected.size() == searcher.findAll(textBytes, 0, textBytes.length, { int index -> found << index; true } as MatchListener)
+            assert expected == found
+            assert (expected ? expected[0] : -1) == searcher.find(textBytes, 0, textBytes.length)
+        }
+    }
+
+    def "Case-folding searcher through Strand.indexOf"() {
+        given:
+        ByteSearcher searcher = new CaseFoldingSearcher("content-TYPE:".getBytes("utf8"))
+        expect:
+        5 == new Strand("\u00E9t\u00E9\r\nContent-Type: text/plain".getBytes("utf8")).indexOf(searcher)
+        0 == new Strand("CONTENT-TYPE:".getBytes("utf8")).indexOf(searcher)
+        -1 == new Strand("Content-Length: 10".getBytes("utf8")).indexOf(searcher)
+        -1 == new Strand("\u00C9t\u00C9".getBytes("utf8")).indexOf(new CaseFoldingSearcher("\u00E9".getBytes("utf8")))
+    }
+
+    def "Single byte searcher honors start and end"() {
+        given:
+        byte[] text = "a|b|c".getBytes("utf8")
+        ByteSearcher searcher = new SingleByteSearcher((byte) '|')
+        expect:
+        1 == searcher.find(text, 0, 5)
+        3 == searcher.find(text, 2, 5)
+        -1 == searcher.find(text, 2, 3)
+    }
+
+    private static String randomMixedCaseText(Random random, int length) {
+        StringBuilder text = new StringBuilder()
+        length.times { text.append("aAbB\u00E9\u00C9".charAt(random.nextInt(6))) }
+        return text.toString()
+    }
+
+    private static byte[] foldAscii(byte[] bytes) {
+        return bytes.collect { byte b -> b >= 65 && b <= 90 ? (byte) (b | 0x20) : b } as byte[]
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder()
+        length.times { text.append("abc".charAt(random.nextInt(3))) }
+        return text.toString()
+    }
+}
@@ -0,0 +1,179 @@
+package com.adbrowning.util
+
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+
+class ByteTrieSpec extends Specification {
+
+    private static final List<String> ROUTES = ["/", "/api", "/api/v1", "/api/v1/users", "/api/v2", "/apiary",
+                                                "/static/", "/\u00E9t\u00E9", "/\u00E9t\u00E9/\u0800", ""]
+
+    def "Exact lookups find every key and nothing else"() {
+        given:
+        ByteTrie trie = new ByteTrie(mapOf(ROUTES))
+        expect:
+        trie.size() == ROUTES.size()
+        ROUTES.eachWithIndex { String route, int i -> assert trie.get(strand(route)) == i }
+        ["/a", "/ap", "/api/", "/api/v3", "/apiary/x", "/static", "x", "/\u00E9"].each {
+            assert trie.get(strand(it)) == -1
+            assert trie.indexOf(strand(it)) == -1
+        }
+    }
+
+    def "Entries are numbered in key order and keys can be rebuilt"() {
+        given:
+        ByteTrie trie = new ByteTrie(mapOf(ROUTES))
+        Strand[] sorted = ROUTES.collect { strand(it) } as Strand[]
+        StrandSorter.sort(sorted)
+        expect:
+        (0..<trie.size()).collect { trie.getKey(it).toString() } == sorted*.toString()
+        (0..<trie.size()).collect { trie.getKeyLength(it) } == sorted*.getStrandLength()
+        (0..<trie.size()).collect { trie.indexOf(sorted[it]) } == (0..<trie.size()).collect { it }
+        trie.getValue(trie.indexOf(strand("/api/v2"))) == ROUTES.indexOf("/api/v2")
+    }
+
+    def "Nodes with many children are searched by unsigned byte"() {
+        given:
+        List<String> keys = (0..<300).collect { "k" + (char) (it < 100 ? 0x21 + it : 0xA0 + it) }
+        ByteTrie trie = new ByteTrie(mapOf(keys))
+        expect:
+        keys.eachWithIndex { String key, int i -> assert trie.get(strand(key)) == i }
+        trie.get(strand("k")) == -1
+        trie.get(strand("k\u0020")) == -1
+        trie.get(strand("k\u00A0")) == -1
+    }
+
+    def "Longest prefix match"() {
+        given:
+        ByteTrie trie = new ByteTrie(mapOf(ROUTES - [""]))
+        int entry = trie.longestPrefixOf(strand(path))
+        expect:
+        (entry < 0 ? null : trie.getKey(entry).toString()) == expected
+        entry < 0 || trie.getKeyLength(entry) == expected.getBytes("utf8").length
+        where:
+        path                        |   expected
+        "/api/v1/users/17"          |   "/api/v1/users"
+        "/api/v1/user"              |   "/api/v1"
+        "/api/v3"                   |   "/api"
+        "/apiar"                    |   "/api"
+        "/static/css/site.css"      |   "/static/"
+        "/static"                   |   "/"
+        "/\u00E9t\u00E9/\u0800/x"   |   "/\u00E9t\u00E9/\u0800"
+        "favicon.ico"               |   null
+        ""                          |   null
+    }
+
+    def "Longest prefix match within a byte range"() {
+        given:
+        ByteTrie trie = new ByteTrie(mapOf(["GET", "GET /api", "POST"]))
+        byte[] bytes = "xxGET /api/v1 HTTP/1.1".getBytes("utf8")
+        expect:
+        trie.getKey(trie.longestPrefixOf(bytes, 2, bytes.length)).toString() == "GET /api"
+        trie.getKey(trie.longestPrefixOf(bytes, 2, 8)).toString() == "GET"
+    }
+
+    def "Prefix enumeration reports the keys with the prefix in order"() {
+        given:
+        ByteTrie trie = new ByteTrie(mapOf(ROUTES))
+        List<String> found = []
+        int numFound = trie.findWithPrefix(strand(prefix), { int entry -> found << trie.getKey(entry).toString(); true } as MatchListener)
+        expect:
+        found == ROUTES.findAll { it.startsWith(prefix) }.sort { a, b -> strand(a).compareTo(strand(b)) }
+        numFound == found.size()
+        where:
+        prefix << ["", "/", "/ap", "/api", "/api/", "/api/v1", "/apiary", "/s", "/\u00E9", "/x", "/api/v1/users/x"]
+    }
+
+    def "Prefix enumeration stops when the listener asks"() {
+        given:
+        ByteTrie trie = new ByteTrie(mapOf(ROUTES))
+        expect:
+        trie.findWithPrefix(strand("/api"), { int entry -> false } as MatchListener) == 1
+    }
+
+    def "An empty trie finds nothing"() {
+        given:
+        ByteTrie trie = new ByteTrie(new StrandIntHashMap(0, -1))
+        expect:
+        trie.size() == 0
+        trie.get(strand("a")) == -1
+        trie.get(strand("")) == -1
+        trie.longestPrefixOf(strand("a")) == -1
+        trie.findWithPrefix(strand(""), { int entry -> true } as MatchListener) == 0
+    }
+
+    def "Serialized tries load with the same contents"() {
+        given:
+        Random random = new Random(37)
+        List<String> keys = (0..<2000).collect { randomKey(random) }.unique()
+        ByteTrie trie = new ByteTrie(mapOf(keys))
+        ByteArrayOutputStream out = new ByteArrayOutputStream()
+        when:
+        trie.writeTo(out)
+        byte[] serialized = out.toByteArray()
+        ByteTrie fromStream = ByteTrie.readFrom(new ByteArrayInputStream(((serialized as List) + [7]) as byte[]))
+        ByteBuffer buffer = ByteBuffer.allocateDirect(serialized.length + 3)
+        buffer.position(3)
+        buffer.put(serialized)
+        buffer.position(3)
+        ByteTrie fromBuffer = ByteTrie.readFrom(buffer)
+        then:
+        serialized.length == trie.getSerializedLength()
+        buffer.position() == serialized.length + 3
+        [fromStream, fromBuffer].each { ByteTrie loaded ->
+            assert loaded.size() == keys.size()
+            assert loaded.getNodeCount() == trie.getNodeCount()
+            keys.eachWithIndex { String key, int i -> assert loaded.get(strand(key)) == i }
+            assert (0..<loaded.size()).collect { loaded.getKey(it) } == (0..<trie.size()).collect { trie.getKey(it) }
+        }
+    }
+
+    def "Data that is not a serialized trie is rejected"() {
+        when:
+        ByteTrie.readFrom(new ByteArrayInputStream(bytes as byte[]))
+        then:
+        thrown(IOException)
+        where:
+        bytes << [[], [1, 2, 3, 4, 5, 6, 7, 8], [0x42, 0x54, 0x52, 0x49, 0, 0, 0, 1, 0, 0, 0, 1]]
+    }
+
+    def "Random keys agree with a map"() {
+        given:
+        Random random = new Random(41)
+        List<String> keys = (0..<3000).collect { randomKey(random) }.unique()
+        ByteTrie trie = new ByteTrie(mapOf(keys))
+        expect:
+        for(int trial = 0; trial < 2000; ++trial) {
+            String probe = randomKey(random)
+            int expectedLongest = -1
+            int longestLength = -1
+            keys.eachWithIndex { String key, int i ->
+                if(probe.startsWith(key) && key.length() > longestLength) {
+                    expectedLongest = i
+                    longestLength = key.length()
+                }
+            }
+            assert trie.get(strand(probe)) == keys.indexOf(probe)
+            int entry = trie.longestPrefixOf(strand(probe))
+            assert (entry < 0 ? -1 : trie.getValue(entry)) == expectedLongest
+        }
+    }
+
+    private static StrandIntHashMap mapOf(List<String> keys) {
+        StrandIntHashMap map = new StrandIntHashMap(keys.size(), -1)
+        keys.eachWithIndex { String key, int i -> map.put(strand(key), i) }
+        return map
+    }
+
+    private static Strand strand(String text) {
+        return new Strand(text.getBytes("utf8"))
+    }
+
+    private static String randomKey(Random random) {
+        StringBuilder key = new StringBuilder()
+        int length = 1 + random.nextInt(7)
+        length.times { key.append("ab/\u00E9".charAt(random.nextInt(4))) }
+        return key.toString()
+    }
+}
@@ -0,0 +1,128 @@
+package com.adbrowning.util
+
+import spock.lang.Specification
+
+class DelimitedParserSpec extends Specification {
+
+    static List<String> fields(DelimitedParser parser) {
+        return (0..<parser.getFieldCount()).collect { parser.field(it).toString() }
+    }
+
+    def "Quoted fields may contain delimiters, doubled quotes and newlines"() {
+        given:
+        DelimitedParser parser = new DelimitedParser((byte) ',')
+        expect:
+        parser.parse(new Strand(text.getBytes("utf8"))) == expected.size()
+        fields(parser) == expected
+        where:
+        text                     | expected
+        'a,b,c'                  | ['a', 'b', 'c']
+        'a,,c,'                  | ['a', '', 'c', '']
+        ''                       | ['']
+        '"x,y",z'                | ['x,y', 'z']
+        '"say ""hi""",2'         | ['say "hi"', '2']
+        '"multi\nline",x'        | ['multi\nline', 'x']
+        '"ab"cd,e'               | ['abcd', 'e']
+        '"unterminated,x'        | ['unterminated,x']
+        'mid"quote,""'           | ['mid"quote', '']
+        '\u00E9,"\u4E2D,\u00E9"' | ['\u00E9', '\u4E2D,\u00E9']
+    }
+
+    def "Only fields with doubled quotes or escapes are copied"() {
+        given:
+        byte[] bytes = 'plain,"quoted","dou""bled"'.getBytes("utf8")
+        DelimitedParser parser = new DelimitedParser((byte) ',')
+        parser.parse(bytes, 0, bytes.length)
+        expect:
+        parser.getFieldBytes(0).is(bytes)
+        parser.getFieldStart(0) == 0
+        parser.getFieldEnd(0) == 5
+        !parser.isQuoted(0)
+        parser.getFieldBytes(1).is(bytes)
+        parser.getFieldStart(1) == 7
+        parser.getFieldEnd(1) == 13
+        parser.isQuoted(1)
+        !parser.getFieldBytes(2).is(bytes)
+        parser.isQuoted(2)
+        parser.field(2) == 'dou"bled'
+        new String(parser.getFieldBytes(2), parser.getFieldStart(2),
+                parser.getFieldEnd(2) - parser.getFieldStart(2), "utf8") == 'dou"bled'
+    }
+
+    def "Escape bytes make the next byte literal, and quoting can be disabled"() {
+        given:
+        DelimitedParser parser = new DelimitedParser((byte) '\t', DelimitedParser.NONE, (int) '\\')
+        parser.parse(new Strand('a\\\tb\t"c\t\\\\'.getBytes("utf8")))
+        expect:
+        fields(parser) == ['a\tb', '"c', '\\']
+    }
+
+    def "nextRecord splits at newlines outside quotes"() {
+        given:
+        byte[] bytes = 'h1,h2\r\n"a\nb",c\n\nlast,"q"\r\n'.getBytes("utf8")
+        DelimitedParser parser = new DelimitedParser((byte) ',')
+        parser.reset(bytes, 0, bytes.length)
+        List<List<String>> records = []
+        List<String> raw = []
+        while(parser.nextRecord()) {
+            records << fields(parser)
+            raw << new String(bytes, parser.getRecordStart(), parser.getRecordEnd() - parser.getRecordStart(), "utf8")
+        }
+        expect:
+        records == [['h1', 'h2'], ['a\nb', 'c'], [''], ['last', 'q']]
+        raw == ['h1,h2\r', '"a\nb",c', '', 'last,"q"\r']
+        !parser.nextRecord()
+    }
+
+    def "Only a carriage return before the newline ending a record is dropped"() {
+        given:
+        byte[] bytes = text.getBytes("utf8")
+        DelimitedParser parser = new DelimitedParser((byte) ',')
+        parser.reset(bytes, 0, bytes.length)
+        List<List<String>> records = []
+        while(parser.nextRecord()) {
+            records << fields(parser)
+        }
+        expect:
+        records == expected
+        where:
+        text                 | expected
+        'a\r,b\n'            | [['a\r', 'b']]
+        '"x"bb\r,c\r\n'      | [['xbb\r', 'c']]
+        'a,b\r\r\nc'         | [['a', 'b\r'], ['c']]
+    }
+
+    def "A final newline within quotes or after an escape is part of the record"() {
+        given:
+        byte[] bytes = text.getBytes("utf8")
+        DelimitedParser parser = new DelimitedParser((byte) ',', (int) '"', (int) '\\')
+        parser.reset(bytes, 0, bytes.length)
+        expect:
+        parser.nextRecord()
+        parser.getRecordEnd() == recordEnd
+        fields(parser) == expected
+        !parser.nextRecord()
+        where:
+        text       | recordEnd | expected
+        'x,"a\n'   | 5         | ['x', 'a\n']
+        'x,a\\\n'  | 5         | ['x', 'a\n']
+        'x,a\n'    | 3         | ['x', 'a']
+    }
+
+    def "Field arrays are reused across records of different widths"() {
+        given:
+        DelimitedParser parser = new DelimitedParser((byte) ',')
+        String wide = (0..<40).collect { '"f' + it + '"' }.join(',')
+        when:
+        parser.parse(new Strand(wide.getBytes("utf8")))
+        then:
+        parser.getFieldCount() == 40
+        parser.field(39) == 'f39'
+        when:
+        parser.parse(new Strand('x,y'.getBytes("utf8")))
+        parser.field(2)
+        then:
+        parser.getFieldCount() == 2
+        thrown(IndexOutOfBoundsException)
+    }
+}
@@ -0,0 +1,134 @@
+package com.adbrowning.util
+
+import spock.lang.Specification
+
+class FieldParserSpec extends Specification {
+    FieldParser parser = new FieldParser()
+
+    static Strand strand(String text) {
+        byte[] bytes = ("xx" + text + "yy").getBytes("utf8")
+        return new Substrand(bytes, 2, bytes.length - 2, false)
+    }
+
+    def "Integers parse as Long.parseLong and Integer.parseInt do"() {
+        expect:
+        parser.parseLong(strand(text)) == Long.parseLong(text)
+        parser.isValid()
+        parser.parseInt(strand(text)) == (fitsInInt ? Integer.parseInt(text) : 0)
+        parser.getError() == (fitsInInt ? FieldParser.OK : FieldParser.OVERFLOW)
+        where:
+        text                   | fitsInInt
+        "0"                    | true
+        "-17"                  | true
+        "+42"                  | true
+        "007"                  | true
+        "2147483647"           | true
+        "-2147483648"          | true
+        "2147483648"           | false
+        "9223372036854775807"  | false
+        "-9223372036854775808" | false
+    }
+
+    def "Malformed and overflowing integers report an error instead of throwing"() {
+        when:
+        long value = parser.parseLong(strand(text))
+        then:
+        value == 0
+        parser.getError() == error
+        parser.getErrorIndex() == 2 + index
+        !parser.isValid()
+        where:
+        text                   | error                  | index
+        ""                     | FieldParser.EMPTY      | 0
+        "-"                    | FieldParser.INVALID    | 1
+        "12a4"                 | FieldParser.INVALID    | 2
+        " 1"                   | FieldParser.INVALID    | 0
+        "9223372036854775808"  | FieldParser.OVERFLOW   | 18
+        "-9223372036854775809" | FieldParser.OVERFLOW   | 19
+        "99999999999999999999" | FieldParser.OVERFLOW   | 18
+    }
+
+    def "Doubles parse exactly as Double.parseDouble does"() {
+        expect:
+        Double.compare(parser.parseDouble(strand(text)), Double.parseDouble(text)) == 0
+        parser.isValid()
+        where:
+        text << ["0", "-0.0", "1", "3.14159", "-2.5e-3", "1E10", ".5", "5.", "+0.1", "123456789012345678901234",
+                 "0.000000000000000000000000000001", "9007199254740993", "1.7976931348623157E308", "4.9e-324",
+                 "1e400", "2.2250738585072014E-308", "NaN", "-Infinity", "0.30000000000000004"]
+    }
+
+    def "Random doubles round-trip through their shortest representation"() {
+        given:
+        Random random = new Random(0x5eedL)
+        expect:
+        for(int i = 0; i < 2000; ++i) {
+            double value = i % 2 == 0 ? random.nextDouble() * Math.pow(10, random.nextInt(40) - 20) :
+                    random.nextInt(100000) / 100.0
+            String text = Double.toString(value)
+            assert parser.parseDouble(strand(text)) == value
+        }
+    }
+
+    def "Malformed doubles report an error"() {
+        expect:
+        parser.parseDouble(strand(text)) == 0
+        parser.getError() == FieldParser.INVALID
+        where:
+        text << ["-", ".", "1e", "1e+", "1.5d", "0x10", "1..2", "Inf", "1,5"]
+    }
+
+    def "Booleans are true or false in any case, and nothing else"() {
+        expect:
+        parser.parseBoolean(strand(text)) == value
+        parser.getError() == error
+        where:
+        text    | value | error
+        "true"  | true  | FieldParser.OK
+        "TRUE"  | true  | FieldParser.OK
+        "False" | false | FieldParser.OK
+        "yes"   | false | FieldParser.INVALID
+        "truex" | false | FieldParser.INVALID
+        ""      | false | FieldParser.EMPTY
+    }
+
+    def "Timestamps match the calendar"() {
+        given:
+        TimeZone utc = TimeZone.getTimeZone("UTC")
+        GregorianCalendar calendar = new GregorianCalendar(utc)
+        calendar.setGregorianChange(new Date(Long.MIN_VALUE))
+        expect:
+        for(long millis = -5000000000000L; millis < 5000000000000L; millis += 7777777777L) {
+            calendar.setTimeInMillis(millis)
+            String text = String.format("%04d-%02d-%02dT%02d:%02d:%02d.%03dZ", calendar.get(Calendar.YEAR),
+                    calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH),
+                    calendar.get(Calendar.HOUR_OF_DAY), calendar.get(Calendar.MINUTE), calendar.get(Calendar.SECOND),
+                    calendar.get(Calendar.MILLISECOND))
+            assert parser.parseTimestamp(strand(text)) == millis
+            assert parser.isValid()
+        }
+    }
+
+    def "Timestamp formats and offsets"() {
+        expect:
+        parser.parseTimestamp(strand(text)) == millis
+        parser.isValid()
+        where:
+        text                                  | millis
+        "1970-01-01"                          | 0L
+        "1970-01-02 00:00:01"                 | 86401000L
+        "2000-02-29T12:00:00.5"               | 951825600500L
+        "2000-02-29T12:00:00.123456789Z"      | 951825600123L
+        "2000-02-29T13:30:00+01:30"           | 951825600000L
+        "2000-02-29T10:00:00-0200"            | 951825600000L
+    }
+
+    def "Malformed timestamps report an error"() {
+        expect:
+        parser.parseTimestamp(strand(text)) == 0
+        parser.getError() == FieldParser.INVALID
+        where:
+        text << ["2001-02-29", "2000-13-01", "2000-1-01", "2000-01-01T24:00:00", "2000-01-01T10:00",
+                 "2000-01-01T10:00:00.", "2000-01-01T10:00:00+1", "2000-01-01T10:00:00Zx", "2000/01/01"]
+    }
+}
@@ -0,0 +1,108 @@
+package com.adbrowning.util
+
+import spock.lang.Specification
+
+class IndexedStrandSpec extends Specification {
+    static final String MIXED = "G\u007FH\u0080I\u007FJ\u0080K\u0800L\u0100M\u1FFFN"
+
+    def "charAt and length match String for every interval"() {
+        given: "A long string with a mix of single and multi-byte chars"
+        String text = MIXED * 20
+        IndexedStrand strand = new IndexedStrand(text.getBytes("utf8"), interval)
+        expect:
+        strand.length() == text.length()
+        (0..<text.length()).every { strand.charAt(it) == text.charAt(it) }
+        where:
+        interval << [1, 2, 4, 64]
+    }
+
+    def "charAt in a 7-bit ASCII string needs no index"() {
+        given:
+        IndexedStrand strand = new IndexedStrand("Hello World!".getBytes("utf8"))
+        expect:
+        strand.getIndexSize() == 0
+        strand.length() == 12
+        strand.charAt(6) == 'W'
+    }
+
+    def "charAt out of bounds throws"() {
+        given:
+        IndexedStrand strand = new IndexedStrand("A\u0080B".getBytes("utf8"), 2)
+        when:
+        strand.charAt(index)
+        then:
+        thrown(IndexOutOfBoundsException)
+        where:
+        index << [-1, 3]
+    }
+
+    def "subSequence matches String"() {
+        given:
+        String text = MIXED * 4
+        IndexedStrand strand = new IndexedStrand(text.getBytes("utf8"), 4)
+        expect:
+        strand.subSequence(start, end).toString() == text.substring(start, end)
+        where:
+        start | end
+        0     | 0
+        0     | 5
+        3     | 17
+        9     | 60
+        17    | 60
+        60    | 60
+    }
+
+    def "indexOf matches String"() {
+        given:
+        String text = MIXED * 10 + "needle" + MIXED
+        IndexedStrand strand = new IndexedStrand(text.getBytes("utf8"), 8)
+        expect:
+        strand.indexOf("needle") == text.indexOf("needle")
+        strand.indexOf("\u1FFFN".getBytes("utf8"), 50) == text.indexOf("\u1FFFN", 50)
+        strand.indexOf("absent") == -1
+    }
+
+    def "Indexing a Substrand"() {
+        given:
+        String text = MIXED * 3
+        byte[] bytes = text.getBytes("utf8")
+        Strand substrand = new Strand(bytes).subSequence(2, 40)
+        IndexedStrand strand = new IndexedStrand(substrand, 4)
+        expect:
+        strand.length() == 38
+        strand.toString() == text.substring(2, 40)
+        strand.subSequence(10, 38).toString() == text.substring(12, 40)
+        strand == substrand
+    }
+
+    def "Indexing an empty range of a multi-byte Strand"() {
+        given:
+        Strand multiByte = new Strand("\u00E9".getBytes("utf8"), true)
+        IndexedStrand strand = new IndexedStrand((Strand) multiByte.subSequence(index, index), interval)
+        expect:
+        strand.length() == 0
+        strand.toString() == ""
+        strand.indexOf("\u00E9") == -1
+        strand.getIndexSize() == 4
+        where:
+        index | interval
+        0     | 2
+        1     | 2
+        1     | 64
+    }
+
+    def "Indexing an empty multi-byte Strand"() {
+        given:
+        IndexedStrand strand = new IndexedStrand(new Strand(new byte[0], false, true), 2)
+        expect:
+        strand.length() == 0
+        strand.subSequence(0, 0).toString() == ""
+    }
+
+    def "checkpointInterval must be a power of two"() {
+        when:
+        new IndexedStrand("abc".getBytes("utf8"), 3)
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
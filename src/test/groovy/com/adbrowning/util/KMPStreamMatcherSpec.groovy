@@ -0,0 +1,112 @@
+package com.adbrowning.util
+
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+
+class KMPStreamMatcherSpec extends Specification {
+
+    static List<Long> bruteForce(byte[] text, byte[] pattern) {
+        List<Long> retVal = []
+        for(int i = 0; i + pattern.length <= text.length; ++i) {
+            if(Arrays.equals(Arrays.copyOfRange(text, i, i + pattern.length), pattern)) {
+                retVal << (long) i
+            }
+        }
+        return retVal
+    }
+
+    static StreamMatchListener collector(List<Long> matches) {
+        return new StreamMatchListener() {
+            boolean onMatch(long offset) {
+                matches << offset
+                return true
+            }
+        }
+    }
+
+    def "Matches straddling chunks are found for every chunk size"() {
+        given:
+        byte[] text = "abaababaabaababaababa xx abaababa".getBytes("utf8")
+        byte[] patternBytes = pattern.getBytes("utf8")
+        List<Long> expected = bruteForce(text, patternBytes)
+        expect:
+        for(int chunkSize = 1; chunkSize <= text.length; ++chunkSize) {
+            List<Long> matches = []
+            KMPStreamMatcher matcher = new KMPStreamMatcher(patternBytes)
+            for(int start = 0; start < text.length; start += chunkSize) {
+                byte[] chunk = Arrays.copyOfRange(text, start, Math.min(start + chunkSize, text.length))
+                matcher.feed(chunk, 0, chunk.length, collector(matches))
+            }
+            assert matches == expected
+            assert matcher.getPosition() == text.length
+        }
+        where:
+        pattern << ["aba", "abaababa", "x", "ab", "zz"]
+    }
+
+    def "Direct ByteBuffer chunks are consumed"() {
+        given:
+        byte[] text = ("0123456789" * 10 + "needle" + "0123456789" * 3 + "need" + "le").getBytes("utf8")
+        KMPStreamMatcher matcher = new KMPStreamMatcher("needle".getBytes("utf8"))
+        List<Long> matches = []
+        when:
+        for(int start = 0; start < text.length; start += 37) {
+            ByteBuffer chunk = ByteBuffer.allocateDirect(37)
+            chunk.put(text, start, Math.min(37, text.length - start)).flip()
+            matcher.feed(chunk, collector(matches))
+            assert !chunk.hasRemaining()
+        }
+        then:
+        matches == bruteForce(text, "needle".getBytes("utf8"))
+    }
+
+    def "Channels and InputStreams are read to the end"() {
+        given:
+        byte[] text = ("abc" * 1000 + "abcd" + "abc" * 1000 + "abcd").getBytes("utf8")
+        List<Long> fromChannel = []
+        List<Long> fromStream = []
+        when:
+        new KMPStreamMatcher("cabcd".getBytes("utf8")).feed(Channels.newChannel(new ByteArrayInputStream(text)),
+                ByteBuffer.allocate(64), collector(fromChannel))
+        new KMPStreamMatcher("cabcd".getBytes("utf8")).feed(new ByteArrayInputStream(text), new byte[100],
+                collector(fromStream))
+        then:
+        fromChannel == [2999L, 6003L]
+        fromStream == fromChannel
+    }
+
+    def "Stopping leaves the rest of the chunk unconsumed"() {
+        given:
+        byte[] text = "xxabxxabxxab".getBytes("utf8")
+        KMPStreamMatcher matcher = new KMPStreamMatcher("ab".getBytes("utf8"))
+        ByteBuffer chunk = ByteBuffer.wrap(text)
+        when:
+        int numMatches = matcher.feed(chunk, new StreamMatchListener() {
+            boolean onMatch(long offset) {
+                return offset < 6
+            }
+        })
+        then:
+        numMatches == 2
+        matcher.getPosition() == 8
+        chunk.position() == 8
+        matcher.getPartialMatchLength() == 0
+    }
+
+    def "Partial matches are carried and cleared by reset"() {
+        given:
+        KMPStreamMatcher matcher = new KMPStreamMatcher("abcd".getBytes("utf8"))
+        byte[] chunk = "xxabc".getBytes("utf8")
+        when:
+        matcher.feed(chunk, 0, chunk.length, collector([]))
+        then:
+        matcher.getPartialMatchLength() == 3
+        when:
+        matcher.reset()
+        then:
+        matcher.getPartialMatchLength() == 0
+        matcher.getPosition() == 0
+    }
+}
@@ -0,0 +1,110 @@
+package com.adbrowning.util
+
+import spock.lang.Specification
+
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+
+class MappedStrandSpec extends Specification {
+    static final String MIXED = "G\u007FH\u0080I\u007FJ\u0080K\u0800L\u0100M\u1FFFN"
+
+    Path file
+
+    def cleanup() {
+        if(file != null) {
+            Files.deleteIfExists(file)
+        }
+    }
+
+    MappedStrand map(String text, int segmentSize, int maxViewLength) {
+        file = Files.createTempFile("mapped-strand", ".txt")
+        Files.write(file, text.getBytes("utf8"))
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)
+        try {
+            return new MappedStrand(channel, segmentSize, maxViewLength)
+        } finally {
+            channel.close()
+        }
+    }
+
+    def "byteAt, length and charAt span segments"() {
+        given:
+        MappedStrand strand = map(text, 16, 8)
+        byte[] bytes = text.getBytes("utf8")
+        expect:
+        strand.byteLength() == bytes.length
+        (0..<bytes.length).every { strand.byteAt(it) == bytes[it] }
+        strand.length() == text.length()
+        (0..<text.length()).every { strand.charAt(it) == text.charAt(it) }
+        where:
+        text << ["0123456789" * 5, MIXED * 5]
+    }
+
+    def "indexOf finds matches crossing segment boundaries"() {
+        given:
+        String text = "abcdefghijklmnopqrstuvwxyz" * 3
+        MappedStrand strand = map(text, 16, 8)
+        expect:
+        for(int start = 0; start + 6 <= text.length(); ++start) {
+            String pattern = text.substring(start, start + 6)
+            assert strand.indexOf(pattern.getBytes("utf8")) == text.indexOf(pattern)
+            assert strand.indexOf(pattern.getBytes("utf8"), start + 1) == text.indexOf(pattern, start + 1)
+        }
+        strand.indexOf("zz".getBytes("utf8")) == -1
+    }
+
+    def "slice returns views within and across segments"() {
+        given:
+        String text = "0123456789" * 5
+        MappedStrand strand = map(text, 16, 8)
+        expect:
+        strand.slice(start, end).toString() == text.substring(start, end)
+        where:
+        start | end
+        0     | 16
+        12    | 20
+        15    | 24
+        40    | 50
+        50    | 50
+    }
+
+    def "slice longer than maxViewLength across a boundary throws"() {
+        given:
+        MappedStrand strand = map("0123456789" * 5, 16, 8)
+        when:
+        strand.slice(10, 30)
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "split reports each line with its offset"() {
+        given:
+        String text = "alpha\nbeta\n\ngamma delta\n\u0800\u0100\nomega\n"
+        MappedStrand strand = map(text, 16, 12)
+        List<String> lines = []
+        List<Long> offsets = []
+        when:
+        long numLines = strand.split("\n".getBytes("utf8"), new SplitListener() {
+            boolean onSplit(ByteBufferStrand token, long offset) {
+                lines << token.toString()
+                offsets << offset
+                return true
+            }
+        })
+        then:
+        numLines == 6
+        lines == ["alpha", "beta", "", "gamma delta", "\u0800\u0100", "omega"]
+        offsets == [0L, 6L, 11L, 12L, 24L, 30L]
+    }
+
+    def "startsWith and endsWith"() {
+        given:
+        MappedStrand strand = map("header" + ("x" * 40) + "footer", 16, 8)
+        expect:
+        strand.startsWith("header".getBytes("utf8"))
+        strand.endsWith("footer".getBytes("utf8"))
+        !strand.endsWith("header".getBytes("utf8"))
+    }
+}
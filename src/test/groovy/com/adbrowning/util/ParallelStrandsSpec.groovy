@@ -0,0 +1,88 @@
+package com.adbrowning.util
+
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.concurrent.ForkJoinPool
+import java.util.regex.Pattern
+
+class ParallelStrandsSpec extends Specification {
+    @Shared ForkJoinPool pool = new ForkJoinPool(4)
+
+    def cleanupSpec() {
+        pool.shutdown()
+    }
+
+    def "split matches Strand.split for every partition size"() {
+        given:
+        Strand strand = new Strand(text.getBytes("utf8"))
+        byte[] sequence = delimiter.getBytes("utf8")
+        List<String> expected = strand.split(sequence)*.toString()
+        expect:
+        expected == (text.split(Pattern.quote(delimiter)) as List)
+        for(int partitionSize = 1; partitionSize <= 8; ++partitionSize) {
+            assert new ParallelStrands(pool, partitionSize).split(strand, sequence)*.toString() == expected
+        }
+        where:
+        text                                          | delimiter
+        "a,b,,c,dd,eee,,,f,g,h,i,j,k,,"               | ","
+        "xaaayaaaaazaaab"                             | "aa"
+        "abababxababab"                               | "abab"
+        "\u00E9\u0800|\u0800||\u00E9x|\u0800\u0800|z" | "|"
+        ",,,,,x"                                      | ","
+    }
+
+    def "Tokens keep exact multi-byte flags"() {
+        given:
+        Strand strand = new Strand("abc,\u00E9t\u00E9,xyz".getBytes("utf8"))
+        Strand[] tokens = new ParallelStrands(pool, 2).split(strand, ",".getBytes("utf8"))
+        expect:
+        tokens*.toString() == ["abc", "\u00E9t\u00E9", "xyz"]
+        tokens*.length() == [3, 3, 3]
+        tokens[1].charAt(2) == '\u00E9' as char
+    }
+
+    def "indexOf, findAll and count match the sequential searches across partition edges"() {
+        given:
+        String text = ("\u0800ab" * 7 + "needle") * 5 + "\u00E9nee"
+        Strand strand = new Strand(text.getBytes("utf8"))
+        ByteSearcher searcher = ByteSearcherFactory.create(pattern.getBytes("utf8"))
+        List<Integer> expected = []
+        searcher.findAll(strand.contents, 0, strand.contents.length, new MatchListener() {
+            boolean onMatch(int index) {
+                expected << index
+                return true
+            }
+        })
+        expect:
+        for(int partitionSize = 1; partitionSize <= 16; partitionSize += 3) {
+            ParallelStrands parallel = new ParallelStrands(pool, partitionSize)
+            List<Integer> found = []
+            parallel.findAll(strand, searcher, new MatchListener() {
+                boolean onMatch(int index) {
+                    found << index
+                    return true
+                }
+            })
+            assert found == expected
+            assert parallel.count(strand, searcher) == expected.size()
+            assert parallel.indexOf(strand, searcher) == text.indexOf(pattern)
+        }
+        where:
+        pattern << ["needle", "e", "\u0800a", "ab\u0800ab\u0800", "absent", "neen"]
+    }
+
+    def "findAll stops when the listener asks"() {
+        given:
+        Strand strand = new Strand(("x." * 100).getBytes("utf8"))
+        when:
+        int reported = new ParallelStrands(pool, 8).findAll(strand, ByteSearcherFactory.create(".".getBytes("utf8")),
+                new MatchListener() {
+                    boolean onMatch(int index) {
+                        return index < 11
+                    }
+                })
+        then:
+        reported == 6
+    }
+}
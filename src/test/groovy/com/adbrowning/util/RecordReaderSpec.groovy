@@ -0,0 +1,104 @@
+package com.adbrowning.util
+
+import spock.lang.Specification
+
+import java.nio.channels.Channels
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.regex.Pattern
+
+class RecordReaderSpec extends Specification {
+
+    static List<String> expectedRecords(String text, String terminator) {
+        List<String> retVal = text.split(Pattern.quote(terminator), -1) as List
+        if(text.isEmpty() || text.endsWith(terminator)) {
+            retVal.remove(retVal.size() - 1)
+        }
+        return retVal
+    }
+
+    static List<String> readAll(RecordReader reader, List<Long> offsets) {
+        List<String> records = []
+        while(reader.advance()) {
+            records << reader.record().toString()
+            offsets << reader.getRecordOffset()
+            assert new String(reader.getBuffer(), reader.getRecordStart(),
+                    reader.getRecordEnd() - reader.getRecordStart(), "utf8") == records[-1]
+        }
+        assert !reader.advance()
+        return records
+    }
+
+    def "Records match a split of the whole input for every buffer size"() {
+        given:
+        byte[] bytes = text.getBytes("utf8")
+        byte[] terminatorBytes = terminator.getBytes("utf8")
+        List<String> expected = expectedRecords(text, terminator)
+        List<Long> expectedOffsets = []
+        long offset = 0
+        for(String record : expected) {
+            expectedOffsets << offset
+            offset += record.getBytes("utf8").length + terminatorBytes.length
+        }
+        expect:
+        for(int bufferSize = 1; bufferSize <= bytes.length + 1; ++bufferSize) {
+            List<Long> streamOffsets = []
+            List<Long> channelOffsets = []
+            assert readAll(new RecordReader(new ByteArrayInputStream(bytes), terminatorBytes, new byte[bufferSize]),
+                    streamOffsets) == expected
+            assert readAll(new RecordReader(Channels.newChannel(new ByteArrayInputStream(bytes)), terminatorBytes,
+                    new byte[bufferSize]), channelOffsets) == expected
+            assert streamOffsets == expectedOffsets
+            assert channelOffsets == expectedOffsets
+        }
+        where:
+        text                                   | terminator
+        "first\nsecond\n\nfourth\n"            | "\n"
+        "no terminator at the end\nx"          | "\n"
+        "\n\n"                                 | "\n"
+        ""                                     | "\n"
+        "a\r\nb\r\r\n\u00E9\u05D0\r\n\r\nlast" | "\r\n"
+        "one||two|||three||"                   | "||"
+    }
+
+    def "A record longer than the buffer grows it"() {
+        given:
+        String longRecord = "x" * 100
+        byte[] bytes = ("ab\n" + longRecord + "\ncd").getBytes("utf8")
+        byte[] initial = new byte[8]
+        RecordReader reader = new RecordReader(new ByteArrayInputStream(bytes), "\n".getBytes("utf8"), initial)
+        expect:
+        reader.advance()
+        reader.getBuffer().is(initial)
+        reader.record() == "ab"
+        reader.advance()
+        reader.record() == longRecord
+        reader.getBuffer().length >= 100
+        reader.getRecordOffset() == 3
+        reader.advance()
+        reader.record() == "cd"
+        !reader.advance()
+    }
+
+    def "Lines are read from a file channel"() {
+        given:
+        Path file = Files.createTempFile("record-reader", ".txt")
+        StringBuilder text = new StringBuilder()
+        for(int i = 0; i < 10000; ++i) {
+            text.append("line ").append(i).append(i % 7 == 0 ? " \u00E9\u4E2D" : "").append('\n')
+        }
+        Files.write(file, text.toString().getBytes("utf8"))
+        RecordReader reader = new RecordReader(FileChannel.open(file, StandardOpenOption.READ), "\n".getBytes("utf8"),
+                new byte[4096])
+        when:
+        List<String> lines = readAll(reader, [])
+        reader.close()
+        then:
+        lines == expectedRecords(text.toString(), "\n")
+        lines[7].length() == "line 7 \u00E9\u4E2D".length()
+        cleanup:
+        Files.deleteIfExists(file)
+    }
+}
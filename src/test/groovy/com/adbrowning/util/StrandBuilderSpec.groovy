@@ -0,0 +1,94 @@
+package com.adbrowning.util
+
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+
+class StrandBuilderSpec extends Specification {
+
+    def "Appended values read back as the equivalent String"() {
+        given:
+        byte[] raw = "[raw \u00E9]".getBytes("utf8")
+        StrandBuilder builder = new StrandBuilder(4)
+        when:
+        builder.append(new Strand("strand ".getBytes("utf8")))
+                .append(raw, 1, raw.length - 1)
+                .append(' ' as char)
+                .append("chars \u05D0\u4E2D\uD83D\uDE00 " as CharSequence)
+                .append(new StringBuilder("sb") as CharSequence)
+                .append(' ' as char)
+                .appendCodePoint(0x1F601)
+                .append(-42)
+                .append(' ' as char)
+                .append(Long.MAX_VALUE)
+                .append(' ' as char)
+                .append(true)
+                .append(1.5d)
+        String expected = "strand raw \u00E9 chars \u05D0\u4E2D\uD83D\uDE00 sb \uD83D\uDE01-42 " + Long.MAX_VALUE +
+                " true1.5"
+        Strand strand = builder.toStrand()
+        then:
+        strand.toString() == expected
+        builder.toString() == expected
+        builder.byteLength() == expected.getBytes("utf8").length
+        strand.length() == new Strand(expected.getBytes("utf8")).length()
+    }
+
+    def "Numbers are written as toString would"() {
+        given:
+        StrandBuilder builder = new StrandBuilder()
+        expect:
+        values.every { long value ->
+            builder.clear()
+            builder.append(value).toString() == Long.toString(value)
+        }
+        values.findAll { it >= Integer.MIN_VALUE && it <= Integer.MAX_VALUE }.every { long value ->
+            builder.clear()
+            builder.append((int) value).toString() == Integer.toString((int) value)
+        }
+        where:
+        values = [0L, 9L, 10L, -1L, 99L, 100L, Integer.MIN_VALUE, Integer.MAX_VALUE, 999999999999999999L,
+                  1000000000000000000L, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1]
+    }
+
+    def "Unpaired surrogates become question marks, as in String.getBytes"() {
+        given:
+        String text = "a\uD800b\uDC00c\uD83D"
+        expect:
+        new StrandBuilder().append(text as CharSequence).toString() == new String(text.getBytes("utf8"), "utf8")
+        new StrandBuilder().append('\uDC00' as char).toString() == "?"
+    }
+
+    def "clear keeps nothing but the array"() {
+        given:
+        StrandBuilder builder = new StrandBuilder().append("\u00E9" as CharSequence)
+        when:
+        builder.clear()
+        builder.append("abc" as CharSequence)
+        then:
+        builder.toStrand().toString() == "abc"
+        !builder.toStrand().hasMultiByteChars
+    }
+
+    def "writeTo copies a Substrand's byte range to streams, channels and buffers"() {
+        given:
+        byte[] bytes = "xx\u00E9t\u4E2Dyy".getBytes("utf8")
+        Strand strand = new Substrand(bytes, 2, bytes.length - 2, true)
+        byte[] expected = "\u00E9t\u4E2D".getBytes("utf8")
+        ByteArrayOutputStream stream = new ByteArrayOutputStream()
+        ByteArrayOutputStream channelSink = new ByteArrayOutputStream()
+        ByteBuffer buffer = ByteBuffer.allocate(20)
+        buffer.put((byte) 1)
+        when:
+        strand.writeTo(stream)
+        strand.writeTo(Channels.newChannel(channelSink))
+        strand.writeTo(buffer)
+        new StrandBuilder().append(strand).writeTo(stream)
+        then:
+        stream.toByteArray() == (expected as List) + (expected as List) as byte[]
+        channelSink.toByteArray() == expected
+        buffer.position() == 1 + expected.length
+        Arrays.copyOfRange(buffer.array(), 1, buffer.position()) == expected
+    }
+}
@@ -0,0 +1,168 @@
+package com.adbrowning.util
+
+import spock.lang.Specification
+
+class StrandHashMapSpec extends Specification {
+
+    def "Lookups by Strand and by byte range find the same entry"() {
+        given:
+        StrandHashMap<String> map = new StrandHashMap<String>()
+        byte[] record = "GET /index.html h\u00E9llo".getBytes("utf8")
+        when:
+        map.put(new Strand("/index.html".getBytes("utf8")), "index")
+        map.put(record, 16, record.length, "greeting")
+        then:
+        map.size() == 2
+        map.get(record, 4, 15) == "index"
+        map.get((Strand) new Strand(record).subSequence(4, 15)) == "index"
+        map.get(new Strand("h\u00E9llo".getBytes("utf8"))) == "greeting"
+        map.containsKey(record, 4, 15)
+        !map.containsKey(record, 4, 14)
+        map.get(record, 0, 3) == null
+        map.put(record, 4, 15, "replaced") == "index"
+        map.get(record, 4, 15) == "replaced"
+        map.size() == 2
+    }
+
+    def "Keys put by byte range are copied"() {
+        given:
+        StrandHashMap<Integer> map = new StrandHashMap<Integer>()
+        byte[] buffer = "alpha".getBytes("utf8")
+        when:
+        map.put(buffer, 0, buffer.length, 1)
+        System.arraycopy("omega".getBytes("utf8"), 0, buffer, 0, 5)
+        then:
+        map.get(new Strand("alpha".getBytes("utf8"))) == 1
+        map.get(buffer, 0, 5) == null
+    }
+
+    def "Keys put by Strand are copied, so views of a reused buffer may be keys"() {
+        given:
+        StrandHashMap<Integer> map = new StrandHashMap<Integer>()
+        StrandIntHashMap counts = new StrandIntHashMap()
+        byte[] buffer = "alpha".getBytes("utf8")
+        Strand field = new Substrand(buffer, 0, buffer.length, false)
+        when:
+        map.put(field, 1)
+        counts.addTo(field, 2)
+        System.arraycopy("omega".getBytes("utf8"), 0, buffer, 0, 5)
+        counts.put(field, 3)
+        then:
+        map.get(new Strand("alpha".getBytes("utf8"))) == 1
+        map.get(field) == null
+        counts.get(new Strand("alpha".getBytes("utf8"))) == 2
+        counts.get(new Strand("omega".getBytes("utf8"))) == 3
+        counts.size() == 2
+    }
+
+    def "The table grows and the cursor visits every entry"() {
+        given:
+        StrandHashMap<Integer> map = new StrandHashMap<Integer>()
+        for(int i = 0; i < 3000; ++i) {
+            byte[] key = ("key-" + i).getBytes("utf8")
+            map.put(key, 0, key.length, i)
+        }
+        Map<String, Integer> visited = [:]
+        StrandHashMap.Cursor cursor = map.cursor()
+        while(cursor.advance()) {
+            visited[cursor.key().toString()] = cursor.value()
+        }
+        expect:
+        map.size() == 3000
+        visited.size() == 3000
+        (0..<3000).every { visited["key-" + it] == it }
+        when:
+        map.clear()
+        then:
+        map.size() == 0
+        !map.cursor().advance()
+        map.get(new Strand("key-1".getBytes("utf8"))) == null
+    }
+
+    def "StrandIntHashMap counts without boxing"() {
+        given:
+        StrandIntHashMap counts = new StrandIntHashMap(0, -1)
+        byte[] log = "a.com b.org a.com c.net a.com b.org".getBytes("utf8")
+        StrandSplitter splitter = new Strand(log).splitter(" ".getBytes("utf8"))
+        when:
+        while(splitter.advance()) {
+            counts.addTo(log, splitter.getTokenStart(), splitter.getTokenEnd(), 1)
+        }
+        then:
+        counts.size() == 3
+        // counts start from the missing value
+        counts.get(new Strand("a.com".getBytes("utf8"))) == 2
+        counts.get(new Strand("b.org".getBytes("utf8"))) == 1
+        counts.get(new Strand("c.net".getBytes("utf8"))) == 0
+        counts.get(new Strand("d.edu".getBytes("utf8"))) == -1
+        !counts.containsKey(new Strand("d.edu".getBytes("utf8")))
+        counts.put(new Strand("d.edu".getBytes("utf8")), 7) == -1
+        counts.addTo(new Strand("d.edu".getBytes("utf8")), 3) == 10
+    }
+
+    def "StrandIntHashMap cursor and growth"() {
+        given:
+        StrandIntHashMap ids = new StrandIntHashMap()
+        for(int i = 0; i < 1000; ++i) {
+            ids.put(new Strand(("id" + i).getBytes("utf8")), i * 2)
+        }
+        int sum = 0
+        int numEntries = 0
+        StrandIntHashMap.Cursor cursor = ids.cursor()
+        while(cursor.advance()) {
+            assert cursor.key().toString() == "id" + (cursor.value() / 2 as int)
+            sum += cursor.value()
+            ++numEntries
+        }
+        expect:
+        numEntries == 1000
+        sum == 999 * 1000
+    }
+
+    def "StrandIntHashMap cursor replaces values"() {
+        given:
+        StrandIntHashMap counts = new StrandIntHashMap()
+        counts.put(new Strand("a".getBytes("utf8")), 1)
+        counts.put(new Strand("b".getBytes("utf8")), 2)
+        StrandIntHashMap.Cursor cursor = counts.cursor()
+        when:
+        while(cursor.advance()) {
+            cursor.setValue(cursor.value() * 10)
+        }
+        cursor.value()
+        then:
+        thrown(NoSuchElementException)
+        counts.get(new Strand("a".getBytes("utf8"))) == 10
+        counts.get(new Strand("b".getBytes("utf8"))) == 20
+    }
+
+    def "StrandHashSet tracks distinct keys"() {
+        given:
+        StrandHashSet hosts = new StrandHashSet()
+        byte[] log = "a.com b.org a.com c.net a.com b.org".getBytes("utf8")
+        StrandSplitter splitter = new Strand(log).splitter(" ".getBytes("utf8"))
+        List<Boolean> added = []
+        when:
+        while(splitter.advance()) {
+            added << hosts.add(log, splitter.getTokenStart(), splitter.getTokenEnd())
+        }
+        Set<String> visited = [] as Set
+        StrandHashSet.Cursor cursor = hosts.cursor()
+        while(cursor.advance()) {
+            visited << cursor.key().toString()
+        }
+        then:
+        added == [true, true, false, true, false, false]
+        hosts.size() == 3
+        visited == ["a.com", "b.org", "c.net"] as Set
+        hosts.contains(new Strand("b.org".getBytes("utf8")))
+        hosts.contains(log, 0, 5)
+        !hosts.contains(new Strand("d.edu".getBytes("utf8")))
+        !hosts.add(new Strand("c.net".getBytes("utf8")))
+        when:
+        hosts.clear()
+        then:
+        hosts.size() == 0
+        !hosts.contains(log, 0, 5)
+    }
+}
@@ -91,4 +91,59 @@ class StrandIteratorSpec extends Specification {
         '\u05D0' == it.nextChar()
         it.endTokenAfterMostRecentChar() == 'ab\u05D0'
     }
-}
\ No newline at end of file
+
+    def "Characters beyond the BMP come back as surrogate pairs and whole code points"() {
+        given:
+        String text = "a\uD83D\uDE00b\u00E9\uD840\uDC00\u4E2D"
+        byte[] bytes = text.getBytes("utf8")
+        StrandIterator chars = new StrandIterator(bytes, 0, bytes.length)
+        StrandIterator codePoints = new Strand(bytes).iterator()
+        List<Integer> expectedCodePoints = []
+        for(int i = 0; i < text.length(); i = text.offsetByCodePoints(i, 1)) {
+            expectedCodePoints << text.codePointAt(i)
+        }
+        List<Integer> actualCodePoints = []
+        for(int c = codePoints.nextCodePoint(); c >= 0; c = codePoints.nextCodePoint()) {
+            actualCodePoints << c
+        }
+        expect:
+        (0..<text.length()).collect { chars.nextChar() } == text.toCharArray() as List
+        actualCodePoints == expectedCodePoints
+        codePoints.nextCodePoint() == -1
+    }
+
+    def "read decodes runs of chars, splitting surrogate pairs across calls when it must"() {
+        given:
+        String text = "ab\u05D0cd\uD83D\uDE00 plain ascii run\uD83D\uDE01\u00E9"
+        Strand strand = new Strand(text.getBytes("utf8"))
+        StrandIterator it = strand.iterator()
+        char[] buffer = new char[chunk]
+        StringBuilder decoded = new StringBuilder()
+        int numRead
+        while((numRead = it.read(buffer, 0, chunk)) > 0) {
+            decoded.append(buffer, 0, numRead)
+        }
+        char[] all = new char[text.length() + 4]
+        expect:
+        decoded.toString() == text
+        numRead == -1
+        strand.getChars(all, 2) == text.length()
+        new String(all, 2, text.length()) == text
+        where:
+        chunk << [1, 2, 3, 7, 64]
+    }
+
+    def "The most recent char after read is the last one decoded"() {
+        given:
+        StrandIterator it = new StrandIterator("ab\u05D0cd".getBytes("utf8"), 0, 6)
+        char[] buffer = new char[3]
+        it.startTokenBeforeMostRecentChar()
+        expect:
+        it.read(buffer, 0, 3) == 3
+        it.endTokenAfterMostRecentChar() == "ab\u05D0"
+        'c' == it.nextChar()
+        it.read(buffer, 1, 2) == 1
+        buffer[1] == 'd' as char
+        it.read(buffer, 0, 3) == -1
+    }
+}
@@ -0,0 +1,103 @@
+package com.adbrowning.util
+
+import spock.lang.Specification
+
+class StrandListSpec extends Specification {
+
+    def "Splitting into a StrandList matches Strand.split"() {
+        given:
+        Strand strand = new Strand(text.getBytes("utf8"))
+        StrandList list = new StrandList()
+        List<String> expected = strand.split(delimiter.getBytes("utf8"))*.toString()
+        expect:
+        strand.split(delimiter.getBytes("utf8"), list) == list.size()
+        (0..<list.size()).collect { list.get(it).toString() } == expected
+        (0..<list.size()).collect { list.get(it).length() } == expected*.length()
+        list.collect { it.toString() } == expected
+        where:
+        text                        |   delimiter
+        "a,b,c"                     |   ","
+        "a,,b,,,"                   |   ","
+        ",,,x,,,"                   |   ","
+        ""                          |   ","
+        "\u00E9\u00E9,b\u0800,,c"   |   ","
+        "aa\r\nb\r\n\r\n"           |   "\r\n"
+    }
+
+    def "Split tokens point into the Strand's own array"() {
+        given:
+        byte[] bytes = "xx|a|bb|ccc".getBytes("utf8")
+        StrandList list = new StrandList()
+        when:
+        new Substrand(bytes, 3, bytes.length, false).split("|".getBytes("utf8"), list)
+        then:
+        list.size() == 3
+        list.getPage(2).is(bytes)
+        list.getStart(2) == 8
+        list.getEnd(2) == 11
+        list.byteLength(1) == 2
+        list.get(0) == "a"
+    }
+
+    def "Added Strands are copied into pages and mix with split tokens"() {
+        given:
+        StrandList list = new StrandList(1, 8)
+        byte[] source = "abc".getBytes("utf8")
+        when:
+        list.add(new Strand(source))
+        source[0] = (byte) 'z'
+        list.add("\u00E9t\u00E9".getBytes("utf8"), 0, 5)
+        new Strand("p q r".getBytes("utf8")).split(" ".getBytes("utf8"), list)
+        list.add(new Strand("a string longer than a page".getBytes("utf8")))
+        list.add(new Strand("".getBytes("utf8")))
+        list.add(new Strand("last".getBytes("utf8")))
+        then:
+        list.size() == 8
+        (0..<8).collect { list.get(it).toString() } ==
+                ["abc", "\u00E9t\u00E9", "p", "q", "r", "a string longer than a page", "", "last"]
+        list.get(1).length() == 3
+        list.iterator(true).collect { it.toString() } == (0..<8).collect { list.get(it).toString() }
+    }
+
+    def "The flyweight iterator returns one repositioned Substrand"() {
+        given:
+        StrandList list = new StrandList()
+        new Strand("f0\tf1\t\u00E9\u00E9".getBytes("utf8")).split("\t".getBytes("utf8"), list)
+        list.add(new Strand("copied".getBytes("utf8")))
+        List<String> tokens = []
+        List<Strand> instances = []
+        when:
+        for(Iterator<Strand> iterator = list.iterator(true); iterator.hasNext();) {
+            Strand token = iterator.next()
+            tokens << token.toString()
+            instances << token
+        }
+        then:
+        tokens == ["f0", "f1", "\u00E9\u00E9", "copied"]
+        instances.every { it.is(instances[0]) }
+    }
+
+    def "clear empties the list for reuse"() {
+        given:
+        StrandList list = new StrandList()
+        new Strand("a,b".getBytes("utf8")).split(",".getBytes("utf8"), list)
+        when:
+        list.clear()
+        list.add(new Strand("c".getBytes("utf8")))
+        then:
+        list.size() == 1
+        list.get(0) == "c"
+    }
+
+    def "Indices outside the list are rejected"() {
+        given:
+        StrandList list = new StrandList()
+        list.add(new Strand("a".getBytes("utf8")))
+        when:
+        list.get(index)
+        then:
+        thrown(IndexOutOfBoundsException)
+        where:
+        index << [-1, 1]
+    }
+}
@@ -0,0 +1,177 @@
+package com.adbrowning.util
+
+import jdk.jfr.Recording
+import jdk.jfr.consumer.RecordedEvent
+import jdk.jfr.consumer.RecordingFile
+import spock.lang.IgnoreIf
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import static com.adbrowning.util.StrandMetrics.Counter.*
+
+class StrandMetricsSpec extends Specification {
+
+    def "Snapshots subtract and export every counter in order"() {
+        given:
+        StrandMetrics.Snapshot before = StrandMetrics.snapshot()
+        StrandMetrics.Snapshot delta = StrandMetrics.snapshot().minus(before)
+        expect:
+        delta.toMap().keySet() as List == StrandMetrics.Counter.values()*.name()
+        delta.toMap().values().every { it >= 0 }
+    }
+
+    @IgnoreIf({ com.adbrowning.util.StrandMetrics.ENABLED })
+    def "Nothing is counted while metrics are disabled"() {
+        given:
+        StrandMetrics.Snapshot before = StrandMetrics.snapshot()
+        Strand strand = new Strand("\u00E9t\u00E9 abcabcabd".getBytes("utf8"))
+        when:
+        strand.indexOf("abcabd".getBytes("utf8"))
+        strand.charAt(3)
+        new KMPSearcher("aaab".getBytes("utf8")).find("aaaaaab".getBytes("utf8"), 0, 7)
+        then:
+        StrandMetrics.snapshot().minus(before).toMap().values().every { it == 0 }
+        !StrandMetrics.isPublishingEvents()
+    }
+
+    @IgnoreIf({ !com.adbrowning.util.StrandMetrics.ENABLED })
+    def "KMP counts each byte scanned, and a comparison for each byte and each shift"() {
+        given:
+        byte[] text = "aaaaaabxaaab".getBytes("utf8")
+        KMPSearcher searcher = new KMPSearcher("aaab".getBytes("utf8"))
+        StrandMetrics.Snapshot before = StrandMetrics.snapshot()
+        when:
+        int found = searcher.find(text, 0, text.length)
+        StrandMetrics.Snapshot delta = StrandMetrics.snapshot().minus(before)
+        then:
+        found == 3
+        delta.get(KMP_BYTES_SCANNED) == 7
+        delta.get(KMP_SHIFTS) == 3
+        delta.get(KMP_COMPARISONS) == 10
+        when:
+        before = StrandMetrics.snapshot()
+        int numMatches = searcher.findAll(text, 0, text.length, { true } as MatchListener)
+        delta = StrandMetrics.snapshot().minus(before)
+        then:
+        numMatches == 2
+        delta.get(KMP_BYTES_SCANNED) == text.length
+        delta.get(KMP_COMPARISONS) == delta.get(KMP_BYTES_SCANNED) + delta.get(KMP_SHIFTS)
+    }
+
+    @IgnoreIf({ !com.adbrowning.util.StrandMetrics.ENABLED })
+    def "Case-folding searches count towards the KMP counters"() {
+        given:
+        byte[] text = "xxAAABxaaab".getBytes("utf8")
+        CaseFoldingSearcher searcher = new CaseFoldingSearcher("aaab".getBytes("utf8"))
+        StrandMetrics.Snapshot before = StrandMetrics.snapshot()
+        when:
+        int found = searcher.find(text, 0, text.length)
+        StrandMetrics.Snapshot delta = StrandMetrics.snapshot().minus(before)
+        then:
+        found == 2
+        delta.get(KMP_BYTES_SCANNED) == 6
+        delta.get(KMP_COMPARISONS) == 6
+    }
+
+    @IgnoreIf({ !com.adbrowning.util.StrandMetrics.ENABLED })
+    def "Boyer-Moore counts its alignments and compares fewer bytes than it skips over"() {
+        given:
+        byte[] text = ("x" * 1000 + "needle in a haystack").getBytes("utf8")
+        BMSearcher searcher = new BMSearcher("needle in a".getBytes("utf8"))
+        StrandMetrics.Snapshot before = StrandMetrics.snapshot()
+        when:
+        int found = searcher.find(text, 0, text.length)
+        StrandMetrics.Snapshot delta = StrandMetrics.snapshot().minus(before)
+        then:
+        found == 1000
+        delta.get(BM_BYTES_SCANNED) == 1011
+        delta.get(BM_SHIFTS) > 0
+        delta.get(BM_COMPARISONS) >= 11
+        delta.get(BM_COMPARISONS) < 200
+    }
+
+    @IgnoreIf({ !com.adbrowning.util.StrandMetrics.ENABLED })
+    def "Char offset walks are counted only for Strands with multi-byte chars"() {
+        given:
+        Strand multiByte = new Strand("\u00E9t\u00E9 abc".getBytes("utf8"))
+        Strand ascii = new Strand("ete abc".getBytes("utf8"))
+        StrandMetrics.Snapshot before = StrandMetrics.snapshot()
+        when:
+        ascii.charAt(5)
+        ascii.length()
+        then:
+        StrandMetrics.snapshot().minus(before).get(CHAR_OFFSET_WALKS) == 0
+        when:
+        before = StrandMetrics.snapshot()
+        multiByte.charAt(5)
+        multiByte.length()
+        StrandMetrics.Snapshot delta = StrandMetrics.snapshot().minus(before)
+        then:
+        delta.get(CHAR_OFFSET_WALKS) == 2
+        delta.get(CHAR_OFFSET_WALK_BYTES) == 7 + 9
+    }
+
+    @IgnoreIf({ !com.adbrowning.util.StrandMetrics.ENABLED })
+    def "Searchers compiled per call are counted, and precompiled ones are not"() {
+        given:
+        Strand strand = new Strand("one two three".getBytes("utf8"))
+        ByteSearcher searcher = ByteSearcherFactory.create("three".getBytes("utf8"))
+        StrandMetrics.Snapshot before = StrandMetrics.snapshot()
+        when:
+        strand.indexOf("three".getBytes("utf8"))
+        strand.indexOf(searcher)
+        strand.indexOf(searcher, 2)
+        then:
+        StrandMetrics.snapshot().minus(before).get(SEARCHERS_COMPILED_PER_CALL) == 1
+    }
+
+    @IgnoreIf({ !com.adbrowning.util.StrandMetrics.ENABLED })
+    def "Splits and searches over at least LARGE_OPERATION_BYTES are counted as large"() {
+        given:
+        byte[] bytes = new byte[(int) StrandMetrics.LARGE_OPERATION_BYTES]
+        Arrays.fill(bytes, (byte) 'a')
+        bytes[bytes.length - 1] = (byte) ','
+        Strand large = new Strand(bytes)
+        Strand small = new Strand("a,b,c".getBytes("utf8"))
+        StrandMetrics.Snapshot before = StrandMetrics.snapshot()
+        when:
+        small.split(",".getBytes("utf8"))
+        small.indexOf("c".getBytes("utf8"))
+        then:
+        StrandMetrics.snapshot().minus(before).get(LARGE_OPERATIONS) == 0
+        when:
+        before = StrandMetrics.snapshot()
+        int numTokens = large.split(",".getBytes("utf8")).length
+        large.indexOf("b".getBytes("utf8"))
+        then:
+        numTokens == 1
+        StrandMetrics.snapshot().minus(before).get(LARGE_OPERATIONS) == 2
+    }
+
+    @IgnoreIf({ !com.adbrowning.util.StrandMetrics.ENABLED })
+    def "Large operations are published as JFR events"() {
+        given:
+        byte[] bytes = new byte[(int) StrandMetrics.LARGE_OPERATION_BYTES]
+        Arrays.fill(bytes, (byte) 'a')
+        Recording recording = new Recording()
+        recording.enable("com.adbrowning.util.LargeOperation")
+        Path dump = Files.createTempFile("strand-metrics", ".jfr")
+        when:
+        recording.start()
+        new Strand(bytes).split(",".getBytes("utf8"))
+        recording.stop()
+        recording.dump(dump)
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump)
+        then:
+        StrandMetrics.isPublishingEvents()
+        events.size() == 1
+        events[0].getString("operation") == "Strand.split"
+        events[0].getLong("bytes") == bytes.length
+        events[0].getLong("results") == 1
+        cleanup:
+        recording.close()
+        Files.deleteIfExists(dump)
+    }
+}
@@ -0,0 +1,90 @@
+package com.adbrowning.util
+
+import spock.lang.Specification
+
+class StrandPoolSpec extends Specification {
+
+    def "Equal values intern to the same canonical Strand"() {
+        given:
+        StrandPool pool = new StrandPool()
+        Strand[] first = new Strand("host-a,host-b,host-a".getBytes("utf8")).split(",".getBytes("utf8"))
+        Strand[] second = new Strand("xhost-b,host-a".getBytes("utf8")).subSequence(1, 14).split(",".getBytes("utf8"))
+        when:
+        Strand a = pool.intern(first[0])
+        Strand b = pool.intern(first[1])
+        then:
+        pool.intern(first[2]).is(a)
+        pool.intern(second[1]).is(a)
+        pool.intern(second[0]).is(b)
+        a == "host-a"
+        b == "host-b"
+        !a.contents.is(first[0].contents)
+        a.contents.is(b.contents)
+        pool.size() == 2
+        pool.getHits() == 3
+        pool.getMisses() == 2
+        pool.getStoredBytes() == 12
+        pool.getArenaBytes() == StrandPool.DEFAULT_PAGE_SIZE
+    }
+
+    def "Byte ranges and Strands share canonical values"() {
+        given:
+        StrandPool pool = new StrandPool()
+        byte[] bytes = "--\u00E9t\u00E9--".getBytes("utf8")
+        when:
+        Strand fromBytes = pool.intern(bytes, 2, 7)
+        then:
+        fromBytes.toString() == "\u00E9t\u00E9"
+        fromBytes.length() == 3
+        pool.intern(new Strand("\u00E9t\u00E9".getBytes("utf8"))).is(fromBytes)
+        pool.intern(bytes, 2, 2).length() == 0
+    }
+
+    def "The table grows to hold many distinct values"() {
+        given:
+        StrandPool pool = new StrandPool(256, Long.MAX_VALUE)
+        Map<String, Strand> canonical = [:]
+        when:
+        for(int i = 0; i < 5000; ++i) {
+            String key = "key" + i
+            canonical[key] = pool.intern(new Strand(key.getBytes("utf8")))
+        }
+        then:
+        pool.size() == 5000
+        (0..<5000).every { pool.intern(new Strand(("key" + it).getBytes("utf8"))).is(canonical["key" + it]) }
+    }
+
+    def "Values longer than a quarter page get their own arrays"() {
+        given:
+        StrandPool pool = new StrandPool(16, 1024)
+        when:
+        Strand longValue = pool.intern(new Strand(("x" * 10).getBytes("utf8")))
+        Strand shortValue = pool.intern(new Strand("abc".getBytes("utf8")))
+        then:
+        longValue.contents.length == 10
+        shortValue.contents.length == 16
+        pool.getArenaBytes() == 26
+    }
+
+    def "Exceeding maxArenaBytes evicts everything"() {
+        given:
+        StrandPool pool = new StrandPool(16, 32)
+        when:
+        Strand first = pool.intern(new Strand("aaaa".getBytes("utf8")))
+        for(String value : ["bbbb", "cccc", "dddd", "eeee", "ffff", "gggg", "hhhh"]) {
+            pool.intern(new Strand(value.getBytes("utf8")))
+        }
+        then:
+        pool.size() == 8
+        pool.getEvictions() == 0
+        when:
+        Strand evictor = pool.intern(new Strand("iiii".getBytes("utf8")))
+        then:
+        pool.getEvictions() == 8
+        pool.size() == 1
+        pool.getArenaBytes() == 16
+        pool.intern(new Strand("iiii".getBytes("utf8"))).is(evictor)
+        !pool.intern(new Strand("aaaa".getBytes("utf8"))).is(first)
+        first == "aaaa"
+    }
+}
@@ -0,0 +1,112 @@
+package com.adbrowning.util
+
+import spock.lang.Specification
+
+class StrandSorterSpec extends Specification {
+
+    def "compareTo orders by unsigned bytes, which is code point order"() {
+        given:
+        Strand strandA = new Strand(a.getBytes("utf8"))
+        Strand strandB = new Strand(b.getBytes("utf8"))
+        expect:
+        Integer.signum(strandA.compareTo(strandB)) == expected
+        Integer.signum(strandB.compareTo(strandA)) == -expected
+        where:
+        a                                   |   b                               |   expected
+        ""                                  |   ""                              |   0
+        ""                                  |   "a"                             |   -1
+        "abc"                               |   "abd"                           |   -1
+        "abc"                               |   "ab"                            |   1
+        "z"                                 |   "\u00E9"                        |   -1
+        "\u00FF"                            |   "\u0100"                        |   -1
+        "\uFFFD"                            |   "\uD83D\uDE00"                  |   -1
+        "abcdefghijklmnopqrstuvwxyz"        |   "abcdefghijklmnopqrstuvwxyz"    |   0
+        "abcdefghijklmnopqrstuvwxyz"        |   "abcdefghijklmnopqrstuvwxyZ"    |   1
+        "abcdefghijklmnop\u00E9rstuvwxyz"   |   "abcdefghijklmnopqrstuvwxyz"    |   1
+        "abcdefghijklmnopqrstuvwxyz"        |   "abcdefghijklmnopqrstuvwxyz0"   |   -1
+    }
+
+    def "compareTo of Substrands uses only their own bytes"() {
+        given:
+        byte[] bytes = "xxabcdefghijklmnopqrstuvwxyzyy".getBytes("utf8")
+        expect:
+        new Substrand(bytes, 2, 28).compareTo(new Strand("abcdefghijklmnopqrstuvwxyz".getBytes("utf8"))) == 0
+        new Substrand(bytes, 2, 28).compareTo(new Substrand(bytes, 2, 29)) < 0
+    }
+
+    def "Radix sort agrees with sorting by code point"() {
+        given:
+        Random random = new Random(31)
+        expect:
+        for(int trial = 0; trial < 40; ++trial) {
+            int count = random.nextInt(trial < 20 ? 40 : 2000)
+            List<String> strings = (0..<count).collect { randomText(random) }
+            Strand[] strands = strings.collect { String s -> new Strand(s.getBytes("utf8")) } as Strand[]
+            Strand[] compared = Arrays.copyOf(strands, strands.length)
+            Arrays.sort(compared, Strand.CODE_POINT_ORDER)
+            StrandSorter.sort(strands)
+            List<String> expected = strings.sort(false, { String x, String y -> compareCodePoints(x, y) })
+            assert strands*.toString() == expected
+            assert compared*.toString() == expected
+        }
+    }
+
+    def "Sorting a range leaves the rest alone"() {
+        given:
+        Strand[] strands = ["d", "c", "b", "a", "0"].collect { new Strand(it.getBytes("utf8")) } as Strand[]
+        when:
+        new StrandSorter().sortRange(strands, 1, 4)
+        then:
+        strands*.toString() == ["d", "a", "b", "c", "0"]
+    }
+
+    def "Sorting a list writes the elements back in order"() {
+        given:
+        List<Substrand> list = new LinkedList<Substrand>()
+        byte[] bytes = "pear,apple,fig,apple,banana".getBytes("utf8")
+        new Strand(bytes).split(",".getBytes("utf8")).each { list << (Substrand) it }
+        when:
+        StrandSorter.sort(list)
+        then:
+        list*.toString() == ["apple", "apple", "banana", "fig", "pear"]
+    }
+
+    def "Long shared prefixes do not exhaust the stack"() {
+        given:
+        String prefix = "a" * 20000
+        Strand[] strands = (0..<100).collect { new Strand((prefix + (99 - it)).getBytes("utf8")) } as Strand[]
+        when:
+        StrandSorter.sort(strands)
+        then:
+        strands*.toString() == (0..<100).collect { prefix + it }.sort()
+    }
+
+    private static String randomText(Random random) {
+        String letters = "ab\u00E9\u00E8\u4E2D\uFFFD"
+        StringBuilder text = new StringBuilder()
+        int length = random.nextInt(random.nextInt(4) == 0 ? 40 : 6)
+        length.times {
+            if(random.nextInt(20) == 0) {
+                text.append("\uD83D\uDE00")
+            } else {
+                text.append(letters.charAt(random.nextInt(letters.length())))
+            }
+        }
+        return text.toString()
+    }
+
+    private static int compareCodePoints(String x, String y) {
+        int i = 0
+        int j = 0
+        while(i < x.length() && j < y.length()) {
+            int a = x.codePointAt(i)
+            int b = y.codePointAt(j)
+            if(a != b) {
+                return a - b
+            }
+            i += Character.charCount(a)
+            j += Character.charCount(b)
+        }
+        return (x.length() - i) - (y.length() - j)
+    }
+}
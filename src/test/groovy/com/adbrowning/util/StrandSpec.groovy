@@ -28,6 +28,60 @@ class StrandSpec extends Specification {
     }
 
 
+    def "equalsIgnoreCase agrees with String"() {
+        expect:
+        expected == a.equalsIgnoreCase(b)
+        expected == new Strand(a.getBytes("utf8")).equalsIgnoreCase(new Strand(b.getBytes("utf8")))
+        expected == new Substrand(("xx" + a).getBytes("utf8"), 2, 2 + a.getBytes("utf8").length, true)
+                .equalsIgnoreCase(new Strand(b.getBytes("utf8")))
+        where:
+        a                                               |   b                                               |   expected
+        ""                                              |   ""                                              |   true
+        "Content-Type"                                  |   "content-type"                                  |   true
+        "Content-Type"                                  |   "content-typ"                                   |   false
+        "@[`{"                                          |   "`{@["                                          |   false
+        "ACCEPT-ENCODING: GZIP, DEFLATE"                |   "accept-encoding: gzip, deflate"                |   true
+        "ACCEPT-ENCODING: GZIP, DEFLATE"                |   "accept-encoding: gzip, deflatf"                |   false
+        "\u00C9T\u00C9"                                 |   "\u00E9t\u00E9"                                 |   true
+        "caf\u00C9 au lait, caf\u00C9 au lait"          |   "CAF\u00E9 AU LAIT, CAF\u00E9 AU LAIT"          |   true
+        "caf\u00C9 au lait, caf\u00C9 au lait"          |   "CAF\u00E8 AU LAIT, CAF\u00E9 AU LAIT"          |   false
+        "abcdefg\u00C9\u00C9\u00C9\u00C9\u00C9\u00C9"   |   "ABCDEFG\u00E9\u00E9\u00E9\u00E9\u00E9\u00E9"   |   true
+        "abcdefg\u0416\u0416\u0416\u0416"               |   "ABCDEFG\u0436\u0436\u0436\u0417"               |   false
+        "\u212A"                                        |   "k"                                             |   true
+        "\u017F"                                        |   "S"                                             |   true
+        "\u00DF"                                        |   "SS"                                            |   false
+    }
+
+    def "equalsIgnoreCase of null is false"() {
+        expect:
+        !new Strand("a".getBytes("utf8")).equalsIgnoreCase(null)
+    }
+
+    def "regionMatches agrees with String"() {
+        given:
+        String a = "Host: EXAMPLE.com \u00C9t\u00E9"
+        String b = "www.example.COM, \u00E9T\u00C9"
+        Strand strandA = new Strand(a.getBytes("utf8"))
+        Strand strandB = new Strand(b.getBytes("utf8"))
+        expect:
+        a.regionMatches(ignoreCase, offset, b, otherOffset, length) ==
+                strandA.regionMatches(ignoreCase, offset, strandB, otherOffset, length)
+        where:
+        ignoreCase  |   offset  |   otherOffset |   length
+        true        |   6       |   4           |   11
+        false       |   6       |   4           |   11
+        false       |   14      |   12          |   3
+        true        |   18      |   17          |   3
+        false       |   18      |   17          |   3
+        true        |   18      |   17          |   4
+        true        |   -1      |   0           |   1
+        true        |   0       |   -1          |   1
+        true        |   21      |   0           |   0
+        true        |   22      |   0           |   0
+        true        |   0       |   0           |   -3
+        false       |   0       |   0           |   Integer.MAX_VALUE
+    }
+
     def "Test endsWith"() {
         Strand theStrand = new Strand("\u0080ABCD\u0080E".getBytes("utf8"))
         expect:
@@ -77,6 +131,30 @@ class StrandSpec extends Specification {
         -1  |   "ab\u05D0d"
     }
 
+    def "indexOf from a char index"() {
+        given:
+        Strand theStrand = new Strand("\u05D0bc\u05D0bc".getBytes("utf8"))
+        expect:
+        index == theStrand.indexOf("\u05D0b".getBytes("utf8"), start)
+        where:
+        start   |   index
+        0       |   0
+        1       |   3
+        3       |   3
+        4       |   -1
+        10      |   -1
+    }
+
+    def "indexOf with a precompiled searcher"() {
+        given:
+        ByteSearcher searcher = ByteSearcherFactory.create("c\u05D0".getBytes("utf8"))
+        expect:
+        2 == new Strand("abc\u05D0".getBytes("utf8")).indexOf(searcher)
+        1 == new Strand("\u05D0c\u05D0".getBytes("utf8")).indexOf(searcher)
+        4 == new Strand("c\u05D0cac\u05D0".getBytes("utf8")).indexOf(searcher, 1)
+        -1 == new Strand("abc".getBytes("utf8")).indexOf(searcher)
+    }
+
     def "Test split with fewer than batch size splits"() {
         given:
         Strand theStrand = new Strand("a|b|c".getBytes("utf8"))
@@ -182,6 +260,7 @@ class StrandSpec extends Specification {
         "BC"    |   1           |   true
         "AB"    |   1           |   false
         "ABCDE" |   0           |   false
+        "CDE"   |   2           |   false
     }
 
     def "Length with multi-byte chars"() {
@@ -300,6 +379,28 @@ class StrandSpec extends Specification {
         substrands[1] == new Strand("gh".getBytes("utf8"))
     }
 
+    def "Test split when a partial delimiter overlaps the real one"() {
+        given:
+        Strand str = new Strand("xaaab\u05D0aab".getBytes("utf8"))
+        Strand[] substrands = str.split("aab".getBytes("utf8"))
+        expect:
+        substrands.length == 2
+        substrands[0] == new Strand("xa".getBytes("utf8"))
+        substrands[1] == new Strand("\u05D0".getBytes("utf8"))
+    }
+
+    def "Test split of a long line"() {
+        given:
+        String line = (1..40).collect { "field" + it + (it % 7 == 0 ? "\u05D0" : "") }.join("\t")
+        Strand[] substrands = new Strand(line.getBytes("utf8")).split("\t".getBytes("utf8"))
+        expect:
+        substrands.length == 40
+        for(int i = 0; i < 40; ++i) {
+            assert substrands[i] == line.split("\t")[i]
+            assert substrands[i].length() == line.split("\t")[i].length()
+        }
+    }
+
     def "Test splitting into an entry"() {
         given:
         Strand str = new Strand("abc\r\nde\u05D0\r\nfgh\r\ni".getBytes("utf8"))
@@ -0,0 +1,75 @@
+package com.adbrowning.util
+
+import spock.lang.Specification
+
+import java.util.regex.Pattern
+
+class StrandSplitterSpec extends Specification {
+
+    def "Tokens match String.split"() {
+        given:
+        Strand strand = new Strand(text.getBytes("utf8"))
+        List<String> expected = text.split(Pattern.quote(delimiter)) as List
+        StrandSplitter splitter = strand.splitter(delimiter.getBytes("utf8"))
+        List<String> tokens = []
+        while(splitter.advance()) {
+            tokens << splitter.token().toString()
+        }
+        expect:
+        tokens == expected
+        strand.split(delimiter.getBytes("utf8"))*.toString() == expected
+        where:
+        text                     | delimiter
+        "a,b,c"                  | ","
+        "a,,b,,,"                | ","
+        ",a,b"                   | ","
+        ",,,x,,,"                | ","
+        "no delimiter"           | ","
+        "xaaa"                   | "aa"
+        "aaaaa"                  | "aa"
+        "aa\u00E9b\r\nc\r\n\r\n" | "\r\n"
+        "\u0800,\u00E9,,\u0800"  | ","
+    }
+
+    def "Nothing is returned for an empty Strand or one of only delimiters"() {
+        expect:
+        !new Strand(text.getBytes("utf8")).splitter(",".getBytes("utf8")).hasNext()
+        where:
+        text << ["", ",", ",,,,"]
+    }
+
+    def "Iterator and flyweight tokens"() {
+        given:
+        Strand strand = new Strand("f0\tf1\t\tf3\t\u00E9\u00E9".getBytes("utf8"))
+        StrandSplitter flyweight = strand.splitter("\t".getBytes("utf8"), true)
+        List<String> tokens = []
+        List<Strand> instances = []
+        when:
+        while(flyweight.hasNext()) {
+            Strand token = flyweight.next()
+            tokens << token.toString()
+            instances << token
+        }
+        then:
+        tokens == ["f0", "f1", "", "f3", "\u00E9\u00E9"]
+        instances.every { it.is(instances[0]) }
+        instances[0].length() == 2
+        strand.splitter("\t".getBytes("utf8")).collect { it.toString() } == tokens
+    }
+
+    def "skip and raw offsets reach a field without creating the others"() {
+        given:
+        byte[] bytes = "xx|a|bb|ccc|dddd".getBytes("utf8")
+        Strand strand = new Substrand(bytes, 3, bytes.length, false)
+        StrandSplitter splitter = strand.splitter("|".getBytes("utf8"))
+        expect:
+        splitter.skip(3)
+        splitter.getTokenStart() == 8
+        splitter.getTokenEnd() == 11
+        splitter.token() == "ccc"
+        splitter.hasNext()
+        splitter.advance()
+        splitter.token() == "dddd"
+        !splitter.skip(1)
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * Searches with the JDK's (incubating) Vector API, testing a whole vector of candidate positions per step: a position
+ * is a candidate only if the text holds the pattern's first byte there and its last byte pattern-length - 1 further on,
+ * and only candidates are compared in full. Requiring both ends to match rules out nearly every position in ordinary
+ * text, so the scan runs at close to the vector width in bytes per step.
+ * <p/>
+ * This class needs JDK 17 or later, run with --add-modules jdk.incubator.vector; ByteSearcherFactory only selects it
+ * (through VectorSearcherBackend) when it can be loaded.
+ */
+final class VectorSearcher implements ByteSearcher {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private final byte[] pattern;
+    private final byte first;
+    private final byte last;
+    private final ByteVector firstVector;
+    private final ByteVector lastVector;
+
+    VectorSearcher(byte[] pattern, boolean copy) {
+        if(pattern.length == 0) {
+            throw new IllegalArgumentException("pattern must contain at least one byte");
+        }
+        this.pattern = copy ? Arrays.copyOf(pattern, pattern.length) : pattern;
+        first = pattern[0];
+        last = pattern[pattern.length - 1];
+        firstVector = ByteVector.broadcast(SPECIES, first);
+        lastVector = ByteVector.broadcast(SPECIES, last);
+    }
+
+    @Override
+    public int find(byte[] text, int start, int end) {
+        return next(text, start, end);
+    }
+
+    @Override
+    public int findAll(byte[] text, int start, int end, MatchListener listener) {
+        int numMatches = 0;
+        for(int i = next(text, start, end); i >= 0; i = next(text, i + 1, end)) {
+            ++numMatches;
+            if(!listener.onMatch(i)) {
+                break;
+            }
+        }
+        return numMatches;
+    }
+
+    @Override
+    public int getPatternLength() {
+        return pattern.length;
+    }
+
+    /*
+     * Returns the first match starting at or after from, or -1
+     */
+    private int next(byte[] text, int from, int end) {
+        int lastOffset = pattern.length - 1;
+        int width = SPECIES.length();
+        int i = from;
+        // every load of both vectors must lie within [from, end)
+        for(int lastVectorStart = end - lastOffset - width; i <= lastVectorStart; i += width) {
+            // lanes where both ends match become zero
+            VectorMask<Byte> candidates = ByteVector.fromArray(SPECIES, text, i).lanewise(VectorOperators.XOR, firstVector)
+                    .or(ByteVector.fromArray(SPECIES, text, i + lastOffset).lanewise(VectorOperators.XOR, lastVector))
+                    .eq((byte) 0);
+            if(candidates.anyTrue()) {
+                for(long lanes = candidates.toLong(); lanes != 0; lanes &= lanes - 1) {
+                    int candidate = i + Long.numberOfTrailingZeros(lanes);
+                    if(matchesInside(text, candidate)) {
+                        return candidate;
+                    }
+                }
+            }
+        }
+        for(int lastStart = end - pattern.length; i <= lastStart; ++i) {
+            if(text[i] == first && text[i + lastOffset] == last && matchesInside(text, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Compares the bytes between the first and last against text at index
+     */
+    private boolean matchesInside(byte[] text, int index) {
+        for(int i = 1; i < pattern.length - 1; ++i) {
+            if(pattern[i] != text[index + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ *  Copyright 2014 Adam Browning
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.adbrowning.util;
+
+/**
+ * Supplies VectorSearchers to ByteSearcherFactory, which loads this class by name when it is on the class path and the
+ * Vector API module is available. Repetitive patterns, whose first and last bytes match almost everywhere in text made
+ * of the same few bytes, are left to the scalar searchers (Knuth-Morris-Pratt in particular).
+ */
+final class VectorSearcherBackend implements ByteSearcherBackend {
+
+    @Override
+    public ByteSearcher create(byte[] pattern, boolean copy) {
+        if(pattern.length > ByteSearcherFactory.SHORT_PATTERN_MAX_LENGTH &&
+                ByteSearcherFactory.countDistinctBytes(pattern, ByteSearcherFactory.MIN_DISTINCT_BYTES_FOR_BM) <
+                        ByteSearcherFactory.MIN_DISTINCT_BYTES_FOR_BM) {
+            return null;
+        }
+        return new VectorSearcher(pattern, copy);
+    }
+}